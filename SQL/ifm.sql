@@ -35,7 +35,8 @@ CREATE TABLE `broadcast`  (
   `broadcast_play_count` bigint unsigned NOT NULL COMMENT '广播节目播放量',
   `broadcast_collection_count` bigint unsigned NOT NULL COMMENT '广播收藏量',
   `broadcast_post_count` bigint unsigned NOT NULL COMMENT '广播关联帖子数',
-  PRIMARY KEY (`broadcast_id`) USING BTREE
+  PRIMARY KEY (`broadcast_id`) USING BTREE,
+  INDEX `channel_create_page`(`channel_id`, `gmt_create`, `broadcast_id`) USING BTREE COMMENT '频道节目列表分页'
 ) ENGINE = InnoDB AUTO_INCREMENT = 30 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci COMMENT = '创建时间, 上次更新时间, 表id' ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -59,7 +60,9 @@ CREATE TABLE `broadcast_favorite`  (
   `broadcast_favorite_id` bigint unsigned NOT NULL COMMENT '节目收藏表id',
   `broadcast_id` bigint unsigned NOT NULL COMMENT '节目id',
   `user_id` bigint unsigned NOT NULL COMMENT '用户id',
-  PRIMARY KEY (`broadcast_favorite_id`) USING BTREE
+  PRIMARY KEY (`broadcast_favorite_id`) USING BTREE,
+  UNIQUE INDEX `user_broadcast_favorite`(`user_id`, `broadcast_id`) USING BTREE COMMENT '一个用户对一个节目只能收藏一次,收藏/取消收藏依赖此唯一索引去重',
+  INDEX `user_favorite_page`(`user_id`, `gmt_create`, `broadcast_id`) USING BTREE COMMENT '用户收藏节目列表分页'
 ) ENGINE = InnoDB AUTO_INCREMENT = 19 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -80,7 +83,9 @@ CREATE TABLE `broadcast_history`  (
   `user_id` bigint unsigned NOT NULL COMMENT '用户id',
   `history_time` datetime(0) NOT NULL COMMENT '上次收听的时间',
   `last_listen_duration` bigint unsigned NOT NULL COMMENT '上次收听时长(单位:秒)',
-  PRIMARY KEY (`broadcast_history_id`) USING BTREE
+  PRIMARY KEY (`broadcast_history_id`) USING BTREE,
+  UNIQUE INDEX `user_broadcast_history_id`(`user_id`, `broadcast_id`) USING BTREE COMMENT '一个用户对一个节目只保留一条收听历史记录,批量写回收听进度时依赖此唯一索引',
+  INDEX `user_history_page`(`user_id`, `history_time`, `broadcast_id`) USING BTREE COMMENT '用户收听历史列表分页'
 ) ENGINE = InnoDB AUTO_INCREMENT = 12 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -111,7 +116,8 @@ CREATE TABLE `channel`  (
   `user_id` bigint unsigned NOT NULL COMMENT '频道作者的用户 id',
   `channel_picture` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT '/images/channel/D.png' COMMENT '频道封面图片路径',
   `channel_post_count` bigint unsigned NOT NULL COMMENT '频道关联帖子数',
-  PRIMARY KEY (`channel_id`) USING BTREE
+  PRIMARY KEY (`channel_id`) USING BTREE,
+  INDEX `user_create_page`(`user_id`, `gmt_create`, `channel_id`) USING BTREE COMMENT '用户创建的频道列表分页'
 ) ENGINE = InnoDB AUTO_INCREMENT = 40 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci COMMENT = '创建时间, 上次更新时间,表id' ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -168,7 +174,8 @@ CREATE TABLE `channel_subscription`  (
   `channel_id` bigint unsigned NOT NULL COMMENT '频道id',
   `user_id` bigint unsigned NOT NULL COMMENT '用户id',
   PRIMARY KEY (`channel_subscription_id`) USING BTREE,
-  UNIQUE INDEX `channel_user_subscription_id`(`channel_id`, `user_id`) USING BTREE COMMENT '订阅表中,频道id+用户id代表此频道被用户订阅,显然两个id的组合应该是唯一索引'
+  UNIQUE INDEX `channel_user_subscription_id`(`channel_id`, `user_id`) USING BTREE COMMENT '订阅表中,频道id+用户id代表此频道被用户订阅,显然两个id的组合应该是唯一索引',
+  INDEX `user_subscription_page`(`user_id`, `gmt_create`, `channel_id`) USING BTREE COMMENT '用户订阅频道列表分页'
 ) ENGINE = InnoDB AUTO_INCREMENT = 27 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -192,7 +199,8 @@ CREATE TABLE `comment`  (
   `user_id` bigint unsigned NOT NULL COMMENT '评论者的用户id',
   `comment_like_count` bigint unsigned NOT NULL COMMENT '评论的点赞数',
   `comment_reply_count` bigint unsigned NOT NULL COMMENT '评论回复数',
-  PRIMARY KEY (`comment_id`) USING BTREE
+  PRIMARY KEY (`comment_id`) USING BTREE,
+  INDEX `post_create_page`(`post_id`, `gmt_create`, `comment_id`) USING BTREE COMMENT '帖子评论列表分页'
 ) ENGINE = InnoDB AUTO_INCREMENT = 18 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -238,6 +246,21 @@ INSERT INTO `comment_image` VALUES ('2024-12-27 14:56:28', '2024-12-27 14:56:28'
 INSERT INTO `comment_image` VALUES ('2024-12-27 14:56:28', '2024-12-27 14:56:28', 14, 16, '/images/comment/16_17352825888.png');
 INSERT INTO `comment_image` VALUES ('2024-12-27 14:58:08', '2024-12-27 14:58:08', 15, 17, '/images/comment/17_17352826886.png');
 
+-- ----------------------------
+-- Table structure for comment_like
+-- ----------------------------
+DROP TABLE IF EXISTS `comment_like`;
+CREATE TABLE `comment_like`  (
+  `gmt_create` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `gmt_modified` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP(0) COMMENT '上次更新时间',
+  `comment_like_id` bigint unsigned NOT NULL AUTO_INCREMENT COMMENT '评论点赞表id',
+  `comment_id` bigint unsigned NOT NULL COMMENT '评论id',
+  `user_id` bigint unsigned NOT NULL COMMENT '用户id',
+  PRIMARY KEY (`comment_like_id`) USING BTREE,
+  UNIQUE INDEX `user_comment_like`(`user_id`, `comment_id`) USING BTREE COMMENT '一个用户对同一内容只能点赞一次,点赞/取消点赞依赖此唯一索引去重',
+  INDEX `comment_id`(`comment_id`) USING BTREE COMMENT '删除内容时一并删除点赞记录'
+) ENGINE = InnoDB AUTO_INCREMENT = 1 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
+
 -- ----------------------------
 -- Table structure for hashtag
 -- ----------------------------
@@ -283,7 +306,10 @@ CREATE TABLE `post`  (
   `association_id` bigint unsigned NULL COMMENT '关联的id,必须是存在的频道的id或节目id',
   `post_section` tinyint unsigned NOT NULL COMMENT '帖子所属板块 0:话题讨论 1:分享推荐 2:求助问答',
   `user_id` bigint unsigned NOT NULL COMMENT '发帖的用户id',
-  PRIMARY KEY (`post_id`) USING BTREE
+  PRIMARY KEY (`post_id`) USING BTREE,
+  INDEX `user_create_page`(`user_id`, `gmt_create`, `post_id`) USING BTREE COMMENT '用户帖子列表分页',
+  INDEX `section_create_page`(`post_section`, `gmt_create`, `post_id`) USING BTREE COMMENT '板块帖子列表分页',
+  INDEX `association_create_page`(`post_association`, `association_id`, `gmt_create`, `post_id`) USING BTREE COMMENT '关联内容帖子列表分页'
 ) ENGINE = InnoDB AUTO_INCREMENT = 54 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -307,7 +333,8 @@ CREATE TABLE `post_favorite`  (
   `post_id` bigint unsigned NOT NULL COMMENT '帖子id',
   `user_id` bigint(0) NOT NULL COMMENT '用户id',
   PRIMARY KEY (`post_favorite_id`) USING BTREE,
-  UNIQUE INDEX `post-favorite-id`(`post_id`, `user_id`) USING BTREE COMMENT '在帖子收藏表中, 用户id与帖子id的组合是唯一的, 代表同一时间一个帖子只能被用户收藏一次'
+  UNIQUE INDEX `post-favorite-id`(`post_id`, `user_id`) USING BTREE COMMENT '在帖子收藏表中, 用户id与帖子id的组合是唯一的, 代表同一时间一个帖子只能被用户收藏一次',
+  INDEX `user_favorite_page`(`user_id`, `gmt_create`, `post_id`) USING BTREE COMMENT '用户收藏帖子列表分页'
 ) ENGINE = InnoDB AUTO_INCREMENT = 23 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -328,7 +355,8 @@ CREATE TABLE `post_hashtag`  (
   `post_id` bigint unsigned NOT NULL COMMENT '帖子id',
   `hashtag_id` bigint unsigned NOT NULL COMMENT '主题标签id',
   `hashtag_name` varchar(10) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NOT NULL COMMENT '主题标签名',
-  PRIMARY KEY (`post_hashtag_id`) USING BTREE
+  PRIMARY KEY (`post_hashtag_id`) USING BTREE,
+  INDEX `post_id`(`post_id`) USING BTREE COMMENT '按帖子批量获取主题标签'
 ) ENGINE = InnoDB AUTO_INCREMENT = 108 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -365,7 +393,8 @@ CREATE TABLE `post_image`  (
   `post_picture_id` bigint unsigned NOT NULL COMMENT '表id',
   `post_id` bigint unsigned NOT NULL COMMENT '帖子id',
   `image` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NOT NULL COMMENT '图片路径',
-  PRIMARY KEY (`post_picture_id`) USING BTREE
+  PRIMARY KEY (`post_picture_id`) USING BTREE,
+  INDEX `post_id`(`post_id`) USING BTREE COMMENT '按帖子批量获取图片'
 ) ENGINE = InnoDB AUTO_INCREMENT = 119 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -385,6 +414,21 @@ INSERT INTO `post_image` VALUES ('2024-12-17 21:16:19', '2024-12-17 21:16:19', 1
 INSERT INTO `post_image` VALUES ('2024-12-17 21:19:09', '2024-12-17 21:19:09', 117, 51, '/images/post/51_17344415493.png');
 INSERT INTO `post_image` VALUES ('2024-12-17 21:30:30', '2024-12-17 21:30:30', 118, 52, '/images/post/52_17344422300.png');
 
+-- ----------------------------
+-- Table structure for post_like
+-- ----------------------------
+DROP TABLE IF EXISTS `post_like`;
+CREATE TABLE `post_like`  (
+  `gmt_create` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `gmt_modified` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP(0) COMMENT '上次更新时间',
+  `post_like_id` bigint unsigned NOT NULL AUTO_INCREMENT COMMENT '帖子点赞表id',
+  `post_id` bigint unsigned NOT NULL COMMENT '帖子id',
+  `user_id` bigint unsigned NOT NULL COMMENT '用户id',
+  PRIMARY KEY (`post_like_id`) USING BTREE,
+  UNIQUE INDEX `user_post_like`(`user_id`, `post_id`) USING BTREE COMMENT '一个用户对同一内容只能点赞一次,点赞/取消点赞依赖此唯一索引去重',
+  INDEX `post_id`(`post_id`) USING BTREE COMMENT '删除内容时一并删除点赞记录'
+) ENGINE = InnoDB AUTO_INCREMENT = 1 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
+
 -- ----------------------------
 -- Table structure for reply
 -- ----------------------------
@@ -397,7 +441,8 @@ CREATE TABLE `reply`  (
   `reply_like_count` bigint unsigned NOT NULL COMMENT '回复的点赞数',
   `comment_id` bigint unsigned NOT NULL COMMENT '评论id',
   `user_id` bigint unsigned NOT NULL COMMENT '回复者的用户id',
-  PRIMARY KEY (`reply_id`) USING BTREE
+  PRIMARY KEY (`reply_id`) USING BTREE,
+  INDEX `comment_create_page`(`comment_id`, `gmt_create`, `reply_id`) USING BTREE COMMENT '评论回复列表分页'
 ) ENGINE = InnoDB AUTO_INCREMENT = 7 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -410,6 +455,21 @@ INSERT INTO `reply` VALUES ('2024-12-17 21:17:39', '2024-12-17 21:17:39', 4, '
 INSERT INTO `reply` VALUES ('2024-12-18 10:01:46', '2024-12-18 10:01:46', 5, '123', 0, 12, 7);
 INSERT INTO `reply` VALUES ('2024-12-27 14:47:31', '2024-12-27 14:47:31', 6, '真好', 0, 8, 7);
 
+-- ----------------------------
+-- Table structure for reply_like
+-- ----------------------------
+DROP TABLE IF EXISTS `reply_like`;
+CREATE TABLE `reply_like`  (
+  `gmt_create` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `gmt_modified` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP(0) COMMENT '上次更新时间',
+  `reply_like_id` bigint unsigned NOT NULL AUTO_INCREMENT COMMENT '回复点赞表id',
+  `reply_id` bigint unsigned NOT NULL COMMENT '回复id',
+  `user_id` bigint unsigned NOT NULL COMMENT '用户id',
+  PRIMARY KEY (`reply_like_id`) USING BTREE,
+  UNIQUE INDEX `user_reply_like`(`user_id`, `reply_id`) USING BTREE COMMENT '一个用户对同一内容只能点赞一次,点赞/取消点赞依赖此唯一索引去重',
+  INDEX `reply_id`(`reply_id`) USING BTREE COMMENT '删除内容时一并删除点赞记录'
+) ENGINE = InnoDB AUTO_INCREMENT = 1 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
+
 -- ----------------------------
 -- Table structure for search_history
 -- ----------------------------
@@ -463,4 +523,17 @@ INSERT INTO `user` VALUES ('2024-11-20 17:57:19', '2024-11-20 17:57:19', 8, '123
 INSERT INTO `user` VALUES ('2024-11-20 18:00:01', '2024-11-20 18:00:01', 9, '123456', 'test4', '/images/user/head/D.png', '1234@test.com', '这个人很神秘,什么都没有写');
 INSERT INTO `user` VALUES ('2024-12-01 20:56:35', '2024-12-03 15:30:15', 11, '123456q', 'pxx123123', '/images/user/head/D.png', '123', '这个人很神秘,什么都没有写');
 
+-- ----------------------------
+-- Table structure for verification_code
+-- ----------------------------
+DROP TABLE IF EXISTS `verification_code`;
+CREATE TABLE `verification_code`  (
+  `email` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NOT NULL COMMENT '邮箱',
+  `code` varchar(16) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NOT NULL COMMENT '验证码',
+  `attempts` int NOT NULL DEFAULT 0 COMMENT '已输错次数',
+  `expire_at` datetime(0) NOT NULL COMMENT '过期时间',
+  PRIMARY KEY (`email`) USING BTREE,
+  INDEX `expire_at`(`expire_at`) USING BTREE COMMENT '按过期时间清理'
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
+
 SET FOREIGN_KEY_CHECKS = 1;
@@ -0,0 +1,75 @@
+/*
+ 已有数据库升级:点赞去重与收藏唯一索引
+ 新建数据库直接导入 SQL/ifm.sql 即可,不需要执行本文件;本文件只在已有数据的库上执行一次
+
+ 1. 删除 broadcast_favorite 中重复的收藏记录(同一用户对同一节目保留id最小的一条)
+ 2. 按剩余的收藏记录重新计算节目收藏量
+ 3. 添加唯一索引 user_broadcast_favorite
+ 4. 新建 post_like / comment_like / reply_like 表
+    (升级前的点赞没有按用户记录,已有的点赞量保持不变)
+*/
+
+SET NAMES utf8mb4;
+
+START TRANSACTION;
+
+-- ----------------------------
+-- 删除重复收藏
+-- ----------------------------
+DELETE f1 FROM `broadcast_favorite` f1
+JOIN `broadcast_favorite` f2
+  ON f1.`user_id` = f2.`user_id`
+ AND f1.`broadcast_id` = f2.`broadcast_id`
+ AND f1.`broadcast_favorite_id` > f2.`broadcast_favorite_id`;
+
+-- ----------------------------
+-- 重复收藏曾重复计入收藏量,按实际收藏记录重算
+-- ----------------------------
+UPDATE `broadcast` b
+SET b.`broadcast_collection_count` = (
+  SELECT COUNT(*) FROM `broadcast_favorite` f WHERE f.`broadcast_id` = b.`broadcast_id`
+);
+
+COMMIT;
+
+-- ----------------------------
+-- 收藏唯一索引(DDL会隐式提交,放在事务之外)
+-- ----------------------------
+ALTER TABLE `broadcast_favorite`
+  ADD UNIQUE INDEX `user_broadcast_favorite`(`user_id`, `broadcast_id`) USING BTREE COMMENT '一个用户对一个节目只能收藏一次,收藏/取消收藏依赖此唯一索引去重';
+
+-- ----------------------------
+-- 点赞记录表
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS `post_like`  (
+  `gmt_create` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `gmt_modified` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP(0) COMMENT '上次更新时间',
+  `post_like_id` bigint unsigned NOT NULL AUTO_INCREMENT COMMENT '帖子点赞表id',
+  `post_id` bigint unsigned NOT NULL COMMENT '帖子id',
+  `user_id` bigint unsigned NOT NULL COMMENT '用户id',
+  PRIMARY KEY (`post_like_id`) USING BTREE,
+  UNIQUE INDEX `user_post_like`(`user_id`, `post_id`) USING BTREE COMMENT '一个用户对同一内容只能点赞一次,点赞/取消点赞依赖此唯一索引去重',
+  INDEX `post_id`(`post_id`) USING BTREE COMMENT '删除内容时一并删除点赞记录'
+) ENGINE = InnoDB AUTO_INCREMENT = 1 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
+
+CREATE TABLE IF NOT EXISTS `comment_like`  (
+  `gmt_create` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `gmt_modified` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP(0) COMMENT '上次更新时间',
+  `comment_like_id` bigint unsigned NOT NULL AUTO_INCREMENT COMMENT '评论点赞表id',
+  `comment_id` bigint unsigned NOT NULL COMMENT '评论id',
+  `user_id` bigint unsigned NOT NULL COMMENT '用户id',
+  PRIMARY KEY (`comment_like_id`) USING BTREE,
+  UNIQUE INDEX `user_comment_like`(`user_id`, `comment_id`) USING BTREE COMMENT '一个用户对同一内容只能点赞一次,点赞/取消点赞依赖此唯一索引去重',
+  INDEX `comment_id`(`comment_id`) USING BTREE COMMENT '删除内容时一并删除点赞记录'
+) ENGINE = InnoDB AUTO_INCREMENT = 1 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
+
+CREATE TABLE IF NOT EXISTS `reply_like`  (
+  `gmt_create` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `gmt_modified` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP(0) COMMENT '上次更新时间',
+  `reply_like_id` bigint unsigned NOT NULL AUTO_INCREMENT COMMENT '回复点赞表id',
+  `reply_id` bigint unsigned NOT NULL COMMENT '回复id',
+  `user_id` bigint unsigned NOT NULL COMMENT '用户id',
+  PRIMARY KEY (`reply_like_id`) USING BTREE,
+  UNIQUE INDEX `user_reply_like`(`user_id`, `reply_id`) USING BTREE COMMENT '一个用户对同一内容只能点赞一次,点赞/取消点赞依赖此唯一索引去重',
+  INDEX `reply_id`(`reply_id`) USING BTREE COMMENT '删除内容时一并删除点赞记录'
+) ENGINE = InnoDB AUTO_INCREMENT = 1 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
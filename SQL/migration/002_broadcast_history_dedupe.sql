@@ -0,0 +1,30 @@
+/*
+ 已有数据库升级:收听历史去重与唯一索引
+ 新建数据库直接导入 SQL/ifm.sql 即可,不需要执行本文件;本文件只在已有数据的库上执行一次
+
+ 1. 删除 broadcast_history 中重复的收听历史(同一用户对同一节目保留history_time最新的一条,
+    history_time相同时保留id最大的一条)
+ 2. 添加唯一索引 user_broadcast_history_id,批量写回收听进度(ON DUPLICATE KEY UPDATE)依赖此索引
+*/
+
+SET NAMES utf8mb4;
+
+START TRANSACTION;
+
+-- ----------------------------
+-- 删除重复收听历史
+-- ----------------------------
+DELETE h1 FROM `broadcast_history` h1
+JOIN `broadcast_history` h2
+  ON h1.`user_id` = h2.`user_id`
+ AND h1.`broadcast_id` = h2.`broadcast_id`
+ AND (h1.`history_time` < h2.`history_time`
+   OR (h1.`history_time` = h2.`history_time` AND h1.`broadcast_history_id` < h2.`broadcast_history_id`));
+
+COMMIT;
+
+-- ----------------------------
+-- 收听历史唯一索引(DDL会隐式提交,放在事务之外)
+-- ----------------------------
+ALTER TABLE `broadcast_history`
+  ADD UNIQUE INDEX `user_broadcast_history_id`(`user_id`, `broadcast_id`) USING BTREE COMMENT '一个用户对一个节目只保留一条收听历史记录,批量写回收听进度时依赖此唯一索引';
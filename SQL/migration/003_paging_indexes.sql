@@ -0,0 +1,38 @@
+/*
+ 已有数据库升级:列表分页索引
+ 新建数据库直接导入 SQL/ifm.sql 即可,不需要执行本文件;本文件只在已有数据的库上执行一次
+
+ 列表接口按(筛选列, gmt_create, 主键)做游标分页,每个列表添加对应的联合索引,
+ 翻页时直接从索引定位到上一页的最后一条,不需要扫描和跳过前面的行
+*/
+
+SET NAMES utf8mb4;
+
+ALTER TABLE `broadcast`
+  ADD INDEX `channel_create_page`(`channel_id`, `gmt_create`, `broadcast_id`) USING BTREE COMMENT '频道节目列表分页';
+
+ALTER TABLE `broadcast_favorite`
+  ADD INDEX `user_favorite_page`(`user_id`, `gmt_create`, `broadcast_id`) USING BTREE COMMENT '用户收藏节目列表分页';
+
+ALTER TABLE `broadcast_history`
+  ADD INDEX `user_history_page`(`user_id`, `history_time`, `broadcast_id`) USING BTREE COMMENT '用户收听历史列表分页';
+
+ALTER TABLE `channel`
+  ADD INDEX `user_create_page`(`user_id`, `gmt_create`, `channel_id`) USING BTREE COMMENT '用户创建的频道列表分页';
+
+ALTER TABLE `channel_subscription`
+  ADD INDEX `user_subscription_page`(`user_id`, `gmt_create`, `channel_id`) USING BTREE COMMENT '用户订阅频道列表分页';
+
+ALTER TABLE `comment`
+  ADD INDEX `post_create_page`(`post_id`, `gmt_create`, `comment_id`) USING BTREE COMMENT '帖子评论列表分页';
+
+ALTER TABLE `post`
+  ADD INDEX `user_create_page`(`user_id`, `gmt_create`, `post_id`) USING BTREE COMMENT '用户帖子列表分页',
+  ADD INDEX `section_create_page`(`post_section`, `gmt_create`, `post_id`) USING BTREE COMMENT '板块帖子列表分页',
+  ADD INDEX `association_create_page`(`post_association`, `association_id`, `gmt_create`, `post_id`) USING BTREE COMMENT '关联内容帖子列表分页';
+
+ALTER TABLE `post_favorite`
+  ADD INDEX `user_favorite_page`(`user_id`, `gmt_create`, `post_id`) USING BTREE COMMENT '用户收藏帖子列表分页';
+
+ALTER TABLE `reply`
+  ADD INDEX `comment_create_page`(`comment_id`, `gmt_create`, `reply_id`) USING BTREE COMMENT '评论回复列表分页';
@@ -0,0 +1,14 @@
+/*
+ 已有数据库升级:帖子图片与主题标签索引
+ 新建数据库直接导入 SQL/ifm.sql 即可,不需要执行本文件;本文件只在已有数据的库上执行一次
+
+ 帖子列表按 post_id IN (...) 一次取出整页帖子的图片和主题标签,两张表按post_id添加索引
+*/
+
+SET NAMES utf8mb4;
+
+ALTER TABLE `post_image`
+  ADD INDEX `post_id`(`post_id`) USING BTREE COMMENT '按帖子批量获取图片';
+
+ALTER TABLE `post_hashtag`
+  ADD INDEX `post_id`(`post_id`) USING BTREE COMMENT '按帖子批量获取主题标签';
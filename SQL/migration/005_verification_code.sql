@@ -0,0 +1,20 @@
+/*
+ 已有数据库升级:邮箱验证码表
+ 新建数据库直接导入 SQL/ifm.sql 即可,不需要执行本文件;本文件只在已有数据的库上执行一次
+
+ 验证码默认保存在内存中;设置 ifm.verification.store:jdbc 改用数据库保存(多实例部署)时需要这张表
+*/
+
+SET NAMES utf8mb4;
+
+-- ----------------------------
+-- 邮箱验证码表
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS `verification_code`  (
+  `email` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NOT NULL COMMENT '邮箱',
+  `code` varchar(16) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NOT NULL COMMENT '验证码',
+  `attempts` int NOT NULL DEFAULT 0 COMMENT '已输错次数',
+  `expire_at` datetime(0) NOT NULL COMMENT '过期时间',
+  PRIMARY KEY (`email`) USING BTREE,
+  INDEX `expire_at`(`expire_at`) USING BTREE COMMENT '按过期时间清理'
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
@@ -0,0 +1,108 @@
+package com.pxx.ifmserver.auth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pxx.ifmserver.result.Result;
+import com.pxx.ifmserver.utils.TokenUtil;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 登录校验过滤器
+ * 在DispatcherServlet解析multipart请求体之前执行,只看请求头里的Token:
+ * 标记了@LoginRequired的接口没有有效Token时直接返回20005,未登录用户上传的大文件不会被读取和写入临时目录。
+ * 校验通过后把Token信息放进请求属性PRINCIPAL,续签时通过响应头Token返回新Token。
+ * 接口通过RequestMappingHandlerMapping解析,与DispatcherServlet的路径匹配一致
+ * (;jsessionid等路径参数、重复的/、编码的字符不会绕过校验)
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class AuthFilter extends OncePerRequestFilter {
+
+    /**
+     * 请求属性:校验通过的TokenUtil.Claims
+     */
+    public static final String PRINCIPAL = "com.pxx.ifmserver.auth.AuthFilter.PRINCIPAL";
+
+    @Autowired
+    @Lazy
+    @Qualifier("requestMappingHandlerMapping")
+    private RequestMappingHandlerMapping handlerMapping;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        LoginRequired loginRequired = resolveLoginRequired(request);
+        if (loginRequired == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        boolean required = !loginRequired.optional();
+        String token = request.getHeader("Token");
+        TokenUtil.Claims claims = token == null || token.isEmpty() ? null : TokenUtil.authenticate(token);
+        if (claims == null) {
+            if (required) {
+                reject(response);
+                return;
+            }
+        } else {
+            request.setAttribute(PRINCIPAL, claims);
+            if (claims.isRenewed()) {
+                response.setHeader("Token", claims.getToken());
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * 按DispatcherServlet相同的规则找到处理请求的接口方法,返回其上的@LoginRequired注解
+     * @param request
+     * @return 接口没有标记@LoginRequired或没有匹配的接口时返回null
+     */
+    private LoginRequired resolveLoginRequired(HttpServletRequest request) {
+        HandlerExecutionChain chain;
+        try {
+            chain = handlerMapping.getHandler(request);
+        } catch (Exception e) {
+            //没有匹配的接口(如请求方法不支持),交给DispatcherServlet返回对应的错误
+            return null;
+        }
+        if (chain == null || !(chain.getHandler() instanceof HandlerMethod handlerMethod)) {
+            return null;
+        }
+        return handlerMethod.getMethodAnnotation(LoginRequired.class);
+    }
+
+    /**
+     * 返回Token失效(HTTP状态仍为200,与客户端约定以code判断)
+     * 请求体没有被读取,关闭连接,避免服务器为了复用连接而继续接收剩余的上传数据
+     * @param response
+     * @throws IOException
+     */
+    void reject(HttpServletResponse response) throws IOException {
+        Map<String, Object> data = new HashMap<>();
+        data.put("error", "Token安全令牌失效,请重新登录");
+        Result result = new Result(false, 20005, "处理失败", data);
+        response.setHeader("Connection", "close");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getOutputStream(), result);
+    }
+}
@@ -0,0 +1,41 @@
+package com.pxx.ifmserver.auth;
+
+import com.pxx.ifmserver.utils.TokenUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * 在AuthFilter校验Token之后,检查请求参数userId是否就是Token中的用户
+ * (此时multipart请求体已经解析,表单里的userId也能取到)
+ */
+@Component
+public class AuthInterceptor implements HandlerInterceptor {
+
+    @Autowired
+    private AuthFilter authFilter;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        LoginRequired loginRequired = ((HandlerMethod) handler).getMethodAnnotation(LoginRequired.class);
+        if (loginRequired == null) {
+            return true;
+        }
+        String userId = request.getParameter("userId");
+        if (userId == null && loginRequired.optional()) {
+            return true;
+        }
+        TokenUtil.Claims claims = (TokenUtil.Claims) request.getAttribute(AuthFilter.PRINCIPAL);
+        if (claims == null || (userId != null && !userId.equals(String.valueOf(claims.getUserId())))) {
+            authFilter.reject(response);
+            return false;
+        }
+        return true;
+    }
+}
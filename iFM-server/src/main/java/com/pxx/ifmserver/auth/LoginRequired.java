@@ -0,0 +1,22 @@
+package com.pxx.ifmserver.auth;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记需要登录的接口:请求头必须带有效的Token,且请求参数userId(如有)必须与Token中的用户一致。
+ * 校验由AuthFilter(在解析请求体之前)和AuthInterceptor完成,接口方法中不需要再调用TokenUtil
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LoginRequired {
+
+    /**
+     * 为true时没有传userId的请求不需要登录(例如综合搜索,传了userId才保存搜索记录)
+     */
+    boolean optional() default false;
+}
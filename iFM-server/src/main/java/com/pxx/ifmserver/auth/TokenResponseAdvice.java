@@ -0,0 +1,37 @@
+package com.pxx.ifmserver.auth;
+
+import com.pxx.ifmserver.result.Result;
+import com.pxx.ifmserver.utils.TokenUtil;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Token续签时,除响应头外也把新Token放进返回数据的token字段(客户端从data.token更新Token)
+ */
+@RestControllerAdvice
+public class TokenResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return returnType.hasMethodAnnotation(LoginRequired.class);
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body instanceof Result result && request instanceof ServletServerHttpRequest servletRequest) {
+            Object claims = servletRequest.getServletRequest().getAttribute(AuthFilter.PRINCIPAL);
+            if (claims instanceof TokenUtil.Claims tokenClaims && tokenClaims.isRenewed() && result.getData() != null) {
+                result.getData().put("token", tokenClaims.getToken());
+            }
+        }
+        return body;
+    }
+}
@@ -0,0 +1,42 @@
+package com.pxx.ifmserver.cache;
+
+/**
+ * 由EngagementCounter缓冲写回的计数字段
+ * 表名/列名只来自这里的常量,批量UPDATE中以${}拼接
+ */
+public enum CounterType {
+    //帖子点赞数
+    POST_LIKE("post", "post_id", "post_like_count"),
+    //帖子收藏数
+    POST_COLLECTION("post", "post_id", "post_collection_count"),
+    //评论点赞数
+    COMMENT_LIKE("comment", "comment_id", "comment_like_count"),
+    //回复点赞数
+    REPLY_LIKE("reply", "reply_id", "reply_like_count"),
+    //节目收藏数
+    BROADCAST_COLLECTION("broadcast", "broadcast_id", "broadcast_collection_count"),
+    //频道订阅数
+    CHANNEL_SUBSCRIBE("channel", "channel_id", "channel_subscribe");
+
+    private final String table;
+    private final String idColumn;
+    private final String countColumn;
+
+    CounterType(String table, String idColumn, String countColumn) {
+        this.table = table;
+        this.idColumn = idColumn;
+        this.countColumn = countColumn;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getIdColumn() {
+        return idColumn;
+    }
+
+    public String getCountColumn() {
+        return countColumn;
+    }
+}
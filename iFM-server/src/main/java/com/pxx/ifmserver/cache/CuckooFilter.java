@@ -0,0 +1,219 @@
+package com.pxx.ifmserver.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 可扩容的布谷鸟过滤器(非线程安全,由调用方加锁)
+ * 每个元素只保存16位指纹,放在两个候选桶之一(每桶4格);第二个桶由第一个桶和指纹异或得到,
+ * 因此不需要原始元素就能把指纹挪到另一个桶,也能按指纹删除。
+ * 当前表装满(或挪动MAX_KICKS次仍放不下)时新建一张容量翻倍的表,查询依次检查所有表。
+ * 单表误判率约为 2 × 4 × 装载率 / 65536
+ * 注意:只能删除确实添加过的元素,否则可能删掉别的元素的指纹
+ */
+public class CuckooFilter {
+
+    private static final int BUCKET_SIZE = 4;
+    private static final int MAX_KICKS = 500;
+    //装载率超过该值时新建表
+    private static final double MAX_LOAD = 0.95;
+
+    /**
+     * 一张表:buckets × BUCKET_SIZE个指纹,0表示空
+     */
+    private static final class Table {
+        private final short[] slots;
+        private final int bucketMask;
+        private int count;
+
+        private Table(int buckets) {
+            slots = new short[buckets * BUCKET_SIZE];
+            bucketMask = buckets - 1;
+        }
+
+        private int capacity() {
+            return slots.length;
+        }
+
+        private boolean put(int bucket, short fingerprint) {
+            int base = bucket * BUCKET_SIZE;
+            for (int i = 0; i < BUCKET_SIZE; i++) {
+                if (slots[base + i] == 0) {
+                    slots[base + i] = fingerprint;
+                    count++;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean contains(int bucket, short fingerprint) {
+            int base = bucket * BUCKET_SIZE;
+            for (int i = 0; i < BUCKET_SIZE; i++) {
+                if (slots[base + i] == fingerprint) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean delete(int bucket, short fingerprint) {
+            int base = bucket * BUCKET_SIZE;
+            for (int i = 0; i < BUCKET_SIZE; i++) {
+                if (slots[base + i] == fingerprint) {
+                    slots[base + i] = 0;
+                    count--;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int alternate(int bucket, short fingerprint) {
+            return (bucket ^ (fingerprint * 0x5bd1e995)) & bucketMask;
+        }
+    }
+
+    private final List<Table> tables = new ArrayList<>();
+    private long size;
+    //挪动指纹时选格子用的随机数(xorshift)
+    private int random = 0x9E3779B9;
+
+    /**
+     * @param expectedSize 预计的元素数,超过后自动扩容
+     */
+    public CuckooFilter(long expectedSize) {
+        long buckets = (long) Math.ceil(Math.max(expectedSize, 1) / (BUCKET_SIZE * MAX_LOAD));
+        tables.add(new Table(Integer.highestOneBit((int) Math.min(buckets * 2 - 1, 1 << 28))));
+    }
+
+    /**
+     * 添加元素
+     * @param hash 元素的64位哈希
+     */
+    public void add(long hash) {
+        short fingerprint = fingerprint(hash);
+        Table table = tables.get(tables.size() - 1);
+        if (table.count >= table.capacity() * MAX_LOAD || !insert(table, hash, fingerprint)) {
+            table = new Table(Math.min(table.capacity() / BUCKET_SIZE * 2, 1 << 28));
+            tables.add(table);
+            insert(table, hash, fingerprint);
+        }
+        size++;
+    }
+
+    /**
+     * @param hash 元素的64位哈希
+     * @return false表示元素一定不存在,true表示可能存在
+     */
+    public boolean mightContain(long hash) {
+        short fingerprint = fingerprint(hash);
+        for (int t = 0; t < tables.size(); t++) {
+            Table table = tables.get(t);
+            int bucket = (int) hash & table.bucketMask;
+            if (table.contains(bucket, fingerprint) || table.contains(table.alternate(bucket, fingerprint), fingerprint)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 删除添加过的元素
+     * @param hash 元素的64位哈希
+     * @return 找到并删除时返回true
+     */
+    public boolean remove(long hash) {
+        short fingerprint = fingerprint(hash);
+        for (int t = tables.size() - 1; t >= 0; t--) {
+            Table table = tables.get(t);
+            int bucket = (int) hash & table.bucketMask;
+            if (table.delete(bucket, fingerprint) || table.delete(table.alternate(bucket, fingerprint), fingerprint)) {
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 元素数
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return 占用的字节数
+     */
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Table table : tables) {
+            bytes += table.slots.length * 2L;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return 按各表装载率估算的误判率
+     */
+    public double expectedFalsePositiveRate() {
+        double pass = 1;
+        for (Table table : tables) {
+            double load = (double) table.count / table.capacity();
+            pass *= 1 - 2.0 * BUCKET_SIZE * load / 65536;
+        }
+        return 1 - pass;
+    }
+
+    /**
+     * @return 表的数量
+     */
+    public int tableCount() {
+        return tables.size();
+    }
+
+    /**
+     * 放入一张表,两个候选桶都满时随机挤走一个指纹,被挤走的指纹再放到它的另一个桶;
+     * 挪动MAX_KICKS次仍放不下时按相反顺序还原,表保持原样
+     */
+    private boolean insert(Table table, long hash, short fingerprint) {
+        int bucket = (int) hash & table.bucketMask;
+        int alternate = table.alternate(bucket, fingerprint);
+        if (table.put(bucket, fingerprint) || table.put(alternate, fingerprint)) {
+            return true;
+        }
+        int[] path = new int[MAX_KICKS];
+        short current = fingerprint;
+        int index = (nextRandom() & 1) == 0 ? bucket : alternate;
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            int slot = index * BUCKET_SIZE + (nextRandom() & (BUCKET_SIZE - 1));
+            path[kick] = slot;
+            short victim = table.slots[slot];
+            table.slots[slot] = current;
+            current = victim;
+            index = table.alternate(index, current);
+            if (table.put(index, current)) {
+                return true;
+            }
+        }
+        for (int kick = MAX_KICKS - 1; kick >= 0; kick--) {
+            short victim = table.slots[path[kick]];
+            table.slots[path[kick]] = current;
+            current = victim;
+        }
+        return false;
+    }
+
+    private static short fingerprint(long hash) {
+        short fingerprint = (short) (hash >>> 48);
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    private int nextRandom() {
+        random ^= random << 13;
+        random ^= random >>> 17;
+        random ^= random << 5;
+        return random;
+    }
+}
@@ -0,0 +1,220 @@
+package com.pxx.ifmserver.cache;
+
+import com.pxx.ifmserver.mapper.CounterMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+/**
+ * 点赞/收藏/订阅计数
+ * 关系本身(谁点赞/收藏/订阅了什么)由各关系表的唯一索引保证不重复,toggle根据插入/删除实际影响的行数得到计数增量;
+ * 增量只在内存中累加,由定时任务合并成每种计数一条多行UPDATE写回数据库,热门内容的点赞不再争抢同一行的行锁。
+ * 增量按线程分散到多个分片,每个分片有自己的锁,同一内容被大量并发点赞时也不会在一把锁上排队
+ */
+@Component
+public class EngagementCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(EngagementCounter.class);
+
+    //单条批量UPDATE语句最多包含的行数
+    static final int FLUSH_BATCH_SIZE = 500;
+    //分片数(2的幂)
+    private static final int SHARD_COUNT = 16;
+
+    @Autowired
+    private CounterMapper counterMapper;
+
+    private final Shard[] shards = new Shard[SHARD_COUNT];
+
+    /**
+     * 一个分片:计数字段 -> (id -> 尚未写回的增量)
+     */
+    private static class Shard {
+        private Map<CounterType, Map<Integer, long[]>> deltas = new EnumMap<>(CounterType.class);
+
+        synchronized void add(CounterType type, Integer id, long delta) {
+            deltas.computeIfAbsent(type, key -> new HashMap<>()).computeIfAbsent(id, key -> new long[1])[0] += delta;
+        }
+
+        synchronized long get(CounterType type, Integer id) {
+            Map<Integer, long[]> typeDeltas = deltas.get(type);
+            long[] delta = typeDeltas == null ? null : typeDeltas.get(id);
+            return delta == null ? 0 : delta[0];
+        }
+
+        synchronized void discard(CounterType type, Integer id) {
+            Map<Integer, long[]> typeDeltas = deltas.get(type);
+            if (typeDeltas != null) {
+                typeDeltas.remove(id);
+            }
+        }
+
+        //取出全部增量,分片清空
+        synchronized Map<CounterType, Map<Integer, long[]>> drain() {
+            Map<CounterType, Map<Integer, long[]>> drained = deltas;
+            deltas = new EnumMap<>(CounterType.class);
+            return drained;
+        }
+    }
+
+    /**
+     * 一次切换的结果
+     */
+    public static class Toggle {
+        private final boolean active;
+        private final int delta;
+
+        private Toggle(boolean active, int delta) {
+            this.active = active;
+            this.delta = delta;
+        }
+
+        /**
+         * @return 切换后关系是否存在(已点赞/已收藏/已订阅)
+         */
+        public boolean isActive() {
+            return active;
+        }
+
+        /**
+         * @return 计数的实际变化(重复点赞、重复取消时为0)
+         */
+        public int getDelta() {
+            return delta;
+        }
+    }
+
+    public EngagementCounter() {
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    /**
+     * 建立/取消用户与内容的关系,并按实际插入/删除的行数记录计数增量
+     * @param type 计数字段
+     * @param id 内容id
+     * @param value 为空时切换(已存在则取消,否则建立);大于0时建立;否则取消
+     * @param insert 插入关系记录(INSERT IGNORE),返回插入的行数
+     * @param delete 删除关系记录,返回删除的行数
+     * @return
+     */
+    public Toggle toggle(CounterType type, Integer id, Integer value, IntSupplier insert, IntSupplier delete) {
+        Toggle toggle;
+        if (value == null) {
+            //先删除,没有可删除的记录说明尚未建立关系,再插入;两步都由唯一索引保证不会重复计数
+            int deleted = delete.getAsInt();
+            toggle = deleted > 0 ? new Toggle(false, -deleted) : new Toggle(true, insert.getAsInt());
+        } else if (value > 0) {
+            toggle = new Toggle(true, insert.getAsInt());
+        } else {
+            toggle = new Toggle(false, -delete.getAsInt());
+        }
+        add(type, id, toggle.getDelta());
+        return toggle;
+    }
+
+    /**
+     * 累加计数增量(只写内存)
+     * @param type
+     * @param id
+     * @param delta
+     */
+    public void add(CounterType type, Integer id, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        shard().add(type, id, delta);
+    }
+
+    /**
+     * 获取尚未写回数据库的增量
+     * @param type
+     * @param id
+     * @return
+     */
+    public long getPending(CounterType type, Integer id) {
+        long pending = 0;
+        for (Shard shard : shards) {
+            pending += shard.get(type, id);
+        }
+        return pending;
+    }
+
+    /**
+     * 丢弃尚未写回的增量(内容被删除时调用)
+     * @param type
+     * @param id
+     */
+    public void discard(CounterType type, Integer id) {
+        for (Shard shard : shards) {
+            shard.discard(type, id);
+        }
+    }
+
+    /**
+     * 把各分片累计的增量合并后批量写回数据库
+     * 分片在取出时即清空,写库失败的增量重新加回,留到下一轮
+     */
+    @Scheduled(fixedDelayString = "${ifm.engagement.flush-interval:5000}")
+    public synchronized void flush() {
+        Map<CounterType, Map<Integer, Long>> merged = new EnumMap<>(CounterType.class);
+        for (Shard shard : shards) {
+            for (Map.Entry<CounterType, Map<Integer, long[]>> typeEntry : shard.drain().entrySet()) {
+                Map<Integer, Long> typeDeltas = merged.computeIfAbsent(typeEntry.getKey(), key -> new HashMap<>());
+                for (Map.Entry<Integer, long[]> entry : typeEntry.getValue().entrySet()) {
+                    typeDeltas.merge(entry.getKey(), entry.getValue()[0], Long::sum);
+                }
+            }
+        }
+        for (Map.Entry<CounterType, Map<Integer, Long>> typeEntry : merged.entrySet()) {
+            Map<Integer, Long> batch = new HashMap<>();
+            for (Map.Entry<Integer, Long> entry : typeEntry.getValue().entrySet()) {
+                if (entry.getValue() == 0) {
+                    continue;
+                }
+                batch.put(entry.getKey(), entry.getValue());
+                if (batch.size() >= FLUSH_BATCH_SIZE) {
+                    writeBatch(typeEntry.getKey(), batch);
+                    batch = new HashMap<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(typeEntry.getKey(), batch);
+            }
+        }
+    }
+
+    private void writeBatch(CounterType type, Map<Integer, Long> batch) {
+        try {
+            counterMapper.updateCountBatch(type, batch);
+        } catch (RuntimeException e) {
+            log.warn("{}写回失败,{}行的增量将在下次重试: {}", type, batch.size(), e.getMessage());
+            for (Map.Entry<Integer, Long> entry : batch.entrySet()) {
+                add(type, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 应用关闭前把剩余的增量写回数据库
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    //按线程选择分片,同一内容的并发更新分散到不同的锁上
+    private Shard shard() {
+        long threadId = Thread.currentThread().getId();
+        return shards[(int) ((threadId ^ (threadId >>> 16)) & (SHARD_COUNT - 1))];
+    }
+}
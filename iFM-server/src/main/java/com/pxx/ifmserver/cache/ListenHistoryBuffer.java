@@ -0,0 +1,155 @@
+package com.pxx.ifmserver.cache;
+
+import com.pxx.ifmserver.entity.dto.BroadcastHistory;
+import com.pxx.ifmserver.mapper.BroadcastMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 收听进度写回缓冲
+ * 播放器每15秒上报一次收听进度,这里按(用户id,节目id)只保留最新一次的进度,
+ * 由定时任务用批量 INSERT ... ON DUPLICATE KEY UPDATE 写回broadcast_history表
+ */
+@Component
+public class ListenHistoryBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(ListenHistoryBuffer.class);
+
+    //单条批量写入语句最多包含的记录数
+    static final int FLUSH_BATCH_SIZE = 500;
+
+    @Autowired
+    private BroadcastMapper broadcastMapper;
+
+    //用户id -> (节目id -> 尚未写回数据库的收听进度)
+    private final ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, BroadcastHistory>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 记录用户最新的收听进度(只写内存)
+     * @param userId
+     * @param broadcastId
+     * @param lastListenDuration 上次收听到的时间(秒)
+     */
+    public void record(Integer userId, Integer broadcastId, Integer lastListenDuration) {
+        BroadcastHistory broadcastHistory = new BroadcastHistory();
+        broadcastHistory.setUserId(userId);
+        broadcastHistory.setBroadcastId(broadcastId);
+        broadcastHistory.setLastListenDuration(lastListenDuration);
+        //精确到秒,与数据库中history_time的精度一致,分页游标才不会因写回而错位
+        broadcastHistory.setHistoryTime(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+        //用compute保证与flush中清理空表的操作互斥,避免进度写进已被移除的内层表
+        pending.compute(userId, (id, histories) -> {
+            if (histories == null) {
+                histories = new ConcurrentHashMap<>();
+            }
+            histories.put(broadcastId, broadcastHistory);
+            return histories;
+        });
+    }
+
+    /**
+     * 获取尚未写回数据库的收听进度
+     * @param userId
+     * @param broadcastId
+     * @return 没有则返回null
+     */
+    public BroadcastHistory get(Integer userId, Integer broadcastId) {
+        Map<Integer, BroadcastHistory> histories = pending.get(userId);
+        return histories == null ? null : histories.get(broadcastId);
+    }
+
+    /**
+     * 获取用户所有尚未写回数据库的收听进度
+     * @param userId
+     * @return
+     */
+    public Collection<BroadcastHistory> listByUserId(Integer userId) {
+        Map<Integer, BroadcastHistory> histories = pending.get(userId);
+        return histories == null ? List.of() : new ArrayList<>(histories.values());
+    }
+
+    /**
+     * 移除用户对该节目的缓冲进度(删除收听历史时调用)
+     * 与flush互斥,保证返回后不会再有旧进度被写回数据库
+     * @param userId
+     * @param broadcastId
+     * @return 缓冲中是否存在该记录
+     */
+    public synchronized boolean remove(Integer userId, Integer broadcastId) {
+        Map<Integer, BroadcastHistory> histories = pending.get(userId);
+        boolean removed = histories != null && histories.remove(broadcastId) != null;
+        pending.computeIfPresent(userId, (id, h) -> h.isEmpty() ? null : h);
+        return removed;
+    }
+
+    /**
+     * 移除所有用户对该节目的缓冲进度(删除节目时调用)
+     * @param broadcastId
+     */
+    public synchronized void removeByBroadcastId(Integer broadcastId) {
+        for (Integer userId : pending.keySet()) {
+            remove(userId, broadcastId);
+        }
+    }
+
+    /**
+     * 把缓冲的收听进度批量写回数据库
+     * 先写库,写库成功后再按值移除缓冲(期间又上报的新进度不会被移除),
+     * 因此任何时刻读缓冲+数据库都能得到最新进度
+     */
+    @Scheduled(fixedDelayString = "${ifm.listen-history.flush-interval:5000}")
+    public synchronized void flush() {
+        List<BroadcastHistory> batch = new ArrayList<>();
+        for (Map<Integer, BroadcastHistory> histories : pending.values()) {
+            for (BroadcastHistory broadcastHistory : histories.values()) {
+                batch.add(broadcastHistory);
+                if (batch.size() >= FLUSH_BATCH_SIZE) {
+                    writeBatch(batch);
+                    batch = new ArrayList<>();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+        //清理已经没有待写记录的用户
+        for (Integer userId : pending.keySet()) {
+            pending.computeIfPresent(userId, (id, h) -> h.isEmpty() ? null : h);
+        }
+    }
+
+    private void writeBatch(List<BroadcastHistory> batch) {
+        try {
+            broadcastMapper.upsertBroadcastHistoryBatch(batch);
+        } catch (RuntimeException e) {
+            log.warn("收听进度写回失败,{}条记录将在下次重试: {}", batch.size(), e.getMessage());
+            return;
+        }
+        for (BroadcastHistory broadcastHistory : batch) {
+            Map<Integer, BroadcastHistory> histories = pending.get(broadcastHistory.getUserId());
+            if (histories != null) {
+                histories.remove(broadcastHistory.getBroadcastId(), broadcastHistory);
+            }
+        }
+    }
+
+    /**
+     * 应用关闭前把剩余的收听进度写回数据库
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,184 @@
+package com.pxx.ifmserver.cache;
+
+import com.pxx.ifmserver.mapper.BroadcastMapper;
+import com.pxx.ifmserver.mapper.ChannelMapper;
+import com.pxx.ifmserver.mapper.PostMapper;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户收藏/订阅关系的内存索引
+ * 每个用户每种关系一个压缩位图(RoaringBitmap),第一次检查时从数据库整体载入,之后收藏/订阅变化时同步更新,
+ * 检查是否收藏/订阅不再访问数据库;按最近访问顺序只保留ifm.membership.max-users个用户,冷用户被淘汰后下次访问重新载入
+ */
+@Component
+public class MembershipIndex {
+
+    @Autowired
+    private BroadcastMapper broadcastMapper;
+    @Autowired
+    private PostMapper postMapper;
+    @Autowired
+    private ChannelMapper channelMapper;
+
+    private final int maxUsers;
+
+    //关系类型 -> (用户id -> 关系集合),按访问顺序排列的LRU表
+    private final Map<MembershipType, Map<Integer, Membership>> indexes = new EnumMap<>(MembershipType.class);
+
+    /**
+     * 一个用户的一种关系集合
+     * ids在载入完成前为null;载入和修改都在该对象的锁内进行,载入期间到达的修改会等待载入完成后再执行
+     */
+    private static class Membership {
+        private RoaringBitmap ids;
+    }
+
+    public MembershipIndex(@Value("${ifm.membership.max-users:10000}") int maxUsers) {
+        this.maxUsers = maxUsers;
+        for (MembershipType type : MembershipType.values()) {
+            indexes.put(type, Collections.synchronizedMap(new LinkedHashMap<Integer, Membership>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Membership> eldest) {
+                    return size() > MembershipIndex.this.maxUsers;
+                }
+            }));
+        }
+    }
+
+    /**
+     * 检查用户与内容是否存在该关系
+     * @param type 关系类型
+     * @param userId 用户id
+     * @param id 节目/帖子/频道id
+     * @return
+     */
+    public boolean contains(MembershipType type, Integer userId, Integer id) {
+        Membership membership = acquire(type, userId);
+        synchronized (membership) {
+            return membership.ids.contains(id);
+        }
+    }
+
+    /**
+     * 批量检查用户与一组内容是否存在该关系
+     * @param type 关系类型
+     * @param userId 用户id
+     * @param idList 节目/帖子/频道id列表
+     * @return id -> 是否存在关系,顺序与idList一致
+     */
+    public Map<Integer, Boolean> containsAll(MembershipType type, Integer userId, Collection<Integer> idList) {
+        Membership membership = acquire(type, userId);
+        Map<Integer, Boolean> result = new LinkedHashMap<>();
+        synchronized (membership) {
+            for (Integer id : idList) {
+                if (id != null) {
+                    result.put(id, membership.ids.contains(id));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 新增关系(数据库写入成功后调用),用户未载入时忽略,下次载入时从数据库读取
+     * @param type
+     * @param userId
+     * @param id
+     */
+    public void add(MembershipType type, Integer userId, Integer id) {
+        Membership membership = indexes.get(type).get(userId);
+        if (membership == null) {
+            return;
+        }
+        synchronized (membership) {
+            if (membership.ids != null) {
+                membership.ids.add(id);
+            }
+        }
+    }
+
+    /**
+     * 删除关系(数据库删除成功后调用)
+     * @param type
+     * @param userId
+     * @param id
+     */
+    public void remove(MembershipType type, Integer userId, Integer id) {
+        Membership membership = indexes.get(type).get(userId);
+        if (membership == null) {
+            return;
+        }
+        synchronized (membership) {
+            if (membership.ids != null) {
+                membership.ids.remove(id);
+            }
+        }
+    }
+
+    /**
+     * 从所有已载入用户的集合中删除该内容(内容被删除、数据库中的关系记录被一并删除时调用)
+     * @param type
+     * @param id
+     */
+    public void removeFromAll(MembershipType type, Integer id) {
+        Map<Integer, Membership> index = indexes.get(type);
+        List<Membership> memberships;
+        synchronized (index) {
+            memberships = new ArrayList<>(index.values());
+        }
+        for (Membership membership : memberships) {
+            synchronized (membership) {
+                if (membership.ids != null) {
+                    membership.ids.remove(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取用户的关系集合,未载入时从数据库载入
+     */
+    private Membership acquire(MembershipType type, Integer userId) {
+        Map<Integer, Membership> index = indexes.get(type);
+        Membership membership = index.computeIfAbsent(userId, key -> new Membership());
+        synchronized (membership) {
+            if (membership.ids == null) {
+                try {
+                    RoaringBitmap ids = new RoaringBitmap();
+                    for (Integer id : load(type, userId)) {
+                        ids.add(id);
+                    }
+                    ids.runOptimize();
+                    membership.ids = ids;
+                } catch (RuntimeException e) {
+                    //载入失败,移除占位对象,下次重新载入
+                    index.remove(userId, membership);
+                    throw e;
+                }
+            }
+        }
+        return membership;
+    }
+
+    private List<Integer> load(MembershipType type, Integer userId) {
+        switch (type) {
+            case BROADCAST_FAVORITE:
+                return broadcastMapper.listFavoriteBroadcastIdByUserId(userId);
+            case POST_FAVORITE:
+                return postMapper.listFavoritePostIdByUserId(userId);
+            default:
+                return channelMapper.listSubscribedChannelIdByUserId(userId);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.pxx.ifmserver.cache;
+
+/**
+ * 用户与内容的关系类型
+ */
+public enum MembershipType {
+    //收藏的节目
+    BROADCAST_FAVORITE,
+    //收藏的帖子
+    POST_FAVORITE,
+    //订阅的频道
+    CHANNEL_SUBSCRIPTION
+}
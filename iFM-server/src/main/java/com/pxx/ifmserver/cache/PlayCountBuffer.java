@@ -0,0 +1,147 @@
+package com.pxx.ifmserver.cache;
+
+import com.pxx.ifmserver.mapper.BroadcastMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 节目播放量写回缓冲
+ * 播放时只在内存中累加(按节目id分桶的LongAdder),由定时任务把累计的增量合并成一条多行UPDATE写回数据库,
+ * 避免热门节目每次播放都去争抢同一行的行锁。
+ * 写回后没有新增播放量的节目从缓冲中移除,只播放过一次的节目不会永久占用内存
+ */
+@Component
+public class PlayCountBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(PlayCountBuffer.class);
+
+    //单条批量UPDATE语句最多包含的节目数
+    static final int FLUSH_BATCH_SIZE = 500;
+
+    @Autowired
+    private BroadcastMapper broadcastMapper;
+
+    //节目id -> 尚未写回数据库的播放量
+    private final ConcurrentHashMap<Integer, Counter> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 单个节目的计数器
+     * flush移除计数器前先置retired再检查一次计数,increment累加后检查retired:
+     * 两边至少有一方能看到对方,移除后才累加上的播放量由increment转到新的计数器
+     */
+    private static final class Counter {
+        final LongAdder adder = new LongAdder();
+        volatile boolean retired;
+    }
+
+    /**
+     * 播放量加一(只写内存)
+     * @param broadcastId
+     */
+    public void increment(Integer broadcastId) {
+        Counter counter = pending.computeIfAbsent(broadcastId, id -> new Counter());
+        counter.adder.increment();
+        if (counter.retired) {
+            pending.compute(broadcastId, (id, current) -> {
+                //计数器仍在缓冲中,这次累加会在之后写回
+                if (current == counter) {
+                    return current;
+                }
+                //计数器已被移除,把移除后累加上的部分转到当前计数器
+                long residue = counter.adder.sum();
+                if (residue == 0) {
+                    return current;
+                }
+                counter.adder.add(-residue);
+                if (current == null) {
+                    current = new Counter();
+                }
+                current.adder.add(residue);
+                return current;
+            });
+        }
+    }
+
+    /**
+     * 获取节目尚未写回数据库的播放量
+     * @param broadcastId
+     * @return
+     */
+    public long getPending(Integer broadcastId) {
+        Counter counter = pending.get(broadcastId);
+        return counter == null ? 0 : counter.adder.sum();
+    }
+
+    /**
+     * 丢弃节目尚未写回的播放量(节目被删除时调用)
+     * @param broadcastId
+     */
+    public void discard(Integer broadcastId) {
+        pending.remove(broadcastId);
+    }
+
+    /**
+     * 把累计的播放量增量批量写回数据库
+     * 写库成功后才从计数器中扣除已写回的部分,写库失败则增量保留到下一轮;
+     * 扣除用add(-delta)而不是reset,保证写库期间新产生的播放量不会丢失;扣除后为0的节目从缓冲中移除
+     */
+    @Scheduled(fixedDelayString = "${ifm.play-count.flush-interval:5000}")
+    public synchronized void flush() {
+        Map<Integer, Long> batch = new HashMap<>();
+        for (Map.Entry<Integer, Counter> entry : pending.entrySet()) {
+            long delta = entry.getValue().adder.sum();
+            if (delta == 0) {
+                continue;
+            }
+            batch.put(entry.getKey(), delta);
+            if (batch.size() >= FLUSH_BATCH_SIZE) {
+                writeBatch(batch);
+                batch = new HashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    private void writeBatch(Map<Integer, Long> batch) {
+        try {
+            broadcastMapper.updateBroadcastPlayCountBatch(batch);
+        } catch (RuntimeException e) {
+            log.warn("播放量写回失败,{}个节目的增量将在下次重试: {}", batch.size(), e.getMessage());
+            return;
+        }
+        for (Map.Entry<Integer, Long> entry : batch.entrySet()) {
+            long delta = entry.getValue();
+            pending.computeIfPresent(entry.getKey(), (id, counter) -> {
+                counter.adder.add(-delta);
+                if (counter.adder.sum() != 0) {
+                    return counter;
+                }
+                counter.retired = true;
+                if (counter.adder.sum() != 0) {
+                    counter.retired = false;
+                    return counter;
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * 应用关闭前把剩余的播放量写回数据库
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
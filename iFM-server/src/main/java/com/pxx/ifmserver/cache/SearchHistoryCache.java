@@ -0,0 +1,355 @@
+package com.pxx.ifmserver.cache;
+
+import com.pxx.ifmserver.entity.dto.SearchHistory;
+import com.pxx.ifmserver.mapper.SearchHistoryMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 用户搜索记录缓存
+ * 每个用户在内存中保留最近的MAX_HISTORY_SIZE个关键词(按搜索时间排列的LinkedHashMap,重复搜索移到末尾,超出时淘汰最旧的),
+ * 第一次访问时从数据库载入;保存搜索记录只改内存,新增/更新和被淘汰的记录由定时任务批量写回search_history表。
+ * 按最近访问顺序只保留ifm.search-history.max-users个用户,被淘汰的用户下次访问时重新载入并叠加尚未写回的修改
+ */
+@Component
+public class SearchHistoryCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchHistoryCache.class);
+
+    //每个用户保留的搜索记录数
+    static final int MAX_HISTORY_SIZE = 20;
+    //单条批量写入语句最多包含的记录数
+    static final int FLUSH_BATCH_SIZE = 500;
+
+    @Autowired
+    private SearchHistoryMapper searchHistoryMapper;
+
+    private final int maxUsers;
+
+    //用户id -> 搜索记录,按访问顺序排列的LRU表
+    private final Map<Integer, UserHistory> users;
+    //用户id -> (关键词 -> 尚未写回数据库的修改),同一关键词只保留最后一次修改
+    private final ConcurrentHashMap<Integer, ConcurrentHashMap<String, Write>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 一个用户的搜索记录
+     * entries在载入完成前为null,键为小写的关键词(与数据库不区分大小写的唯一索引一致),从旧到新排列
+     */
+    private static class UserHistory {
+        private LinkedHashMap<String, SearchHistory> entries;
+    }
+
+    /**
+     * 一次待写回的修改:写入/更新搜索时间,或删除
+     */
+    private record Write(SearchHistory history, boolean delete) {
+    }
+
+    public SearchHistoryCache(@Value("${ifm.search-history.max-users:10000}") int maxUsers) {
+        this.maxUsers = maxUsers;
+        this.users = Collections.synchronizedMap(new LinkedHashMap<Integer, UserHistory>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, UserHistory> eldest) {
+                return size() > SearchHistoryCache.this.maxUsers;
+            }
+        });
+    }
+
+    /**
+     * 获取用户的搜索记录
+     * @param userId
+     * @return 从新到旧
+     */
+    public List<SearchHistory> list(Integer userId) {
+        UserHistory userHistory = acquire(userId);
+        List<SearchHistory> result = new ArrayList<>();
+        synchronized (userHistory) {
+            for (SearchHistory history : userHistory.entries.values()) {
+                result.add(copy(history));
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * 记录一次搜索(只写内存)
+     * @param userId
+     * @param keyword
+     * @return 该关键词此前是否不在用户的搜索记录中
+     */
+    public boolean record(Integer userId, String keyword) {
+        UserHistory userHistory = acquire(userId);
+        SearchHistory history = new SearchHistory();
+        history.setUserId(userId);
+        history.setKeyword(keyword);
+        //精确到秒,与数据库中gmt_modified的精度一致
+        history.setGmtModified(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+        String key = key(keyword);
+        boolean added;
+        synchronized (userHistory) {
+            SearchHistory old = userHistory.entries.remove(key);
+            added = old == null;
+            if (old != null) {
+                history.setSearchHistoryId(old.getSearchHistoryId());
+            }
+            userHistory.entries.put(key, history);
+            enqueue(userId, key, new Write(history, false));
+            if (userHistory.entries.size() > MAX_HISTORY_SIZE) {
+                Iterator<Map.Entry<String, SearchHistory>> eldest = userHistory.entries.entrySet().iterator();
+                Map.Entry<String, SearchHistory> entry = eldest.next();
+                eldest.remove();
+                enqueue(userId, entry.getKey(), new Write(entry.getValue(), true));
+            }
+        }
+        return added;
+    }
+
+    /**
+     * 按id查找用户的搜索记录
+     * @param userId
+     * @param searchHistoryId
+     * @return 不在用户的搜索记录中时返回null
+     */
+    public SearchHistory get(Integer userId, Integer searchHistoryId) {
+        UserHistory userHistory = acquire(userId);
+        synchronized (userHistory) {
+            for (SearchHistory history : userHistory.entries.values()) {
+                if (searchHistoryId.equals(history.getSearchHistoryId())) {
+                    return copy(history);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 移除用户的一条搜索记录及其尚未写回的修改(删除数据库记录前调用)
+     * 与flush互斥,保证返回后不会再有旧记录被写回数据库
+     * @param userId
+     * @param keyword
+     */
+    public synchronized void remove(Integer userId, String keyword) {
+        String key = key(keyword);
+        UserHistory userHistory = users.get(userId);
+        if (userHistory != null) {
+            synchronized (userHistory) {
+                if (userHistory.entries != null) {
+                    userHistory.entries.remove(key);
+                }
+            }
+        }
+        Map<String, Write> writes = pending.get(userId);
+        if (writes != null) {
+            writes.remove(key);
+        }
+        pending.computeIfPresent(userId, (id, w) -> w.isEmpty() ? null : w);
+    }
+
+    /**
+     * 清空用户的搜索记录及其尚未写回的修改(删除数据库记录前调用)
+     * @param userId
+     */
+    public synchronized void clear(Integer userId) {
+        UserHistory userHistory = users.get(userId);
+        if (userHistory != null) {
+            synchronized (userHistory) {
+                if (userHistory.entries != null) {
+                    userHistory.entries.clear();
+                }
+            }
+        }
+        pending.remove(userId);
+    }
+
+    /**
+     * 把尚未写回的修改批量写回数据库
+     * 写库成功后按值移除(期间又发生的新修改不会被移除);新写入的记录随后查询其id填回内存
+     */
+    @Scheduled(fixedDelayString = "${ifm.search-history.flush-interval:5000}")
+    public synchronized void flush() {
+        List<Write> upserts = new ArrayList<>();
+        List<Write> deletes = new ArrayList<>();
+        for (Map<String, Write> writes : pending.values()) {
+            for (Write write : writes.values()) {
+                List<Write> batch = write.delete() ? deletes : upserts;
+                batch.add(write);
+                if (batch.size() >= FLUSH_BATCH_SIZE) {
+                    writeBatch(batch, write.delete());
+                    batch.clear();
+                }
+            }
+        }
+        if (!upserts.isEmpty()) {
+            writeBatch(upserts, false);
+        }
+        if (!deletes.isEmpty()) {
+            writeBatch(deletes, true);
+        }
+        //清理已经没有待写修改的用户
+        for (Integer userId : pending.keySet()) {
+            pending.computeIfPresent(userId, (id, w) -> w.isEmpty() ? null : w);
+        }
+    }
+
+    /**
+     * 应用关闭前把剩余的修改写回数据库
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void writeBatch(List<Write> batch, boolean delete) {
+        List<SearchHistory> historyList = new ArrayList<>(batch.size());
+        for (Write write : batch) {
+            historyList.add(write.history());
+        }
+        try {
+            if (delete) {
+                searchHistoryMapper.deleteSearchHistoryBatch(historyList);
+            } else {
+                searchHistoryMapper.upsertSearchHistoryBatch(historyList);
+            }
+        } catch (RuntimeException e) {
+            log.warn("搜索记录写回失败,{}条记录将在下次重试: {}", batch.size(), e.getMessage());
+            return;
+        }
+        for (Write write : batch) {
+            Map<String, Write> writes = pending.get(write.history().getUserId());
+            if (writes != null) {
+                writes.remove(key(write.history().getKeyword()), write);
+            }
+        }
+        if (!delete) {
+            fillIds(historyList);
+        }
+    }
+
+    /**
+     * 把新写入记录的id填回内存中的搜索记录(删除单条记录的接口按id删除)
+     */
+    private void fillIds(List<SearchHistory> historyList) {
+        List<SearchHistory> missing = new ArrayList<>();
+        for (SearchHistory history : historyList) {
+            if (history.getSearchHistoryId() == null) {
+                missing.add(history);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        try {
+            for (SearchHistory row : searchHistoryMapper.listSearchHistoryIdBatch(missing)) {
+                UserHistory userHistory = users.get(row.getUserId());
+                if (userHistory == null) {
+                    continue;
+                }
+                synchronized (userHistory) {
+                    SearchHistory history = userHistory.entries == null ? null : userHistory.entries.get(key(row.getKeyword()));
+                    if (history != null && history.getSearchHistoryId() == null) {
+                        history.setSearchHistoryId(row.getSearchHistoryId());
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            //id缺失只影响按id删除,用户下次载入时会从数据库读到id
+            log.warn("搜索记录id回填失败: {}", e.getMessage());
+        }
+    }
+
+    private void enqueue(Integer userId, String key, Write write) {
+        //用compute保证与flush中清理空表的操作互斥,避免修改写进已被移除的内层表
+        pending.compute(userId, (id, writes) -> {
+            if (writes == null) {
+                writes = new ConcurrentHashMap<>();
+            }
+            writes.put(key, write);
+            return writes;
+        });
+    }
+
+    /**
+     * 获取用户的搜索记录,未载入时从数据库载入
+     */
+    private UserHistory acquire(Integer userId) {
+        UserHistory userHistory = users.computeIfAbsent(userId, key -> new UserHistory());
+        synchronized (userHistory) {
+            if (userHistory.entries == null) {
+                try {
+                    userHistory.entries = load(userId);
+                } catch (RuntimeException e) {
+                    //载入失败,移除占位对象,下次重新载入
+                    users.remove(userId, userHistory);
+                    throw e;
+                }
+            }
+        }
+        return userHistory;
+    }
+
+    private LinkedHashMap<String, SearchHistory> load(Integer userId) {
+        List<SearchHistory> rows = searchHistoryMapper.listSearchHistoyByUserId(userId);
+        LinkedHashMap<String, SearchHistory> entries = new LinkedHashMap<>();
+        //数据库按时间从新到旧返回
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            SearchHistory row = rows.get(i);
+            entries.remove(key(row.getKeyword()));
+            entries.put(key(row.getKeyword()), row);
+        }
+        //叠加用户被淘汰期间尚未写回的修改
+        Map<String, Write> writes = pending.get(userId);
+        if (writes != null) {
+            List<Write> ordered = new ArrayList<>(writes.values());
+            ordered.sort(Comparator.comparing(write -> write.history().getGmtModified()));
+            for (Write write : ordered) {
+                String key = key(write.history().getKeyword());
+                SearchHistory old = entries.remove(key);
+                if (!write.delete()) {
+                    if (old != null && write.history().getSearchHistoryId() == null) {
+                        write.history().setSearchHistoryId(old.getSearchHistoryId());
+                    }
+                    entries.put(key, write.history());
+                }
+            }
+        }
+        //超出上限的旧记录(旧版本遗留)一并删除
+        Iterator<Map.Entry<String, SearchHistory>> iterator = entries.entrySet().iterator();
+        while (entries.size() > MAX_HISTORY_SIZE) {
+            Map.Entry<String, SearchHistory> entry = iterator.next();
+            iterator.remove();
+            enqueue(userId, entry.getKey(), new Write(entry.getValue(), true));
+        }
+        return entries;
+    }
+
+    private static String key(String keyword) {
+        return keyword.toLowerCase(Locale.ROOT);
+    }
+
+    private static SearchHistory copy(SearchHistory history) {
+        SearchHistory copy = new SearchHistory();
+        copy.setSearchHistoryId(history.getSearchHistoryId());
+        copy.setKeyword(history.getKeyword());
+        copy.setUserId(history.getUserId());
+        copy.setGmtModified(history.getGmtModified());
+        return copy;
+    }
+}
@@ -0,0 +1,268 @@
+package com.pxx.ifmserver.cache;
+
+import com.pxx.ifmserver.entity.dto.User;
+import com.pxx.ifmserver.mapper.UserMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * 用户昵称/邮箱查重过滤器
+ * 所有已注册的昵称和邮箱(按数据库排序规则归一化:去掉重音、转小写、去掉末尾空格)放在两个布谷鸟过滤器中,
+ * 过滤器判定"一定不存在"的昵称/邮箱直接返回,不查询数据库;"可能存在"时照常查询数据库。
+ * 启动时和每隔ifm.identity-filter.rebuild-interval逐行扫描user表重建,注册/修改昵称/修改邮箱时同步更新。
+ * 唯一索引仍是最终依据:其他实例写入的昵称在下次重建前可能被判为不存在,写库时由唯一索引拦截
+ */
+@Component
+public class UserIdentityFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(UserIdentityFilter.class);
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    @Autowired
+    private UserMapper userMapper;
+
+    private final StampedLock lock = new StampedLock();
+    //以下字段由lock保护
+    private CuckooFilter names;
+    private CuckooFilter emails;
+    //重建期间发生的修改,重建完成后补到新过滤器上
+    private List<Runnable> pending;
+
+    //查询次数,过滤器拦下的查询数(一定不存在),过滤器放行但数据库中不存在的查询数(误判)
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder avoided = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * 按昵称查找用户,过滤器判定不存在时不查询数据库
+     * @param userName
+     * @param query 数据库查询
+     * @return 用户不存在时返回null
+     */
+    public User findByName(String userName, Function<String, User> query) {
+        return find(userName, normalizeName(userName), query, true);
+    }
+
+    /**
+     * 按邮箱查找用户,过滤器判定不存在时不查询数据库
+     * @param userEmail
+     * @param query 数据库查询
+     * @return 用户不存在时返回null
+     */
+    public User findByEmail(String userEmail, Function<String, User> query) {
+        return find(userEmail, normalizeEmail(userEmail), query, false);
+    }
+
+    /**
+     * 新用户注册成功
+     * @param userName
+     * @param userEmail
+     */
+    public void add(String userName, String userEmail) {
+        Runnable change = () -> {
+            add(names, normalizeName(userName));
+            add(emails, normalizeEmail(userEmail));
+        };
+        update(change, change);
+    }
+
+    /**
+     * 用户修改昵称成功
+     * @param oldName 修改前数据库中的昵称
+     * @param newName
+     */
+    public void replaceName(String oldName, String newName) {
+        update(() -> {
+            add(names, normalizeName(newName));
+            remove(names, normalizeName(oldName));
+        }, () -> add(names, normalizeName(newName)));
+    }
+
+    /**
+     * 用户修改邮箱成功
+     * @param oldEmail 修改前数据库中的邮箱
+     * @param newEmail
+     */
+    public void replaceEmail(String oldEmail, String newEmail) {
+        update(() -> {
+            add(emails, normalizeEmail(newEmail));
+            remove(emails, normalizeEmail(oldEmail));
+        }, () -> add(emails, normalizeEmail(newEmail)));
+    }
+
+    /**
+     * 逐行扫描user表重建过滤器
+     */
+    @Scheduled(fixedDelayString = "${ifm.identity-filter.rebuild-interval:3600000}")
+    public synchronized void rebuild() {
+        long stamp = lock.writeLock();
+        pending = new ArrayList<>();
+        lock.unlockWrite(stamp);
+        try {
+            long start = System.currentTimeMillis();
+            int expected = userMapper.countUser();
+            CuckooFilter loadedNames = new CuckooFilter(expected);
+            CuckooFilter loadedEmails = new CuckooFilter(expected);
+            userMapper.scanUserNameAndEmail(context -> {
+                User user = context.getResultObject();
+                add(loadedNames, normalizeName(user.getUserName()));
+                add(loadedEmails, normalizeEmail(user.getUserEmail()));
+            });
+            stamp = lock.writeLock();
+            try {
+                names = loadedNames;
+                emails = loadedEmails;
+                for (Runnable change : pending) {
+                    change.run();
+                }
+                pending = null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            log.info("昵称/邮箱过滤器重建完成: {}个用户, 耗时{}ms", loadedNames.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            stamp = lock.writeLock();
+            pending = null;
+            lock.unlockWrite(stamp);
+            log.warn("昵称/邮箱过滤器重建失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return 元素数、占用内存、估算误判率,查询数、省掉的数据库查询数、实际误判数和误判率
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        long stamp = lock.readLock();
+        try {
+            if (names != null) {
+                stats.put("names", names.size());
+                stats.put("emails", emails.size());
+                stats.put("memoryBytes", names.memoryBytes() + emails.memoryBytes());
+                stats.put("expectedFalsePositiveRate", Math.max(names.expectedFalsePositiveRate(), emails.expectedFalsePositiveRate()));
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        long negatives = avoided.sum();
+        long falsePositive = falsePositives.sum();
+        stats.put("lookups", lookups.sum());
+        stats.put("queriesAvoided", negatives);
+        stats.put("falsePositives", falsePositive);
+        stats.put("falsePositiveRate", negatives + falsePositive == 0 ? 0.0 : (double) falsePositive / (negatives + falsePositive));
+        return stats;
+    }
+
+    private User find(String key, String normalized, Function<String, User> query, boolean name) {
+        lookups.increment();
+        boolean filtered = false;
+        if (normalized != null) {
+            long stamp = lock.readLock();
+            try {
+                CuckooFilter filter = name ? names : emails;
+                if (filter != null) {
+                    if (!filter.mightContain(hash(normalized))) {
+                        avoided.increment();
+                        return null;
+                    }
+                    filtered = true;
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        User user = query.apply(key);
+        if (user == null && filtered) {
+            //过滤器放行但数据库中不存在
+            falsePositives.increment();
+        }
+        return user;
+    }
+
+    /**
+     * @param change 对当前过滤器的修改
+     * @param replay 重建完成后补到新过滤器上的修改:只补添加,不补删除
+     *               (扫描可能没读到旧值,删除不存在的元素会删掉别的元素的指纹)
+     */
+    private void update(Runnable change, Runnable replay) {
+        long stamp = lock.writeLock();
+        try {
+            if (names != null) {
+                change.run();
+            }
+            if (pending != null) {
+                pending.add(replay);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static void add(CuckooFilter filter, String normalized) {
+        if (normalized != null) {
+            filter.add(hash(normalized));
+        }
+    }
+
+    private static void remove(CuckooFilter filter, String normalized) {
+        if (normalized != null) {
+            filter.remove(hash(normalized));
+        }
+    }
+
+    /**
+     * 按utf8mb4_general_ci近似归一化:分解后去掉重音符号,转小写,去掉末尾空格
+     */
+    static String normalizeName(String userName) {
+        if (userName == null) {
+            return null;
+        }
+        String stripped = MARKS.matcher(Normalizer.normalize(userName, Normalizer.Form.NFD)).replaceAll("");
+        return stripTrailingSpaces(stripped.toLowerCase(Locale.ROOT));
+    }
+
+    static String normalizeEmail(String userEmail) {
+        if (userEmail == null) {
+            return null;
+        }
+        return stripTrailingSpaces(userEmail.toLowerCase(Locale.ROOT));
+    }
+
+    private static String stripTrailingSpaces(String value) {
+        int end = value.length();
+        while (end > 0 && value.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return value.substring(0, end);
+    }
+
+    /**
+     * 64位哈希(FNV-1a + MurmurHash3的fmix64)
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
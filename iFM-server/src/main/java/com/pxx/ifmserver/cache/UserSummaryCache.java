@@ -0,0 +1,409 @@
+package com.pxx.ifmserver.cache;
+
+import com.pxx.ifmserver.entity.dto.User;
+import com.pxx.ifmserver.mapper.UserMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 用户摘要缓存(用户id、用户名、头像路径)
+ * 各视图层实体组装作者信息时只需要这三项,不必每次查询整行用户数据。
+ * 以int为键的开放寻址表(线性探测),值不以对象保存,而是编码后追加到一整块字节数组中,
+ * 每个用户只占 8字节槽位 + 用户名和头像文件名的UTF-8字节(头像的公共目录前缀不重复保存),百万用户约几十MB。
+ * 读操作使用乐观读,不加锁;修改用户名/头像后调用invalidate,下次读取时重新查询
+ */
+@Component
+public class UserSummaryCache {
+
+    private static final Logger log = LoggerFactory.getLogger(UserSummaryCache.class);
+    private static final int EMPTY = Integer.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 1024;
+    //单条 IN 查询最多包含的id数
+    private static final int BATCH_SIZE = 500;
+    //头像路径的公共前缀,编码时省略
+    private static final String PICTURE_PREFIX = "/images/user/head/";
+    private static final byte PICTURE_NULL = 0;
+    private static final byte PICTURE_FULL = 1;
+    private static final byte PICTURE_SHORT = 2;
+    private static final int NULL_LENGTH = 0xFFFF;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    //最多缓存的用户数,超过后清空重新缓存
+    @Value("${ifm.user-summary.max-entries:4000000}")
+    private int maxEntries;
+
+    /**
+     * 槽位:用户id(EMPTY表示空)和该用户的数据在arena中的起始位置。
+     * 两个数组总是成对替换(扩容/清空时换新的Table),乐观读只读取一次table,不会拿到新keys配旧offsets
+     */
+    private static final class Table {
+        private final int[] keys;
+        private final int[] offsets;
+
+        private Table(int capacity) {
+            keys = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            offsets = new int[capacity];
+        }
+    }
+
+    private final StampedLock lock = new StampedLock();
+    private Table table;
+    private byte[] arena;
+    private int arenaSize;
+    private int size;
+    //arena中已失效(被删除或覆盖)的字节数,超过一半时压缩
+    private int garbage;
+    //每次invalidate加一;查询数据库期间发生过失效时不缓存查询结果,避免旧数据覆盖
+    private volatile long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder hitNanos = new LongAdder();
+
+    public UserSummaryCache() {
+        reset();
+    }
+
+    /**
+     * 获取用户摘要,未缓存时查询数据库
+     * @param userId
+     * @return 只含userId、userName、userPicture的用户;用户不存在时返回null
+     */
+    public User get(Integer userId) {
+        if (userId == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        User user = lookup(userId);
+        if (user != null) {
+            hits.increment();
+            hitNanos.add(System.nanoTime() - start);
+            return user;
+        }
+        misses.increment();
+        long loadGeneration = generation;
+        user = userMapper.getUserSummaryByUserId(userId);
+        if (user != null) {
+            put(user, loadGeneration);
+        }
+        return user;
+    }
+
+    /**
+     * 批量获取用户摘要,未缓存的用户用 IN 查询批量取回
+     * @param userIdList 用户id(可重复)
+     * @return 用户id -> 用户,不存在的用户不在结果中
+     */
+    public Map<Integer, User> getAll(Collection<Integer> userIdList) {
+        Map<Integer, User> result = new HashMap<>(userIdList.size() * 2);
+        List<Integer> missing = new ArrayList<>();
+        for (Integer userId : userIdList) {
+            if (userId == null || result.containsKey(userId)) {
+                continue;
+            }
+            long start = System.nanoTime();
+            User user = lookup(userId);
+            if (user != null) {
+                hits.increment();
+                hitNanos.add(System.nanoTime() - start);
+            } else {
+                misses.increment();
+                missing.add(userId);
+            }
+            //未命中的先占位,避免重复id重复查询
+            result.put(userId, user);
+        }
+        long loadGeneration = generation;
+        for (int from = 0; from < missing.size(); from += BATCH_SIZE) {
+            for (User user : userMapper.listUserSummaryByIdList(missing.subList(from, Math.min(from + BATCH_SIZE, missing.size())))) {
+                put(user, loadGeneration);
+                result.put(user.getUserId(), user);
+            }
+        }
+        result.values().removeIf(user -> user == null);
+        return result;
+    }
+
+    /**
+     * 用户名或头像修改后移除缓存
+     * @param userId
+     */
+    public void invalidate(Integer userId) {
+        if (userId == null) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            generation++;
+            int[] keys = table.keys;
+            int[] offsets = table.offsets;
+            int mask = keys.length - 1;
+            int slot = slotOf(keys, userId);
+            if (slot < 0) {
+                return;
+            }
+            garbage += entryLength(arena, offsets[slot]);
+            size--;
+            //向后移位删除:把后面探测链上的条目前移,不留墓碑
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (keys[next] != EMPTY) {
+                int home = hash(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    offsets[hole] = offsets[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[hole] = EMPTY;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return 缓存统计:条目数、占用内存、每条平均字节数、命中率、命中平均耗时
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long stamp = lock.readLock();
+        try {
+            long bytes = (long) table.keys.length * (Integer.BYTES * 2) + arena.length;
+            stats.put("entries", size);
+            stats.put("slots", table.keys.length);
+            stats.put("arenaBytes", arenaSize);
+            stats.put("garbageBytes", garbage);
+            stats.put("totalBytes", bytes);
+            stats.put("bytesPerEntry", size == 0 ? 0 : bytes / size);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount));
+        stats.put("avgHitNanos", hitCount == 0 ? 0 : hitNanos.sum() / hitCount);
+        return stats;
+    }
+
+    private User lookup(int userId) {
+        long stamp = lock.tryOptimisticRead();
+        byte[] currentArena = arena;
+        int offset = find(table, userId);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                currentArena = arena;
+                offset = find(table, userId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        //arena只追加不修改(压缩时换新数组),校验通过后读取的字节不会再变
+        return offset < 0 ? null : decode(userId, currentArena, offset);
+    }
+
+    /**
+     * @param user 从数据库查询到的用户
+     * @param loadGeneration 开始查询时的generation
+     */
+    private void put(User user, long loadGeneration) {
+        byte[] name = user.getUserName() == null ? null : user.getUserName().getBytes(StandardCharsets.UTF_8);
+        String picture = user.getUserPicture();
+        byte pictureType = picture == null ? PICTURE_NULL
+                : picture.startsWith(PICTURE_PREFIX) ? PICTURE_SHORT : PICTURE_FULL;
+        byte[] pictureBytes = pictureType == PICTURE_NULL ? null
+                : (pictureType == PICTURE_SHORT ? picture.substring(PICTURE_PREFIX.length()) : picture).getBytes(StandardCharsets.UTF_8);
+        if ((name != null && name.length >= NULL_LENGTH) || (pictureBytes != null && pictureBytes.length >= NULL_LENGTH)) {
+            return;
+        }
+        int length = 2 + (name == null ? 0 : name.length) + 1 + 2 + (pictureBytes == null ? 0 : pictureBytes.length);
+
+        long stamp = lock.writeLock();
+        try {
+            if (generation != loadGeneration) {
+                return;
+            }
+            if (size >= maxEntries) {
+                log.info("用户摘要缓存达到上限{}条,清空重新缓存", maxEntries);
+                reset();
+            }
+            ensureArena(length);
+            int offset = arenaSize;
+            int position = writeBytes(arena, offset, name);
+            arena[position++] = pictureType;
+            writeBytes(arena, position, pictureBytes);
+            arenaSize += length;
+
+            int slot = slotOf(table.keys, user.getUserId());
+            if (slot >= 0) {
+                garbage += entryLength(arena, table.offsets[slot]);
+                table.offsets[slot] = offset;
+                return;
+            }
+            if ((size + 1) * 4L > table.keys.length * 3L) {
+                resize(table.keys.length * 2);
+            }
+            int[] keys = table.keys;
+            int[] offsets = table.offsets;
+            int mask = keys.length - 1;
+            slot = hash(user.getUserId()) & mask;
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = user.getUserId();
+            offsets[slot] = offset;
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void reset() {
+        table = new Table(INITIAL_CAPACITY);
+        arena = new byte[INITIAL_CAPACITY * 32];
+        arenaSize = 0;
+        size = 0;
+        garbage = 0;
+    }
+
+    /**
+     * 保证arena还能追加length个字节:失效字节超过一半时压缩,否则扩容
+     */
+    private void ensureArena(int length) {
+        if (arenaSize + length <= arena.length) {
+            return;
+        }
+        if (garbage > arenaSize / 2) {
+            int[] keys = table.keys;
+            int[] offsets = table.offsets;
+            int live = arenaSize - garbage;
+            byte[] compacted = new byte[Math.max(live * 2, live + length)];
+            int position = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != EMPTY) {
+                    int entryLength = entryLength(arena, offsets[slot]);
+                    System.arraycopy(arena, offsets[slot], compacted, position, entryLength);
+                    offsets[slot] = position;
+                    position += entryLength;
+                }
+            }
+            arena = compacted;
+            arenaSize = position;
+            garbage = 0;
+        } else {
+            arena = Arrays.copyOf(arena, Math.max(arena.length + (arena.length >> 1), arenaSize + length));
+        }
+    }
+
+    private void resize(int capacity) {
+        Table resized = new Table(capacity);
+        int[] keys = table.keys;
+        int[] offsets = table.offsets;
+        int mask = capacity - 1;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                int target = hash(keys[slot]) & mask;
+                while (resized.keys[target] != EMPTY) {
+                    target = (target + 1) & mask;
+                }
+                resized.keys[target] = keys[slot];
+                resized.offsets[target] = offsets[slot];
+            }
+        }
+        table = resized;
+    }
+
+    /**
+     * @return 用户数据在arena中的起始位置,不存在时返回-1
+     */
+    private static int find(Table table, int userId) {
+        int slot = slotOf(table.keys, userId);
+        return slot < 0 ? -1 : table.offsets[slot];
+    }
+
+    private static int slotOf(int[] keys, int userId) {
+        int mask = keys.length - 1;
+        int slot = hash(userId) & mask;
+        //乐观读时表可能正被修改,最多探测一整圈
+        for (int probe = 0; probe < keys.length; probe++) {
+            int key = keys[slot];
+            if (key == userId) {
+                return slot;
+            }
+            if (key == EMPTY) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 编码格式: 用户名长度(2字节) | 用户名 | 头像类型(1字节) | 头像长度(2字节) | 头像
+     */
+    private static User decode(int userId, byte[] arena, int offset) {
+        User user = new User();
+        user.setUserId(userId);
+        int nameLength = readLength(arena, offset);
+        int position = offset + 2;
+        if (nameLength != NULL_LENGTH) {
+            user.setUserName(new String(arena, position, nameLength, StandardCharsets.UTF_8));
+            position += nameLength;
+        }
+        byte pictureType = arena[position++];
+        int pictureLength = readLength(arena, position);
+        position += 2;
+        if (pictureType != PICTURE_NULL) {
+            String picture = new String(arena, position, pictureLength, StandardCharsets.UTF_8);
+            user.setUserPicture(pictureType == PICTURE_SHORT ? PICTURE_PREFIX + picture : picture);
+        }
+        return user;
+    }
+
+    private static int entryLength(byte[] arena, int offset) {
+        int nameLength = readLength(arena, offset);
+        int position = offset + 2 + (nameLength == NULL_LENGTH ? 0 : nameLength) + 1;
+        int pictureLength = readLength(arena, position);
+        return position + 2 + (pictureLength == NULL_LENGTH ? 0 : pictureLength) - offset;
+    }
+
+    private static int writeBytes(byte[] arena, int position, byte[] bytes) {
+        int length = bytes == null ? NULL_LENGTH : bytes.length;
+        arena[position] = (byte) (length >>> 8);
+        arena[position + 1] = (byte) length;
+        if (bytes != null) {
+            System.arraycopy(bytes, 0, arena, position + 2, bytes.length);
+            return position + 2 + bytes.length;
+        }
+        return position + 2;
+    }
+
+    private static int readLength(byte[] arena, int position) {
+        return ((arena[position] & 0xff) << 8) | (arena[position + 1] & 0xff);
+    }
+}
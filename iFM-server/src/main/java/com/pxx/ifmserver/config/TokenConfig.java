@@ -0,0 +1,32 @@
+package com.pxx.ifmserver.config;
+
+import com.pxx.ifmserver.utils.TokenUtil;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Base64;
+
+/**
+ * 启动时把ifm.token.secret(Base64编码,至少32字节)设置为Token的签名密钥;
+ * 多个实例部署时必须配置同一个密钥,否则一台机器签发的Token在另一台上校验不通过
+ */
+@Configuration
+public class TokenConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenConfig.class);
+
+    @Value("${ifm.token.secret:}")
+    private String secret;
+
+    @PostConstruct
+    public void init() {
+        if (secret == null || secret.isBlank()) {
+            log.warn("未配置ifm.token.secret,使用随机生成的Token密钥,重启后需要重新登录");
+            return;
+        }
+        TokenUtil.setSecret(Base64.getDecoder().decode(secret.trim()));
+    }
+}
@@ -1,7 +1,10 @@
 package com.pxx.ifmserver.config;
 
 
+import com.pxx.ifmserver.auth.AuthInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -11,6 +14,14 @@ import java.nio.file.Paths;
 
 @Configuration//告诉 Spring 容器这个类是一个配置类，Spring 将会扫描并处理其中定义的 bean 和配置
 public class WebConfig implements WebMvcConfigurer {//实现 WebMvcConfigurer 接口 意味着 WebConfig 类将能够覆盖接口中的方法来定制 MVC 行为
+    @Autowired
+    private AuthInterceptor authInterceptor;
+
+    @Override//注册登录校验拦截器,只处理标记了@LoginRequired的接口
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(authInterceptor);
+    }
+
     @Override//覆盖 WebMvcConfigurer 接口中的 addResourceHandlers 方法 这个方法允许注册资源处理器
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         registry.addResourceHandler("/images/**")//传入一个路径模式。在这个例子中，任何以 /images/ 开始的请求都会被匹配
@@ -24,8 +35,7 @@ public class WebConfig implements WebMvcConfigurer {//实现 WebMvcConfigurer 
         // 配置文件系统路径下的资源位置
         registry.addResourceHandler("/images/**")
                 .addResourceLocations("file:" + imagesPath.toAbsolutePath().toString() + "/images/");//所有以/images/开头的请求将会从根目录下的resources/images文件夹中查找
-        registry.addResourceHandler("/audio/**")
-                .addResourceLocations("file:" + imagesPath.toAbsolutePath().toString() + "/audio/");//所有以/audio/开头的请求将会从根目录下的resources/audio中查找
+        //以/audio/开头的音频请求由AudioController处理(支持Range和sendfile)
     }
 
 }
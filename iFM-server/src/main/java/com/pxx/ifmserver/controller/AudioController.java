@@ -0,0 +1,268 @@
+package com.pxx.ifmserver.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 节目音频流式传输接口
+ * 支持单段/多段Range请求、If-Range/ETag校验。
+ * 完整文件和单段响应在Tomcat连接器支持sendfile时交给Tomcat发送,由内核直接从文件写到socket,不经过堆内缓冲;
+ * 不支持sendfile时,以及多段响应,用FileChannel.transferTo写到Servlet输出流,
+ * 输出流不是文件通道能直接写的目标,数据会经过堆内缓冲复制(只是不需要把整个文件读进内存)
+ */
+@RestController
+public class AudioController {
+
+    private static final String AUDIO_CONTENT_TYPE = "audio/mpeg";
+    //音频文件名带时间戳,内容替换时文件名也会变化,因此可以让客户端缓存一天
+    private static final String CACHE_CONTROL = "public, max-age=86400";
+
+    //Tomcat sendfile相关的请求属性
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    //音频文件所在目录(与原静态资源映射的 resources/audio 一致),测试时可替换
+    private Path audioRoot = Paths.get(System.getProperty("user.dir"))
+            .resolve("resources").resolve("audio").toAbsolutePath().normalize();
+
+    /**
+     * 获取节目音频文件(支持Range)
+     * @param fileName 音频文件名
+     * @param req
+     * @param resp
+     * @throws IOException
+     */
+    @RequestMapping(value = "/audio/{fileName:.+}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void streamAudio(@PathVariable String fileName, HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Path file = audioRoot.resolve(fileName).normalize();
+        //只允许访问音频目录下的mp3文件(同目录下还有跳转索引文件)
+        if (!fileName.endsWith(".mp3") || !file.startsWith(audioRoot) || !file.getParent().equals(audioRoot) || !Files.isRegularFile(file)) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String eTag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        resp.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        resp.setHeader(HttpHeaders.ETAG, eTag);
+        resp.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        resp.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+
+        //客户端缓存仍然有效
+        if (matchesETag(req.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String rangeHeader = req.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(req, eTag, lastModified)) {
+            //完整文件
+            resp.setStatus(HttpServletResponse.SC_OK);
+            resp.setContentType(AUDIO_CONTENT_TYPE);
+            resp.setContentLengthLong(length);
+            if (!isHead(req)) {
+                sendRegion(req, resp, file, 0, length);
+            }
+            return;
+        }
+
+        List<long[]> ranges;
+        try {
+            ranges = resolveRanges(HttpRange.parseRanges(rangeHeader), length);
+        } catch (IllegalArgumentException e) {
+            ranges = List.of();
+        }
+        if (ranges.isEmpty()) {
+            resp.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            resp.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            //单段:播放器拖动进度条时的常见请求
+            long[] range = ranges.get(0);
+            resp.setContentType(AUDIO_CONTENT_TYPE);
+            resp.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, length));
+            resp.setContentLengthLong(range[1] - range[0] + 1);
+            if (!isHead(req)) {
+                sendRegion(req, resp, file, range[0], range[1] + 1);
+            }
+            return;
+        }
+
+        //多段:multipart/byteranges,先算好每段的分隔头,保证Content-Length准确
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (long[] range : ranges) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + AUDIO_CONTENT_TYPE + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range[1] - range[0] + 1;
+        }
+        byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += end.length;
+        resp.setContentType("multipart/byteranges; boundary=" + boundary);
+        resp.setContentLengthLong(contentLength);
+        if (isHead(req)) {
+            return;
+        }
+        OutputStream out = resp.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                long[] range = ranges.get(i);
+                transfer(channel, range[0], range[1] + 1, target);
+            }
+        }
+        out.write(end);
+        out.flush();
+    }
+
+    /**
+     * 把Range请求中的各段换算成[起点,终点](闭区间),丢弃无法满足的段,并合并重叠/相邻的段
+     * 合并后总长度不会超过文件长度,避免恶意的重叠多段请求放大响应
+     * @param httpRanges
+     * @param length 文件长度
+     * @return
+     */
+    static List<long[]> resolveRanges(List<HttpRange> httpRanges, long length) {
+        List<long[]> ranges = new ArrayList<>();
+        for (HttpRange httpRange : httpRanges) {
+            try {
+                long start = httpRange.getRangeStart(length);
+                long end = httpRange.getRangeEnd(length);
+                if (start <= end && start < length) {
+                    ranges.add(new long[]{start, end});
+                }
+            } catch (IllegalArgumentException e) {
+                //该段超出文件范围,跳过
+            }
+        }
+        if (ranges.size() <= 1) {
+            return ranges;
+        }
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        List<long[]> merged = new ArrayList<>();
+        long[] current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            long[] next = ranges.get(i);
+            if (next[0] <= current[1] + 1) {
+                current[1] = Math.max(current[1], next[1]);
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    /**
+     * 发送文件的[start,end)区间
+     * Tomcat连接器支持sendfile时交给Tomcat在请求结束后用sendfile发送,否则用transferTo写出
+     */
+    private void sendRegion(HttpServletRequest req, HttpServletResponse resp, Path file, long start, long end) throws IOException {
+        if (end <= start) {
+            return;
+        }
+        if (Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORTED))) {
+            req.setAttribute(SENDFILE_FILENAME, file.toString());
+            req.setAttribute(SENDFILE_START, start);
+            req.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        OutputStream out = resp.getOutputStream();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            transfer(channel, start, end, Channels.newChannel(out));
+        }
+        out.flush();
+    }
+
+    private void transfer(FileChannel channel, long start, long end, WritableByteChannel target) throws IOException {
+        long position = start;
+        while (position < end) {
+            long sent = channel.transferTo(position, end - position, target);
+            if (sent <= 0) {
+                //文件在传输过程中被截断
+                throw new IOException("音频文件读取不完整");
+            }
+            position += sent;
+        }
+    }
+
+    private static String contentRange(long[] range, long length) {
+        return "bytes " + range[0] + "-" + range[1] + "/" + length;
+    }
+
+    private static boolean isHead(HttpServletRequest req) {
+        return RequestMethod.HEAD.name().equals(req.getMethod());
+    }
+
+    private static boolean matchesETag(String header, String eTag) {
+        if (header == null) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * If-Range校验:值为ETag时要求强匹配,为日期时要求文件在此之后未修改;不满足则忽略Range返回完整文件
+     */
+    private static boolean ifRangeMatches(HttpServletRequest req, String eTag, long lastModified) {
+        String ifRange = req.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(eTag);
+        }
+        try {
+            long date = req.getDateHeader(HttpHeaders.IF_RANGE);
+            //HTTP日期精确到秒
+            return date != -1 && lastModified / 1000 <= date / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -1,21 +1,16 @@
 package com.pxx.ifmserver.controller;
 
 
+import com.pxx.ifmserver.auth.LoginRequired;
 import com.pxx.ifmserver.result.Result;
 import com.pxx.ifmserver.service.BroadcastService;
-import com.pxx.ifmserver.utils.TokenUtil;
 import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
-import java.text.ParseException;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/broadcast")
@@ -36,11 +31,13 @@ public class BroadcastController {
     /**
      * 根据频道ID获取频道下的节目接口
      * @param channelId
+     * @param cursor 分页游标(上一页返回的nextCursor),为空表示第一页
+     * @param size 每页条数(默认20,最多50)
      * @return
      */
     @GetMapping("/getBroadcastByChannelId")
-    public Result getBroadcastByChannelId(@RequestParam Integer channelId) {
-        return broadcastService.listBroadcastByChannelId(channelId);
+    public Result getBroadcastByChannelId(@RequestParam Integer channelId, @RequestParam(required = false) String cursor, @RequestParam(required = false) Integer size) {
+        return broadcastService.listBroadcastByChannelId(channelId, cursor, size);
     }
 
 
@@ -74,14 +71,27 @@ public class BroadcastController {
         return broadcastService.checkBroadcast(userId, broadcastId);
     }
 
+    /**
+     * 批量检查用户是否已收藏节目接口
+     * @param userId
+     * @param broadcastIdList
+     * @return favoriteMap (节目id -> 是否收藏)
+     */
+    @GetMapping("/checkBroadcastList")
+    public Result checkBroadcastList(@RequestParam Integer userId, @RequestParam List<Integer> broadcastIdList) {
+        return broadcastService.checkBroadcastList(userId, broadcastIdList);
+    }
+
     /**
      * 获取用户收藏表中的节目 接口
      * @param userId
+     * @param cursor 分页游标(上一页返回的nextCursor),为空表示第一页
+     * @param size 每页条数(默认20,最多50)
      * @return
      */
     @GetMapping("/getFavoriteBroadcast")
-    public Result getCollection(@RequestParam Integer userId) {
-        return broadcastService.listFavoriteBroadcast(userId);
+    public Result getCollection(@RequestParam Integer userId, @RequestParam(required = false) String cursor, @RequestParam(required = false) Integer size) {
+        return broadcastService.listFavoriteBroadcast(userId, cursor, size);
     }
 
 
@@ -89,11 +99,13 @@ public class BroadcastController {
     /**
      * 获取用户收听历史表中的节目 接口
      * @param userId
+     * @param cursor 分页游标(上一页返回的nextCursor),为空表示第一页
+     * @param size 每页条数(默认20,最多50)
      * @return
      */
     @GetMapping("/getHistory")
-    public Result getHistory(@RequestParam Integer userId) {
-        return broadcastService.listBroadcastHistory(userId);
+    public Result getHistory(@RequestParam Integer userId, @RequestParam(required = false) String cursor, @RequestParam(required = false) Integer size) {
+        return broadcastService.listBroadcastHistory(userId, cursor, size);
     }
 
     /**
@@ -137,31 +149,16 @@ public class BroadcastController {
      * @param broadcastTitle
      * @param broadcastDetail
      * @param broadcastPicture
-     * @param req
-     * @param resp
      * @return
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @PostMapping("/createBroadcast")
     public Result createBroadcast(
             @RequestParam  Integer channelId, @RequestParam Integer userId,
             @RequestParam String broadcastTitle, @RequestParam String broadcastDetail,
-            @RequestParam MultipartFile broadcastPicture,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam MultipartFile broadcastPicture) {
         // 节目创建
-        Result r= broadcastService.createBroadcast(channelId, userId, broadcastTitle, broadcastDetail, broadcastPicture);
-        r.getData().put("token",newToken);
-        return r;
+        return broadcastService.createBroadcast(channelId, userId, broadcastTitle, broadcastDetail, broadcastPicture);
     }
 
     /**
@@ -169,31 +166,16 @@ public class BroadcastController {
      * @param userId
      * @param broadcastId
      * @param audioFile
-     * @param req
-     * @param resp
      * @return
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @PostMapping("/addAudio")
     public Result addAudio(
             @RequestParam Integer userId,
             @RequestParam Integer broadcastId,
-            @RequestParam MultipartFile audioFile,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam MultipartFile audioFile) {
         // 节目创建
-        Result r= broadcastService.addAudioForBroadcast(userId, broadcastId, audioFile);
-        r.getData().put("token",newToken);
-        return r;
+        return broadcastService.addAudioForBroadcast(userId, broadcastId, audioFile);
     }
 
     /**
@@ -201,30 +183,15 @@ public class BroadcastController {
      * @param broadcastId
      * @param userId
      * @param broadcastPicture
-     * @param req
-     * @param resp
      * @return
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @PostMapping("/updateBroadcastPicture")
     public Result updateBroadcastPicture(
             @RequestParam  Integer broadcastId, @RequestParam Integer userId,
-            @RequestParam MultipartFile broadcastPicture,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam MultipartFile broadcastPicture) {
         // 更改界面封面
-        Result r= broadcastService.updateBroadcastPicture(userId,broadcastId,broadcastPicture);
-        r.getData().put("token",newToken);
-        return r;
+        return broadcastService.updateBroadcastPicture(userId,broadcastId,broadcastPicture);
     }
 
     /**
@@ -233,30 +200,15 @@ public class BroadcastController {
      * @param broadcastId
      * @param userId
      * @param broadcastDetail
-     * @param req
-     * @param resp
      * @return
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @PostMapping("/updateBroadcastDetail")
     public Result updateBroadcastDetail(
             @RequestParam  Integer broadcastId, @RequestParam Integer userId,
-            @RequestParam String broadcastDetail,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam String broadcastDetail) {
         // 更改节目详情内容
-        Result r= broadcastService.updateBroadcastDetail(userId,broadcastId,broadcastDetail);
-        r.getData().put("token",newToken);
-        return r;
+        return broadcastService.updateBroadcastDetail(userId,broadcastId,broadcastDetail);
     }
 
     /**
@@ -264,30 +216,15 @@ public class BroadcastController {
      * @param broadcastId
      * @param userId
      * @param broadcastTitle
-     * @param req
-     * @param resp
      * @return
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @PostMapping("/updateBroadcastTitle")
     public Result updateBroadcastTitle(
             @RequestParam  Integer broadcastId, @RequestParam Integer userId,
-            @RequestParam String broadcastTitle,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam String broadcastTitle) {
         // 更改节目标题
-        Result r=broadcastService.updateBroadcastTitle(userId,broadcastId,broadcastTitle);
-        r.getData().put("token",newToken);
-        return r;
+        return broadcastService.updateBroadcastTitle(userId,broadcastId,broadcastTitle);
     }
 
     /**
@@ -295,57 +232,49 @@ public class BroadcastController {
      * @param broadcastId
      * @param userId
      * @param broadcastAudio
-     * @param req
-     * @param resp
      * @return
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @PostMapping("/updateBroadcastAudio")
     public Result updateBroadcastAudio(
             @RequestParam  Integer broadcastId, @RequestParam Integer userId,
-            @RequestParam MultipartFile broadcastAudio,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam MultipartFile broadcastAudio) {
         // 更改节目音频文件
-        Result r= broadcastService.updateBroadcastAudio(userId,broadcastId,broadcastAudio);
-        r.getData().put("token",newToken);
-        return r;
+        return broadcastService.updateBroadcastAudio(userId,broadcastId,broadcastAudio);
     }
 
     /**
-     * 用户收藏/取消收藏接口
+     * 上传节目音频接口:请求体直接为音频数据(Content-Type为audio/mpeg或application/octet-stream),
+     * 服务端边接收边写入,不经过multipart临时文件;节目已有音频时替换旧音频
      * @param userId
      * @param broadcastId
      * @param req
-     * @param resp
      * @return
+     * @throws IOException
      */
+    @LoginRequired
+    @PostMapping(value = "/uploadAudio", consumes = {"audio/mpeg", "application/octet-stream"})
+    public Result uploadAudio(
+            @RequestParam Integer userId,
+            @RequestParam Integer broadcastId,
+            HttpServletRequest req) throws IOException {
+        // 上传节目音频
+        return broadcastService.uploadBroadcastAudio(userId,broadcastId,req.getInputStream());
+    }
+
+    /**
+     * 用户收藏/取消收藏接口
+     * @param userId
+     * @param broadcastId
+     * @return
+     */
+    @LoginRequired
     @PostMapping("/changeFavorite")
     public Result changeFavorite(
             @RequestParam Integer userId,
-            @RequestParam Integer broadcastId,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam Integer broadcastId) {
         // 用户收藏/取消收藏接口
-        Result r= broadcastService.changeFavorite(userId,broadcastId);
-        r.getData().put("token",newToken);
-        return r;
+        return broadcastService.changeFavorite(userId,broadcastId);
     }
 
     /**
@@ -355,12 +284,12 @@ public class BroadcastController {
      * @param lastListenDuraction
      * @return
      */
+    @LoginRequired
     @PostMapping("/updateHistory")
     public Result updateHistory(
             @RequestParam Integer userId,
             @RequestParam Integer broadcastId,
             @RequestParam Integer lastListenDuraction){
-        if(userId==-1){return Result.ok();}
         return broadcastService.updateHistory(userId,broadcastId,lastListenDuraction);
     }
 
@@ -379,60 +308,30 @@ public class BroadcastController {
      * 用户删除自己创建的节目接口
      * @param userId
      * @param broadcastId
-     * @param req
-     * @param resp
      * @return
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @DeleteMapping("/deleteBroadcast")
     public Result deleteBroadcast(
             @RequestParam  Integer userId,
-            @RequestParam  Integer broadcastId,
-            HttpServletRequest req,
-            HttpServletResponse resp)throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam  Integer broadcastId) {
         // 用户删除节目
-        Result r= broadcastService.deleteBroadcast(userId,broadcastId);
-        r.getData().put("token",newToken);
-        return r;
+        return broadcastService.deleteBroadcast(userId,broadcastId);
     }
 
     /**
      * 删除节目收听历史记录接口
      * @param userId
      * @param broadcastId
-     * @param req
-     * @param resp
      * @return
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @DeleteMapping("/deleteHistory")
     public Result deleteHistory(
             @RequestParam  Integer userId,
-            @RequestParam  Integer broadcastId,
-            HttpServletRequest req,
-            HttpServletResponse resp)throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam  Integer broadcastId) {
         // 用户删除节目收听历史记录
-        Result r= broadcastService.deleteBroadcastHistory(userId,broadcastId);
-        r.getData().put("token",newToken);
-        return r;
+        return broadcastService.deleteBroadcastHistory(userId,broadcastId);
     }
 
 
@@ -1,21 +1,14 @@
 package com.pxx.ifmserver.controller;
 
 
+import com.pxx.ifmserver.auth.LoginRequired;
 import com.pxx.ifmserver.result.Result;
 import com.pxx.ifmserver.service.ChannelService;
-import com.pxx.ifmserver.utils.TokenUtil;
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
-import java.text.ParseException;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/channel")
@@ -37,11 +30,13 @@ public class ChannelController {
     /**
      * 根据用户ID获取用户创建的频道接口
      * @param userId 用户id
+     * @param cursor 分页游标(上一页返回的nextCursor),为空表示第一页
+     * @param size 每页条数(默认20,最多50)
      * @return 对应的频道数据列表
      */
     @GetMapping("/getChannelByUserId")
-    public Result getChannelByUserId(@RequestParam Integer userId) {
-        return channelService.listChannelByUserId(userId);
+    public Result getChannelByUserId(@RequestParam Integer userId, @RequestParam(required = false) String cursor, @RequestParam(required = false) Integer size) {
+        return channelService.listChannelByUserId(userId, cursor, size);
     }
 
     /**
@@ -55,6 +50,17 @@ public class ChannelController {
         return channelService.checkChannelSubscriptionById(userId, channelId);
     }
 
+    /**
+     * 批量检查频道是否被用户订阅接口
+     * @param userId
+     * @param channelIdList
+     * @return subscribeMap (频道id -> 是否订阅)
+     */
+    @GetMapping("/checkChannelList")
+    public Result checkChannelList(@RequestParam Integer userId, @RequestParam List<Integer> channelIdList) {
+        return channelService.checkChannelSubscriptionList(userId, channelIdList);
+    }
+
     /**
      * 关键词搜索频道接口
      * @param keyword
@@ -77,29 +83,18 @@ public class ChannelController {
     /**
      * 获取用户订阅的频道数据列表接口
      * @param userId
-     * @param req
-     * @param resp
+     * @param cursor 分页游标(上一页返回的nextCursor),为空表示第一页
+     * @param size 每页条数(默认20,最多50)
      * @return
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @GetMapping("/getSubscribedChannel")
     public Result getSubscribedChannel(
             @RequestParam Integer userId,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
         // 获取用户订阅的频道列表
-        Result r= channelService.listSubscribedChannel(userId);
-        r.getData().put("token",newToken);
-        return r;
+        return channelService.listSubscribedChannel(userId, cursor, size);
     }
 
     /**
@@ -127,30 +122,15 @@ public class ChannelController {
      * 订阅频道/取消订阅接口
      * @param userId
      * @param channelId
-     * @param req
-     * @param resp
      * @return
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @PostMapping("/changeSubscribe")
     public Result changeSubscribe(
             @RequestParam Integer userId,
-            @RequestParam Integer channelId,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam Integer channelId) {
         // 订阅频道/取消订阅(根据用户是否已订阅)
-        Result r= channelService.changeSubscribe(userId,channelId);
-        r.getData().put("token",newToken);
-        return r;
+        return channelService.changeSubscribe(userId,channelId);
     }
 
     /**
@@ -162,26 +142,16 @@ public class ChannelController {
      * @param hashtagIdList 频道主题标签ID列表
      * @return 新生成的频道ID/错误信息
      */
+    @LoginRequired
     @PostMapping("/createChannel") // 使用PostMapping注解表示这是一个处理POST请求的方法
     public Result createChannel(
             @RequestParam("userId") Integer userId,
             @RequestParam("channelTitle") String channelTitle,
             @RequestParam("channelDetail") String channelDetail,
             @RequestParam("channelPicture") MultipartFile channelPicture,
-            @RequestParam("hashtagIdList") List<Integer> hashtagIdList,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-        Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam("hashtagIdList") List<Integer> hashtagIdList) {
         // 创建频道
-        Result r= channelService.createChannel(userId, channelTitle, channelDetail, channelPicture, hashtagIdList);
-        r.getData().put("token",newToken);
-        return r;
+        return channelService.createChannel(userId, channelTitle, channelDetail, channelPicture, hashtagIdList);
     }
 
     /**
@@ -189,31 +159,16 @@ public class ChannelController {
      * @param userId 用户Id
      * @param channelId 频道Id
      * @param channelPicture 频道新封面图片
-     * @param req
-     * @param resp
      * @return
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @PostMapping("/updateChannelPicture")
     Result updateChannelPicture(
             @RequestParam("userId") Integer userId,
             @RequestParam("channelId") Integer channelId,
-            @RequestParam("channelPicture") MultipartFile channelPicture,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam("channelPicture") MultipartFile channelPicture) {
         // 更换频道图片
-        Result r= channelService.updateChannelPicture(userId,channelId, channelPicture);
-        r.getData().put("token",newToken);
-        return r;
+        return channelService.updateChannelPicture(userId,channelId, channelPicture);
     }
 
     /**
@@ -221,31 +176,16 @@ public class ChannelController {
      * @param userId 用户Id
      * @param channelId 频道Id
      * @param channelDetail 频道详情内容
-     * @param req
-     * @param resp
      * @return
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @PostMapping("/updateChannelDetail")
     Result updateChannelDetail(
             @RequestParam("userId") Integer userId,
             @RequestParam("channelId") Integer channelId,
-            @RequestParam("channelDetail") String channelDetail,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam("channelDetail") String channelDetail) {
         // 更换频道图片
-        Result r= channelService.updateChannelDetail(userId,channelId, channelDetail);
-        r.getData().put("token",newToken);
-        return r;
+        return channelService.updateChannelDetail(userId,channelId, channelDetail);
     }
 
     /**
@@ -253,60 +193,30 @@ public class ChannelController {
      * @param userId 用户Id
      * @param channelId 频道Id
      * @param channelTitle 频道标题
-     * @param req
-     * @param resp
      * @return
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @PostMapping("/updateChannelTitle")
     Result updateChannelTitle(
             @RequestParam("userId") Integer userId,
             @RequestParam("channelId") Integer channelId,
-            @RequestParam("channelTitle") String channelTitle,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam("channelTitle") String channelTitle) {
         // 更换频道图片
-        Result r= channelService.updateChannelTitle(userId,channelId, channelTitle);
-        r.getData().put("token",newToken);
-        return r;
+        return channelService.updateChannelTitle(userId,channelId, channelTitle);
     }
 
     /**
      * 根据频道ID 删除频道接口
      * @param userId 用户Id
      * @param channelId 频道Id
-     * @param req
-     * @param resp
      * @return
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @DeleteMapping("/deleteChannel")
     Result deleteChannel(
             @RequestParam Integer userId,
-            @RequestParam Integer channelId,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp, userId);
-        if (newToken == null) {
-            Map<String, Object> data = new HashMap<>();
-            data.put("error", "Token安全令牌失效,请重新登录");
-            return new Result(false, 20005, "处理失败", data);
-        }
+            @RequestParam Integer channelId) {
         // 删除频道
-        Result r = channelService.deleteChannel(userId, channelId);
-        r.getData().put("token", newToken);
-        return r;
+        return channelService.deleteChannel(userId, channelId);
     }
 }
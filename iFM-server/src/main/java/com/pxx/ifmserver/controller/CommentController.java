@@ -1,21 +1,15 @@
 package com.pxx.ifmserver.controller;
 
 import com.pxx.ifmserver.entity.dto.CommentDTO;
+import com.pxx.ifmserver.auth.AuthFilter;
+import com.pxx.ifmserver.auth.LoginRequired;
 import com.pxx.ifmserver.result.Result;
 import com.pxx.ifmserver.service.CommentService;
 import com.pxx.ifmserver.utils.TokenUtil;
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
-import java.text.ParseException;
-import java.util.HashMap;
-import java.util.Map;
-
 @RestController
 @RequestMapping("/comment")
 public class CommentController {
@@ -25,22 +19,27 @@ public class CommentController {
     /**
      * 根据帖子id获取评论
      * @param postId
+     * @param cursor 分页游标(上一页返回的nextCursor),为空表示第一页
+     * @param size 每页条数(默认20,最多50)
      * @return commentList
      */
     @GetMapping("/getCommentByPostId")
-    public Result getCommentByPostId(@RequestParam Integer postId) {
-        return commentService.listCommentByPostId(postId);
+    public Result getCommentByPostId(@RequestParam Integer postId, @RequestParam(required = false) String cursor, @RequestParam(required = false) Integer size) {
+        return commentService.listCommentByPostId(postId, cursor, size);
     }
 
     /**
      * 点赞/取消点赞评论,更改评论点赞量
+     * 同一用户重复点赞/重复取消不会改变点赞量
+     * @param claims 当前登录用户(取自Token)
      * @param commentId
-     * @param value
-     * @return
+     * @param value 点赞(+1) 取消点赞(-1),不传时切换
+     * @return like 点赞后的状态
      */
+    @LoginRequired
     @PostMapping("/changeLike")
-    public Result changeLike(@RequestParam Integer commentId, @RequestParam int value) {
-        return commentService.changeLike(commentId, value);
+    public Result changeLike(@RequestAttribute(AuthFilter.PRINCIPAL) TokenUtil.Claims claims, @RequestParam Integer commentId, @RequestParam(required = false) Integer value) {
+        return commentService.changeLike(claims.getUserId(), commentId, value);
     }
 
     /**
@@ -48,34 +47,19 @@ public class CommentController {
      * @param userId 评论的用户id
      * @param postId 被评论的帖子id
      * @param commentDetail 评论文本内容
-     * @param req
-     * @param resp
      * @return commentId
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @PostMapping("/addComment")
     public Result addComment(
             @RequestParam Integer userId,
             @RequestParam Integer postId,
-            @RequestParam String commentDetail,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam String commentDetail) {
         CommentDTO comment = new CommentDTO();
         comment.setUserId(userId);
         comment.setPostId(postId);
         comment.setCommentDetail(commentDetail);
-        Result r = commentService.addComment(comment);
-        r.getData().put("token",newToken);
-        return r;
+        return commentService.addComment(comment);
     }
 
     /**
@@ -85,6 +69,7 @@ public class CommentController {
      * @param commentImage 图片文件
      * @return
      */
+    @LoginRequired
     @PostMapping("/addImageForComment")
     public Result addImageForComment(
             @RequestParam Integer userId,
@@ -1,6 +1,9 @@
 package com.pxx.ifmserver.controller;
 
+import com.pxx.ifmserver.mail.MailDispatcher;
 import com.pxx.ifmserver.utils.EmailUtil;
+import com.pxx.ifmserver.utils.VCodeUtill;
+import com.pxx.ifmserver.verification.VerificationCodeStore;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,8 +15,6 @@ import org.springframework.web.bind.annotation.*;
 
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
@@ -21,9 +22,11 @@ import java.util.regex.Pattern;
 @RequestMapping("/email")
 public class EmailController {
 
-    private EmailUtil emailUtil = EmailUtil.instance;
-    //private String vCode;  // 后台产生的验证码
-    private Map<String, String> vCode=new ConcurrentHashMap<>();
+    @Autowired
+    private MailDispatcher mailDispatcher;
+    //后台产生的验证码
+    @Autowired
+    private VerificationCodeStore verificationCodeStore;
 
 
 
@@ -37,21 +40,12 @@ public class EmailController {
         if (!isEmail(email)) {  // 邮箱不正确
             return ResponseEntity.badRequest().body("-1");
         }
-        try {
-            emailUtil.sendEmail(email);//生成验证码并发送验证码
-        } catch (Exception e) {
-            e.printStackTrace();
+        String code = VCodeUtill.verifyCode(6);//生成验证码
+        verificationCodeStore.save(email, code);//先保存邮箱和对应的新验证码(覆盖旧验证码),邮件可能很快送达
+        if (!mailDispatcher.submit(EmailUtil.createVerificationMail(email, code))) {//放入邮件队列,立即返回
+            verificationCodeStore.discard(email, code);//邮件没有发出,验证码作废
             return ResponseEntity.internalServerError().body("-1");
         }
-        String vCode_ = emailUtil.getVCode();//获取验证码
-
-        if(vCode.containsKey(email)){
-            vCode.remove(email);//删除该邮箱的旧验证码(如果存在的话)
-        }
-
-        vCode.put(email, vCode_);//保存邮箱和对应的新验证码
-
-        System.out.println("验证码为：" + vCode_);
         return ResponseEntity.ok("1");
     }
 
@@ -60,9 +54,8 @@ public class EmailController {
      */
     @GetMapping("/verify")
     public ResponseEntity<String> verify(@RequestParam String email,@RequestParam String vCodeReceive) {
-        if ((vCode.containsKey(email) && vCode.get(email).equals(vCodeReceive))) {
-            // 验证成功后，删除验证码和定时任务
-            vCode.remove(email);
+        if (verificationCodeStore.verify(email, vCodeReceive)) {
+            // 验证成功后验证码失效
             return ResponseEntity.ok("1");
         } else {
             return ResponseEntity.badRequest().body("-1");
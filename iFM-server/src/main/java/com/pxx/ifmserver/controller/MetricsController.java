@@ -0,0 +1,82 @@
+package com.pxx.ifmserver.controller;
+
+import com.pxx.ifmserver.cache.UserIdentityFilter;
+import com.pxx.ifmserver.cache.UserSummaryCache;
+import com.pxx.ifmserver.mail.MailDispatcher;
+import com.pxx.ifmserver.metrics.PrometheusWriter;
+import com.pxx.ifmserver.metrics.RequestMetrics;
+import com.pxx.ifmserver.metrics.SqlMetrics;
+import com.pxx.ifmserver.result.Result;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@ConditionalOnProperty(name = "ifm.metrics.enabled", havingValue = "true")
+@RequestMapping("/metrics")
+public class MetricsController {
+    @Autowired
+    private UserSummaryCache userSummaryCache;
+    @Autowired
+    private UserIdentityFilter userIdentityFilter;
+    @Autowired
+    private MailDispatcher mailDispatcher;
+    @Autowired
+    private SqlMetrics sqlMetrics;
+    @Autowired
+    private RequestMetrics requestMetrics;
+
+    /**
+     * 获取内存缓存的统计数据
+     * @return userSummaryCache(条目数、占用内存、每条平均字节数、命中率、命中平均耗时),
+     *         userIdentityFilter(昵称/邮箱数、占用内存、估算与实际误判率、省掉的数据库查询数)
+     */
+    @GetMapping("/getCacheStats")
+    public Result getCacheStats() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("userSummaryCache", userSummaryCache.stats());
+        data.put("userIdentityFilter", userIdentityFilter.stats());
+        return Result.ok().data(data);
+    }
+
+    /**
+     * 获取邮件发送队列的统计数据
+     * @return mailDispatcher(是否启用、队列长度、已发送/失败/放弃/拒收的邮件数、建立的连接数、熔断器状态)
+     */
+    @GetMapping("/getMailStats")
+    public Result getMailStats() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("mailDispatcher", mailDispatcher.stats());
+        return Result.ok().data(data);
+    }
+
+    /**
+     * 获取各接口的请求统计
+     * @return requestStats(每个接口的正在处理的请求数、累计请求数、各状态码次数,
+     *         最近1/5/15分钟的请求数、每秒请求数、p50/p95/p99/最大耗时(毫秒)),按最近1分钟的请求数降序
+     */
+    @GetMapping("/getRequestStats")
+    public Result getRequestStats() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("requestStats", requestMetrics.summary());
+        return Result.ok().data(data);
+    }
+
+    /**
+     * 以Prometheus文本格式导出各接口的耗时、请求数、正在处理的请求数、响应字节数,
+     * SQL语句的耗时、行数、出错次数,每次请求的语句数和疑似N+1查询
+     * @return Prometheus文本
+     */
+    @GetMapping(value = {"", "/prometheus"}, produces = PrometheusWriter.CONTENT_TYPE)
+    public String prometheus() {
+        PrometheusWriter writer = new PrometheusWriter();
+        requestMetrics.writePrometheus(writer);
+        sqlMetrics.writePrometheus(writer);
+        return writer.toString();
+    }
+}
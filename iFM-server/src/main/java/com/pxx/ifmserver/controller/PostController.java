@@ -2,21 +2,16 @@ package com.pxx.ifmserver.controller;
 
 import com.pxx.ifmserver.entity.dto.Hashtag;
 import com.pxx.ifmserver.entity.dto.Post;
+import com.pxx.ifmserver.auth.AuthFilter;
+import com.pxx.ifmserver.auth.LoginRequired;
 import com.pxx.ifmserver.result.Result;
 import com.pxx.ifmserver.service.PostService;
 import com.pxx.ifmserver.utils.TokenUtil;
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
-import java.text.ParseException;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/post")
@@ -38,32 +33,38 @@ public class PostController {
     /**
      * 根据用户id获取用户创建的帖子
      * @param userId 用户ID
+     * @param cursor 分页游标(上一页返回的nextCursor),为空表示第一页
+     * @param size 每页条数(默认20,最多50)
      * @return postList
      */
     @GetMapping("/getPostByUserId")
-    public Result getPostByUserId( @RequestParam Integer userId) {
-        return postService.listPostByUserId(userId);
+    public Result getPostByUserId( @RequestParam Integer userId, @RequestParam(required = false) String cursor, @RequestParam(required = false) Integer size) {
+        return postService.listPostByUserId(userId, cursor, size);
     }
 
     /**
      * 根据频道或节目ID获取对应关联的帖子
      * @param postAssociation 0为频道(默认) 1为节目
      * @param associationId 频道或节目ID
+     * @param cursor 分页游标(上一页返回的nextCursor),为空表示第一页
+     * @param size 每页条数(默认20,最多50)
      * @return postList
      */
     @GetMapping("/getPostByAssociationId")
-    public Result getPostByAssociationId( @RequestParam Integer postAssociation, @RequestParam Integer associationId) {
-        return postService.listPostByAssociationId(postAssociation,associationId);
+    public Result getPostByAssociationId( @RequestParam Integer postAssociation, @RequestParam Integer associationId, @RequestParam(required = false) String cursor, @RequestParam(required = false) Integer size) {
+        return postService.listPostByAssociationId(postAssociation,associationId, cursor, size);
     }
 
     /**
      * 根据板块id获取对应帖子
      * @param sectionId 社区板块id(0:话题讨论 1:分享推荐  2:求助问答)
+     * @param cursor 分页游标(上一页返回的nextCursor),为空表示第一页
+     * @param size 每页条数(默认20,最多50)
      * @return postList
      */
     @GetMapping("/getPostBySectionId")
-    public Result getPostBySectionId( @RequestParam Integer sectionId) {
-        return postService.listPostBySectionId(sectionId);
+    public Result getPostBySectionId( @RequestParam Integer sectionId, @RequestParam(required = false) String cursor, @RequestParam(required = false) Integer size) {
+        return postService.listPostBySectionId(sectionId, cursor, size);
     }
 
     /**
@@ -78,11 +79,13 @@ public class PostController {
     /**
      * 获取用户收藏的帖子
      * @param userId
+     * @param cursor 分页游标(上一页返回的nextCursor),为空表示第一页
+     * @param size 每页条数(默认20,最多50)
      * @return postList
      */
     @GetMapping("/getFavoritePost")
-    public Result getFavoritePost(@RequestParam Integer userId) {
-        return postService.listFavoritePost(userId);
+    public Result getFavoritePost(@RequestParam Integer userId, @RequestParam(required = false) String cursor, @RequestParam(required = false) Integer size) {
+        return postService.listFavoritePost(userId, cursor, size);
     }
 
     /**
@@ -96,6 +99,17 @@ public class PostController {
         return postService.checkCollection(userId,postId);
     }
 
+    /**
+     * 批量检查帖子是否被用户收藏
+     * @param userId 用户id
+     * @param postIdList 帖子id列表
+     * @return favoriteMap (帖子id -> 是否收藏)
+     */
+    @GetMapping("/checkCollectionList")
+    public Result checkCollectionList(@RequestParam Integer userId, @RequestParam List<Integer> postIdList) {
+        return postService.checkCollectionList(userId,postIdList);
+    }
+
     /**
      * 根据关键词搜索帖子
      * @param keyword 关键词
@@ -112,6 +126,7 @@ public class PostController {
      * @param postId 帖子ID
      * @return
      */
+    @LoginRequired
     @PostMapping("/changeCollection")
     public Result changeCollection( @RequestParam Integer userId, @RequestParam Integer postId) {
             return postService.changeCollection(userId,postId);
@@ -126,28 +141,15 @@ public class PostController {
      * @param postAssociation 帖子关联 0为频道 1为节目
      * @param associationId 关联的id,必须是存在的频道的id或节目id
      * @param postHashtagList 帖子主题标签
-     * @param req
-     * @param resp
      * @return
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @PostMapping("/createPost")
     public Result createPost(
             @RequestParam  Integer userId, @RequestParam String postTitle,
             @RequestParam String postDetail, @RequestParam Integer postSection,
             @RequestParam Integer postAssociation,@RequestParam Integer associationId,
-            @RequestParam List<Integer> postHashtagList,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam List<Integer> postHashtagList) {
         if(associationId==-1){associationId=null;}
         Post post=new Post();
         post.setUserId(userId);
@@ -157,34 +159,38 @@ public class PostController {
         post.setPostAssociation(postAssociation);
         post.setAssociationId(associationId);
         // 节目创建
-        Result r=postService.createPost(post,postHashtagList);
-        r.getData().put("token",newToken);
-        return r;
+        return postService.createPost(post,postHashtagList);
     }
 
     /**
      * 为帖子添加图片数据, 该接口配合 创建帖子接口createPost 使用, 以实现帖子的完整创建
+     * @param claims 当前登录用户(取自Token),必须是帖子的发布者
      * @param postId 帖子id
      * @param postImage 图片文件
      * @return
      */
+    @LoginRequired
     @PostMapping("/addImageForPost")
     public Result addImageForPost(
+            @RequestAttribute(AuthFilter.PRINCIPAL) TokenUtil.Claims claims,
             @RequestParam Integer postId,
             @RequestParam MultipartFile postImage){
-        return postService.addImageForPost(postId,postImage);
+        return postService.addImageForPost(claims.getUserId(),postId,postImage);
     }
 
     /**
      * 点赞/取消点赞帖子,更改帖子点赞量
+     * 同一用户重复点赞/重复取消不会改变点赞量
+     * @param claims 当前登录用户(取自Token)
      * @param postId 帖子ID
-     * @param value 点赞(+1) 取消点赞(-1)
+     * @param value 点赞(+1) 取消点赞(-1),不传时切换
      *
-     * @return
+     * @return like 点赞后的状态
      */
+    @LoginRequired
     @PostMapping("/changeLike")
-    public Result changeLike(@RequestParam Integer postId,@RequestParam Integer value){
-        return postService.changeLike(postId,value);
+    public Result changeLike(@RequestAttribute(AuthFilter.PRINCIPAL) TokenUtil.Claims claims, @RequestParam Integer postId, @RequestParam(required = false) Integer value){
+        return postService.changeLike(claims.getUserId(),postId,value);
     }
 
     /**
@@ -202,22 +208,12 @@ public class PostController {
      * @param postId 帖子id
      * @return
      */
+    @LoginRequired
     @DeleteMapping("/deletePost")
     public Result deletePost(
      @RequestParam Integer userId,
-     @RequestParam Integer postId,
-     HttpServletRequest req,
-     HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException{
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+     @RequestParam Integer postId) {
         //删除节目
-        Result r=postService.deletePostById(userId,postId);
-        r.getData().put("token",newToken);
-        return r;
+        return postService.deletePostById(userId,postId);
     }
 }
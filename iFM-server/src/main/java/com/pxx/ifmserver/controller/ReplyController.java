@@ -1,20 +1,15 @@
 package com.pxx.ifmserver.controller;
 
 import com.pxx.ifmserver.entity.dto.Reply;
+import com.pxx.ifmserver.auth.AuthFilter;
+import com.pxx.ifmserver.auth.LoginRequired;
 import com.pxx.ifmserver.result.Result;
 import com.pxx.ifmserver.service.ReplyService;
 import com.pxx.ifmserver.utils.TokenUtil;
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
-import java.text.ParseException;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/reply")
@@ -25,11 +20,13 @@ public class ReplyController {
     /**
      * 根据评论id获取评论下的所有回复
      * @param commentId 评论id
+     * @param cursor 分页游标(上一页返回的nextCursor),为空表示第一页
+     * @param size 每页条数(默认20,最多50)
      * @return replyList
      */
     @GetMapping("/getReplyByCommentId")
-    public Result getReplyByCommentId(@RequestParam Integer commentId) {
-        return replyService.listReplyByCommentId(commentId);
+    public Result getReplyByCommentId(@RequestParam Integer commentId, @RequestParam(required = false) String cursor, @RequestParam(required = false) Integer size) {
+        return replyService.listReplyByCommentId(commentId, cursor, size);
     }
 
     /**
@@ -37,45 +34,33 @@ public class ReplyController {
      * @param userId 用户id
      * @param commentId 回复的评论id
      * @param replyDetail 回复内容
-     * @param req
-     * @param resp
      * @return
-     * @throws IOException
-     * @throws ParseException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @PostMapping("/addReply")
     public Result addReply(
             @RequestParam Integer userId,
             @RequestParam Integer commentId,
-            @RequestParam String replyDetail,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws IOException, ParseException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
+            @RequestParam String replyDetail) {
         Reply reply = new Reply();
         reply.setUserId(userId);
         reply.setCommentId(commentId);
         reply.setReplyDetail(replyDetail);
-        Result r = replyService.addReply(reply);
-        r.getData().put("token",newToken);
-        return r;
+        return replyService.addReply(reply);
     }
 
     /**
      * 点赞/取消点赞回复,更改回复点赞量
+     * 同一用户重复点赞/重复取消不会改变点赞量
+     * @param claims 当前登录用户(取自Token)
      * @param replyId 回复id
-     * @param value  点赞(+1) 取消点赞(-1)
-     * @return
+     * @param value  点赞(+1) 取消点赞(-1),不传时切换
+     * @return like 点赞后的状态
      */
+    @LoginRequired
     @PostMapping("/changeLike")
-    public Result changeLike(@RequestParam Integer replyId, @RequestParam int value) {
-        return replyService.changeLike(replyId, value);
+    public Result changeLike(@RequestAttribute(AuthFilter.PRINCIPAL) TokenUtil.Claims claims, @RequestParam Integer replyId, @RequestParam(required = false) Integer value) {
+        return replyService.changeLike(claims.getUserId(), replyId, value);
     }
 
 }
@@ -0,0 +1,59 @@
+package com.pxx.ifmserver.controller;
+
+import com.pxx.ifmserver.auth.LoginRequired;
+import com.pxx.ifmserver.result.Result;
+import com.pxx.ifmserver.service.SearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/search")
+public class SearchController {
+    @Autowired
+    private SearchService searchService;
+
+    /**
+     * 综合搜索:一次请求同时返回节目、频道、帖子和用户的搜索结果
+     * 传入userId时校验Token并保存搜索记录(代替单独调用/searchHistory/saveSearchHistory)
+     * @param keyword 搜索内容
+     * @param userId 用户id(可选)
+     * @return broadcastList, channelList, postList, userList, failedSections(超时或失败的类型)
+     */
+    @LoginRequired(optional = true)
+    @GetMapping
+    public Result search(
+            @RequestParam String keyword, @RequestParam(required = false) Integer userId) {
+        return searchService.search(userId, keyword);
+    }
+
+    /**
+     * 搜索补全:返回以输入内容开头(或拼音首字母匹配)的热门标题、主题标签和搜索词
+     * @param prefix 用户已输入的内容
+     * @param limit 最多返回的条数(默认10)
+     * @return suggestionList
+     */
+    @GetMapping("/suggest")
+    public Result suggest(@RequestParam String prefix, @RequestParam(required = false) Integer limit) {
+        return searchService.suggest(prefix, limit);
+    }
+
+    /**
+     * 热搜词:最近24小时内搜索次数最多的关键词
+     * @param limit 最多返回的条数(默认10)
+     * @return keywordList(name, count)
+     */
+    @GetMapping("/getHotKeyword")
+    public Result getHotKeyword(@RequestParam(required = false) Integer limit) {
+        return searchService.listHotKeyword(limit);
+    }
+
+    /**
+     * 热门主题标签:最近24小时内发帖和创建频道时使用次数最多的主题标签
+     * @param limit 最多返回的条数(默认10)
+     * @return hashtagList(name, count)
+     */
+    @GetMapping("/getHotHashtag")
+    public Result getHotHashtag(@RequestParam(required = false) Integer limit) {
+        return searchService.listHotHashtag(limit);
+    }
+}
@@ -1,32 +1,18 @@
 package com.pxx.ifmserver.controller;
 
 import com.pxx.ifmserver.entity.dto.User;
+import com.pxx.ifmserver.auth.LoginRequired;
 import com.pxx.ifmserver.result.Result;
 import com.pxx.ifmserver.service.UserService;
-import com.pxx.ifmserver.utils.EmailUtil;
-import com.pxx.ifmserver.utils.TokenUtil;
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.security.NoSuchAlgorithmException;
-import java.text.ParseException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 @RestController
 @RequestMapping("/user")
 public class UserController {
 
-    private EmailUtil emailUtil = EmailUtil.instance;
-    //private String vCode;  // 后台产生的验证码
-    private Map<String, String> vCode=new ConcurrentHashMap<>();
 
     @Autowired//注解用于自动装配UserService的实例，以便在控制器中使用它们的方法
     private UserService userService;
@@ -62,7 +48,7 @@ public class UserController {
     @GetMapping("/userLoginPassword")
     public Result loginPassword(
             @RequestParam Integer userId,
-            @RequestParam String  userPassword) throws UnsupportedEncodingException, NoSuchAlgorithmException {
+            @RequestParam String  userPassword) {
         return userService.loginPassword(userId,userPassword);
     }
 
@@ -74,7 +60,7 @@ public class UserController {
      */
     @GetMapping("/userLoginEmail")
     public Result loginEmail(@RequestParam String userEmail,
-                        @RequestParam String code ) throws UnsupportedEncodingException, NoSuchAlgorithmException {
+                        @RequestParam String code ) {
         return userService.loginEamil(userEmail,code);
     }
 
@@ -106,16 +92,13 @@ public class UserController {
      * @param userEmail
      * @param code
      * @return
-     * @throws UnsupportedEncodingException
-     * @throws NoSuchAlgorithmException
      */
     @PostMapping("/userRegister")
     public Result userRegister(
             @RequestParam String userName,
             @RequestParam String userPassword,
             @RequestParam String userEmail,
-            @RequestParam String code)
-            throws UnsupportedEncodingException, NoSuchAlgorithmException {
+            @RequestParam String code) {
         User user = new User();
         user.setUserName(userName);
         user.setUserPassword(userPassword);
@@ -129,23 +112,13 @@ public class UserController {
      * @param userId  用户ID
      * @return
      */
+    @LoginRequired
     @PostMapping("/updateUserPicture")
     public Result uploadUserPicture(
             @RequestParam("file") MultipartFile file,
-            @RequestParam("userId") Integer  userId,
-            HttpServletRequest req,
-            HttpServletResponse resp) throws ParseException, IOException, NoSuchAlgorithmException {
+            @RequestParam("userId") Integer  userId) {
 
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
-        Result r = userService.updateUserPicurlByUserId(userId,file);
-        r.getData().put("token",newToken);
-        return r;
+        return userService.updateUserPicurlByUserId(userId,file);
     }
 
     /**
@@ -154,23 +127,12 @@ public class UserController {
      * @param userId  用户ID
      * @return 成功则返回完整的用户信息,失败则返回错误信息
      */
+    @LoginRequired
     @PostMapping("/updateUserProfile")
     public Result updateUserProfile(
             @RequestParam("userProfile") String userProfile,
-            @RequestParam("userId") Integer  userId,
-            HttpServletRequest req,
-            HttpServletResponse resp)
-            throws ParseException, IOException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
-        Result r = userService.updateUserProfileByUserId(userId,userProfile);
-        r.getData().put("token",newToken);
-        return r;
+            @RequestParam("userId") Integer  userId) {
+        return userService.updateUserProfileByUserId(userId,userProfile);
     }
 
     /**
@@ -179,23 +141,12 @@ public class UserController {
      * @param userId  用户ID
      * @return 成功则返回用户昵称和新Token,失败则返回错误信息
      */
+    @LoginRequired
     @PostMapping("/updateUserName")
     public Result updateUserName(
             @RequestParam("userId") Integer  userId,
-            @RequestParam("userName") String userName,
-            HttpServletRequest req,
-            HttpServletResponse resp)
-            throws ParseException, IOException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
-        Result r = userService.updateUserNameByUserId(userId,userName);
-        r.getData().put("token",newToken);
-        return r;
+            @RequestParam("userName") String userName) {
+        return userService.updateUserNameByUserId(userId,userName);
     }
 
     /**
@@ -204,32 +155,16 @@ public class UserController {
      * @param userEmail
      * @param userPassword
      * @param code
-     * @param req
-     * @param resp
      * @return
-     * @throws ParseException
-     * @throws IOException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @PostMapping("/updateUserPassword")
     public Result updateUserPassword(
             @RequestParam Integer  userId,
             @RequestParam String userEmail,
             @RequestParam String userPassword,
-            @RequestParam String code,
-            HttpServletRequest req,
-            HttpServletResponse resp)
-            throws ParseException, IOException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
-        Result r = userService.updateUserPassword(userId,userEmail,userPassword,code);
-        r.getData().put("token",newToken);
-        return r;
+            @RequestParam String code) {
+        return userService.updateUserPassword(userId,userEmail,userPassword,code);
     }
 
     /**
@@ -239,33 +174,17 @@ public class UserController {
      * @param userNewEmail
      * @param code1
      * @param code2
-     * @param req
-     * @param resp
      * @return
-     * @throws ParseException
-     * @throws IOException
-     * @throws NoSuchAlgorithmException
      */
+    @LoginRequired
     @PostMapping("/updateUserEmail")
     public Result updateUserEmail(
             @RequestParam Integer  userId,
             @RequestParam String userEmail,
             @RequestParam String userNewEmail,
             @RequestParam String code1,
-            @RequestParam String code2,
-            HttpServletRequest req,
-            HttpServletResponse resp)
-            throws ParseException, IOException, NoSuchAlgorithmException {
-        // 检验Token
-        String newToken = TokenUtil.verifyToken(req, resp,userId);
-        if(newToken==null){
-            Map<String, Object> data = new HashMap<>();
-            data.put("error","Token安全令牌失效,请重新登录");
-            return new Result(false,20005,"处理失败",data);
-        }
-        Result r = userService.updateUserEmail(userId,userEmail,userNewEmail,code1,code2);
-        r.getData().put("token",newToken);
-        return r;
+            @RequestParam String code2) {
+        return userService.updateUserEmail(userId,userEmail,userNewEmail,code1,code2);
     }
 
 
@@ -0,0 +1,12 @@
+package com.pxx.ifmserver.entity.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class ChannelSubscription {
+    private Integer         channelId;
+    private Integer         userId;
+    private LocalDateTime   gmtCreate;
+}
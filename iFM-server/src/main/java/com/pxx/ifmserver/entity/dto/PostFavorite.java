@@ -0,0 +1,12 @@
+package com.pxx.ifmserver.entity.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class PostFavorite {
+    private Integer         postId;
+    private Integer         userId;
+    private LocalDateTime   gmtCreate;
+}
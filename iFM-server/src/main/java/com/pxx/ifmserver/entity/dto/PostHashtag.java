@@ -0,0 +1,10 @@
+package com.pxx.ifmserver.entity.dto;
+
+import lombok.Data;
+
+@Data
+public class PostHashtag {
+    private Integer postId;
+    private Integer hashtagId;
+    private String  hashtagName;
+}
@@ -0,0 +1,9 @@
+package com.pxx.ifmserver.entity.dto;
+
+import lombok.Data;
+
+@Data
+public class PostImage {
+    private Integer postId;
+    private String  image;
+}
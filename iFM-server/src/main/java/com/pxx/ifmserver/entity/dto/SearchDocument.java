@@ -0,0 +1,10 @@
+package com.pxx.ifmserver.entity.dto;
+
+import lombok.Data;
+
+@Data
+public class SearchDocument {
+    private Integer id;
+    private String  title;
+    private String  detail;
+}
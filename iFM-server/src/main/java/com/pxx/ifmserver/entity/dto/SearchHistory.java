@@ -2,6 +2,8 @@ package com.pxx.ifmserver.entity.dto;
 
 import lombok.Data;
 
+import java.time.LocalDateTime;
+
 @Data
 public class SearchHistory {
     //搜索记录id
@@ -10,4 +12,6 @@ public class SearchHistory {
     private String keyword;
     //用户id
     private Integer userId;
+    //上次搜索时间
+    private LocalDateTime gmtModified;
 }
@@ -0,0 +1,9 @@
+package com.pxx.ifmserver.entity.dto;
+
+import lombok.Data;
+
+@Data
+public class SuggestTerm {
+    private String text;
+    private Long weight;
+}
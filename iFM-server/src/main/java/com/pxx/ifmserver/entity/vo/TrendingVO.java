@@ -0,0 +1,11 @@
+package com.pxx.ifmserver.entity.vo;
+
+import lombok.Data;
+
+/*热搜词/热门主题标签视图层实体类*/
+@Data
+public class TrendingVO {
+    private String          name;
+    //统计窗口内的次数(估计值)
+    private long            count;
+}
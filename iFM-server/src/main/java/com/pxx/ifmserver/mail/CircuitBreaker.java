@@ -0,0 +1,68 @@
+package com.pxx.ifmserver.mail;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 熔断器
+ * 连续失败failureThreshold次后断开openMillis,期间不再连接邮件服务器;
+ * 到时后放行一次试探,成功则恢复,失败则再断开openMillis
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    //半开时其余调用方等待试探结果的轮询间隔
+    private static final long HALF_OPEN_POLL_MILLIS = 100;
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    public CircuitBreaker(int failureThreshold, long openMillis, LongSupplier clock) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @return 断开时返回还需等待的毫秒数,否则返回0(到时后转为半开,只放行调用方这一次)
+     */
+    public synchronized long waitMillis() {
+        if (state == State.CLOSED) {
+            return 0;
+        }
+        if (state == State.HALF_OPEN) {
+            //试探还没有结果,其余调用方继续等待
+            return Math.min(openMillis, HALF_OPEN_POLL_MILLIS);
+        }
+        long remaining = openedAt + openMillis - clock.getAsLong();
+        if (remaining <= 0) {
+            state = State.HALF_OPEN;
+            return 0;
+        }
+        return remaining;
+    }
+
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    public synchronized void recordFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
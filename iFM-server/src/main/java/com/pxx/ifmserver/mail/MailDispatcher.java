@@ -0,0 +1,359 @@
+package com.pxx.ifmserver.mail;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 异步发送邮件
+ * 请求线程只把邮件写入持久化队列(MailQueue)后立即返回,由ifm.mail.connections个后台线程发送;
+ * 每个线程持有一个登录好的SMTP连接,一次取出最多ifm.mail.batch-size封邮件在同一连接上连续发送,
+ * 空闲超过ifm.mail.idle-timeout后断开。发送失败按指数退避重试,最多ifm.mail.max-attempts次;
+ * 连续失败时熔断(CircuitBreaker),期间邮件留在队列中,不再反复连接邮件服务器。
+ * 没有配置ifm.mail.password(授权码)时不启动发送线程,所有邮件直接拒绝
+ */
+@Component
+public class MailDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(MailDispatcher.class);
+
+    @Value("${ifm.mail.host:smtp.qq.com}")
+    private String host;
+    @Value("${ifm.mail.port:465}")
+    private int port;
+    @Value("${ifm.mail.ssl:true}")
+    private boolean ssl;
+    @Value("${ifm.mail.username:}")
+    private String username;
+    @Value("${ifm.mail.password:}")
+    private String password;
+    @Value("${ifm.mail.from-name:iFM}")
+    private String fromName;
+    //连接、读写超时(毫秒)
+    @Value("${ifm.mail.timeout-millis:10000}")
+    private int timeoutMillis;
+    //SMTP连接数(发送线程数)
+    @Value("${ifm.mail.connections:2}")
+    private int connections;
+    @Value("${ifm.mail.batch-size:20}")
+    private int batchSize;
+    @Value("${ifm.mail.idle-timeout:30000}")
+    private long idleTimeout;
+    @Value("${ifm.mail.queue-capacity:10000}")
+    private int queueCapacity;
+    @Value("${ifm.mail.journal:data/mail-queue.journal}")
+    private String journal;
+    @Value("${ifm.mail.max-attempts:6}")
+    private int maxAttempts;
+    @Value("${ifm.mail.retry-base-millis:2000}")
+    private long retryBaseMillis;
+    @Value("${ifm.mail.retry-max-millis:300000}")
+    private long retryMaxMillis;
+    @Value("${ifm.mail.breaker-failures:5}")
+    private int breakerFailures;
+    @Value("${ifm.mail.breaker-open-millis:30000}")
+    private long breakerOpenMillis;
+
+    //当前时间(毫秒),测试时可替换
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private Session session;
+    private MailQueue queue;
+    private CircuitBreaker breaker;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+    //是否配置了授权码;为false时不发送邮件
+    private boolean enabled;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong connects = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        enabled = !password.isEmpty();
+        if (!enabled) {
+            log.warn("没有配置邮箱授权码(环境变量IFM_MAIL_PASSWORD),邮件发送已停用");
+            return;
+        }
+        Properties props = new Properties();
+        props.setProperty("mail.transport.protocol", "smtp");
+        props.setProperty("mail.smtp.host", host);
+        props.setProperty("mail.smtp.port", String.valueOf(port));
+        props.setProperty("mail.smtp.auth", String.valueOf(!username.isEmpty()));
+        props.setProperty("mail.smtp.ssl.enable", String.valueOf(ssl));
+        props.setProperty("mail.smtp.connectiontimeout", String.valueOf(timeoutMillis));
+        props.setProperty("mail.smtp.timeout", String.valueOf(timeoutMillis));
+        props.setProperty("mail.smtp.writetimeout", String.valueOf(timeoutMillis));
+        session = Session.getInstance(props);
+        try {
+            queue = new MailQueue(Paths.get(journal), queueCapacity, clock);
+        } catch (IOException e) {
+            throw new IllegalStateException("邮件队列日志无法打开: " + journal, e);
+        }
+        breaker = new CircuitBreaker(breakerFailures, breakerOpenMillis, clock);
+        running = true;
+        for (int i = 0; i < connections; i++) {
+            Thread worker = new Thread(this::work, "mail-dispatcher-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * 停止发送线程,队列中未发送的邮件留在日志中,下次启动后继续发送
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            worker.join(timeoutMillis);
+        }
+        workers.clear();
+        queue.close();
+    }
+
+    /**
+     * 邮件入队,立即返回
+     * @param message
+     * @return 队列已满或邮件发送已停用时返回false
+     */
+    public boolean submit(MailMessage message) {
+        if (!enabled) {
+            rejected.incrementAndGet();
+            log.warn("邮件发送已停用,丢弃发往{}的邮件", message.getTo());
+            return false;
+        }
+        if (!queue.offer(message)) {
+            rejected.incrementAndGet();
+            log.warn("邮件队列已满,丢弃发往{}的邮件", message.getTo());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return 是否启用、队列长度、已发送/失败/放弃/拒收的邮件数、建立的连接数、熔断器状态
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("rejected", rejected.get());
+        if (!enabled) {
+            return stats;
+        }
+        stats.put("queued", queue.size());
+        stats.put("sent", sent.get());
+        stats.put("failed", failed.get());
+        stats.put("dropped", dropped.get());
+        stats.put("connects", connects.get());
+        stats.put("breaker", breaker.getState().name());
+        return stats;
+    }
+
+    /**
+     * 发送线程:每个线程独占一个SMTP连接
+     */
+    private void work() {
+        Connection connection = new Connection();
+        try {
+            while (running) {
+                List<MailMessage> batch = queue.take(batchSize, Math.min(idleTimeout, 1000));
+                if (batch.isEmpty()) {
+                    connection.closeIfIdle();
+                    continue;
+                }
+                long wait = breaker.waitMillis();
+                if (wait > 0) {
+                    queue.release(batch);
+                    connection.close();
+                    Thread.sleep(Math.min(wait, 1000));
+                    continue;
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    if (!deliver(connection, batch.get(i))) {
+                        //连接出错,这一批剩下的邮件放回队列,等熔断器决定何时再试
+                        queue.release(batch.subList(i + 1, batch.size()));
+                        break;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * 发送一封邮件
+     * 每条路径都要向熔断器记录一次结果:半开时这封邮件就是唯一的试探,不记录的话熔断器会一直停在半开,
+     * 所有发送线程都在等待试探结果
+     * @return 发送失败需要重新连接时返回false
+     */
+    private boolean deliver(Connection connection, MailMessage message) {
+        try {
+            connection.send(message);
+            sent.incrementAndGet();
+            queue.complete(message);
+            breaker.recordSuccess();
+            return true;
+        } catch (AddressException e) {
+            //地址在连接服务器之前就解析失败,不是服务器的问题
+            dropped.incrementAndGet();
+            queue.complete(message);
+            breaker.recordSuccess();
+            log.warn("收件人地址错误{}: {}", message.getTo(), e.getMessage());
+            return true;
+        } catch (SendFailedException e) {
+            if (e.getInvalidAddresses() != null && e.getInvalidAddresses().length > 0) {
+                //收件人被拒收,重试也不会成功;服务器本身是正常的
+                dropped.incrementAndGet();
+                queue.complete(message);
+                breaker.recordSuccess();
+                log.warn("邮件被拒收,收件人{}: {}", message.getTo(), e.getMessage());
+                return true;
+            }
+            fail(connection, message, e);
+            return false;
+        } catch (MessagingException | UnsupportedEncodingException | RuntimeException e) {
+            //包括连接/登录失败(connect抛出的MessagingException)
+            fail(connection, message, e);
+            return false;
+        }
+    }
+
+    private void fail(Connection connection, MailMessage message, Exception e) {
+        connection.close();
+        failed.incrementAndGet();
+        breaker.recordFailure();
+        if (message.getAttempts() + 1 >= maxAttempts) {
+            dropped.incrementAndGet();
+            queue.complete(message);
+            log.warn("邮件发送失败{}次,放弃发往{}的邮件: {}", maxAttempts, message.getTo(), e.getMessage());
+            return;
+        }
+        queue.retry(message, backoff(message.getAttempts() + 1));
+        log.warn("邮件发送失败,稍后重试(第{}次),收件人{}: {}", message.getAttempts(), message.getTo(), e.getMessage());
+    }
+
+    /**
+     * 第attempts次失败后的等待时间:retryBaseMillis * 2^(attempts-1),不超过retryMaxMillis,
+     * 在[一半, 全部]之间随机,避免大量邮件同时重试
+     */
+    long backoff(int attempts) {
+        long delay = retryMaxMillis;
+        if (attempts - 1 < 31) {
+            delay = Math.min(retryMaxMillis, retryBaseMillis << (attempts - 1));
+        }
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * 一个发送线程独占的SMTP连接
+     */
+    private final class Connection {
+        private Transport transport;
+        private long lastUsed;
+
+        private void send(MailMessage message) throws MessagingException, UnsupportedEncodingException {
+            MimeMessage mime = createMessage(message);
+            boolean reused = transport != null;
+            if (reused && clock.getAsLong() - lastUsed > idleTimeout) {
+                close();
+                reused = false;
+            }
+            try {
+                connect();
+                transport.sendMessage(mime, mime.getAllRecipients());
+            } catch (SendFailedException e) {
+                throw e;
+            } catch (MessagingException e) {
+                if (!reused) {
+                    throw e;
+                }
+                //复用的连接可能已被服务器断开,重新连接再试一次
+                close();
+                connect();
+                transport.sendMessage(mime, mime.getAllRecipients());
+            }
+            lastUsed = clock.getAsLong();
+        }
+
+        private void connect() throws MessagingException {
+            if (transport != null) {
+                return;
+            }
+            Transport fresh = session.getTransport();
+            if (username.isEmpty()) {
+                fresh.connect();
+            } else {
+                fresh.connect(host, port, username, password);
+            }
+            connects.incrementAndGet();
+            transport = fresh;
+            lastUsed = clock.getAsLong();
+        }
+
+        private void closeIfIdle() {
+            if (transport != null && clock.getAsLong() - lastUsed > idleTimeout) {
+                close();
+            }
+        }
+
+        private void close() {
+            if (transport == null) {
+                return;
+            }
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                //连接已经不可用
+            }
+            transport = null;
+        }
+    }
+
+    private MimeMessage createMessage(MailMessage message) throws MessagingException, UnsupportedEncodingException {
+        MimeMessage mime = new MimeMessage(session);
+        mime.setFrom(new InternetAddress(username, fromName, "UTF-8"));
+        mime.setRecipient(MimeMessage.RecipientType.TO, new InternetAddress(message.getTo()));
+        mime.setSubject(message.getSubject(), "UTF-8");
+        mime.setContent(message.getContent(), "text/html;charset=UTF-8");
+        mime.setSentDate(new Date());
+        mime.saveChanges();
+        return mime;
+    }
+}
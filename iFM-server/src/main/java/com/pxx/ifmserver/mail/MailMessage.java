@@ -0,0 +1,52 @@
+package com.pxx.ifmserver.mail;
+
+/**
+ * 待发送的邮件(HTML正文)
+ */
+public final class MailMessage {
+
+    private final String to;
+    private final String subject;
+    private final String content;
+    //是否写入队列日志;验证码等敏感邮件只放在内存中,不落盘,重启后丢失(用户重新获取即可)
+    private final boolean durable;
+
+    //以下字段由MailQueue维护
+    //队列内的序号,也是日志中的记录id
+    long id;
+    //已失败的次数
+    int attempts;
+    //下次可以发送的时间(毫秒)
+    long nextAttemptAt;
+
+    public MailMessage(String to, String subject, String content) {
+        this(to, subject, content, true);
+    }
+
+    public MailMessage(String to, String subject, String content, boolean durable) {
+        this.to = to;
+        this.subject = subject;
+        this.content = content;
+        this.durable = durable;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public boolean isDurable() {
+        return durable;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+}
@@ -0,0 +1,325 @@
+package com.pxx.ifmserver.mail;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * 有界的持久化邮件队列
+ * 入队和发送完成都追加一条记录到日志文件,重启后重放日志恢复尚未发送完成的邮件(至少发送一次);
+ * 已完成的记录累计到一定数量后把仍在队列中的邮件重写成新日志,日志大小与队列长度成正比。
+ * 待发送的邮件按下次可发送时间排序,失败重试的邮件到时后才会被取出。
+ * 不持久化的邮件(MailMessage.isDurable()为false,如验证码邮件)只在内存中排队,不写日志,重启后丢失
+ */
+public class MailQueue implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(MailQueue.class);
+
+    private static final byte ENQUEUE = 1;
+    private static final byte COMPLETE = 2;
+    //已完成记录数超过该值(且超过队列长度)时重写日志
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    private final Path journal;
+    private final int capacity;
+    private final LongSupplier clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    //id -> 队列中的邮件(包括已取出正在发送的)
+    private final Map<Long, MailMessage> messages = new LinkedHashMap<>();
+    //等待发送的邮件,按下次可发送时间、id排序
+    private final PriorityQueue<MailMessage> waiting = new PriorityQueue<>(
+            Comparator.comparingLong((MailMessage m) -> m.nextAttemptAt).thenComparingLong(m -> m.id));
+    private DataOutputStream out;
+    private long nextId = 1;
+    private int completedSinceCompact;
+
+    /**
+     * 打开日志文件并恢复尚未发送完成的邮件
+     * @param journal 日志文件路径
+     * @param capacity 队列中最多的邮件数
+     * @param clock 当前时间(毫秒)
+     * @throws IOException
+     */
+    public MailQueue(Path journal, int capacity, LongSupplier clock) throws IOException {
+        this.journal = journal;
+        this.capacity = capacity;
+        this.clock = clock;
+        if (journal.getParent() != null) {
+            Files.createDirectories(journal.getParent());
+        }
+        replay();
+        compact();
+        if (!messages.isEmpty()) {
+            log.info("邮件队列恢复{}封未发送的邮件", messages.size());
+        }
+    }
+
+    /**
+     * 邮件入队(需要持久化的邮件写入日志后)立即返回
+     * @param message
+     * @return 队列已满或写日志失败时返回false
+     */
+    public boolean offer(MailMessage message) {
+        lock.lock();
+        try {
+            if (messages.size() >= capacity || (message.isDurable() && out == null)) {
+                return false;
+            }
+            message.id = nextId++;
+            message.nextAttemptAt = clock.getAsLong();
+            if (message.isDurable()) {
+                try {
+                    writeEnqueue(out, message);
+                    out.flush();
+                } catch (IOException e) {
+                    log.warn("邮件队列写日志失败: {}", e.getMessage());
+                    return false;
+                }
+            }
+            messages.put(message.id, message);
+            waiting.add(message);
+            ready.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 取出最多max封已到发送时间的邮件,没有时最多等待timeoutMillis
+     * 取出的邮件发送完成后调用complete,失败时调用retry或release放回队列
+     * @param max
+     * @param timeoutMillis
+     * @return 超时时返回空列表
+     * @throws InterruptedException
+     */
+    public List<MailMessage> take(int max, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                MailMessage head = waiting.peek();
+                long now = clock.getAsLong();
+                if (head != null && head.nextAttemptAt <= now) {
+                    List<MailMessage> batch = new ArrayList<>(Math.min(max, waiting.size()));
+                    while (batch.size() < max && waiting.peek() != null && waiting.peek().nextAttemptAt <= now) {
+                        batch.add(waiting.poll());
+                    }
+                    return batch;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return new ArrayList<>();
+                }
+                if (head != null) {
+                    remaining = Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(head.nextAttemptAt - now));
+                }
+                ready.awaitNanos(remaining);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 邮件已发送(或确定无法发送),从队列中删除
+     * @param message
+     */
+    public void complete(MailMessage message) {
+        lock.lock();
+        try {
+            if (messages.remove(message.id) == null) {
+                return;
+            }
+            if (!message.isDurable()) {
+                return;
+            }
+            if (out != null) {
+                try {
+                    out.writeByte(COMPLETE);
+                    out.writeLong(message.id);
+                    out.flush();
+                } catch (IOException e) {
+                    //记录没写进去只会导致重启后重发
+                    log.warn("邮件队列写日志失败: {}", e.getMessage());
+                }
+            }
+            if (++completedSinceCompact >= Math.max(COMPACT_THRESHOLD, messages.size())) {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    log.warn("邮件队列日志重写失败: {}", e.getMessage());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 发送失败,失败次数加一,delayMillis后重试
+     * @param message
+     * @param delayMillis
+     */
+    public void retry(MailMessage message, long delayMillis) {
+        lock.lock();
+        try {
+            message.attempts++;
+            requeue(message, clock.getAsLong() + delayMillis);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 未尝试发送,原样放回队列
+     * @param messages
+     */
+    public void release(List<MailMessage> messages) {
+        lock.lock();
+        try {
+            for (MailMessage message : messages) {
+                requeue(message, message.nextAttemptAt);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 队列中的邮件数(包括正在发送的)
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return messages.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void requeue(MailMessage message, long nextAttemptAt) {
+        if (!messages.containsKey(message.id)) {
+            return;
+        }
+        message.nextAttemptAt = nextAttemptAt;
+        waiting.add(message);
+        ready.signal();
+    }
+
+    /**
+     * 读取日志,末尾写了一半的记录(进程在写日志时退出)直接丢弃
+     */
+    private void replay() throws IOException {
+        if (!Files.exists(journal)) {
+            return;
+        }
+        long now = clock.getAsLong();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal)))) {
+            while (true) {
+                byte type = in.readByte();
+                long id = in.readLong();
+                if (type == ENQUEUE) {
+                    int attempts = in.readInt();
+                    MailMessage message = new MailMessage(readString(in), readString(in), readString(in));
+                    message.id = id;
+                    message.attempts = attempts;
+                    message.nextAttemptAt = now;
+                    messages.put(id, message);
+                } else if (type == COMPLETE) {
+                    messages.remove(id);
+                } else {
+                    log.warn("邮件队列日志损坏,忽略id {}之后的记录", id);
+                    break;
+                }
+                nextId = Math.max(nextId, id + 1);
+            }
+        } catch (EOFException e) {
+            //读到末尾
+        }
+        waiting.addAll(messages.values());
+    }
+
+    /**
+     * 把队列中的邮件写入新日志,再替换旧日志
+     */
+    private void compact() throws IOException {
+        Path temp = journal.resolveSibling(journal.getFileName() + ".tmp");
+        try (DataOutputStream tempOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            for (MailMessage message : messages.values()) {
+                if (message.isDurable()) {
+                    writeEnqueue(tempOut, message);
+                }
+            }
+        }
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+        Files.move(temp, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(journal, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        completedSinceCompact = 0;
+    }
+
+    private static void writeEnqueue(DataOutputStream out, MailMessage message) throws IOException {
+        out.writeByte(ENQUEUE);
+        out.writeLong(message.id);
+        out.writeInt(message.attempts);
+        writeString(out, message.getTo());
+        writeString(out, message.getSubject());
+        writeString(out, message.getContent());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > 16 * 1024 * 1024) {
+            throw new EOFException();
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -3,9 +3,12 @@ package com.pxx.ifmserver.mapper;
 import com.pxx.ifmserver.entity.dto.Broadcast;
 import com.pxx.ifmserver.entity.dto.BroadcastFavorite;
 import com.pxx.ifmserver.entity.dto.BroadcastHistory;
+import com.pxx.ifmserver.pagination.PageQuery;
 import org.apache.ibatis.annotations.*;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface BroadcastMapper {
@@ -25,6 +28,17 @@ public interface BroadcastMapper {
     @Select("SELECT * FROM broadcast WHERE broadcast_id = #{broadcastId}")
     Broadcast getBroadcastByBroadcastId(Integer broadcastId);
 
+    /**
+     * 根据节目id列表批量获取节目数据
+     * @param broadcastIdList 节目id列表(不能为空)
+     * @return 节目列表(顺序不保证与id列表一致)
+     */
+    @Select({"<script>",
+            "SELECT * FROM broadcast WHERE broadcast_id IN ",
+            "<foreach collection='broadcastIdList' item='broadcastId' open='(' separator=',' close=')'>#{broadcastId}</foreach>",
+            "</script>"})
+    List<Broadcast> listBroadcastByIdList(@Param("broadcastIdList") Collection<Integer> broadcastIdList);
+
     /**
      * 根据频道id获取该频道的所有节目
      * @param channelId
@@ -33,6 +47,19 @@ public interface BroadcastMapper {
     @Select("SELECT * FROM broadcast WHERE channel_id = #{channelId}")
     List<Broadcast> listBroadcastByChannelId(Integer channelId);
 
+    /**
+     * 根据频道id分页获取该频道的节目(按创建时间从新到旧)
+     * @param channelId 频道id
+     * @param page 分页参数(游标与条数)
+     * @return 节目列表(最多page.limit条)
+     */
+    @Select({"<script>",
+            "SELECT * FROM broadcast WHERE channel_id = #{channelId}",
+            "<if test='page.cursor != null'>AND (gmt_create &lt; #{page.cursor.time} OR (gmt_create = #{page.cursor.time} AND broadcast_id &lt; #{page.cursor.id}))</if>",
+            "ORDER BY gmt_create DESC, broadcast_id DESC LIMIT #{page.limit}",
+            "</script>"})
+    List<Broadcast> listBroadcastByChannelIdPage(@Param("channelId") Integer channelId, @Param("page") PageQuery page);
+
     /**
      * 根据关键词模糊查询节目记录
      * @param keyWord 关键词
@@ -80,6 +107,27 @@ public interface BroadcastMapper {
     @Select("SELECT * FROM broadcast_favorite WHERE user_id=#{userId}")
     List<BroadcastFavorite> listFavoriteBroadcastByUserId(Integer userId);
 
+    /**
+     * 查询节目收藏表中,用户ID收藏的节目ID
+     * @param userId 用户id
+     * @return 节目ID列表
+     */
+    @Select("SELECT broadcast_id FROM broadcast_favorite WHERE user_id=#{userId}")
+    List<Integer> listFavoriteBroadcastIdByUserId(Integer userId);
+
+    /**
+     * 分页查询用户收藏的节目(按收藏时间从新到旧)
+     * @param userId 用户id
+     * @param page 分页参数(游标与条数)
+     * @return 收藏记录列表(最多page.limit条)
+     */
+    @Select({"<script>",
+            "SELECT * FROM broadcast_favorite WHERE user_id = #{userId}",
+            "<if test='page.cursor != null'>AND (gmt_create &lt; #{page.cursor.time} OR (gmt_create = #{page.cursor.time} AND broadcast_id &lt; #{page.cursor.id}))</if>",
+            "ORDER BY gmt_create DESC, broadcast_id DESC LIMIT #{page.limit}",
+            "</script>"})
+    List<BroadcastFavorite> listFavoriteBroadcastByUserIdPage(@Param("userId") Integer userId, @Param("page") PageQuery page);
+
     /**
      * 查询节目收听历史表中,该用户对于该节目的收听历史记录
      * @param userId 用户id
@@ -97,10 +145,23 @@ public interface BroadcastMapper {
     List<BroadcastHistory> listHistoryBroadcastByUserId(Integer userId);
 
     /**
-     * 获取 hour 小时内创建的节目 取前num个
+     * 分页查询用户的收听历史(按上次收听时间从新到旧)
+     * @param userId 用户id
+     * @param page 分页参数(游标与条数)
+     * @return 收听历史记录列表(最多page.limit条)
+     */
+    @Select({"<script>",
+            "SELECT * FROM broadcast_history WHERE user_id = #{userId}",
+            "<if test='page.cursor != null'>AND (history_time &lt; #{page.cursor.time} OR (history_time = #{page.cursor.time} AND broadcast_id &lt; #{page.cursor.id}))</if>",
+            "ORDER BY history_time DESC, broadcast_id DESC LIMIT #{page.limit}",
+            "</script>"})
+    List<BroadcastHistory> listHistoryBroadcastByUserIdPage(@Param("userId") Integer userId, @Param("page") PageQuery page);
+
+    /**
+     * 获取 hour 小时内创建的节目 取最新的num个
      * @return 节目列表
      */
-    @Select("SELECT * FROM broadcast WHERE gmt_create > (NOW() - INTERVAL #{hour} HOUR)  LIMIT #{num}")
+    @Select("SELECT * FROM broadcast WHERE gmt_create > (NOW() - INTERVAL #{hour} HOUR) ORDER BY gmt_create DESC LIMIT #{num}")
     List<Broadcast> listBroadcastCtreateInHour(int hour, int num);
 
 
@@ -117,12 +178,12 @@ public interface BroadcastMapper {
     int insertBroadcast(Broadcast broadcast);
 
     /**
-     * 添加用户收藏节目记录
+     * 添加用户收藏节目记录(已收藏时忽略)
      * @param broadcastId
      * @param userId
-     * @return
+     * @return 插入的行数(已收藏时为0)
      */
-    @Insert({"INSERT INTO broadcast_favorite(broadcast_id,user_id) VALUES (#{broadcastId},#{userId})"})
+    @Insert({"INSERT IGNORE INTO broadcast_favorite(broadcast_id,user_id) VALUES (#{broadcastId},#{userId})"})
     int insertBroadcastFavorite(Integer userId,Integer broadcastId);
 
     /**
@@ -136,6 +197,20 @@ public interface BroadcastMapper {
             "VALUES (#{broadcastId},#{userId},NOW(),#{lastListeningDuration})"})
     int insertBroadcastHistory(Integer userId, Integer broadcastId,Integer lastListeningDuration);
 
+    /**
+     * 批量添加/更新收听历史记录(依赖broadcast_history表上(user_id,broadcast_id)的唯一索引)
+     * @param historyList 收听历史记录
+     * @return 受影响的行数
+     */
+    @Insert({"<script>",
+            "INSERT INTO broadcast_history(broadcast_id,user_id,history_time,last_listen_duration) VALUES ",
+            "<foreach collection='historyList' item='history' separator=','>",
+            "(#{history.broadcastId},#{history.userId},#{history.historyTime},#{history.lastListenDuration})",
+            "</foreach>",
+            " ON DUPLICATE KEY UPDATE history_time = VALUES(history_time), last_listen_duration = VALUES(last_listen_duration)",
+            "</script>"})
+    int upsertBroadcastHistoryBatch(@Param("historyList") List<BroadcastHistory> historyList);
+
     /**
      * 根据节目ID更新对应节目的封面图片路径。
      * @param broadcastId，作为查询条件。
@@ -198,6 +273,23 @@ public interface BroadcastMapper {
     @Update(("UPDATE broadcast SET broadcast_play_count = broadcast_play_count + 1 WHERE broadcast_id = #{broadcastId}"))
     int updateBroadcastPlayCount(Integer broadcastId);
 
+    /**
+     * 批量累加节目播放量(一条语句更新多行)
+     * @param deltas key为节目id,value为待累加的播放量
+     * @return 改变的行数
+     */
+    @Update({"<script>",
+            "UPDATE broadcast SET broadcast_play_count = broadcast_play_count + CASE broadcast_id ",
+            "<foreach collection='deltas' index='broadcastId' item='delta'>",
+            "WHEN #{broadcastId} THEN #{delta} ",
+            "</foreach>",
+            "END WHERE broadcast_id IN ",
+            "<foreach collection='deltas' index='broadcastId' open='(' separator=',' close=')'>",
+            "#{broadcastId}",
+            "</foreach>",
+            "</script>"})
+    int updateBroadcastPlayCountBatch(@Param("deltas") Map<Integer, Long> deltas);
+
     /**
      * 更改界节目关联帖子量
      * @param broadcastId
@@ -2,10 +2,13 @@ package com.pxx.ifmserver.mapper;
 
 
 import com.pxx.ifmserver.entity.dto.Channel;
+import com.pxx.ifmserver.entity.dto.ChannelSubscription;
 import com.pxx.ifmserver.entity.dto.Hashtag;
+import com.pxx.ifmserver.pagination.PageQuery;
 import org.apache.ibatis.annotations.*;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -26,6 +29,17 @@ public interface ChannelMapper {
     @Select("SELECT * FROM channel WHERE channel_id = #{channelId}")
     Channel getChannelByChannelId(Integer channelId);
 
+    /**
+     * 根据频道id列表批量获取频道数据
+     * @param channelIdList 频道id列表(不能为空)
+     * @return 频道列表(顺序不保证与id列表一致)
+     */
+    @Select({"<script>",
+            "SELECT * FROM channel WHERE channel_id IN ",
+            "<foreach collection='channelIdList' item='channelId' open='(' separator=',' close=')'>#{channelId}</foreach>",
+            "</script>"})
+    List<Channel> listChannelByIdList(@Param("channelIdList") Collection<Integer> channelIdList);
+
     /**
      * 根据关键词模糊查询频道记录
      * @param keyWord 关键词
@@ -43,6 +57,19 @@ public interface ChannelMapper {
     @Select("SELECT * FROM channel WHERE user_id = #{userId}")
     List<Channel> listChannelByUserId(Integer userId);
 
+    /**
+     * 根据用户id分页获取该用户创建的频道(按创建时间从新到旧)
+     * @param userId 用户id
+     * @param page 分页参数(游标与条数)
+     * @return 频道列表(最多page.limit条)
+     */
+    @Select({"<script>",
+            "SELECT * FROM channel WHERE user_id = #{userId}",
+            "<if test='page.cursor != null'>AND (gmt_create &lt; #{page.cursor.time} OR (gmt_create = #{page.cursor.time} AND channel_id &lt; #{page.cursor.id}))</if>",
+            "ORDER BY gmt_create DESC, channel_id DESC LIMIT #{page.limit}",
+            "</script>"})
+    List<Channel> listChannelByUserIdPage(@Param("userId") Integer userId, @Param("page") PageQuery page);
+
     /**
      * 根据频道id获取频道的主题标签数据
      * @param channelId 频道id
@@ -78,12 +105,25 @@ public interface ChannelMapper {
     @Select("SELECT channel_id FROM channel_subscription WHERE user_id=#{userId}")
     List<Integer> listSubscribedChannelIdByUserId(Integer userId);
 
+    /**
+     * 分页查询用户订阅的频道(按订阅时间从新到旧)
+     * @param userId 用户id
+     * @param page 分页参数(游标与条数)
+     * @return 订阅记录列表(最多page.limit条)
+     */
+    @Select({"<script>",
+            "SELECT * FROM channel_subscription WHERE user_id = #{userId}",
+            "<if test='page.cursor != null'>AND (gmt_create &lt; #{page.cursor.time} OR (gmt_create = #{page.cursor.time} AND channel_id &lt; #{page.cursor.id}))</if>",
+            "ORDER BY gmt_create DESC, channel_id DESC LIMIT #{page.limit}",
+            "</script>"})
+    List<ChannelSubscription> listSubscribedChannelByUserIdPage(@Param("userId") Integer userId, @Param("page") PageQuery page);
+
 
     /**
      * 获取hour小时内更新过节目的频道，并按订阅数降序排序，选取前num条记录
      * @return hour小时内更新过节目的频道列表
      */
-    @Select("SELECT * FROM channel WHERE channel_update_time > ( NOW() - INTERVAL #{hour} HOUR ) LIMIT #{num}")
+    @Select("SELECT * FROM channel WHERE channel_update_time > ( NOW() - INTERVAL #{hour} HOUR ) ORDER BY channel_subscribe DESC LIMIT #{num}")
     List<Channel> listPopularChannel(int hour , int num);
 
 
@@ -110,12 +150,12 @@ public interface ChannelMapper {
 
 
     /**
-     * 添加用户订阅频道记录
+     * 添加用户订阅频道记录(已订阅时忽略)
      * @param channelId
      * @param userId
-     * @return
+     * @return 插入的行数(已订阅时为0)
      */
-    @Insert({"INSERT INTO channel_subscription(channel_id,user_id) VALUES (#{channelId},#{userId})"})
+    @Insert({"INSERT IGNORE INTO channel_subscription(channel_id,user_id) VALUES (#{channelId},#{userId})"})
     int insertChannelSubscription(Integer userId,Integer channelId);
 
 
@@ -1,6 +1,7 @@
 package com.pxx.ifmserver.mapper;
 
 import com.pxx.ifmserver.entity.dto.CommentDTO;
+import com.pxx.ifmserver.pagination.PageQuery;
 import org.apache.ibatis.annotations.*;
 
 import javax.xml.stream.events.Comment;
@@ -25,6 +26,19 @@ public interface CommentMapper {
     @Select("SELECT * FROM comment WHERE  post_id = #{postId}")
     public List<CommentDTO> listCommentByPostId(Integer postId);
 
+    /**
+     * 根据帖子id分页获取帖子下的评论(按发布时间从早到晚)
+     * @param postId 帖子id
+     * @param page 分页参数(游标与条数)
+     * @return 评论列表(最多page.limit条)
+     */
+    @Select({"<script>",
+            "SELECT * FROM comment WHERE post_id = #{postId}",
+            "<if test='page.cursor != null'>AND (gmt_create &gt; #{page.cursor.time} OR (gmt_create = #{page.cursor.time} AND comment_id &gt; #{page.cursor.id}))</if>",
+            "ORDER BY gmt_create ASC, comment_id ASC LIMIT #{page.limit}",
+            "</script>"})
+    public List<CommentDTO> listCommentByPostIdPage(@Param("postId") Integer postId, @Param("page") PageQuery page);
+
     /**
      * 获取评论的图片
      * @param commentId
@@ -57,6 +71,32 @@ public interface CommentMapper {
     @Update("UPDATE comment SET comment_like_count = comment_like_count + #{num} WHERE comment_id = #{commentId}")
     public int updateCommentLikeCount(Integer commentId, int num);
 
+    /**
+     * 用户点赞评论(已点赞时忽略)
+     * @param userId
+     * @param commentId
+     * @return 改变的行数(已点赞时为0)
+     */
+    @Insert("INSERT IGNORE INTO comment_like(user_id,comment_id) VALUES (#{userId},#{commentId})")
+    public int insertCommentLike(Integer userId, Integer commentId);
+
+    /**
+     * 用户取消点赞评论
+     * @param userId
+     * @param commentId
+     * @return 改变的行数(未点赞时为0)
+     */
+    @Delete("DELETE FROM comment_like WHERE user_id = #{userId} AND comment_id = #{commentId}")
+    public int deleteCommentLike(Integer userId, Integer commentId);
+
+    /**
+     * 删除评论的所有点赞记录
+     * @param commentId
+     * @return
+     */
+    @Delete("DELETE FROM comment_like WHERE comment_id = #{commentId}")
+    public int deleteCommentLikeByCommentId(Integer commentId);
+
     /**
      * 更新评论的回复数
      * @param commentId
@@ -0,0 +1,31 @@
+package com.pxx.ifmserver.mapper;
+
+import com.pxx.ifmserver.cache.CounterType;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Map;
+
+@Mapper
+public interface CounterMapper {
+
+    /**
+     * 批量累加计数字段,一条语句更新多行
+     * 计数字段是unsigned,结果为负数时整条语句会失败(整批增量被放回后反复重试),所以先转成有符号数再截断到0
+     * @param type 计数字段(决定表名和列名)
+     * @param deltas id -> 增量(不能为空)
+     * @return 改变的行数
+     */
+    @Update({"<script>",
+            "UPDATE ${type.table} SET ${type.countColumn} = GREATEST(CAST(${type.countColumn} AS SIGNED) + CASE ${type.idColumn} ",
+            "<foreach collection='deltas' index='id' item='delta'>",
+            "WHEN #{id} THEN #{delta} ",
+            "</foreach>",
+            "END, 0) WHERE ${type.idColumn} IN ",
+            "<foreach collection='deltas' index='id' open='(' separator=',' close=')'>",
+            "#{id}",
+            "</foreach>",
+            "</script>"})
+    int updateCountBatch(@Param("type") CounterType type, @Param("deltas") Map<Integer, Long> deltas);
+}
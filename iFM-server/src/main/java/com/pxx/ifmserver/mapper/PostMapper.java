@@ -3,8 +3,13 @@ package com.pxx.ifmserver.mapper;
 import com.pxx.ifmserver.entity.dto.Broadcast;
 import com.pxx.ifmserver.entity.dto.Hashtag;
 import com.pxx.ifmserver.entity.dto.Post;
+import com.pxx.ifmserver.entity.dto.PostFavorite;
+import com.pxx.ifmserver.entity.dto.PostHashtag;
+import com.pxx.ifmserver.entity.dto.PostImage;
+import com.pxx.ifmserver.pagination.PageQuery;
 import org.apache.ibatis.annotations.*;
 
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -25,6 +30,17 @@ public interface PostMapper {
     @Select(("SELECT * FROM post WHERE post_id = #{postId}"))
     Post getPostById(Integer postId);
 
+    /**
+     * 根据帖子id列表批量获取帖子数据
+     * @param postIdList 帖子id列表(不能为空)
+     * @return 帖子列表(顺序不保证与id列表一致)
+     */
+    @Select({"<script>",
+            "SELECT * FROM post WHERE post_id IN ",
+            "<foreach collection='postIdList' item='postId' open='(' separator=',' close=')'>#{postId}</foreach>",
+            "</script>"})
+    List<Post> listPostByIdList(@Param("postIdList") Collection<Integer> postIdList);
+
     /**
      * 根据用户id,获取该用户创建的帖子
      * @param userId
@@ -33,6 +49,19 @@ public interface PostMapper {
     @Select("SELECT * FROM post WHERE user_id = #{userId}")
     List<Post> listPostByUserId(Integer userId);
 
+    /**
+     * 根据用户id分页获取该用户创建的帖子(按创建时间从新到旧)
+     * @param userId 用户id
+     * @param page 分页参数(游标与条数)
+     * @return 帖子列表(最多page.limit条)
+     */
+    @Select({"<script>",
+            "SELECT * FROM post WHERE user_id = #{userId}",
+            "<if test='page.cursor != null'>AND (gmt_create &lt; #{page.cursor.time} OR (gmt_create = #{page.cursor.time} AND post_id &lt; #{page.cursor.id}))</if>",
+            "ORDER BY gmt_create DESC, post_id DESC LIMIT #{page.limit}",
+            "</script>"})
+    List<Post> listPostByUserIdPage(@Param("userId") Integer userId, @Param("page") PageQuery page);
+
     /**
      * 根据板块(0:话题讨论 1:分享推荐 2:求助问答)获取帖子
      * @param postSection 板块(0:话题讨论 1:分享推荐 2:求助问答)
@@ -41,6 +70,19 @@ public interface PostMapper {
     @Select("SELECT * FROM post WHERE post_section =#{postSection} ")
     List<Post> listPostByPostSection(Integer postSection);
 
+    /**
+     * 根据板块分页获取帖子(按创建时间从新到旧)
+     * @param postSection 板块(0:话题讨论 1:分享推荐 2:求助问答)
+     * @param page 分页参数(游标与条数)
+     * @return 帖子列表(最多page.limit条)
+     */
+    @Select({"<script>",
+            "SELECT * FROM post WHERE post_section = #{postSection}",
+            "<if test='page.cursor != null'>AND (gmt_create &lt; #{page.cursor.time} OR (gmt_create = #{page.cursor.time} AND post_id &lt; #{page.cursor.id}))</if>",
+            "ORDER BY gmt_create DESC, post_id DESC LIMIT #{page.limit}",
+            "</script>"})
+    List<Post> listPostByPostSectionPage(@Param("postSection") Integer postSection, @Param("page") PageQuery page);
+
     /**
      * 根据关联内容id获取对应帖子
      * @param postAssociation 帖子关联 0为频道 1为节目
@@ -51,11 +93,25 @@ public interface PostMapper {
     List<Post> listPostByAssociationId(Integer postAssociation ,Integer associationId);
 
     /**
-     * 获取若干小时内创建的帖子 前num个帖子
+     * 根据关联内容id分页获取帖子(按创建时间从新到旧)
+     * @param postAssociation 帖子关联 0为频道 1为节目
+     * @param associationId 关联的频道id或节目id
+     * @param page 分页参数(游标与条数)
+     * @return 帖子列表(最多page.limit条)
+     */
+    @Select({"<script>",
+            "SELECT * FROM post WHERE post_association = #{postAssociation} AND association_id = #{associationId}",
+            "<if test='page.cursor != null'>AND (gmt_create &lt; #{page.cursor.time} OR (gmt_create = #{page.cursor.time} AND post_id &lt; #{page.cursor.id}))</if>",
+            "ORDER BY gmt_create DESC, post_id DESC LIMIT #{page.limit}",
+            "</script>"})
+    List<Post> listPostByAssociationIdPage(@Param("postAssociation") Integer postAssociation, @Param("associationId") Integer associationId, @Param("page") PageQuery page);
+
+    /**
+     * 获取若干小时内创建的帖子 最新的num个帖子
      * @param hour 小时
      * @return 帖子列表
      */
-    @Select("SELECT * FROM post WHERE gmt_create > (NOW() - INTERVAL #{hour} HOUR)  LIMIT #{num}")
+    @Select("SELECT * FROM post WHERE gmt_create > (NOW() - INTERVAL #{hour} HOUR) ORDER BY gmt_create DESC LIMIT #{num}")
     List<Post> listPostCtreateInHour(int hour, int num);
 
     /**
@@ -94,6 +150,30 @@ public interface PostMapper {
     @Select("SELECT * FROM post_hashtag WHERE post_id = #{postId} ")
     List<Hashtag> listHashtagByPostId(Integer postId);
 
+    /**
+     * 根据帖子id列表批量获取帖子图片路径
+     * @param postIdList 帖子id列表(不能为空)
+     * @return 图片记录列表,同一帖子的图片按上传顺序排列
+     */
+    @Select({"<script>",
+            "SELECT post_id, image FROM post_image WHERE post_id IN ",
+            "<foreach collection='postIdList' item='postId' open='(' separator=',' close=')'>#{postId}</foreach>",
+            "ORDER BY post_picture_id",
+            "</script>"})
+    List<PostImage> listImageByPostIdList(@Param("postIdList") Collection<Integer> postIdList);
+
+    /**
+     * 根据帖子id列表批量获取帖子的主题标签
+     * @param postIdList 帖子id列表(不能为空)
+     * @return 主题标签记录列表,同一帖子的标签按添加顺序排列
+     */
+    @Select({"<script>",
+            "SELECT post_id, hashtag_id, hashtag_name FROM post_hashtag WHERE post_id IN ",
+            "<foreach collection='postIdList' item='postId' open='(' separator=',' close=')'>#{postId}</foreach>",
+            "ORDER BY post_hashtag_id",
+            "</script>"})
+    List<PostHashtag> listHashtagByPostIdList(@Param("postIdList") Collection<Integer> postIdList);
+
     /**
      * 获取用户收藏的帖子的id
      * @param userId
@@ -103,14 +183,61 @@ public interface PostMapper {
     List<Integer> listFavoritePostIdByUserId(Integer userId);
 
     /**
-     * 用户添加帖子收藏
+     * 分页查询用户收藏的帖子(按收藏时间从新到旧)
+     * @param userId 用户id
+     * @param page 分页参数(游标与条数)
+     * @return 收藏记录列表(最多page.limit条)
+     */
+    @Select({"<script>",
+            "SELECT * FROM post_favorite WHERE user_id = #{userId}",
+            "<if test='page.cursor != null'>AND (gmt_create &lt; #{page.cursor.time} OR (gmt_create = #{page.cursor.time} AND post_id &lt; #{page.cursor.id}))</if>",
+            "ORDER BY gmt_create DESC, post_id DESC LIMIT #{page.limit}",
+            "</script>"})
+    List<PostFavorite> listFavoritePostByUserIdPage(@Param("userId") Integer userId, @Param("page") PageQuery page);
+
+    /**
+     * 用户添加帖子收藏(已收藏时忽略)
      * @param userId 用户id
      * @param postId 帖子id
-     * @return 改变的行数(期望为1)
+     * @return 改变的行数(已收藏时为0)
      */
-    @Insert({"INSERT INTO post_favorite(user_id,post_id) VALUES (#{userId},#{postId})"})
+    @Insert({"INSERT IGNORE INTO post_favorite(user_id,post_id) VALUES (#{userId},#{postId})"})
     int insertPostFavorite(Integer userId,Integer postId);
 
+    /**
+     * 用户点赞帖子(已点赞时忽略)
+     * @param userId 用户id
+     * @param postId 帖子id
+     * @return 改变的行数(已点赞时为0)
+     */
+    @Insert({"INSERT IGNORE INTO post_like(user_id,post_id) VALUES (#{userId},#{postId})"})
+    int insertPostLike(Integer userId,Integer postId);
+
+    /**
+     * 用户取消点赞帖子
+     * @param userId 用户id
+     * @param postId 帖子id
+     * @return 改变的行数(未点赞时为0)
+     */
+    @Delete("DELETE FROM post_like WHERE user_id=#{userId} AND post_id=#{postId}")
+    int deletePostLike(Integer userId,Integer postId);
+
+    /**
+     * 删除帖子的所有点赞记录
+     * @param postId
+     * @return
+     */
+    @Delete("DELETE FROM post_like WHERE post_id=#{postId}")
+    int deletePostLikeByPostId(Integer postId);
+
+    /**
+     * 删除帖子的所有收藏记录
+     * @param postId
+     * @return
+     */
+    @Delete("DELETE FROM post_favorite WHERE post_id=#{postId}")
+    int deletePostFavoriteByPostId(Integer postId);
+
     /**
      * 创建帖子:添加帖子基本信息记录
      * @param post 帖子数据
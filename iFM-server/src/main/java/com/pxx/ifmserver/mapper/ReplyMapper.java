@@ -1,6 +1,7 @@
 package com.pxx.ifmserver.mapper;
 
 import com.pxx.ifmserver.entity.dto.Reply;
+import com.pxx.ifmserver.pagination.PageQuery;
 import org.apache.ibatis.annotations.*;
 
 import java.util.List;
@@ -23,6 +24,19 @@ public interface ReplyMapper {
     @Select("SELECT * FROM reply WHERE  comment_id = #{commentId}")
     public List<Reply> listReplyByCommentId(Integer postId);
 
+    /**
+     * 根据评论id分页获取评论下的回复(按发布时间从早到晚)
+     * @param commentId 评论id
+     * @param page 分页参数(游标与条数)
+     * @return 回复列表(最多page.limit条)
+     */
+    @Select({"<script>",
+            "SELECT * FROM reply WHERE comment_id = #{commentId}",
+            "<if test='page.cursor != null'>AND (gmt_create &gt; #{page.cursor.time} OR (gmt_create = #{page.cursor.time} AND reply_id &gt; #{page.cursor.id}))</if>",
+            "ORDER BY gmt_create ASC, reply_id ASC LIMIT #{page.limit}",
+            "</script>"})
+    public List<Reply> listReplyByCommentIdPage(@Param("commentId") Integer commentId, @Param("page") PageQuery page);
+
 
     /**
      * 添加回复
@@ -41,6 +55,32 @@ public interface ReplyMapper {
     @Update("UPDATE reply SET reply_like_count = reply_like_count + #{num} WHERE reply_id = #{replyId}")
     public int updateReplyLikeCount(Integer replyId, int num);
 
+    /**
+     * 用户点赞回复(已点赞时忽略)
+     * @param userId
+     * @param replyId
+     * @return 改变的行数(已点赞时为0)
+     */
+    @Insert("INSERT IGNORE INTO reply_like(user_id,reply_id) VALUES (#{userId},#{replyId})")
+    public int insertReplyLike(Integer userId, Integer replyId);
+
+    /**
+     * 用户取消点赞回复
+     * @param userId
+     * @param replyId
+     * @return 改变的行数(未点赞时为0)
+     */
+    @Delete("DELETE FROM reply_like WHERE user_id = #{userId} AND reply_id = #{replyId}")
+    public int deleteReplyLike(Integer userId, Integer replyId);
+
+    /**
+     * 删除评论下所有回复的点赞记录
+     * @param commentId
+     * @return
+     */
+    @Delete("DELETE FROM reply_like WHERE reply_id IN (SELECT reply_id FROM reply WHERE comment_id = #{commentId})")
+    public int deleteReplyLikeByCommentId(Integer commentId);
+
     /**
      * 删除评论下的所有回复
      * @param commentId
@@ -24,29 +24,6 @@ public interface SearchHistoryMapper {
     @Select("SELECT * FROM search_history WHERE user_id = #{userId} ORDER BY gmt_modified DESC" )
     List<SearchHistory> listSearchHistoyByUserId(Integer userId);
 
-    /**
-     * 查询用户搜索记录数
-     * @param userId
-     * @return
-     */
-    @Select("SELECT COUNT(*) FROM `search_history` WHERE `user_id` = #{userId}")
-    int countSearchHistoryByUserId(@Param("userId") Integer userId);
-
-    /**
-     * 删除用户最旧的num条搜索记录
-     * @param userId
-     * @param num
-     * @return
-     */
-    @Delete({
-            "DELETE FROM searchhistory WHERE userid = #{userId} AND gmt_modified IN (",
-            "  SELECT gmt_modified FROM (",
-            "    SELECT gmt_modified FROM searchhistory WHERE userid = #{userId} ORDER BY gmt_modified ASC LIMIT 0, #{num}",
-            "  ) AS subquery",
-            ")"
-    })
-    int deleteOldSearchHistory(Integer userId, int num);
-
     /**
      * 检查用户是否已经有该关键词的搜索记录
      * @param userId
@@ -73,6 +50,40 @@ public interface SearchHistoryMapper {
     @Update("UPDATE search_history SET gmt_modified = CURRENT_TIMESTAMP WHERE user_id = #{userId} AND keyword = #{keyword}")
     int updateSearchHistoryIfExist(Integer userId, String keyword);
 
+    /**
+     * 批量写入搜索记录,已存在的(用户id,关键词)只更新搜索时间
+     * @param historyList 搜索记录(不能为空)
+     * @return
+     */
+    @Insert({"<script>",
+            "INSERT INTO search_history(user_id,keyword,gmt_modified) VALUES ",
+            "<foreach collection='historyList' item='h' separator=','>(#{h.userId},#{h.keyword},#{h.gmtModified})</foreach>",
+            " ON DUPLICATE KEY UPDATE gmt_modified = VALUES(gmt_modified)",
+            "</script>"})
+    int upsertSearchHistoryBatch(@Param("historyList") List<SearchHistory> historyList);
+
+    /**
+     * 按(用户id,关键词)批量删除搜索记录
+     * @param historyList 搜索记录(不能为空)
+     * @return
+     */
+    @Delete({"<script>",
+            "DELETE FROM search_history WHERE (user_id,keyword) IN ",
+            "<foreach collection='historyList' item='h' open='(' separator=',' close=')'>(#{h.userId},#{h.keyword})</foreach>",
+            "</script>"})
+    int deleteSearchHistoryBatch(@Param("historyList") List<SearchHistory> historyList);
+
+    /**
+     * 按(用户id,关键词)批量获取搜索记录id
+     * @param historyList 搜索记录(不能为空)
+     * @return
+     */
+    @Select({"<script>",
+            "SELECT search_history_id, user_id, keyword FROM search_history WHERE (user_id,keyword) IN ",
+            "<foreach collection='historyList' item='h' open='(' separator=',' close=')'>(#{h.userId},#{h.keyword})</foreach>",
+            "</script>"})
+    List<SearchHistory> listSearchHistoryIdBatch(@Param("historyList") List<SearchHistory> historyList);
+
     /**
      * 删除某条历史记录
      * @param searchHistoryId
@@ -0,0 +1,36 @@
+package com.pxx.ifmserver.mapper;
+
+import com.pxx.ifmserver.entity.dto.SearchDocument;
+import com.pxx.ifmserver.search.DocType;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
+
+@Mapper
+public interface SearchMapper {
+
+    /**
+     * 逐行读取一种内容的全部可搜索文本(流式读取,不在内存中一次性保存整张表)
+     * @param type 内容类型(决定表名和列名)
+     * @param handler 每行回调一次,按id升序
+     */
+    @Select("SELECT ${type.idColumn} AS id, ${type.titleColumn} AS title, ${type.detailColumn} AS detail " +
+            "FROM ${type.table} ORDER BY ${type.idColumn}")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(SearchDocument.class)
+    void scanDocuments(@Param("type") DocType type, ResultHandler<SearchDocument> handler);
+
+    /**
+     * 获取一条内容的可搜索文本
+     * @param type 内容类型
+     * @param id 内容id
+     * @return 不存在时为null
+     */
+    @Select("SELECT ${type.idColumn} AS id, ${type.titleColumn} AS title, ${type.detailColumn} AS detail " +
+            "FROM ${type.table} WHERE ${type.idColumn} = #{id}")
+    SearchDocument getDocument(@Param("type") DocType type, @Param("id") Integer id);
+}
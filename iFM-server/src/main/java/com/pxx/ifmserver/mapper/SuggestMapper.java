@@ -0,0 +1,44 @@
+package com.pxx.ifmserver.mapper;
+
+import com.pxx.ifmserver.entity.dto.SuggestTerm;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.util.List;
+
+@Mapper
+public interface SuggestMapper {
+
+    /**
+     * 逐行读取所有节目标题,热度为播放量
+     * @param handler
+     */
+    @Select("SELECT broadcast_title AS text, broadcast_play_count AS weight FROM broadcast")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(SuggestTerm.class)
+    void scanBroadcastTitles(ResultHandler<SuggestTerm> handler);
+
+    /**
+     * 逐行读取所有频道标题,热度为订阅数
+     * @param handler
+     */
+    @Select("SELECT channel_title AS text, IFNULL(channel_subscribe, 0) AS weight FROM channel")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(SuggestTerm.class)
+    void scanChannelTitles(ResultHandler<SuggestTerm> handler);
+
+    /**
+     * 获取被最多用户搜索过的关键词,只搜索过的人数不足minUsers的关键词不返回(避免个人的搜索内容出现在补全中)
+     * @param minUsers 至少被多少个不同的用户搜索过
+     * @param limit 最多返回的关键词数
+     * @return 热度为搜索过该关键词的用户数
+     */
+    @Select("SELECT keyword AS text, COUNT(DISTINCT user_id) AS weight FROM search_history GROUP BY keyword " +
+            "HAVING COUNT(DISTINCT user_id) >= #{minUsers} ORDER BY weight DESC LIMIT #{limit}")
+    List<SuggestTerm> listPopularKeyword(@Param("minUsers") int minUsers, @Param("limit") int limit);
+}
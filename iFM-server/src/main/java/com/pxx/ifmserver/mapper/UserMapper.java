@@ -3,7 +3,10 @@ package com.pxx.ifmserver.mapper;
 import com.pxx.ifmserver.entity.dto.Broadcast;
 import com.pxx.ifmserver.entity.dto.User;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -40,6 +43,36 @@ public interface UserMapper {
     @Select("SELECT * FROM user WHERE user_id = #{userId}")
     User getUserByUserId(Integer userId);
 
+    /**
+     * 根据用户id获取用户摘要(只含用户id、用户名和头像,供UserSummaryCache使用)
+     * @param userId 用户id
+     * @return 返回一个只含userId、userName、userPicture的User对象
+     */
+    @Select("SELECT user_id, user_name, user_picture FROM user WHERE user_id = #{userId}")
+    User getUserSummaryByUserId(Integer userId);
+
+    /**
+     * 根据用户id列表批量获取用户摘要(只含用户id、用户名和头像)
+     * @param userIdList 用户id列表(不能为空)
+     * @return 用户列表(顺序不保证与id列表一致)
+     */
+    @Select({"<script>",
+            "SELECT user_id, user_name, user_picture FROM user WHERE user_id IN ",
+            "<foreach collection='userIdList' item='userId' open='(' separator=',' close=')'>#{userId}</foreach>",
+            "</script>"})
+    List<User> listUserSummaryByIdList(@Param("userIdList") Collection<Integer> userIdList);
+
+    /**
+     * 根据用户id列表批量获取用户数据
+     * @param userIdList 用户id列表(不能为空)
+     * @return 用户列表(顺序不保证与id列表一致)
+     */
+    @Select({"<script>",
+            "SELECT * FROM user WHERE user_id IN ",
+            "<foreach collection='userIdList' item='userId' open='(' separator=',' close=')'>#{userId}</foreach>",
+            "</script>"})
+    List<User> listUserByIdList(@Param("userIdList") Collection<Integer> userIdList);
+
 
     /**
      * 根据邮箱查询用户信息。
@@ -58,6 +91,22 @@ public interface UserMapper {
     @Select("SELECT * FROM user WHERE user_name = #{userName}")
     User getUserByUserName(String userName);
 
+    /**
+     * 获取用户总数。
+     * @return 用户数
+     */
+    @Select("SELECT COUNT(*) FROM user")
+    int countUser();
+
+    /**
+     * 逐行读取所有用户的昵称和邮箱(流式读取,不一次性载入内存)。
+     * @param handler 逐行处理
+     */
+    @Select("SELECT user_name, user_email FROM user")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(User.class)
+    void scanUserNameAndEmail(ResultHandler<User> handler);
+
     /**
      * 根据关键词获取用户
      * @param keyWord
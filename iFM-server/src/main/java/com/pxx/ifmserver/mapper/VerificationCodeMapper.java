@@ -0,0 +1,59 @@
+package com.pxx.ifmserver.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+@Mapper
+public interface VerificationCodeMapper {
+
+    /**
+     * 保存邮箱验证码,已有验证码时覆盖并重置输错次数
+     * @param email 邮箱
+     * @param code 验证码
+     * @param ttlSeconds 有效期(秒)
+     * @return 影响的行数
+     */
+    @Insert("INSERT INTO verification_code (email, code, attempts, expire_at) " +
+            "VALUES (#{email}, #{code}, 0, DATE_ADD(NOW(), INTERVAL #{ttlSeconds} SECOND)) " +
+            "ON DUPLICATE KEY UPDATE code = VALUES(code), attempts = 0, expire_at = VALUES(expire_at)")
+    int upsertVerificationCode(@Param("email") String email, @Param("code") String code, @Param("ttlSeconds") long ttlSeconds);
+
+    /**
+     * 删除匹配的验证码(未过期且输错次数未达上限),即校验通过
+     * @param email 邮箱
+     * @param code 验证码
+     * @param maxAttempts 最多输错次数
+     * @return 删除的行数,1表示校验通过
+     */
+    @Delete("DELETE FROM verification_code WHERE email = #{email} AND code = #{code} " +
+            "AND expire_at > NOW() AND attempts < #{maxAttempts}")
+    int deleteMatchedVerificationCode(@Param("email") String email, @Param("code") String code, @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * 删除邮箱的验证码(仅当仍是该验证码时)
+     * @param email 邮箱
+     * @param code 验证码
+     * @return 删除的行数
+     */
+    @Delete("DELETE FROM verification_code WHERE email = #{email} AND code = #{code}")
+    int deleteVerificationCode(@Param("email") String email, @Param("code") String code);
+
+    /**
+     * 输错次数加一
+     * @param email 邮箱
+     * @return 影响的行数
+     */
+    @Update("UPDATE verification_code SET attempts = attempts + 1 WHERE email = #{email} AND expire_at > NOW()")
+    int increaseAttempts(String email);
+
+    /**
+     * 删除已过期的验证码
+     * @param limit 最多删除的行数
+     * @return 删除的行数
+     */
+    @Delete("DELETE FROM verification_code WHERE expire_at < NOW() LIMIT #{limit}")
+    int deleteExpiredVerificationCode(int limit);
+}
@@ -0,0 +1,71 @@
+package com.pxx.ifmserver.metrics;
+
+/**
+ * 生成Prometheus文本格式(text/plain; version=0.0.4)的指标
+ */
+public class PrometheusWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final StringBuilder builder = new StringBuilder(4096);
+
+    /**
+     * 写入指标的说明和类型
+     * @param name 指标名
+     * @param type counter/gauge/summary/histogram
+     * @param help 说明
+     */
+    public PrometheusWriter metric(String name, String type, String help) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    /**
+     * 写入一个样本
+     * @param name 指标名
+     * @param value 值
+     * @param labels 标签名、标签值交替排列
+     */
+    public PrometheusWriter sample(String name, double value, String... labels) {
+        builder.append(name);
+        if (labels.length > 0) {
+            builder.append('{');
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(labels[i]).append("=\"");
+                escape(labels[i + 1]);
+                builder.append('"');
+            }
+            builder.append('}');
+        }
+        builder.append(' ');
+        if (value == (long) value) {
+            builder.append((long) value);
+        } else {
+            builder.append(value);
+        }
+        builder.append('\n');
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return builder.toString();
+    }
+
+    private void escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                builder.append('\\').append(c);
+            } else if (c == '\n') {
+                builder.append("\\n");
+            } else {
+                builder.append(c);
+            }
+        }
+    }
+}
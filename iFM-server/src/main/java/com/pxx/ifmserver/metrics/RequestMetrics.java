@@ -0,0 +1,223 @@
+package com.pxx.ifmserver.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.PackedHistogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 接口请求统计
+ * 按接口(请求方法 + 路径模板,如GET /broadcast/getPopularBroadcast)记录耗时直方图、正在处理的请求数、响应字节数和各状态码的次数。
+ * 请求线程只写Recorder(无锁)和LongAdder;后台任务每ifm.request-metrics.slot-millis把各接口这段时间的直方图
+ * 存入环形数组,查询1/5/15分钟窗口时合并最近的若干段(当前未结束的一段不计入)
+ */
+@Component
+public class RequestMetrics {
+
+    //窗口长度(分钟)
+    private static final int[] WINDOW_MINUTES = {1, 5, 15};
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+    //耗时直方图的有效数字位数
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    @Value("${ifm.request-metrics.slot-millis:10000}")
+    private long slotMillis;
+
+    /**
+     * 一个接口的统计
+     */
+    public static final class RouteStats {
+        private final String route;
+        //耗时(微秒)
+        private final Recorder latency = new Recorder(SIGNIFICANT_DIGITS, true);
+        private final LongAdder inFlight = new LongAdder();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder totalMicros = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+        private final ConcurrentHashMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        //最近各段的耗时直方图,由rotate()写入
+        private Histogram[] slots;
+
+        private RouteStats(String route) {
+            this.route = route;
+        }
+    }
+
+    private final ConcurrentHashMap<String, RouteStats> routes = new ConcurrentHashMap<>();
+    //所有接口正在处理的请求数
+    private final LongAdder inFlight = new LongAdder();
+    //已结束的段数
+    private long slotCount;
+
+    /**
+     * 获取接口的统计(没有时创建)
+     * @param route 请求方法 + 路径模板
+     */
+    public RouteStats route(String route) {
+        RouteStats stats = routes.get(route);
+        return stats != null ? stats : routes.computeIfAbsent(route, RouteStats::new);
+    }
+
+    /**
+     * 请求开始
+     * @param known 请求前就能确定接口时传入,计入该接口正在处理的请求数;否则为null
+     */
+    public void begin(RouteStats known) {
+        inFlight.increment();
+        if (known != null) {
+            known.inFlight.increment();
+        }
+    }
+
+    /**
+     * 请求结束
+     * @param known 与begin传入的相同
+     * @param stats 请求实际匹配到的接口
+     * @param nanos 耗时
+     * @param status HTTP状态码
+     * @param bytes 响应体字节数
+     */
+    public void end(RouteStats known, RouteStats stats, long nanos, int status, long bytes) {
+        inFlight.decrement();
+        if (known != null) {
+            known.inFlight.decrement();
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        stats.latency.recordValue(micros);
+        stats.requests.increment();
+        stats.totalMicros.add(micros);
+        stats.responseBytes.add(bytes);
+        LongAdder count = stats.statuses.get(status);
+        if (count == null) {
+            count = stats.statuses.computeIfAbsent(status, key -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    /**
+     * 结束当前段,把各接口这段时间的耗时直方图存入环形数组
+     */
+    @Scheduled(fixedRateString = "${ifm.request-metrics.slot-millis:10000}")
+    public synchronized void rotate() {
+        int length = slotsFor(WINDOW_MINUTES[WINDOW_MINUTES.length - 1]);
+        int index = (int) (slotCount % length);
+        for (RouteStats stats : routes.values()) {
+            if (stats.slots == null) {
+                stats.slots = new Histogram[length];
+            }
+            stats.slots[index] = stats.latency.getIntervalHistogram();
+        }
+        slotCount++;
+    }
+
+    /**
+     * 各接口最近1/5/15分钟的请求数、每秒请求数和耗时分位数,按最近1分钟的请求数降序
+     * @return 每个接口一项:route、inFlight、requests(启动以来)、status、1m/5m/15m(count、rps、p50、p95、p99、max,耗时单位毫秒)
+     */
+    public synchronized List<Map<String, Object>> summary() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (RouteStats stats : routes.values()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("route", stats.route);
+            item.put("inFlight", stats.inFlight.sum());
+            item.put("requests", stats.requests.sum());
+            Map<String, Long> statuses = new TreeMap<>();
+            stats.statuses.forEach((status, count) -> statuses.put(String.valueOf(status), count.sum()));
+            item.put("status", statuses);
+            for (int minutes : WINDOW_MINUTES) {
+                Histogram window = window(stats, minutes);
+                double seconds = Math.max(1, Math.min(slotCount, slotsFor(minutes))) * slotMillis / 1000.0;
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put("count", window.getTotalCount());
+                values.put("rps", window.getTotalCount() / seconds);
+                values.put("p50", millis(window.getValueAtPercentile(50)));
+                values.put("p95", millis(window.getValueAtPercentile(95)));
+                values.put("p99", millis(window.getValueAtPercentile(99)));
+                values.put("max", millis(window.getMaxValue()));
+                item.put(minutes + "m", values);
+            }
+            result.add(item);
+        }
+        result.sort((a, b) -> Long.compare(count(b), count(a)));
+        return result;
+    }
+
+    /**
+     * 以Prometheus文本格式导出(耗时分位数为最近1分钟,_sum/_count为启动以来的累计值)
+     * @param writer
+     */
+    public synchronized void writePrometheus(PrometheusWriter writer) {
+        List<RouteStats> all = new ArrayList<>(routes.values());
+        all.sort((a, b) -> a.route.compareTo(b.route));
+
+        writer.metric("ifm_http_request_duration_seconds", "summary", "接口耗时(分位数为最近1分钟)");
+        for (RouteStats stats : all) {
+            Histogram window = window(stats, WINDOW_MINUTES[0]);
+            for (double quantile : QUANTILES) {
+                writer.sample("ifm_http_request_duration_seconds", window.getValueAtPercentile(quantile * 100) / 1e6,
+                        "route", stats.route, "quantile", String.valueOf(quantile));
+            }
+            writer.sample("ifm_http_request_duration_seconds_sum", stats.totalMicros.sum() / 1e6, "route", stats.route);
+            writer.sample("ifm_http_request_duration_seconds_count", stats.requests.sum(), "route", stats.route);
+        }
+        writer.metric("ifm_http_requests_total", "counter", "接口请求数(按状态码)");
+        for (RouteStats stats : all) {
+            new TreeMap<>(stats.statuses).forEach((status, count) ->
+                    writer.sample("ifm_http_requests_total", count.sum(), "route", stats.route, "status", String.valueOf(status)));
+        }
+        writer.metric("ifm_http_route_requests_in_flight", "gauge", "接口正在处理的请求数");
+        for (RouteStats stats : all) {
+            writer.sample("ifm_http_route_requests_in_flight", stats.inFlight.sum(), "route", stats.route);
+        }
+        writer.metric("ifm_http_requests_in_flight", "gauge", "所有正在处理的请求数");
+        writer.sample("ifm_http_requests_in_flight", inFlight.sum());
+        writer.metric("ifm_http_response_size_bytes", "summary", "接口响应体字节数");
+        for (RouteStats stats : all) {
+            writer.sample("ifm_http_response_size_bytes_sum", stats.responseBytes.sum(), "route", stats.route);
+            writer.sample("ifm_http_response_size_bytes_count", stats.requests.sum(), "route", stats.route);
+        }
+    }
+
+    /**
+     * 合并最近minutes分钟内已结束的各段
+     */
+    private Histogram window(RouteStats stats, int minutes) {
+        Histogram merged = new PackedHistogram(SIGNIFICANT_DIGITS);
+        if (stats.slots == null) {
+            return merged;
+        }
+        int length = stats.slots.length;
+        long count = Math.min(slotCount, slotsFor(minutes));
+        for (long i = 1; i <= count; i++) {
+            Histogram slot = stats.slots[(int) ((slotCount - i) % length)];
+            if (slot != null) {
+                merged.add(slot);
+            }
+        }
+        return merged;
+    }
+
+    private int slotsFor(int minutes) {
+        return (int) Math.max(1, TimeUnit.MINUTES.toMillis(minutes) / slotMillis);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long count(Map<String, Object> item) {
+        return (long) ((Map<String, Object>) item.get(WINDOW_MINUTES[0] + "m")).get("count");
+    }
+}
@@ -0,0 +1,184 @@
+package com.pxx.ifmserver.metrics;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按接口统计请求(见RequestMetrics)和请求中执行的SQL语句(见SqlMetrics),接口按"请求方法 + 路径模板"区分。
+ * 不含路径变量的接口在请求开始时就能确定,计入该接口正在处理的请求数;其余请求在结束时按匹配到的路径模板归类
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    @Autowired
+    @Lazy
+    @Qualifier("requestMappingHandlerMapping")
+    private RequestMappingHandlerMapping handlerMapping;
+    @Autowired
+    private RequestMetrics requestMetrics;
+    @Autowired
+    private SqlMetrics sqlMetrics;
+
+    //没有匹配到接口的请求统一归入的统计项
+    static final String UNMATCHED = "UNMATCHED";
+
+    //不含路径变量的接口:"请求方法 路径" -> 统计,第一次请求时收集
+    private volatile Map<String, RequestMetrics.RouteStats> exactRoutes;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req, HttpServletResponse resp, FilterChain chain) throws ServletException, IOException {
+        if (exactRoutes == null) {
+            collectRoutes();
+        }
+        String path = req.getRequestURI().substring(req.getContextPath().length());
+        RequestMetrics.RouteStats known = exactRoutes.get(req.getMethod() + " " + path);
+        CountingResponse counting = new CountingResponse(resp);
+        long start = System.nanoTime();
+        requestMetrics.begin(known);
+        sqlMetrics.beginRequest();
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        try {
+            chain.doFilter(req, counting);
+            status = counting.getStatus();
+        } finally {
+            String route = route(req);
+            sqlMetrics.endRequest(route);
+            requestMetrics.end(known, requestMetrics.route(route), System.nanoTime() - start, status, counting.bytes());
+        }
+    }
+
+    /**
+     * 请求方法和路径都由客户端决定,只有标准的请求方法和匹配到的路径模板才单独统计,
+     * 其余请求都归入同一个UNMATCHED,统计项的数量不会随请求无限增长
+     * @return 请求方法 + 匹配到的路径模板,没有匹配到接口或请求方法不标准时为UNMATCHED
+     */
+    static String route(HttpServletRequest req) {
+        Object pattern = req.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern == null || RequestMethod.resolve(req.getMethod()) == null) {
+            return UNMATCHED;
+        }
+        return req.getMethod() + " " + pattern;
+    }
+
+    private synchronized void collectRoutes() {
+        if (exactRoutes != null) {
+            return;
+        }
+        Map<String, RequestMetrics.RouteStats> routes = new HashMap<>();
+        for (RequestMappingInfo info : handlerMapping.getHandlerMethods().keySet()) {
+            Set<RequestMethod> methods = info.getMethodsCondition().getMethods();
+            for (String pattern : info.getPatternValues()) {
+                if (pattern.contains("{") || pattern.contains("*")) {
+                    continue;
+                }
+                if (methods.isEmpty()) {
+                    for (HttpMethod method : HttpMethod.values()) {
+                        putRoute(routes, method.name() + " " + pattern);
+                    }
+                } else {
+                    for (RequestMethod method : methods) {
+                        putRoute(routes, method.name() + " " + pattern);
+                    }
+                }
+            }
+        }
+        exactRoutes = routes;
+    }
+
+    private void putRoute(Map<String, RequestMetrics.RouteStats> routes, String route) {
+        routes.put(route, requestMetrics.route(route));
+    }
+
+    /**
+     * 统计写出的响应体字节数;通过sendfile发送、不经过输出流的响应按Content-Length计
+     */
+    static final class CountingResponse extends HttpServletResponseWrapper {
+        private long written;
+        private long contentLength;
+        private ServletOutputStream stream;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        long bytes() {
+            return Math.max(written, contentLength);
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            contentLength = len;
+            super.setContentLength(len);
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            contentLength = len;
+            super.setContentLengthLong(len);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (stream == null) {
+                ServletOutputStream out = super.getOutputStream();
+                stream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        out.write(b);
+                        written++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                        written += len;
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        out.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        out.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return out.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        out.setWriteListener(writeListener);
+                    }
+                };
+            }
+            return stream;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.pxx.ifmserver.metrics;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SQL语句耗时统计(MyBatis插件)
+ * 按mapper语句(如BroadcastMapper.getBroadcastByBroadcastId)记录耗时直方图(HdrHistogram)、返回/影响的行数和出错次数;
+ * 在请求线程上执行的语句同时按请求计数(RequestMetricsFilter),一次请求中同一语句执行超过ifm.sql.repeat-threshold次
+ * 视为N+1查询,按"接口 + 语句"计数并在第一次出现时打印警告。
+ * 记录时只有两次nanoTime、一次ConcurrentHashMap查找和Recorder的无锁写入,单条语句额外耗时远小于1微秒
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class})
+})
+public class SqlMetrics implements Interceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlMetrics.class);
+    //直方图可记录的最大耗时(纳秒)和有效数字位数
+    private static final long MAX_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 2;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    //一次请求中同一语句最多执行的次数,超过视为N+1查询
+    @Value("${ifm.sql.repeat-threshold:10}")
+    private int repeatThreshold;
+
+    /**
+     * 一条语句的统计
+     */
+    static final class StatementStats {
+        private final String name;
+        private final Recorder recorder = new Recorder(MAX_NANOS, SIGNIFICANT_DIGITS);
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        //以下字段在导出时加锁更新
+        private Histogram interval;
+        private final Histogram total = new Histogram(MAX_NANOS, SIGNIFICANT_DIGITS);
+
+        private StatementStats(String name) {
+            this.name = name;
+        }
+
+        private synchronized Histogram snapshot() {
+            interval = recorder.getIntervalHistogram(interval);
+            total.add(interval);
+            return total.copy();
+        }
+    }
+
+    /**
+     * 一次请求中执行的语句
+     */
+    private static final class RequestStatements {
+        private final Map<StatementStats, int[]> counts = new HashMap<>();
+        private int total;
+    }
+
+    //语句id -> 统计
+    private final ConcurrentHashMap<String, StatementStats> statements = new ConcurrentHashMap<>();
+    private final ThreadLocal<RequestStatements> currentRequest = new ThreadLocal<>();
+    //每次请求执行的语句数
+    private final Recorder requestRecorder = new Recorder(100_000, SIGNIFICANT_DIGITS);
+    private final Histogram requestTotal = new Histogram(100_000, SIGNIFICANT_DIGITS);
+    private Histogram requestInterval;
+    private final LongAdder requestStatementsSum = new LongAdder();
+    //"接口\0语句" -> 出现N+1查询的请求数
+    private final ConcurrentHashMap<String, LongAdder> repeated = new ConcurrentHashMap<>();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
+        StatementStats stats = statements.get(mappedStatement.getId());
+        if (stats == null) {
+            stats = statements.computeIfAbsent(mappedStatement.getId(), id -> new StatementStats(shortName(id)));
+        }
+        RequestStatements request = currentRequest.get();
+        if (request != null) {
+            request.total++;
+            int[] count = request.counts.get(stats);
+            if (count == null) {
+                request.counts.put(stats, new int[]{1});
+            } else {
+                count[0]++;
+            }
+        }
+        long start = System.nanoTime();
+        try {
+            Object result = invocation.proceed();
+            if (result instanceof Collection<?> collection) {
+                stats.rows.add(collection.size());
+            } else if (result instanceof Integer affected) {
+                stats.rows.add(affected);
+            }
+            return result;
+        } catch (Throwable e) {
+            stats.errors.increment();
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            stats.recorder.recordValue(Math.min(elapsed, MAX_NANOS));
+            stats.totalNanos.add(elapsed);
+        }
+    }
+
+    /**
+     * 请求开始,之后在当前线程上执行的语句计入该请求
+     */
+    public void beginRequest() {
+        currentRequest.set(new RequestStatements());
+    }
+
+    /**
+     * 请求结束
+     * @param route 接口(请求方法 + 路径模板)
+     */
+    public void endRequest(String route) {
+        RequestStatements request = currentRequest.get();
+        if (request == null) {
+            return;
+        }
+        currentRequest.remove();
+        requestRecorder.recordValue(Math.min(request.total, 100_000));
+        requestStatementsSum.add(request.total);
+        for (Map.Entry<StatementStats, int[]> entry : request.counts.entrySet()) {
+            int count = entry.getValue()[0];
+            if (count <= repeatThreshold) {
+                continue;
+            }
+            String statement = entry.getKey().name;
+            LongAdder adder = repeated.computeIfAbsent(route + '\u0000' + statement, key -> {
+                log.warn("疑似N+1查询: {} 一次请求执行了{}次 {}", route, count, statement);
+                return new LongAdder();
+            });
+            adder.increment();
+        }
+    }
+
+    /**
+     * 以Prometheus文本格式导出(耗时分位数为启动以来的累计值)
+     * @param writer
+     */
+    public void writePrometheus(PrometheusWriter writer) {
+        List<StatementStats> all = new ArrayList<>(statements.values());
+        all.sort((a, b) -> a.name.compareTo(b.name));
+
+        writer.metric("ifm_sql_statement_duration_seconds", "summary", "MyBatis语句耗时");
+        for (StatementStats stats : all) {
+            Histogram histogram = stats.snapshot();
+            for (double quantile : QUANTILES) {
+                writer.sample("ifm_sql_statement_duration_seconds", histogram.getValueAtPercentile(quantile * 100) / 1e9,
+                        "statement", stats.name, "quantile", String.valueOf(quantile));
+            }
+            writer.sample("ifm_sql_statement_duration_seconds_sum", stats.totalNanos.sum() / 1e9, "statement", stats.name);
+            writer.sample("ifm_sql_statement_duration_seconds_count", histogram.getTotalCount(), "statement", stats.name);
+        }
+        writer.metric("ifm_sql_statement_rows_total", "counter", "MyBatis语句返回或影响的行数");
+        for (StatementStats stats : all) {
+            writer.sample("ifm_sql_statement_rows_total", stats.rows.sum(), "statement", stats.name);
+        }
+        writer.metric("ifm_sql_statement_errors_total", "counter", "MyBatis语句出错次数");
+        for (StatementStats stats : all) {
+            writer.sample("ifm_sql_statement_errors_total", stats.errors.sum(), "statement", stats.name);
+        }
+
+        Histogram perRequest;
+        synchronized (requestTotal) {
+            requestInterval = requestRecorder.getIntervalHistogram(requestInterval);
+            requestTotal.add(requestInterval);
+            perRequest = requestTotal.copy();
+        }
+        writer.metric("ifm_sql_statements_per_request", "summary", "每次HTTP请求执行的SQL语句数");
+        for (double quantile : QUANTILES) {
+            writer.sample("ifm_sql_statements_per_request", perRequest.getValueAtPercentile(quantile * 100), "quantile", String.valueOf(quantile));
+        }
+        writer.sample("ifm_sql_statements_per_request_sum", requestStatementsSum.sum());
+        writer.sample("ifm_sql_statements_per_request_count", perRequest.getTotalCount());
+
+        writer.metric("ifm_sql_repeated_statement_requests_total", "counter", "同一语句在一次请求中执行超过阈值(疑似N+1查询)的请求数");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(repeated).entrySet()) {
+            String key = entry.getKey();
+            int separator = key.indexOf('\u0000');
+            writer.sample("ifm_sql_repeated_statement_requests_total", entry.getValue().sum(),
+                    "route", key.substring(0, separator), "statement", key.substring(separator + 1));
+        }
+    }
+
+    /**
+     * com.pxx.ifmserver.mapper.BroadcastMapper.getBroadcastByBroadcastId -> BroadcastMapper.getBroadcastByBroadcastId
+     */
+    static String shortName(String id) {
+        int method = id.lastIndexOf('.');
+        int type = method > 0 ? id.lastIndexOf('.', method - 1) : -1;
+        return type >= 0 ? id.substring(type + 1) : id;
+    }
+}
@@ -0,0 +1,68 @@
+package com.pxx.ifmserver.pagination;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 一页查询结果
+ * 由按(时间,id)排序、LIMIT为size+1的查询结果构造:多出的一条说明还有下一页,
+ * 下一页的游标取本页最后一条记录
+ * @param <T>
+ */
+public class CursorPage<T> {
+
+    private final List<T> list;
+    private final String nextCursor;
+
+    private CursorPage(List<T> list, String nextCursor) {
+        this.list = list;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @param rows 查询结果(最多size+1条)
+     * @param page 分页参数
+     * @param timeGetter 排序时间
+     * @param idGetter 排序id
+     * @return
+     */
+    public static <T> CursorPage<T> of(List<T> rows, PageQuery page, Function<T, LocalDateTime> timeGetter, Function<T, Integer> idGetter) {
+        if (rows.size() <= page.getSize()) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> list = rows.subList(0, page.getSize());
+        T last = list.get(list.size() - 1);
+        return new CursorPage<>(list, new PageCursor(timeGetter.apply(last), idGetter.apply(last)).encode());
+    }
+
+    /**
+     * 本页数据
+     * @return
+     */
+    public List<T> getList() {
+        return list;
+    }
+
+    /**
+     * 下一页的游标,没有下一页时为null
+     * @return
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    /**
+     * 把分页信息写入返回体的数据部分(nextCursor, hasMore)
+     * @param data
+     */
+    public void fill(Map<String, Object> data) {
+        data.put("nextCursor", nextCursor);
+        data.put("hasMore", hasMore());
+    }
+}
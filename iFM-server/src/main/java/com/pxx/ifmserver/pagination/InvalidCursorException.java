@@ -0,0 +1,11 @@
+package com.pxx.ifmserver.pagination;
+
+/**
+ * 客户端传入的分页游标无法解析
+ */
+public class InvalidCursorException extends IllegalArgumentException {
+
+    public InvalidCursorException(String cursor) {
+        super("无效的分页游标: " + cursor);
+    }
+}
@@ -0,0 +1,64 @@
+package com.pxx.ifmserver.pagination;
+
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * 分页游标:上一页最后一条记录的(时间,id)
+ * 列表按(时间,id)排序,下一页从游标之后继续查询,不需要OFFSET扫描前面的记录
+ * 对客户端是不透明的字符串(Base64URL编码),客户端只需原样带回
+ */
+@Data
+public class PageCursor {
+
+    private static final ZoneOffset ZONE = ZoneOffset.of("+8");
+
+    private LocalDateTime time;
+    private Integer id;
+
+    public PageCursor() {}
+
+    public PageCursor(LocalDateTime time, Integer id) {
+        this.time = time;
+        this.id = id;
+    }
+
+    /**
+     * 编码为游标字符串
+     * @return
+     */
+    public String encode() {
+        String raw = time.toInstant(ZONE).toEpochMilli() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * 解析游标字符串
+     * @param cursor 游标字符串,为空表示第一页
+     * @return 第一页返回null
+     * @throws InvalidCursorException 游标格式错误
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.US_ASCII);
+            int separator = raw.indexOf(':');
+            if (separator <= 0) {
+                throw new InvalidCursorException(cursor);
+            }
+            long millis = Long.parseLong(raw.substring(0, separator));
+            int id = Integer.parseInt(raw.substring(separator + 1));
+            return new PageCursor(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZONE), id);
+        } catch (IllegalArgumentException e) {
+            //Base64或数字格式错误(NumberFormatException也是IllegalArgumentException)
+            throw new InvalidCursorException(cursor);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.pxx.ifmserver.pagination;
+
+import lombok.Getter;
+
+/**
+ * 分页查询参数
+ * 每页条数限制在[1,MAX_SIZE]之间;查询时多取一条(limit = size + 1),用来判断是否还有下一页
+ */
+@Getter
+public class PageQuery {
+
+    //默认每页条数
+    public static final int DEFAULT_SIZE = 20;
+    //每页条数上限
+    public static final int MAX_SIZE = 50;
+
+    //上一页的游标,第一页为null
+    private final PageCursor cursor;
+    private final int size;
+
+    private PageQuery(PageCursor cursor, int size) {
+        this.cursor = cursor;
+        this.size = size;
+    }
+
+    /**
+     * 根据客户端参数创建分页查询
+     * @param cursor 游标字符串,为空表示第一页
+     * @param size 每页条数,为空时取默认值,超出上限时取上限
+     * @return
+     * @throws InvalidCursorException 游标格式错误
+     */
+    public static PageQuery of(String cursor, Integer size) {
+        int pageSize = size == null || size <= 0 ? DEFAULT_SIZE : Math.min(size, MAX_SIZE);
+        return new PageQuery(PageCursor.decode(cursor), pageSize);
+    }
+
+    /**
+     * 从同一游标起多取extra条,用于结果还要和内存中的数据合并、部分数据库记录会被替换的情况
+     * @param extra
+     * @return
+     */
+    public PageQuery extend(int extra) {
+        return new PageQuery(cursor, size + extra);
+    }
+
+    /**
+     * SQL中的LIMIT
+     * @return
+     */
+    public int getLimit() {
+        return size + 1;
+    }
+}
@@ -0,0 +1,122 @@
+package com.pxx.ifmserver.ranking;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Count-Min计数草图
+ * depth行、每行width个计数器,每个字符串在每行按不同的种子(对UTF-8字节做MurmurHash3)哈希到一个计数器,
+ * 各行的哈希相互独立;估计值取各行的最小值,只会高估不会低估。
+ * 采用保守更新:只增加等于当前最小值的计数器,减少哈希冲突带来的高估。
+ * 内存固定为depth × width个long,与不同字符串的数量无关;非线程安全,由调用方加锁
+ */
+final class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    //每行的哈希种子
+    private final int[] seeds;
+    private final long[][] counters;
+
+    /**
+     * @param depth 行数
+     * @param width 每行计数器数(向上取整为2的幂)
+     */
+    CountMinSketch(int depth, int width) {
+        this.depth = depth;
+        int size = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.mask = size - 1;
+        this.counters = new long[depth][size];
+        this.seeds = new int[depth];
+        for (int row = 0; row < depth; row++) {
+            seeds[row] = 0x9E3779B9 * (row + 1);
+        }
+    }
+
+    /**
+     * 计数加一
+     * @param item
+     * @return 加一后的估计值
+     */
+    long add(String item) {
+        int[] slots = slots(item);
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[row][slots[row]]);
+        }
+        for (int row = 0; row < depth; row++) {
+            if (counters[row][slots[row]] == min) {
+                counters[row][slots[row]]++;
+            }
+        }
+        return min + 1;
+    }
+
+    /**
+     * @param item
+     * @return 估计次数
+     */
+    long estimate(String item) {
+        int[] slots = slots(item);
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[row][slots[row]]);
+        }
+        return min;
+    }
+
+    /**
+     * 清零(时间桶复用时调用)
+     */
+    void clear() {
+        for (long[] row : counters) {
+            Arrays.fill(row, 0);
+        }
+    }
+
+    private int[] slots(String item) {
+        byte[] bytes = item.getBytes(StandardCharsets.UTF_8);
+        int[] slots = new int[depth];
+        for (int row = 0; row < depth; row++) {
+            slots[row] = murmur3(bytes, seeds[row]) & mask;
+        }
+        return slots;
+    }
+
+    /**
+     * MurmurHash3 x86 32位
+     */
+    static int murmur3(byte[] data, int seed) {
+        int h = seed;
+        int length = data.length;
+        int blocks = length & ~3;
+        for (int i = 0; i < blocks; i += 4) {
+            int k = (data[i] & 0xFF) | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF) << 16 | data[i + 3] << 24;
+            h ^= mixK(k);
+            h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;
+        }
+        int k = 0;
+        switch (length & 3) {
+            case 3:
+                k ^= (data[blocks + 2] & 0xFF) << 16;
+            case 2:
+                k ^= (data[blocks + 1] & 0xFF) << 8;
+            case 1:
+                k ^= data[blocks] & 0xFF;
+                h ^= mixK(k);
+            default:
+        }
+        h ^= length;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    private static int mixK(int k) {
+        k *= 0xcc9e2d51;
+        k = Integer.rotateLeft(k, 15);
+        return k * 0x1b873593;
+    }
+}
@@ -0,0 +1,315 @@
+package com.pxx.ifmserver.ranking;
+
+import com.pxx.ifmserver.cache.CounterType;
+import com.pxx.ifmserver.cache.EngagementCounter;
+import com.pxx.ifmserver.cache.PlayCountBuffer;
+import com.pxx.ifmserver.entity.dto.Broadcast;
+import com.pxx.ifmserver.entity.dto.Channel;
+import com.pxx.ifmserver.entity.dto.Post;
+import com.pxx.ifmserver.mapper.BroadcastMapper;
+import com.pxx.ifmserver.mapper.ChannelMapper;
+import com.pxx.ifmserver.mapper.PostMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 热门排行引擎
+ * 在内存中维护近期(ifm.ranking.window-hours)节目/帖子/频道的计数,按重力衰减公式计算热度:
+ * score = Σ(权重 × 计数) / (距创建的小时数 + 2) ^ gravity
+ * 定时从数据库全量重建候选集(每种类型一条查询,并加上尚未写回数据库的计数增量),计数变化时增量更新并标记脏数据,
+ * 由后台任务重新排序;热门接口直接读取预先算好的前K个id
+ */
+@Component
+public class PopularityRanking {
+
+    private static final Logger log = LoggerFactory.getLogger(PopularityRanking.class);
+    private static final long MILLIS_PER_HOUR = 3600_000L;
+
+    @Autowired
+    private BroadcastMapper broadcastMapper;
+    @Autowired
+    private PostMapper postMapper;
+    @Autowired
+    private ChannelMapper channelMapper;
+    @Autowired
+    private PlayCountBuffer playCountBuffer;
+    @Autowired
+    private EngagementCounter engagementCounter;
+
+    //衰减指数,越大旧内容下沉越快
+    @Value("${ifm.ranking.gravity:1.5}")
+    private double gravity;
+    //候选时间窗口(小时)
+    @Value("${ifm.ranking.window-hours:720}")
+    private int windowHours;
+    //每种类型最多载入的候选数
+    @Value("${ifm.ranking.candidate-limit:5000}")
+    private int candidateLimit;
+    //权重:播放量,收藏量,关联帖子数
+    @Value("${ifm.ranking.broadcast-weights:0.5,0.3,0.2}")
+    private double[] broadcastWeights;
+    //权重:点赞数,评论数,收藏数
+    @Value("${ifm.ranking.post-weights:1,2,3}")
+    private double[] postWeights;
+    //权重:订阅数,关联帖子数
+    @Value("${ifm.ranking.channel-weights:1,0.5}")
+    private double[] channelWeights;
+    @Value("${ifm.ranking.broadcast-top:20}")
+    private int broadcastTop;
+    @Value("${ifm.ranking.post-top:30}")
+    private int postTop;
+    @Value("${ifm.ranking.channel-top:88}")
+    private int channelTop;
+
+    private final Map<RankingType, Board> boards = new EnumMap<>(RankingType.class);
+
+    public PopularityRanking() {
+        for (RankingType type : RankingType.values()) {
+            boards.put(type, new Board());
+        }
+    }
+
+    /**
+     * 检查每种类型的权重个数与RankingMetric中该类型的计数项个数一致,配置错误时启动失败
+     */
+    @PostConstruct
+    public void validateWeights() {
+        int[] sizes = new int[RankingType.values().length];
+        for (RankingMetric metric : RankingMetric.values()) {
+            sizes[metric.getType().ordinal()]++;
+        }
+        for (RankingType type : RankingType.values()) {
+            double[] weights = weights(type);
+            int expected = sizes[type.ordinal()];
+            if (weights == null || weights.length != expected) {
+                throw new IllegalStateException("ifm.ranking." + type.name().toLowerCase() + "-weights应配置" + expected
+                        + "个权重(逗号分隔),实际为" + (weights == null ? 0 : weights.length) + "个");
+            }
+        }
+    }
+
+    /**
+     * 候选对象:各计数项和计时起点(毫秒)
+     */
+    private static class Entry {
+        private final double[] counts;
+        private volatile long timeMillis;
+
+        private Entry(int size, long timeMillis) {
+            this.counts = new double[size];
+            this.timeMillis = timeMillis;
+        }
+    }
+
+    /**
+     * 一种类型的排行榜
+     */
+    private static class Board {
+        private volatile ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+        private volatile List<Integer> top = List.of();
+        private volatile boolean dirty;
+    }
+
+    /**
+     * 获取预先计算好的热门id列表(按热度降序)
+     * @param type
+     * @return 不可修改的列表
+     */
+    public List<Integer> top(RankingType type) {
+        return boards.get(type).top;
+    }
+
+    /**
+     * 计数变化(如播放、点赞、收藏),不在候选集中的对象忽略,待下次重建时载入
+     * @param metric 计数项
+     * @param id 对象id
+     * @param delta 变化量
+     */
+    public void adjust(RankingMetric metric, Integer id, long delta) {
+        Board board = boards.get(metric.getType());
+        board.entries.computeIfPresent(id, (key, entry) -> {
+            entry.counts[metric.getIndex()] += delta;
+            return entry;
+        });
+        board.dirty = true;
+    }
+
+    /**
+     * 新建对象加入候选集
+     * @param type
+     * @param id
+     */
+    public void add(RankingType type, Integer id) {
+        Board board = boards.get(type);
+        board.entries.putIfAbsent(id, new Entry(weights(type).length, System.currentTimeMillis()));
+        board.dirty = true;
+    }
+
+    /**
+     * 刷新计时起点(如频道有新节目)
+     * @param type
+     * @param id
+     */
+    public void touch(RankingType type, Integer id) {
+        Board board = boards.get(type);
+        Entry entry = board.entries.get(id);
+        if (entry != null) {
+            entry.timeMillis = System.currentTimeMillis();
+            board.dirty = true;
+        }
+    }
+
+    /**
+     * 删除对象时移出排行
+     * @param type
+     * @param id
+     */
+    public void remove(RankingType type, Integer id) {
+        Board board = boards.get(type);
+        if (board.entries.remove(id) != null) {
+            board.dirty = true;
+            //立即从已发布的列表中去掉,避免返回已删除的对象
+            List<Integer> top = new ArrayList<>(board.top);
+            if (top.remove(id)) {
+                board.top = Collections.unmodifiableList(top);
+            }
+        }
+    }
+
+    /**
+     * 从数据库重建候选集并重新排序
+     */
+    @Scheduled(fixedDelayString = "${ifm.ranking.reload-interval:600000}")
+    public void reload() {
+        try {
+            ConcurrentHashMap<Integer, Entry> broadcasts = new ConcurrentHashMap<>();
+            for (Broadcast broadcast : broadcastMapper.listBroadcastCtreateInHour(windowHours, candidateLimit)) {
+                Entry entry = new Entry(broadcastWeights.length, toMillis(broadcast.getGmtCreate()));
+                entry.counts[RankingMetric.BROADCAST_PLAY.getIndex()] = value(broadcast.getBroadcastPlayCount())
+                        + playCountBuffer.getPending(broadcast.getBroadcastId());
+                entry.counts[RankingMetric.BROADCAST_COLLECTION.getIndex()] = value(broadcast.getBroadcastCollectionCount())
+                        + engagementCounter.getPending(CounterType.BROADCAST_COLLECTION, broadcast.getBroadcastId());
+                entry.counts[RankingMetric.BROADCAST_POST.getIndex()] = value(broadcast.getBroadcastPostCount());
+                broadcasts.put(broadcast.getBroadcastId(), entry);
+            }
+            ConcurrentHashMap<Integer, Entry> posts = new ConcurrentHashMap<>();
+            for (Post post : postMapper.listPostCtreateInHour(windowHours, candidateLimit)) {
+                Entry entry = new Entry(postWeights.length, toMillis(post.getGmtCreate()));
+                entry.counts[RankingMetric.POST_LIKE.getIndex()] = value(post.getPostLikeCount())
+                        + engagementCounter.getPending(CounterType.POST_LIKE, post.getPostId());
+                entry.counts[RankingMetric.POST_COMMENT.getIndex()] = value(post.getPostCommentCount());
+                entry.counts[RankingMetric.POST_COLLECTION.getIndex()] = value(post.getPostCollectionCount())
+                        + engagementCounter.getPending(CounterType.POST_COLLECTION, post.getPostId());
+                posts.put(post.getPostId(), entry);
+            }
+            ConcurrentHashMap<Integer, Entry> channels = new ConcurrentHashMap<>();
+            for (Channel channel : channelMapper.listPopularChannel(windowHours, candidateLimit)) {
+                Entry entry = new Entry(channelWeights.length, toMillis(channel.getChannelUpdateTime()));
+                entry.counts[RankingMetric.CHANNEL_SUBSCRIBE.getIndex()] = value(channel.getChannelSubscribe())
+                        + engagementCounter.getPending(CounterType.CHANNEL_SUBSCRIBE, channel.getChannelId());
+                entry.counts[RankingMetric.CHANNEL_POST.getIndex()] = value(channel.getChannelPostCount());
+                channels.put(channel.getChannelId(), entry);
+            }
+            boards.get(RankingType.BROADCAST).entries = broadcasts;
+            boards.get(RankingType.POST).entries = posts;
+            boards.get(RankingType.CHANNEL).entries = channels;
+            for (RankingType type : RankingType.values()) {
+                rank(type);
+            }
+        } catch (RuntimeException e) {
+            log.warn("热门排行重建失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 对计数有变化的排行榜重新排序
+     */
+    @Scheduled(fixedDelayString = "${ifm.ranking.rerank-interval:5000}")
+    public void rerankDirty() {
+        for (RankingType type : RankingType.values()) {
+            if (boards.get(type).dirty) {
+                rank(type);
+            }
+        }
+    }
+
+    /**
+     * 用大小为K的最小堆选出热度最高的K个,O(n log K)
+     */
+    private void rank(RankingType type) {
+        Board board = boards.get(type);
+        board.dirty = false;
+        double[] weights = weights(type);
+        int k = topSize(type);
+        long now = System.currentTimeMillis();
+        PriorityQueue<Map.Entry<Integer, Double>> heap = new PriorityQueue<>(k + 1, Map.Entry.comparingByValue());
+        for (Map.Entry<Integer, Entry> candidate : board.entries.entrySet()) {
+            double score = score(candidate.getValue(), weights, now);
+            if (heap.size() < k) {
+                heap.add(Map.entry(candidate.getKey(), score));
+            } else if (score > heap.peek().getValue()) {
+                heap.poll();
+                heap.add(Map.entry(candidate.getKey(), score));
+            }
+        }
+        Integer[] top = new Integer[heap.size()];
+        for (int i = top.length - 1; i >= 0; i--) {
+            top[i] = heap.poll().getKey();
+        }
+        board.top = List.of(top);
+    }
+
+    private double score(Entry entry, double[] weights, long now) {
+        double weighted = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weighted += weights[i] * entry.counts[i];
+        }
+        double ageHours = Math.max(0, now - entry.timeMillis) / (double) MILLIS_PER_HOUR;
+        return weighted / Math.pow(ageHours + 2, gravity);
+    }
+
+    private double[] weights(RankingType type) {
+        switch (type) {
+            case BROADCAST:
+                return broadcastWeights;
+            case POST:
+                return postWeights;
+            default:
+                return channelWeights;
+        }
+    }
+
+    private int topSize(RankingType type) {
+        switch (type) {
+            case BROADCAST:
+                return broadcastTop;
+            case POST:
+                return postTop;
+            default:
+                return channelTop;
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time == null ? System.currentTimeMillis() : time.toInstant(ZoneOffset.of("+8")).toEpochMilli();
+    }
+
+    private static double value(Integer count) {
+        return count == null ? 0 : count;
+    }
+}
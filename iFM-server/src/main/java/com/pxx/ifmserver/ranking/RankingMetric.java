@@ -0,0 +1,40 @@
+package com.pxx.ifmserver.ranking;
+
+/**
+ * 参与热度计算的计数项
+ * index为该计数项在对应类型权重配置(ifm.ranking.*-weights)中的位置
+ */
+public enum RankingMetric {
+    //节目播放量
+    BROADCAST_PLAY(RankingType.BROADCAST, 0),
+    //节目收藏量
+    BROADCAST_COLLECTION(RankingType.BROADCAST, 1),
+    //节目关联帖子数
+    BROADCAST_POST(RankingType.BROADCAST, 2),
+    //帖子点赞数
+    POST_LIKE(RankingType.POST, 0),
+    //帖子评论数
+    POST_COMMENT(RankingType.POST, 1),
+    //帖子收藏数
+    POST_COLLECTION(RankingType.POST, 2),
+    //频道订阅数
+    CHANNEL_SUBSCRIBE(RankingType.CHANNEL, 0),
+    //频道关联帖子数
+    CHANNEL_POST(RankingType.CHANNEL, 1);
+
+    private final RankingType type;
+    private final int index;
+
+    RankingMetric(RankingType type, int index) {
+        this.type = type;
+        this.index = index;
+    }
+
+    public RankingType getType() {
+        return type;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+}
@@ -0,0 +1,13 @@
+package com.pxx.ifmserver.ranking;
+
+/**
+ * 热门排行的对象类型
+ */
+public enum RankingType {
+    //节目
+    BROADCAST,
+    //帖子
+    POST,
+    //频道
+    CHANNEL
+}
@@ -0,0 +1,114 @@
+package com.pxx.ifmserver.ranking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving高频项统计
+ * 最多跟踪capacity个字符串;已满时新字符串替换计数最小的一个,并继承其计数(因此计数只会高估)。
+ * 出现次数超过 总次数/capacity 的字符串一定在跟踪列表中;非线程安全,由调用方加锁。
+ * 跟踪的字符串按计数组成带位置索引的最小堆,堆顶即计数最小的字符串,每次计数加一为O(log capacity)
+ */
+final class SpaceSaving {
+
+    private final int capacity;
+    //最小堆:items[i]的计数为counts[i]
+    private final String[] items;
+    private final long[] counts;
+    //字符串 -> 在堆中的位置
+    private final Map<String, Integer> positions;
+    private int size;
+
+    SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.items = new String[capacity];
+        this.counts = new long[capacity];
+        this.positions = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * 计数加一
+     * @param item
+     */
+    void add(String item) {
+        Integer position = positions.get(item);
+        if (position != null) {
+            counts[position]++;
+            siftDown(position);
+            return;
+        }
+        if (size < capacity) {
+            items[size] = item;
+            counts[size] = 1;
+            positions.put(item, size);
+            siftUp(size++);
+            return;
+        }
+        //替换计数最小的字符串(堆顶)
+        positions.remove(items[0]);
+        items[0] = item;
+        counts[0]++;
+        positions.put(item, 0);
+        siftDown(0);
+    }
+
+    /**
+     * @return 当前跟踪的字符串(候选高频项)
+     */
+    List<String> items() {
+        List<String> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(items[i]);
+        }
+        return result;
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            items[i] = null;
+        }
+        positions.clear();
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (counts[parent] <= counts[i]) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[child + 1] < counts[child]) {
+                child++;
+            }
+            if (counts[i] <= counts[child]) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        String item = items[i];
+        items[i] = items[j];
+        items[j] = item;
+        long count = counts[i];
+        counts[i] = counts[j];
+        counts[j] = count;
+        positions.put(items[i], i);
+        positions.put(items[j], j);
+    }
+}
@@ -0,0 +1,170 @@
+package com.pxx.ifmserver.ranking;
+
+import com.pxx.ifmserver.entity.vo.TrendingVO;
+import com.pxx.ifmserver.search.Tokenizer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * 热搜词/热门主题标签的实时统计
+ * 每种类型把最近ifm.trending.buckets × ifm.trending.bucket-minutes的时间划分为环形排列的时间桶,
+ * 每个桶一个Count-Min草图(估计任意字符串的次数)和一个Space-Saving表(记录候选高频项);
+ * 过期的桶在下次写入时清空复用,内存固定,与关键词种类数无关。
+ * 后台任务定期把各桶候选项的次数(各桶草图估计值之和)排序,接口直接读取排好的结果
+ */
+@Component
+public class TrendingTracker {
+
+    //每个时间桶的长度(分钟)和时间桶数
+    @Value("${ifm.trending.bucket-minutes:60}")
+    private int bucketMinutes;
+    @Value("${ifm.trending.buckets:24}")
+    private int bucketCount;
+    //Count-Min草图的行数和每行计数器数
+    @Value("${ifm.trending.sketch-depth:4}")
+    private int sketchDepth;
+    @Value("${ifm.trending.sketch-width:4096}")
+    private int sketchWidth;
+    //每个时间桶跟踪的候选项数
+    @Value("${ifm.trending.capacity:200}")
+    private int capacity;
+    //预先排好的条数(接口最多返回的条数)
+    @Value("${ifm.trending.top-k:50}")
+    private int topK;
+
+    //当前时间(毫秒),测试时可替换
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private final Map<TrendingType, Window> windows = new EnumMap<>(TrendingType.class);
+    private final Map<TrendingType, List<TrendingVO>> tops = new EnumMap<>(TrendingType.class);
+
+    /**
+     * 一个时间桶
+     */
+    private static final class Bucket {
+        //桶编号(时间 / 桶长度),-1表示未使用
+        private long index = -1;
+        private final CountMinSketch sketch;
+        private final SpaceSaving heavyHitters;
+
+        private Bucket(CountMinSketch sketch, SpaceSaving heavyHitters) {
+            this.sketch = sketch;
+            this.heavyHitters = heavyHitters;
+        }
+    }
+
+    /**
+     * 一种类型的滑动时间窗口
+     */
+    private final class Window {
+        private final Bucket[] buckets = new Bucket[bucketCount];
+
+        private Window() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new Bucket(new CountMinSketch(sketchDepth, sketchWidth), new SpaceSaving(capacity));
+            }
+        }
+
+        private synchronized void add(String item) {
+            long index = clock.getAsLong() / bucketMillis();
+            Bucket bucket = buckets[(int) (index % buckets.length)];
+            if (bucket.index != index) {
+                bucket.sketch.clear();
+                bucket.heavyHitters.clear();
+                bucket.index = index;
+            }
+            bucket.sketch.add(item);
+            bucket.heavyHitters.add(item);
+        }
+
+        private synchronized List<TrendingVO> top(int limit) {
+            long oldest = clock.getAsLong() / bucketMillis() - buckets.length + 1;
+            Set<String> candidates = new HashSet<>();
+            for (Bucket bucket : buckets) {
+                if (bucket.index >= oldest) {
+                    candidates.addAll(bucket.heavyHitters.items());
+                }
+            }
+            List<TrendingVO> result = new ArrayList<>(candidates.size());
+            for (String candidate : candidates) {
+                long count = 0;
+                for (Bucket bucket : buckets) {
+                    if (bucket.index >= oldest) {
+                        count += bucket.sketch.estimate(candidate);
+                    }
+                }
+                TrendingVO trendingVO = new TrendingVO();
+                trendingVO.setName(candidate);
+                trendingVO.setCount(count);
+                result.add(trendingVO);
+            }
+            //次数降序,次数相同按名称排序
+            result.sort((a, b) -> a.getCount() != b.getCount() ? Long.compare(b.getCount(), a.getCount()) : a.getName().compareTo(b.getName()));
+            return new ArrayList<>(result.subList(0, Math.min(limit, result.size())));
+        }
+    }
+
+    private long bucketMillis() {
+        return bucketMinutes * 60_000L;
+    }
+
+    private Window window(TrendingType type) {
+        synchronized (windows) {
+            return windows.computeIfAbsent(type, key -> new Window());
+        }
+    }
+
+    /**
+     * 记录一次搜索/一次主题标签的使用
+     * @param type
+     * @param text 关键词或主题标签名
+     */
+    public void record(TrendingType type, String text) {
+        if (text == null) {
+            return;
+        }
+        String item = Tokenizer.normalize(text).trim();
+        if (!item.isEmpty()) {
+            window(type).add(item);
+        }
+    }
+
+    /**
+     * 获取最近一段时间内次数最多的关键词/主题标签
+     * @param type
+     * @param limit 最多返回的条数(不超过ifm.trending.top-k)
+     * @return 按次数降序
+     */
+    public List<TrendingVO> list(TrendingType type, int limit) {
+        List<TrendingVO> top;
+        synchronized (tops) {
+            top = tops.get(type);
+        }
+        if (top == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(top.subList(0, Math.max(0, Math.min(limit, top.size()))));
+    }
+
+    /**
+     * 重新计算各类型的排行
+     */
+    @Scheduled(fixedDelayString = "${ifm.trending.refresh-interval:10000}")
+    public void refresh() {
+        for (TrendingType type : TrendingType.values()) {
+            List<TrendingVO> top = window(type).top(topK);
+            synchronized (tops) {
+                tops.put(type, top);
+            }
+        }
+    }
+}
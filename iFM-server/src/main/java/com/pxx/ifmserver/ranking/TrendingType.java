@@ -0,0 +1,11 @@
+package com.pxx.ifmserver.ranking;
+
+/**
+ * 实时热度统计的对象类型
+ */
+public enum TrendingType {
+    //搜索关键词
+    KEYWORD,
+    //主题标签(发帖、创建频道时使用)
+    HASHTAG
+}
@@ -6,6 +6,7 @@ package com.pxx.ifmserver.result;
  * //一般
  * 20000 成功
  * 20001 未知错误
+ * 20006 分页游标无效
  *
  * //创建新账号
  * 50001 昵称已被使用
@@ -0,0 +1,44 @@
+package com.pxx.ifmserver.search;
+
+/**
+ * 可全文搜索的内容类型
+ * 表名/列名只来自这里的常量,SearchMapper中以${}拼接
+ */
+public enum DocType {
+    //节目:标题+简介
+    BROADCAST("broadcast", "broadcast_id", "broadcast_title", "broadcast_detail"),
+    //频道:标题+简介
+    CHANNEL("channel", "channel_id", "channel_title", "channel_detail"),
+    //帖子:标题+正文
+    POST("post", "post_id", "post_title", "post_detail"),
+    //用户:昵称+个人简介
+    USER("user", "user_id", "user_name", "user_profile");
+
+    private final String table;
+    private final String idColumn;
+    private final String titleColumn;
+    private final String detailColumn;
+
+    DocType(String table, String idColumn, String titleColumn, String detailColumn) {
+        this.table = table;
+        this.idColumn = idColumn;
+        this.titleColumn = titleColumn;
+        this.detailColumn = detailColumn;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getIdColumn() {
+        return idColumn;
+    }
+
+    public String getTitleColumn() {
+        return titleColumn;
+    }
+
+    public String getDetailColumn() {
+        return detailColumn;
+    }
+}
@@ -0,0 +1,413 @@
+package com.pxx.ifmserver.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 一种内容的倒排索引
+ * 词 -> 按文档id升序排列的倒排表(文档id + 加权词频);文档长度和文档包含的词按文档id存放在数组中(id来自数据库自增主键,基本连续)。
+ * 搜索时要求文档包含关键词的所有词,从最短的倒排表出发求交集,用BM25打分并取前limit个;
+ * 关键词最后一个拉丁字母/数字词可以按前缀匹配(输入"radi"也能搜到"radio"),按文档数最多的PREFIX_MAX_TERMS个补全词合并成一个倒排表;
+ * 标题中的词按TITLE_BOOST倍计入词频和文档长度(简化的BM25F)。
+ * 文档id每BLOCK_SIZE个分为一块,记录每块中文档的最短长度,以及较长倒排表在每块中的最大词频,
+ * 由此算出块内文档得分的上界;已有limit个结果且上界低于其中最低分时整块跳过(block-max),常见词不必逐个打分。
+ * 读写锁保护:搜索可以并发,增删文档互斥
+ */
+final class FullTextIndex {
+
+    //标题词频的权重
+    static final int TITLE_BOOST = 3;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    //每块的文档id数
+    private static final int BLOCK_SHIFT = 7;
+    //倒排表长度达到该值后才记录每块的最大词频,更短的倒排表用整个表的最大词频
+    private static final int BLOCK_MAX_MIN_SIZE = 1024;
+    //前缀匹配最少的字符数,以及最多合并的补全词数
+    private static final int PREFIX_MIN_LENGTH = 2;
+    private static final int PREFIX_MAX_TERMS = 64;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    //只索引正文的前detailMaxChars个字符,限制长文本占用的内存
+    private final int detailMaxChars;
+
+    private final Map<String, Postings> terms = new HashMap<>();
+    //拉丁字母/数字词按字典序排列,用于前缀匹配
+    private final TreeMap<String, Postings> wordTerms = new TreeMap<>();
+    //文档id -> 加权长度(0表示文档不存在)
+    private int[] lengths = new int[1024];
+    //文档id -> 包含的词的倒排表(删除/更新文档时使用)
+    private Postings[][] docTerms = new Postings[1024][];
+    //块 -> 块中文档的最短加权长度(删除文档时不增大,仍是下界)
+    private int[] blockMinLengths = new int[1024 >> BLOCK_SHIFT];
+    private int docCount;
+    private long totalLength;
+
+    /**
+     * 一个词的倒排表
+     */
+    private static final class Postings {
+        private final String term;
+        private int[] docs = new int[2];
+        private short[] freqs = new short[2];
+        private int size;
+        //整个表的最大词频,以及每块的最大词频(表较短时为null);删除文档时不减小,仍是上界
+        private int maxFreq;
+        private short[] blockMaxFreqs;
+
+        private Postings(String term) {
+            this.term = term;
+        }
+
+        private void add(int doc, int freq) {
+            short value = (short) Math.min(freq, Short.MAX_VALUE);
+            maxFreq = Math.max(maxFreq, value);
+            if (blockMaxFreqs != null) {
+                int block = doc >> BLOCK_SHIFT;
+                if (block >= blockMaxFreqs.length) {
+                    blockMaxFreqs = Arrays.copyOf(blockMaxFreqs, Math.max(blockMaxFreqs.length * 2, block + 1));
+                }
+                blockMaxFreqs[block] = (short) Math.max(blockMaxFreqs[block], value);
+            }
+            int index = size == 0 || docs[size - 1] < doc ? -(size + 1) : Arrays.binarySearch(docs, 0, size, doc);
+            if (index >= 0) {
+                freqs[index] = value;
+                return;
+            }
+            index = -index - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            System.arraycopy(docs, index, docs, index + 1, size - index);
+            System.arraycopy(freqs, index, freqs, index + 1, size - index);
+            docs[index] = doc;
+            freqs[index] = value;
+            size++;
+            if (blockMaxFreqs == null && size >= BLOCK_MAX_MIN_SIZE) {
+                buildBlockMaxFreqs();
+            }
+        }
+
+        private void buildBlockMaxFreqs() {
+            blockMaxFreqs = new short[(docs[size - 1] >> BLOCK_SHIFT) + 1];
+            for (int i = 0; i < size; i++) {
+                int block = docs[i] >> BLOCK_SHIFT;
+                blockMaxFreqs[block] = (short) Math.max(blockMaxFreqs[block], freqs[i]);
+            }
+        }
+
+        /**
+         * @return 块中文档的最大词频(上界)
+         */
+        private int maxFreq(int block) {
+            if (blockMaxFreqs == null) {
+                return maxFreq;
+            }
+            return block < blockMaxFreqs.length ? blockMaxFreqs[block] : 0;
+        }
+
+        private void remove(int doc) {
+            int index = Arrays.binarySearch(docs, 0, size, doc);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(docs, index + 1, docs, index, size - index - 1);
+            System.arraycopy(freqs, index + 1, freqs, index, size - index - 1);
+            size--;
+        }
+
+        /**
+         * 从from开始查找doc(倍增后二分)
+         * @return 找到时返回下标,否则返回-(插入位置+1)
+         */
+        private int seek(int doc, int from) {
+            int bound = 1;
+            while (from + bound < size && docs[from + bound] < doc) {
+                bound <<= 1;
+            }
+            return Arrays.binarySearch(docs, from + (bound >> 1), Math.min(from + bound + 1, size), doc);
+        }
+    }
+
+    FullTextIndex(int detailMaxChars) {
+        this.detailMaxChars = detailMaxChars;
+        Arrays.fill(blockMinLengths, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 添加或替换文档
+     * @param id 文档id(非负)
+     * @param title
+     * @param detail
+     */
+    void put(int id, String title, String detail) {
+        Map<String, int[]> freqs = new HashMap<>();
+        int[] length = new int[1];
+        Tokenizer.tokenize(title, term -> {
+            freqs.computeIfAbsent(term, key -> new int[1])[0] += TITLE_BOOST;
+            length[0] += TITLE_BOOST;
+        });
+        if (detail != null && detail.length() > detailMaxChars) {
+            detail = detail.substring(0, detailMaxChars);
+        }
+        Tokenizer.tokenize(detail, term -> {
+            freqs.computeIfAbsent(term, key -> new int[1])[0]++;
+            length[0]++;
+        });
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            if (freqs.isEmpty()) {
+                return;
+            }
+            ensureCapacity(id);
+            Postings[] postingsOfDoc = new Postings[freqs.size()];
+            int i = 0;
+            for (Map.Entry<String, int[]> entry : freqs.entrySet()) {
+                Postings postings = terms.computeIfAbsent(entry.getKey(), term -> {
+                    Postings created = new Postings(term);
+                    if (Tokenizer.isWord(term)) {
+                        wordTerms.put(term, created);
+                    }
+                    return created;
+                });
+                postings.add(id, entry.getValue()[0]);
+                postingsOfDoc[i++] = postings;
+            }
+            docTerms[id] = postingsOfDoc;
+            lengths[id] = length[0];
+            blockMinLengths[id >> BLOCK_SHIFT] = Math.min(blockMinLengths[id >> BLOCK_SHIFT], length[0]);
+            docCount++;
+            totalLength += length[0];
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除文档
+     * @param id
+     */
+    void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 搜索同时包含所有词的文档
+     * @param queryTerms 关键词分词结果(去重)
+     * @param limit 最多返回的文档数
+     * @return 文档id,按相关度降序
+     */
+    List<Integer> search(List<String> queryTerms, int limit) {
+        return search(queryTerms, false, limit);
+    }
+
+    /**
+     * 搜索同时包含所有词的文档
+     * @param queryTerms 关键词分词结果(去重)
+     * @param prefixLast 最后一个词是拉丁字母/数字词时是否按前缀匹配
+     * @param limit 最多返回的文档数
+     * @return 文档id,按相关度降序
+     */
+    List<Integer> search(List<String> queryTerms, boolean prefixLast, int limit) {
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            Postings[] lists = new Postings[queryTerms.size()];
+            for (int i = 0; i < lists.length; i++) {
+                String term = queryTerms.get(i);
+                if (prefixLast && i == lists.length - 1 && term.length() >= PREFIX_MIN_LENGTH && Tokenizer.isWord(term)) {
+                    lists[i] = prefixPostings(term);
+                } else {
+                    lists[i] = terms.get(term);
+                }
+                if (lists[i] == null) {
+                    return new ArrayList<>();
+                }
+            }
+            Arrays.sort(lists, Comparator.comparingInt(postings -> postings.size));
+            double avgLength = (double) totalLength / docCount;
+            double[] idf = new double[lists.length];
+            for (int i = 0; i < lists.length; i++) {
+                idf[i] = Math.log(1 + (docCount - lists[i].size + 0.5) / (lists[i].size + 0.5));
+            }
+
+            //小顶堆保存当前得分最高的limit个文档,得分相同时新文档(id大)优先
+            PriorityQueue<double[]> top = new PriorityQueue<>(limit + 1,
+                    Comparator.<double[]>comparingDouble(entry -> entry[0]).thenComparingDouble(entry -> entry[1]));
+            int[] cursors = new int[lists.length];
+            Postings shortest = lists[0];
+            //最近一次计算上界的块
+            int checkedBlock = -1;
+            candidates:
+            for (int i = 0; i < shortest.size; i++) {
+                int doc = shortest.docs[i];
+                int block = doc >> BLOCK_SHIFT;
+                if (top.size() == limit && block != checkedBlock) {
+                    checkedBlock = block;
+                    if (upperBound(lists, idf, block, avgLength) < top.peek()[0]) {
+                        //块内文档都进不了前limit个,跳到下一块
+                        int next = shortest.seek((block + 1) << BLOCK_SHIFT, i);
+                        i = (next < 0 ? -next - 1 : next) - 1;
+                        continue;
+                    }
+                }
+                double norm = K1 * (1 - B + B * lengths[doc] / avgLength);
+                double score = idf[0] * score(shortest.freqs[i], norm);
+                for (int j = 1; j < lists.length; j++) {
+                    int index = lists[j].seek(doc, cursors[j]);
+                    if (index < 0) {
+                        cursors[j] = -index - 1;
+                        if (cursors[j] >= lists[j].size) {
+                            break candidates;
+                        }
+                        continue candidates;
+                    }
+                    cursors[j] = index;
+                    score += idf[j] * score(lists[j].freqs[index], norm);
+                }
+                if (top.size() < limit) {
+                    top.add(new double[]{score, doc});
+                } else if (score > top.peek()[0] || (score == top.peek()[0] && doc > top.peek()[1])) {
+                    top.poll();
+                    top.add(new double[]{score, doc});
+                }
+            }
+            List<Integer> result = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                result.add((int) top.poll()[1]);
+            }
+            Collections.reverse(result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return 已索引的文档数
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return docCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 以prefix开头的词合并成一个倒排表,同一文档的词频相加
+     * @return 没有以prefix开头的词时返回null
+     */
+    private Postings prefixPostings(String prefix) {
+        List<Postings> matched = new ArrayList<>(wordTerms.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values());
+        if (matched.isEmpty()) {
+            return null;
+        }
+        if (matched.size() == 1) {
+            return matched.get(0);
+        }
+        if (matched.size() > PREFIX_MAX_TERMS) {
+            matched.sort(Comparator.comparingInt((Postings postings) -> postings.size).reversed());
+            matched = matched.subList(0, PREFIX_MAX_TERMS);
+        }
+        int total = 0;
+        for (Postings postings : matched) {
+            total += postings.size;
+        }
+        //高32位文档id,低32位词频,排序后相同文档相邻
+        long[] entries = new long[total];
+        int n = 0;
+        for (Postings postings : matched) {
+            for (int i = 0; i < postings.size; i++) {
+                entries[n++] = ((long) postings.docs[i] << 32) | postings.freqs[i];
+            }
+        }
+        Arrays.sort(entries);
+        Postings merged = new Postings(prefix);
+        merged.docs = new int[total];
+        merged.freqs = new short[total];
+        for (int i = 0; i < total; ) {
+            int doc = (int) (entries[i] >>> 32);
+            int freq = 0;
+            for (; i < total && (int) (entries[i] >>> 32) == doc; i++) {
+                freq += (int) entries[i];
+            }
+            short value = (short) Math.min(freq, Short.MAX_VALUE);
+            merged.docs[merged.size] = doc;
+            merged.freqs[merged.size++] = value;
+            merged.maxFreq = Math.max(merged.maxFreq, value);
+        }
+        if (merged.size >= BLOCK_MAX_MIN_SIZE) {
+            merged.buildBlockMaxFreqs();
+        }
+        return merged;
+    }
+
+    private static double score(int freq, double norm) {
+        return freq * (K1 + 1) / (freq + norm);
+    }
+
+    /**
+     * 块内文档得分的上界:各词取块内最大词频,文档长度取块内最短长度
+     */
+    private double upperBound(Postings[] lists, double[] idf, int block, double avgLength) {
+        double norm = K1 * (1 - B + B * blockMinLengths[block] / avgLength);
+        double bound = 0;
+        for (int j = 0; j < lists.length; j++) {
+            bound += idf[j] * score(lists[j].maxFreq(block), norm);
+        }
+        //留出浮点舍入误差,保证与逐个打分的结果相同
+        return bound * (1 + 1e-9);
+    }
+
+    private void removeLocked(int id) {
+        if (id >= lengths.length || lengths[id] == 0) {
+            return;
+        }
+        for (Postings postings : docTerms[id]) {
+            postings.remove(id);
+            if (postings.size == 0) {
+                terms.remove(postings.term);
+                wordTerms.remove(postings.term);
+            }
+        }
+        docCount--;
+        totalLength -= lengths[id];
+        lengths[id] = 0;
+        docTerms[id] = null;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < lengths.length) {
+            return;
+        }
+        int capacity = Math.max(lengths.length * 2, id + 1);
+        lengths = Arrays.copyOf(lengths, capacity);
+        docTerms = Arrays.copyOf(docTerms, capacity);
+        int blocks = ((capacity - 1) >> BLOCK_SHIFT) + 1;
+        if (blocks > blockMinLengths.length) {
+            int[] grown = Arrays.copyOf(blockMinLengths, blocks);
+            Arrays.fill(grown, blockMinLengths.length, blocks, Integer.MAX_VALUE);
+            blockMinLengths = grown;
+        }
+    }
+}
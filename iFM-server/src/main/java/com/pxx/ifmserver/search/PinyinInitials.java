@@ -0,0 +1,78 @@
+package com.pxx.ifmserver.search;
+
+import java.nio.charset.Charset;
+
+/**
+ * 汉字拼音首字母
+ * GB2312一级汉字(区号16~55)按拼音排序,由区位码所在区间即可得到首字母;二级汉字按部首排序,无法这样取首字母,直接跳过。
+ * 例:"深夜电台FM" -> "sydtfm"
+ */
+public final class PinyinInitials {
+
+    private static final Charset GB2312 = Charset.forName("GB2312");
+    //各首字母第一个汉字的区位码(没有以i/u/v开头的拼音)
+    private static final int[] BOUNDARIES = {1601, 1637, 1833, 2078, 2274, 2302, 2433, 2594, 2787, 3106, 3212, 3472, 3635,
+            3722, 3730, 3858, 4027, 4086, 4390, 4558, 4684, 4925, 5249, 5590};
+    private static final char[] LETTERS = {'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'j', 'k', 'l', 'm', 'n',
+            'o', 'p', 'q', 'r', 's', 't', 'w', 'x', 'y', 'z'};
+    //GB2312一级汉字都在CJK统一汉字基本区内,预先算好该区每个字的首字母(0表示无)
+    private static final char CJK_START = 0x4E00;
+    private static final char CJK_END = 0x9FFF;
+    private static final char[] TABLE = new char[CJK_END - CJK_START + 1];
+
+    static {
+        for (char c = CJK_START; c <= CJK_END; c++) {
+            TABLE[c - CJK_START] = encode(c);
+        }
+    }
+
+    private PinyinInitials() {
+    }
+
+    /**
+     * 取文本的拼音首字母:汉字取首字母,字母和数字保留(转小写),其余字符跳过
+     * @param text
+     * @return 首字母串;文本中没有可转换的汉字时返回null
+     */
+    public static String of(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        boolean converted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= CJK_START && c <= CJK_END) {
+                char initial = TABLE[c - CJK_START];
+                if (initial != 0) {
+                    builder.append(initial);
+                    converted = true;
+                }
+            } else if (c < 128 && Character.isLetterOrDigit(c)) {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return converted ? builder.toString() : null;
+    }
+
+    /**
+     * @param c 汉字
+     * @return 拼音首字母,不是GB2312一级汉字时返回0
+     */
+    private static char encode(char c) {
+        byte[] bytes = String.valueOf(c).getBytes(GB2312);
+        if (bytes.length != 2) {
+            return 0;
+        }
+        int code = ((bytes[0] & 0xff) - 160) * 100 + (bytes[1] & 0xff) - 160;
+        if (code < BOUNDARIES[0] || code >= BOUNDARIES[BOUNDARIES.length - 1]) {
+            return 0;
+        }
+        for (int i = LETTERS.length - 1; i >= 0; i--) {
+            if (code >= BOUNDARIES[i]) {
+                return LETTERS[i];
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,178 @@
+package com.pxx.ifmserver.search;
+
+import com.pxx.ifmserver.entity.dto.SearchDocument;
+import com.pxx.ifmserver.mapper.SearchMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 全文搜索索引
+ * 节目/频道/帖子/用户各一个内存倒排索引,启动时(以及之后每隔ifm.search.rebuild-interval)从数据库流式读取全表重建,
+ * 期间由各service在新建/修改/删除内容后增量更新。
+ * 索引建好之前search返回null,调用方退回数据库的LIKE查询。
+ * 与LIKE '%kw%'不同,拉丁字母按整词匹配,只有关键词的最后一个词按前缀匹配("radi"能搜到"radio","adio"搜不到)
+ */
+@Component
+public class SearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndex.class);
+
+    @Autowired
+    private SearchMapper searchMapper;
+
+    //每次搜索最多返回的结果数
+    @Value("${ifm.search.max-results:100}")
+    private int maxResults;
+    //正文最多索引的字符数
+    @Value("${ifm.search.detail-max-chars:2000}")
+    private int detailMaxChars;
+
+    private final Map<DocType, Slot> slots = new EnumMap<>(DocType.class);
+
+    /**
+     * 一种内容的索引
+     * 重建期间被修改的id排在pending中,不直接更新;新索引替换旧索引后逐批补做,直到pending为空才恢复直接更新。
+     * index和pending的读写都在Slot的锁内,修改要么排入pending,要么在替换完成后直接作用于新索引,不会丢失
+     */
+    private static class Slot {
+        private volatile FullTextIndex index;
+        //重建期间待补做的id,不在重建时为null
+        private Set<Integer> pending;
+    }
+
+    public SearchIndex() {
+        for (DocType type : DocType.values()) {
+            slots.put(type, new Slot());
+        }
+    }
+
+    /**
+     * 搜索内容
+     * @param type 内容类型
+     * @param keyword 关键词
+     * @return 内容id,按相关度降序;索引尚未建好或关键词无法用索引回答时返回null
+     */
+    public List<Integer> search(DocType type, String keyword) {
+        FullTextIndex index = slots.get(type).index;
+        if (index == null) {
+            return null;
+        }
+        List<String> terms = Tokenizer.tokenizeQuery(keyword);
+        if (terms == null) {
+            return null;
+        }
+        //最后一个词按前缀匹配,输入到一半的单词也能搜到
+        return index.search(terms, true, maxResults);
+    }
+
+    /**
+     * 内容新建/修改后从数据库重新读取并更新索引
+     * @param type
+     * @param id
+     */
+    public void refresh(DocType type, Integer id) {
+        FullTextIndex index = indexOrQueue(slots.get(type), id);
+        if (index != null) {
+            apply(type, index, id);
+        }
+    }
+
+    /**
+     * 内容删除后从索引中移除
+     * @param type
+     * @param id
+     */
+    public void remove(DocType type, Integer id) {
+        FullTextIndex index = indexOrQueue(slots.get(type), id);
+        if (index != null) {
+            index.remove(id);
+        }
+    }
+
+    /**
+     * @return 当前索引;正在重建或索引尚未建好时返回null(重建时id排入pending)
+     */
+    private static FullTextIndex indexOrQueue(Slot slot, Integer id) {
+        synchronized (slot) {
+            if (slot.pending != null) {
+                slot.pending.add(id);
+                return null;
+            }
+            return slot.index;
+        }
+    }
+
+    /**
+     * 从数据库重新读取内容并更新索引
+     */
+    private void apply(DocType type, FullTextIndex index, Integer id) {
+        try {
+            SearchDocument document = searchMapper.getDocument(type, id);
+            if (document == null) {
+                index.remove(id);
+            } else {
+                index.put(id, document.getTitle(), document.getDetail());
+            }
+        } catch (RuntimeException e) {
+            log.warn("{} {} 搜索索引更新失败,等待下次重建: {}", type, id, e.getMessage());
+        }
+    }
+
+    /**
+     * 从数据库重建全部索引
+     */
+    @Scheduled(fixedDelayString = "${ifm.search.rebuild-interval:86400000}")
+    public void rebuild() {
+        for (DocType type : DocType.values()) {
+            rebuild(type);
+        }
+    }
+
+    private void rebuild(DocType type) {
+        Slot slot = slots.get(type);
+        synchronized (slot) {
+            slot.pending = new LinkedHashSet<>();
+        }
+        long start = System.currentTimeMillis();
+        FullTextIndex index = new FullTextIndex(detailMaxChars);
+        try {
+            searchMapper.scanDocuments(type, context -> {
+                SearchDocument document = context.getResultObject();
+                index.put(document.getId(), document.getTitle(), document.getDetail());
+            });
+            synchronized (slot) {
+                slot.index = index;
+            }
+            log.info("{} 搜索索引重建完成: {}条, 耗时{}ms", type, index.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("{} 搜索索引重建失败: {}", type, e.getMessage());
+        }
+        //补做重建期间的修改(重建失败时补做到旧索引上);补做期间新的修改继续排队
+        while (true) {
+            Set<Integer> batch;
+            FullTextIndex current;
+            synchronized (slot) {
+                batch = slot.pending;
+                current = slot.index;
+                if (batch.isEmpty() || current == null) {
+                    slot.pending = null;
+                    return;
+                }
+                slot.pending = new LinkedHashSet<>();
+            }
+            for (Integer id : batch) {
+                apply(type, current, id);
+            }
+        }
+    }
+}
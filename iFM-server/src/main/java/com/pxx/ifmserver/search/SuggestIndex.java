@@ -0,0 +1,285 @@
+package com.pxx.ifmserver.search;
+
+import com.pxx.ifmserver.entity.dto.Hashtag;
+import com.pxx.ifmserver.entity.dto.SuggestTerm;
+import com.pxx.ifmserver.mapper.HashtagMapper;
+import com.pxx.ifmserver.mapper.SuggestMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 搜索补全
+ * 候选词来自节目标题(热度为播放量)、频道标题(订阅数)、主题标签和用户搜索过的关键词(搜索人数),
+ * 同一文本的热度累加;搜索关键词至少被ifm.suggest.min-users个不同的用户搜索过才成为候选词;中文候选词同时以拼音首字母为键,输入"sydt"也能补全"深夜电台"。
+ * 查询走只读的压缩字典树,新增候选词或热度变化先放进recent(跳表),查询时与字典树的结果合并,
+ * 由后台任务定期把recent并入新的字典树;ifm.suggest.reload-interval从数据库全量重载一次,
+ * 已删除内容的标题在重载后消失
+ */
+@Component
+public class SuggestIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SuggestIndex.class);
+    //拼音首字母键与原文键之间的分隔符,保证两种键在recent中不会互相覆盖
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    @Autowired
+    private SuggestMapper suggestMapper;
+    @Autowired
+    private HashtagMapper hashtagMapper;
+
+    //每个前缀最多返回的候选数
+    @Value("${ifm.suggest.top-k:10}")
+    private int topK;
+    //主题标签的固定热度,搜索关键词每个搜索人数折算的热度
+    @Value("${ifm.suggest.hashtag-weight:100}")
+    private long hashtagWeight;
+    @Value("${ifm.suggest.history-weight:100}")
+    private long historyWeight;
+    //最多载入的热门搜索关键词数
+    @Value("${ifm.suggest.history-limit:10000}")
+    private int historyLimit;
+    //搜索关键词至少被多少个不同的用户搜索过才成为候选词
+    @Value("${ifm.suggest.min-users:3}")
+    private int minUsers;
+
+    /**
+     * 候选词;weight可被增量修改
+     */
+    private static final class Entry {
+        private final String text;
+        private final String key;
+        private final String initials;
+        private volatile long weight;
+
+        private Entry(String text, String key) {
+            this.text = text;
+            this.key = key;
+            this.initials = PinyinInitials.of(text);
+        }
+    }
+
+    /**
+     * 某一时刻的字典树及其条目
+     */
+    private static final class Snapshot {
+        private final SuggestTrie trie;
+        private final Entry[] entries;
+
+        private Snapshot(SuggestTrie trie, Entry[] entries) {
+            this.trie = trie;
+            this.entries = entries;
+        }
+    }
+
+    //归一化文本 -> 候选词
+    private volatile Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot;
+    //字典树构建之后新增或热度变化的候选词:键 -> 候选词
+    private final ConcurrentSkipListMap<String, Entry> recent = new ConcurrentSkipListMap<>();
+    //搜索人数已达到ifm.suggest.min-users的关键词(归一化文本)
+    private volatile Set<String> popularKeywords = ConcurrentHashMap.newKeySet();
+    //搜索人数还不够的关键词:归一化文本 -> 重载以来搜索过的用户,重载时清空(之前的用户已经计入数据库)
+    private final ConcurrentHashMap<String, Set<Integer>> pendingKeywords = new ConcurrentHashMap<>();
+
+    /**
+     * 查询补全
+     * @param prefix 用户输入的前缀
+     * @param limit 最多返回的条数(不超过ifm.suggest.top-k)
+     * @return 候选词,按热度降序
+     */
+    public List<String> suggest(String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        if (prefix == null) {
+            return result;
+        }
+        String key = Tokenizer.normalize(prefix).trim();
+        if (key.isEmpty() || limit <= 0) {
+            return result;
+        }
+        Set<Entry> candidates = new LinkedHashSet<>();
+        Snapshot current = snapshot;
+        if (current != null) {
+            for (int id : current.trie.lookup(key)) {
+                candidates.add(current.entries[id]);
+            }
+        }
+        for (Entry entry : recent.subMap(key, key + Character.MAX_VALUE).values()) {
+            candidates.add(entry);
+        }
+        List<Entry> sorted = new ArrayList<>(candidates);
+        sorted.sort(Comparator.comparingLong((Entry entry) -> entry.weight).reversed());
+        for (int i = 0; i < sorted.size() && result.size() < Math.min(limit, topK); i++) {
+            result.add(sorted.get(i).text);
+        }
+        return result;
+    }
+
+    /**
+     * 新增候选词或增加其热度(新建节目/频道、用户第一次搜索某个关键词时调用)
+     * @param text
+     * @param weight 增加的热度
+     */
+    public void add(String text, long weight) {
+        if (text == null) {
+            return;
+        }
+        String key = Tokenizer.normalize(text).trim();
+        if (key.isEmpty()) {
+            return;
+        }
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry(text.trim(), k));
+        synchronized (entry) {
+            entry.weight += weight;
+        }
+        recent.put(key, entry);
+        if (entry.initials != null) {
+            recent.put(entry.initials + KEY_SEPARATOR + key, entry);
+        }
+    }
+
+    /**
+     * 用户第一次搜索某个关键词时增加其热度
+     * 搜索人数达到ifm.suggest.min-users之前只记录用户,不加入候选词
+     * @param keyword
+     * @param userId
+     */
+    public void addKeyword(String keyword, Integer userId) {
+        if (keyword == null) {
+            return;
+        }
+        String key = Tokenizer.normalize(keyword).trim();
+        if (key.isEmpty()) {
+            return;
+        }
+        if (popularKeywords.contains(key)) {
+            add(keyword, historyWeight);
+            return;
+        }
+        int[] reached = new int[1];
+        pendingKeywords.compute(key, (k, users) -> {
+            if (users == null) {
+                users = new HashSet<>();
+            }
+            users.add(userId);
+            if (users.size() < minUsers) {
+                return users;
+            }
+            reached[0] = users.size();
+            return null;
+        });
+        if (reached[0] > 0) {
+            popularKeywords.add(key);
+            add(keyword, reached[0] * historyWeight);
+        }
+    }
+
+    /**
+     * 把recent中的候选词并入新的字典树
+     */
+    @Scheduled(fixedDelayString = "${ifm.suggest.refresh-interval:60000}")
+    public synchronized void refresh() {
+        if (recent.isEmpty() && snapshot != null) {
+            return;
+        }
+        Map<String, Long> merged = captureRecent();
+        rebuild(entries);
+        releaseRecent(merged);
+    }
+
+    /**
+     * 从数据库全量重载候选词
+     */
+    @Scheduled(fixedDelayString = "${ifm.suggest.reload-interval:600000}")
+    public synchronized void reload() {
+        try {
+            long start = System.currentTimeMillis();
+            Map<String, Entry> loaded = new ConcurrentHashMap<>();
+            suggestMapper.scanBroadcastTitles(context -> put(loaded, context.getResultObject().getText(), context.getResultObject().getWeight()));
+            suggestMapper.scanChannelTitles(context -> put(loaded, context.getResultObject().getText(), context.getResultObject().getWeight()));
+            for (Hashtag hashtag : hashtagMapper.listHash()) {
+                put(loaded, hashtag.getHashtagName(), hashtagWeight);
+            }
+            Set<String> popular = ConcurrentHashMap.newKeySet();
+            for (SuggestTerm term : suggestMapper.listPopularKeyword(minUsers, historyLimit)) {
+                put(loaded, term.getText(), term.getWeight() * historyWeight);
+                if (term.getText() != null) {
+                    popular.add(Tokenizer.normalize(term.getText()).trim());
+                }
+            }
+            entries = loaded;
+            popularKeywords = popular;
+            pendingKeywords.clear();
+            //重载期间新增的候选词保留
+            for (Entry entry : recent.values()) {
+                loaded.putIfAbsent(entry.key, entry);
+            }
+            Map<String, Long> merged = captureRecent();
+            rebuild(loaded);
+            releaseRecent(merged);
+            log.info("搜索补全重载完成: {}条, 耗时{}ms", loaded.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("搜索补全重载失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 记录recent中各候选词当前的热度
+     */
+    private Map<String, Long> captureRecent() {
+        Map<String, Long> weights = new HashMap<>();
+        recent.forEach((key, entry) -> weights.put(key, entry.weight));
+        return weights;
+    }
+
+    /**
+     * 从recent中移除已并入字典树的候选词;构建期间热度又发生变化的留在recent中
+     */
+    private void releaseRecent(Map<String, Long> merged) {
+        merged.forEach((key, weight) -> recent.computeIfPresent(key, (k, entry) -> entry.weight == weight ? null : entry));
+    }
+
+    private static void put(Map<String, Entry> target, String text, Long weight) {
+        if (text == null) {
+            return;
+        }
+        String key = Tokenizer.normalize(text).trim();
+        if (key.isEmpty()) {
+            return;
+        }
+        Entry entry = target.computeIfAbsent(key, k -> new Entry(text.trim(), k));
+        entry.weight += weight == null ? 0 : weight;
+    }
+
+    private void rebuild(Map<String, Entry> source) {
+        Entry[] snapshotEntries = source.values().toArray(new Entry[0]);
+        List<String> keys = new ArrayList<>(snapshotEntries.length * 2);
+        int[] keyEntries = new int[snapshotEntries.length * 2];
+        long[] weights = new long[snapshotEntries.length];
+        for (int i = 0; i < snapshotEntries.length; i++) {
+            Entry entry = snapshotEntries[i];
+            weights[i] = entry.weight;
+            keyEntries[keys.size()] = i;
+            keys.add(entry.key);
+            if (entry.initials != null) {
+                keyEntries[keys.size()] = i;
+                keys.add(entry.initials);
+            }
+        }
+        snapshot = new Snapshot(new SuggestTrie(keys, keyEntries, weights, topK), snapshotEntries);
+    }
+}
@@ -0,0 +1,168 @@
+package com.pxx.ifmserver.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 前缀补全用的压缩字典树(只读)
+ * 只有一个子节点的链被压缩为一条边;每个节点在构建时预先算好子树中权重最高的topK个条目,
+ * 查询只需沿前缀走到对应节点,耗时与数据量无关
+ */
+final class SuggestTrie {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Node root;
+    private final long[] weights;
+    private final int topK;
+
+    private static final class Node {
+        //各条边的首字符(升序),用于二分查找
+        private char[] firsts;
+        private String[] labels;
+        private Node[] children;
+        //子树中权重最高的条目id(按权重降序)
+        private int[] top;
+    }
+
+    /**
+     * @param keys 索引键(已归一化,可重复)
+     * @param entries 每个键对应的条目id
+     * @param weights 条目id -> 权重
+     * @param topK 每个前缀最多保留的条目数
+     */
+    SuggestTrie(List<String> keys, int[] entries, long[] weights, int topK) {
+        this.weights = weights;
+        this.topK = topK;
+        Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> keys.get(a).compareTo(keys.get(b)));
+        String[] sortedKeys = new String[order.length];
+        int[] sortedEntries = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedKeys[i] = keys.get(order[i]);
+            sortedEntries[i] = entries[order[i]];
+        }
+        this.root = build(sortedKeys, sortedEntries, 0, sortedKeys.length, 0);
+    }
+
+    /**
+     * 查询前缀
+     * @param prefix 已归一化的前缀
+     * @return 条目id,按权重降序,最多topK个
+     */
+    int[] lookup(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            if (node.firsts == null) {
+                return EMPTY;
+            }
+            int index = Arrays.binarySearch(node.firsts, prefix.charAt(i));
+            if (index < 0) {
+                return EMPTY;
+            }
+            String label = node.labels[index];
+            int remaining = prefix.length() - i;
+            if (remaining <= label.length()) {
+                return prefix.regionMatches(i, label, 0, remaining) ? node.children[index].top : EMPTY;
+            }
+            if (!prefix.startsWith(label, i)) {
+                return EMPTY;
+            }
+            i += label.length();
+            node = node.children[index];
+        }
+        return node.top;
+    }
+
+    /**
+     * 构建[from, to)范围内的键组成的子树,这些键的前depth个字符相同
+     */
+    private Node build(String[] keys, int[] entries, int from, int to, int depth) {
+        Node node = new Node();
+        List<int[]> candidates = new ArrayList<>();
+        //恰好在此结束的键排在最前
+        int i = from;
+        while (i < to && keys[i].length() == depth) {
+            candidates.add(new int[]{entries[i]});
+            i++;
+        }
+        List<Character> firsts = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        List<Node> children = new ArrayList<>();
+        while (i < to) {
+            char first = keys[i].charAt(depth);
+            int end = i + 1;
+            while (end < to && keys[end].charAt(depth) == first) {
+                end++;
+            }
+            //有序键的公共前缀 = 首尾两个键的公共前缀
+            int common = depth + 1;
+            String head = keys[i];
+            String tail = keys[end - 1];
+            while (common < head.length() && common < tail.length() && head.charAt(common) == tail.charAt(common)) {
+                common++;
+            }
+            Node child = build(keys, entries, i, end, common);
+            firsts.add(first);
+            labels.add(head.substring(depth, common));
+            children.add(child);
+            candidates.add(child.top);
+            i = end;
+        }
+        if (!children.isEmpty()) {
+            node.firsts = new char[firsts.size()];
+            for (int j = 0; j < node.firsts.length; j++) {
+                node.firsts[j] = firsts.get(j);
+            }
+            node.labels = labels.toArray(new String[0]);
+            node.children = children.toArray(new Node[0]);
+        }
+        node.top = top(candidates);
+        return node;
+    }
+
+    /**
+     * 合并候选条目(每组已按权重降序),去重后取权重最高的topK个
+     */
+    private int[] top(List<int[]> candidates) {
+        int[] result = new int[topK];
+        int count = 0;
+        int[] positions = new int[candidates.size()];
+        while (count < topK) {
+            //取各组当前位置上排名最高的条目:权重降序,权重相同按id升序
+            int best = -1;
+            for (int i = 0; i < positions.length; i++) {
+                int[] candidate = candidates.get(i);
+                if (positions[i] < candidate.length
+                        && (best < 0 || before(candidate[positions[i]], candidates.get(best)[positions[best]]))) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            int entry = candidates.get(best)[positions[best]++];
+            //同一条目的原文键和拼音首字母键可能在同一子树中
+            boolean duplicate = false;
+            for (int i = 0; i < count; i++) {
+                if (result[i] == entry) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (!duplicate) {
+                result[count++] = entry;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private boolean before(int a, int b) {
+        return weights[a] != weights[b] ? weights[a] > weights[b] : a < b;
+    }
+}
@@ -0,0 +1,126 @@
+package com.pxx.ifmserver.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 分词
+ * 中日韩文字按相邻两字切分(二元分词),只有一个字的片段保留单字;
+ * 拉丁字母和数字按连续的单词切分;统一做NFKC归一化(全角转半角)并转小写,其余字符视为分隔符
+ */
+public final class Tokenizer {
+
+    private Tokenizer() {
+    }
+
+    /**
+     * 对文本分词,每个词回调一次(可重复)
+     * @param text
+     * @param sink
+     */
+    public static void tokenize(String text, Consumer<String> sink) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        String normalized = normalize(text);
+        int length = normalized.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = normalized.codePointAt(i);
+            if (isCjk(codePoint)) {
+                int start = i;
+                while (i < length && isCjk(normalized.codePointAt(i))) {
+                    i += Character.charCount(normalized.codePointAt(i));
+                }
+                emitCjk(normalized, start, i, sink);
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                int start = i;
+                while (i < length) {
+                    int next = normalized.codePointAt(i);
+                    if (isCjk(next) || !Character.isLetterOrDigit(next)) {
+                        break;
+                    }
+                    i += Character.charCount(next);
+                }
+                sink.accept(normalized.substring(start, i));
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+    }
+
+    /**
+     * 对搜索关键词分词(去重)
+     * @param keyword
+     * @return 词列表;关键词中含有单独一个汉字的片段时返回null(二元分词的索引无法匹配单字,由调用方退回数据库查询)
+     */
+    public static List<String> tokenizeQuery(String keyword) {
+        if (keyword == null) {
+            return new ArrayList<>();
+        }
+        String normalized = normalize(keyword);
+        int length = normalized.length();
+        for (int i = 0; i < length; ) {
+            int codePoint = normalized.codePointAt(i);
+            int next = i + Character.charCount(codePoint);
+            if (isCjk(codePoint)
+                    && (i == 0 || !isCjk(normalized.codePointBefore(i)))
+                    && (next >= length || !isCjk(normalized.codePointAt(next)))) {
+                return null;
+            }
+            i = next;
+        }
+        Set<String> terms = new LinkedHashSet<>();
+        tokenize(normalized, terms::add);
+        return new ArrayList<>(terms);
+    }
+
+    /**
+     * NFKC归一化(全角转半角)并转小写
+     * @param text
+     * @return
+     */
+    public static String normalize(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param term 分词结果
+     * @return 是拉丁字母/数字词(而不是中日韩文字的二元词)时返回true
+     */
+    static boolean isWord(String term) {
+        return !term.isEmpty() && !isCjk(term.codePointAt(0));
+    }
+
+    private static void emitCjk(String text, int start, int end, Consumer<String> sink) {
+        int first = text.codePointAt(start);
+        int firstEnd = start + Character.charCount(first);
+        if (firstEnd >= end) {
+            sink.accept(text.substring(start, end));
+            return;
+        }
+        int i = start;
+        while (true) {
+            int secondStart = i + Character.charCount(text.codePointAt(i));
+            if (secondStart >= end) {
+                break;
+            }
+            int secondEnd = secondStart + Character.charCount(text.codePointAt(secondStart));
+            sink.accept(text.substring(i, secondEnd));
+            i = secondStart;
+        }
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
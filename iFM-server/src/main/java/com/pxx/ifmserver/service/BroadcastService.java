@@ -3,27 +3,30 @@ package com.pxx.ifmserver.service;
 import com.pxx.ifmserver.result.Result;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.util.List;
 
 public interface BroadcastService {
     Result getBroadcastByBroadcastId(Integer broadcastId);
-    Result listBroadcastByChannelId(Integer channelId);
+    Result listBroadcastByChannelId(Integer channelId, String cursor, Integer size);
     Result createBroadcast(Integer channelId, Integer userId, String broadcastTitle, String broadcastDetail, MultipartFile broadcastPicture);
     Result updateBroadcastPicture(Integer userId, Integer broadcastId, MultipartFile broadcastPicture);
     Result updateBroadcastAudio(Integer userId, Integer broadcastId, MultipartFile broadcastAudio);
+    Result uploadBroadcastAudio(Integer userId, Integer broadcastId, InputStream audioStream);
     Result updateBroadcastTitle(Integer userId, Integer broadcastId, String broadcastTitle);
     Result updateBroadcastDetail(Integer userId, Integer broadcastId, String broadcastDetail);
     Result searchBroadcast(String keyword);
     Result deleteBroadcast(Integer userId, Integer broadcastId);
     Result listPopularBroadcast();
     Result checkBroadcast(Integer userId, Integer broadcastId);
+    Result checkBroadcastList(Integer userId, List<Integer> broadcastIdList);
     Result updateHistory(Integer userId, Integer broadcastId, Integer lastListenDuraction);
     Result changeFavorite(Integer userId, Integer broadcastId);
     Result increasePlayCount(Integer broadcastId);
     Result deleteBroadcastHistory(Integer userId, Integer broadcastId);
-    Result listBroadcastHistory(Integer userId);
+    Result listBroadcastHistory(Integer userId, String cursor, Integer size);
     Result getBroadcastHistory(Integer userId,Integer broadcastId);
-    Result listFavoriteBroadcast(Integer userId);
+    Result listFavoriteBroadcast(Integer userId, String cursor, Integer size);
     Result getBroadcastAudioById(Integer userId, Integer broadcastId);
     Result getBroadcastByIdList(List<Integer> broadcastIdList);
     Result addAudioForBroadcast(Integer userId, Integer broadcastId,MultipartFile audioFile);
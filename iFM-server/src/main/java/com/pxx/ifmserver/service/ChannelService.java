@@ -8,7 +8,7 @@ import java.util.List;
 
 public interface ChannelService {
     Result getChannelByChannelId(Integer channelId);
-    Result listChannelByUserId(Integer userId);
+    Result listChannelByUserId(Integer userId, String cursor, Integer size);
     Result createChannel(Integer userId,String channelTitle, String channelDetail, MultipartFile channelPicture,  List<Integer> hashtagIdList);
     Result updateChannelPicture(Integer userId,Integer channelId, MultipartFile channelPicture);
     Result updateChannelDetail(Integer userId,Integer channelId, String channelDetail);
@@ -16,8 +16,9 @@ public interface ChannelService {
     Result deleteChannel(Integer userId,Integer channelId);
     Result listPopularChannel();
     Result checkChannelSubscriptionById(Integer userId,Integer channelId);
+    Result checkChannelSubscriptionList(Integer userId, List<Integer> channelIdList);
     Result changeSubscribe(Integer userId, Integer channelId);
-    Result listSubscribedChannel(Integer userId);
+    Result listSubscribedChannel(Integer userId, String cursor, Integer size);
     Result searchChannel(String keyWord);
     Result listHashtag();
     Result listChannelIdByHashtag(Integer hashtagId);
@@ -16,9 +16,11 @@ public interface CommentService {
     /**
      * 根据帖子id获取帖子下的评论
      * @param postId
+     * @param cursor 分页游标,为空表示第一页
+     * @param size 每页条数
      * @return commentList
      */
-    Result listCommentByPostId(Integer postId);
+    Result listCommentByPostId(Integer postId, String cursor, Integer size);
 
     /**
      * 创建评论
@@ -37,11 +39,12 @@ public interface CommentService {
 
     /**
      * 点赞/取消点赞评论,更改评论点赞量
+     * @param userId
      * @param commentId
-     * @param value
-     * @return
+     * @param value 点赞(+1) 取消点赞(-1),为空时切换
+     * @return like 点赞后的状态
      */
-    Result changeLike(Integer commentId,int value);
+    Result changeLike(Integer userId, Integer commentId, Integer value);
 
     /**
      * 删除评论
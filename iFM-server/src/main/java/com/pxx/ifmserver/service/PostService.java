@@ -17,24 +17,30 @@ public interface PostService {
     /**
      * 根据用户id获取用户创建的帖子
      * @param userId
+     * @param cursor 分页游标,为空表示第一页
+     * @param size 每页条数
      * @return
      */
-    Result listPostByUserId(Integer userId);
+    Result listPostByUserId(Integer userId, String cursor, Integer size);
 
     /**
      * 根据关联节目id/频道id, 获取其关联的帖子
      * @param postAssociation
      * @param associationId
+     * @param cursor 分页游标,为空表示第一页
+     * @param size 每页条数
      * @return
      */
-    Result listPostByAssociationId(Integer postAssociation,Integer associationId);
+    Result listPostByAssociationId(Integer postAssociation,Integer associationId, String cursor, Integer size);
 
     /**
      * 根据板块id获取对应的帖子
      * @param sectionId
+     * @param cursor 分页游标,为空表示第一页
+     * @param size 每页条数
      * @return
      */
-    Result listPostBySectionId(Integer sectionId);
+    Result listPostBySectionId(Integer sectionId, String cursor, Integer size);
 
     /**
      * 获取热门帖子
@@ -50,6 +56,14 @@ public interface PostService {
      */
     Result checkCollection(Integer userId,Integer postId);
 
+    /**
+     * 批量检查用户是否收藏了帖子
+     * @param userId 用户id
+     * @param postIdList 帖子id列表
+     * @return
+     */
+    Result checkCollectionList(Integer userId, List<Integer> postIdList);
+
     /**
      * 根据关键词搜索帖子
      * @param keyword
@@ -73,15 +87,23 @@ public interface PostService {
      */
     Result createPost(Post post,  List<Integer> hashtagList);
 
-    Result addImageForPost(Integer postId, MultipartFile image);
+    /**
+     * 为帖子添加图片
+     * @param userId 当前登录用户,必须是帖子的发布者
+     * @param postId 帖子id
+     * @param image 图片文件
+     * @return
+     */
+    Result addImageForPost(Integer userId, Integer postId, MultipartFile image);
 
     /**
      * 点赞/取消点赞帖子,更改帖子点赞量
+     * @param userId 用户id
      * @param postId
-     * @param value 点赞(+1) 取消点赞(-1)
-     * @return
+     * @param value 点赞(+1) 取消点赞(-1),为空时切换
+     * @return like 点赞后的状态
      */
-    Result changeLike(Integer postId, int value);
+    Result changeLike(Integer userId, Integer postId, Integer value);
 
     /**
      * 删除帖子接口
@@ -94,7 +116,9 @@ public interface PostService {
     /**
      * 根据用户id获取其收藏的帖子
      * @param userId
+     * @param cursor 分页游标,为空表示第一页
+     * @param size 每页条数
      * @return
      */
-    Result listFavoritePost(Integer userId);
+    Result listFavoritePost(Integer userId, String cursor, Integer size);
 }
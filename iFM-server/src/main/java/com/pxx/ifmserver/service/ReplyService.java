@@ -8,9 +8,11 @@ public interface ReplyService {
     /**
      * 根据评论id获取评论下的所有回复
      * @param commentId
+     * @param cursor 分页游标,为空表示第一页
+     * @param size 每页条数
      * @return
      */
-    Result listReplyByCommentId(Integer commentId);
+    Result listReplyByCommentId(Integer commentId, String cursor, Integer size);
 
     /**
      * 添加回复
@@ -21,9 +23,10 @@ public interface ReplyService {
 
     /**
      * 点赞/取消点赞回复,更改回复点赞量
+     * @param userId
      * @param replyId
-     * @param value
-     * @return
+     * @param value 点赞(+1) 取消点赞(-1),为空时切换
+     * @return like 点赞后的状态
      */
-    Result changeLike(Integer replyId, int value);
+    Result changeLike(Integer userId, Integer replyId, Integer value);
 }
@@ -0,0 +1,36 @@
+package com.pxx.ifmserver.service;
+
+import com.pxx.ifmserver.result.Result;
+
+public interface SearchService {
+
+    /**
+     * 同时搜索节目、频道、帖子和用户,并记录用户的搜索历史
+     * @param userId 用户id(未登录时为null,不记录搜索历史)
+     * @param keyword 关键词
+     * @return 按类型分组的搜索结果
+     */
+    Result search(Integer userId, String keyword);
+
+    /**
+     * 搜索补全
+     * @param prefix 用户输入的前缀
+     * @param limit 最多返回的条数
+     * @return 候选词,按热度降序
+     */
+    Result suggest(String prefix, Integer limit);
+
+    /**
+     * 获取热搜词
+     * @param limit 最多返回的条数
+     * @return 最近一段时间内搜索次数最多的关键词
+     */
+    Result listHotKeyword(Integer limit);
+
+    /**
+     * 获取热门主题标签
+     * @param limit 最多返回的条数
+     * @return 最近一段时间内发帖和创建频道时使用次数最多的主题标签
+     */
+    Result listHotHashtag(Integer limit);
+}
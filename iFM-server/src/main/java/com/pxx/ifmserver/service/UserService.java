@@ -4,8 +4,6 @@ import com.pxx.ifmserver.entity.dto.User;
 import com.pxx.ifmserver.result.Result;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.UnsupportedEncodingException;
-import java.security.NoSuchAlgorithmException;
 import java.util.List;
 
 public interface UserService {
@@ -20,8 +18,8 @@ public interface UserService {
     Result updateUserPassword(Integer userId, String userEmail, String password,  String code);
     Result updateUserEmail(Integer userId, String userEmail, String newEmail,  String code1,String code2);
     Result insertUser(User user,String code);
-    Result loginPassword(Integer userId, String password) throws UnsupportedEncodingException, NoSuchAlgorithmException;
-    Result loginEamil(String email, String code) throws UnsupportedEncodingException, NoSuchAlgorithmException;
+    Result loginPassword(Integer userId, String password);
+    Result loginEamil(String email, String code);
     Result searchUser(String keyword);
     Result getVCode(String userEmail);
     boolean verifyEmail(String userEmail, String code);
@@ -0,0 +1,126 @@
+package com.pxx.ifmserver.service.assembler;
+
+import com.pxx.ifmserver.cache.UserSummaryCache;
+import com.pxx.ifmserver.entity.dto.Broadcast;
+import com.pxx.ifmserver.entity.dto.Channel;
+import com.pxx.ifmserver.entity.dto.User;
+import com.pxx.ifmserver.entity.vo.BroadcastItemVO;
+import com.pxx.ifmserver.mapper.BroadcastMapper;
+import com.pxx.ifmserver.mapper.ChannelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 节目简项批量组装
+ * 先收集列表中引用到的节目/频道/用户id并去重,每种数据用一条 IN 查询批量取回(用户摘要优先读UserSummaryCache),
+ * 使列表接口的查询次数不随列表长度增长
+ */
+@Component
+public class BroadcastItemAssembler {
+
+    //单条 IN 查询最多包含的id数
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private BroadcastMapper broadcastMapper;
+    @Autowired
+    private ChannelMapper channelMapper;
+    @Autowired
+    private UserSummaryCache userSummaryCache;
+
+    /**
+     * 批量获取节目
+     * @param broadcastIdList 节目id(可重复)
+     * @return 节目id -> 节目,不存在的节目不在结果中
+     */
+    public Map<Integer, Broadcast> loadBroadcasts(Collection<Integer> broadcastIdList) {
+        return load(broadcastIdList, broadcastMapper::listBroadcastByIdList, Broadcast::getBroadcastId);
+    }
+
+    /**
+     * 批量获取频道
+     * @param channelIdList 频道id(可重复)
+     * @return 频道id -> 频道
+     */
+    public Map<Integer, Channel> loadChannels(Collection<Integer> channelIdList) {
+        return load(channelIdList, channelMapper::listChannelByIdList, Channel::getChannelId);
+    }
+
+    /**
+     * 批量获取用户摘要(用户id、用户名、头像)
+     * @param userIdList 用户id(可重复)
+     * @return 用户id -> 用户
+     */
+    public Map<Integer, User> loadUsers(Collection<Integer> userIdList) {
+        return userSummaryCache.getAll(userIdList);
+    }
+
+    /**
+     * 将节目列表组装为节目简项列表(附带频道标题和作者用户名),顺序与节目列表一致
+     * @param broadcastList
+     * @return
+     */
+    public List<BroadcastItemVO> toItemList(List<Broadcast> broadcastList) {
+        List<Integer> channelIdList = new ArrayList<>(broadcastList.size());
+        List<Integer> userIdList = new ArrayList<>(broadcastList.size());
+        for (Broadcast broadcast : broadcastList) {
+            channelIdList.add(broadcast.getChannelId());
+            userIdList.add(broadcast.getUserId());
+        }
+        Map<Integer, Channel> channelMap = loadChannels(channelIdList);
+        Map<Integer, User> userMap = loadUsers(userIdList);
+
+        List<BroadcastItemVO> broadcastItemVOList = new ArrayList<>(broadcastList.size());
+        for (Broadcast broadcast : broadcastList) {
+            BroadcastItemVO broadcastItemVO = new BroadcastItemVO();
+            broadcastItemVO.setBroadcast(broadcast);
+            Channel channel = channelMap.get(broadcast.getChannelId());
+            if (channel != null) {
+                broadcastItemVO.setChannelTitle(channel.getChannelTitle());
+            }
+            User user = userMap.get(broadcast.getUserId());
+            if (user != null) {
+                broadcastItemVO.setUserName(user.getUserName());
+            }
+            broadcastItemVOList.add(broadcastItemVO);
+        }
+        return broadcastItemVOList;
+    }
+
+    /**
+     * 去重后分批执行 IN 查询,结果按id建立索引
+     */
+    private <T> Map<Integer, T> load(Collection<Integer> idList, Function<Collection<Integer>, List<T>> query, Function<T, Integer> idGetter) {
+        Set<Integer> idSet = new LinkedHashSet<>();
+        for (Integer id : idList) {
+            if (id != null) {
+                idSet.add(id);
+            }
+        }
+        Map<Integer, T> result = new HashMap<>(idSet.size() * 2);
+        if (idSet.isEmpty()) {
+            return result;
+        }
+        List<Integer> batch = new ArrayList<>(Math.min(idSet.size(), BATCH_SIZE));
+        for (Integer id : idSet) {
+            batch.add(id);
+            if (batch.size() == BATCH_SIZE) {
+                query.apply(batch).forEach(item -> result.put(idGetter.apply(item), item));
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            query.apply(batch).forEach(item -> result.put(idGetter.apply(item), item));
+        }
+        return result;
+    }
+}
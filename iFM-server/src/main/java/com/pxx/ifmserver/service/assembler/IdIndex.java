@@ -0,0 +1,84 @@
+package com.pxx.ifmserver.service.assembler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 一组去重并排序的id
+ * id保存在int数组中,用二分查找得到下标;批量查询的结果按下标放入数组/列表分组,
+ * 不需要以Integer为键的哈希表
+ */
+final class IdIndex {
+
+    private final int[] ids;
+
+    private IdIndex(int[] ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * 收集列表中引用到的id(忽略null),去重后排序
+     * @param items
+     * @param idGetter
+     * @return
+     */
+    static <T> IdIndex of(Collection<T> items, Function<T, Integer> idGetter) {
+        int[] ids = new int[items.size()];
+        int count = 0;
+        for (T item : items) {
+            Integer id = idGetter.apply(item);
+            if (id != null) {
+                ids[count++] = id;
+            }
+        }
+        Arrays.sort(ids, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || ids[distinct - 1] != ids[i]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return new IdIndex(Arrays.copyOf(ids, distinct));
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    /**
+     * @param id
+     * @return id的下标,不存在时返回-1
+     */
+    int indexOf(Integer id) {
+        if (id == null) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * 按batchSize切分成多组,每组用于一条 IN 查询
+     * @param batchSize
+     * @return
+     */
+    List<List<Integer>> batches(int batchSize) {
+        List<List<Integer>> batches = new ArrayList<>((ids.length + batchSize - 1) / batchSize);
+        for (int from = 0; from < ids.length; from += batchSize) {
+            int to = Math.min(from + batchSize, ids.length);
+            List<Integer> batch = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                batch.add(ids[i]);
+            }
+            batches.add(batch);
+        }
+        return batches;
+    }
+}
@@ -0,0 +1,123 @@
+package com.pxx.ifmserver.service.assembler;
+
+import com.pxx.ifmserver.cache.UserSummaryCache;
+import com.pxx.ifmserver.entity.dto.Hashtag;
+import com.pxx.ifmserver.entity.dto.Post;
+import com.pxx.ifmserver.entity.dto.PostHashtag;
+import com.pxx.ifmserver.entity.dto.PostImage;
+import com.pxx.ifmserver.entity.dto.User;
+import com.pxx.ifmserver.entity.vo.PostVO;
+import com.pxx.ifmserver.mapper.PostMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 帖子列表批量组装
+ * 一页帖子的图片、主题标签、作者各用一条 IN 查询取回(作者优先读UserSummaryCache),再按帖子/用户id在内存中分组,
+ * 查询次数不随帖子数量增长
+ */
+@Component
+public class PostAssembler {
+
+    //单条 IN 查询最多包含的id数
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private PostMapper postMapper;
+    @Autowired
+    private UserSummaryCache userSummaryCache;
+
+    /**
+     * 按id列表批量获取帖子,保持id列表的顺序,跳过已被删除的帖子
+     * @param postIdList 帖子id列表
+     * @return
+     */
+    public List<Post> loadPosts(List<Integer> postIdList) {
+        IdIndex postIndex = IdIndex.of(postIdList, Function.identity());
+        Post[] posts = new Post[postIndex.size()];
+        for (List<Integer> batch : postIndex.batches(BATCH_SIZE)) {
+            for (Post post : postMapper.listPostByIdList(batch)) {
+                int index = postIndex.indexOf(post.getPostId());
+                if (index >= 0) {
+                    posts[index] = post;
+                }
+            }
+        }
+        List<Post> postList = new ArrayList<>(postIdList.size());
+        for (Integer postId : postIdList) {
+            int index = postIndex.indexOf(postId);
+            if (index >= 0 && posts[index] != null) {
+                postList.add(posts[index]);
+            }
+        }
+        return postList;
+    }
+
+    /**
+     * 将帖子列表组装为视图层帖子列表(附带图片、主题标签和作者),顺序与帖子列表一致
+     * @param postList
+     * @return
+     */
+    public List<PostVO> toVOList(List<Post> postList) {
+        List<PostVO> postVOList = new ArrayList<>(postList.size());
+        if (postList.isEmpty()) {
+            return postVOList;
+        }
+        IdIndex postIndex = IdIndex.of(postList, Post::getPostId);
+
+        //帖子下标 -> 图片路径/主题标签
+        List<List<String>> imageSlots = newSlots(postIndex.size());
+        List<List<Hashtag>> hashtagSlots = newSlots(postIndex.size());
+        for (List<Integer> batch : postIndex.batches(BATCH_SIZE)) {
+            for (PostImage postImage : postMapper.listImageByPostIdList(batch)) {
+                int index = postIndex.indexOf(postImage.getPostId());
+                if (index >= 0) {
+                    imageSlots.get(index).add(postImage.getImage());
+                }
+            }
+            for (PostHashtag postHashtag : postMapper.listHashtagByPostIdList(batch)) {
+                int index = postIndex.indexOf(postHashtag.getPostId());
+                if (index >= 0) {
+                    Hashtag hashtag = new Hashtag();
+                    hashtag.setHashtagId(postHashtag.getHashtagId());
+                    hashtag.setHashtagName(postHashtag.getHashtagName());
+                    hashtagSlots.get(index).add(hashtag);
+                }
+            }
+        }
+        //用户id -> 用户摘要
+        List<Integer> userIdList = new ArrayList<>(postList.size());
+        for (Post post : postList) {
+            userIdList.add(post.getUserId());
+        }
+        Map<Integer, User> userMap = userSummaryCache.getAll(userIdList);
+
+        for (Post post : postList) {
+            int postSlot = postIndex.indexOf(post.getPostId());
+            //视图层帖子实体类
+            PostVO postVO = new PostVO();
+            postVO.setPost(post);
+            User user = userMap.get(post.getUserId());
+            if (user != null) {
+                postVO.setUser(user);
+            }
+            postVO.setPostImageList(postSlot >= 0 ? imageSlots.get(postSlot) : new ArrayList<>());
+            postVO.setPostHashtagList(postSlot >= 0 ? hashtagSlots.get(postSlot) : new ArrayList<>());
+            postVOList.add(postVO);
+        }
+        return postVOList;
+    }
+
+    private static <T> List<List<T>> newSlots(int size) {
+        List<List<T>> slots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            slots.add(new ArrayList<>());
+        }
+        return slots;
+    }
+}
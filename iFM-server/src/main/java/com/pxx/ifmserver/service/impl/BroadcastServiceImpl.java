@@ -1,13 +1,29 @@
 package com.pxx.ifmserver.service.impl;
 
+import com.pxx.ifmserver.cache.CounterType;
+import com.pxx.ifmserver.cache.EngagementCounter;
+import com.pxx.ifmserver.cache.ListenHistoryBuffer;
+import com.pxx.ifmserver.cache.MembershipIndex;
+import com.pxx.ifmserver.cache.MembershipType;
+import com.pxx.ifmserver.cache.PlayCountBuffer;
 import com.pxx.ifmserver.entity.dto.*;
 import com.pxx.ifmserver.entity.vo.BroadcastItemVO;
 import com.pxx.ifmserver.entity.vo.BroadcastVO;
 import com.pxx.ifmserver.mapper.BroadcastMapper;
 import com.pxx.ifmserver.mapper.ChannelMapper;
-import com.pxx.ifmserver.mapper.UserMapper;
+import com.pxx.ifmserver.pagination.CursorPage;
+import com.pxx.ifmserver.pagination.InvalidCursorException;
+import com.pxx.ifmserver.pagination.PageCursor;
+import com.pxx.ifmserver.pagination.PageQuery;
+import com.pxx.ifmserver.ranking.PopularityRanking;
+import com.pxx.ifmserver.ranking.RankingMetric;
+import com.pxx.ifmserver.ranking.RankingType;
 import com.pxx.ifmserver.result.Result;
+import com.pxx.ifmserver.search.DocType;
+import com.pxx.ifmserver.search.SearchIndex;
+import com.pxx.ifmserver.search.SuggestIndex;
 import com.pxx.ifmserver.service.BroadcastService;
+import com.pxx.ifmserver.service.assembler.BroadcastItemAssembler;
 import com.pxx.ifmserver.utils.FileUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DuplicateKeyException;
@@ -15,6 +31,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.ZoneOffset;
 import java.util.*;
 
@@ -26,16 +43,29 @@ public class BroadcastServiceImpl implements BroadcastService {
     @Autowired
     private ChannelMapper channelMapper;
     @Autowired
-    private UserMapper userMapper;
+    private PlayCountBuffer playCountBuffer;
+    @Autowired
+    private ListenHistoryBuffer listenHistoryBuffer;
+    @Autowired
+    private BroadcastItemAssembler broadcastItemAssembler;
+    @Autowired
+    private PopularityRanking popularityRanking;
+    @Autowired
+    private MembershipIndex membershipIndex;
+    @Autowired
+    private EngagementCounter engagementCounter;
+    @Autowired
+    private SearchIndex searchIndex;
+    @Autowired
+    private SuggestIndex suggestIndex;
 
     //封面图片储存路径
     private static final String BROADCAST_PICTURE_PATH="/resources/images/broadcast/";
     //音频文件储存路径
     private static final String BROADCAST_AUDIO_PATH="/resources/audio/";
-    // 热门排序权重定义
-    private static final double WEIGHT_PLAY_COUNT = 0.5;
-    private static final double WEIGHT_COLLECTION_COUNT = 0.3;
-    private static final double WEIGHT_POST_COUNT = 0.2;
+    //收听历史排序:上次收听时间从新到旧,时间相同按节目id从大到小(与分页查询的ORDER BY一致)
+    private static final Comparator<BroadcastHistory> HISTORY_ORDER =
+            Comparator.comparing(BroadcastHistory::getHistoryTime).thenComparing(BroadcastHistory::getBroadcastId).reversed();
     /**
      * 根据节目id获取节目详细数据
      * @param broadcastId
@@ -46,6 +76,8 @@ public class BroadcastServiceImpl implements BroadcastService {
         Map<String, Object> data = new HashMap<>();
         try {
             Broadcast broadcast = broadcastMapper.getBroadcastByBroadcastId(broadcastId);
+            //合并尚未写回数据库的播放量
+            broadcast.setBroadcastPlayCount((int) (broadcast.getBroadcastPlayCount() + playCountBuffer.getPending(broadcastId)));
             Channel channel = channelMapper.getChannelByChannelId(broadcast.getChannelId());
             BroadcastVO broadcastVO = new BroadcastVO();
             broadcastVO.setBroadcast(broadcast);
@@ -59,28 +91,27 @@ public class BroadcastServiceImpl implements BroadcastService {
     }
 
     /**
-     * 获取频道ID为channelId的频道所有的节目
+     * 分页获取频道ID为channelId的频道的节目(从新到旧)
      * @param channelId
-     * @return 节目简项数据列表
+     * @param cursor 分页游标,为空表示第一页
+     * @param size 每页条数
+     * @return 节目简项数据列表,下一页游标
      */
     @Override
-    public Result listBroadcastByChannelId(Integer channelId) {
+    public Result listBroadcastByChannelId(Integer channelId, String cursor, Integer size) {
         Map<String, Object> data = new HashMap<>();
         try {
-            List<Broadcast> broadcastList = broadcastMapper.listBroadcastByChannelId(channelId);
+            PageQuery page = PageQuery.of(cursor, size);
+            CursorPage<Broadcast> broadcastPage = CursorPage.of(broadcastMapper.listBroadcastByChannelIdPage(channelId, page),
+                    page, Broadcast::getGmtCreate, Broadcast::getBroadcastId);
             //将节目信息整合到节目简项 并存入返回体的数据部分
-            List<BroadcastItemVO> broadcastItemVOList = new ArrayList<>();
-            for (Broadcast broadcast : broadcastList) {
-                BroadcastItemVO broadcastItemVO = new BroadcastItemVO();
-                Channel channel=channelMapper.getChannelByChannelId(broadcast.getChannelId());
-                User user=userMapper.getUserByUserId(broadcast.getUserId());
-                broadcastItemVO.setBroadcast(broadcast);
-                broadcastItemVO.setChannelTitle(channel.getChannelTitle());
-                broadcastItemVO.setUserName(user.getUserName());
-                broadcastItemVOList.add(broadcastItemVO);
-            }
+            List<BroadcastItemVO> broadcastItemVOList = broadcastItemAssembler.toItemList(broadcastPage.getList());
             data.put("broadcastList",broadcastItemVOList);
+            broadcastPage.fill(data);
             return Result.ok().data(data);
+        }catch (InvalidCursorException e){
+            data.put("error", e.getMessage());
+            return new Result(false,20006,"分页游标无效",data);
         }catch (DuplicateKeyException e){
             data.put("error", e.getMessage());
             return new Result(false,20001,"未知错误",data);
@@ -123,6 +154,8 @@ public class BroadcastServiceImpl implements BroadcastService {
             broadcast.setChannelId(channelId);
             //储存节目数据记录到表中,并获得节目id(自动保存在broadcast.broadcastId中)
             broadcastMapper.insertBroadcast(broadcast);
+            searchIndex.refresh(DocType.BROADCAST, broadcast.getBroadcastId());
+            suggestIndex.add(broadcastTitle, 0);
             try {
                 pictureFileName = FileUtils.savePicture(broadcast.getBroadcastId(), broadcastPicture,BROADCAST_PICTURE_PATH);
 
@@ -136,6 +169,8 @@ public class BroadcastServiceImpl implements BroadcastService {
             broadcastMapper.updateBroadcastPicurlByBroadcastId(broadcast.getBroadcastId(), "/images/broadcast/"+pictureFileName);
             //更新频道的上次更新时间
             channelMapper.updateChannelUpdateTimeByChannelId(channelId);
+            popularityRanking.add(RankingType.BROADCAST, broadcast.getBroadcastId());
+            popularityRanking.touch(RankingType.CHANNEL, channelId);
             data.put("broadcastId",broadcast.getBroadcastId());//返回节目ID
             return Result.ok().data(data);
         }catch (RuntimeException e){
@@ -214,6 +249,24 @@ public class BroadcastServiceImpl implements BroadcastService {
      */
     @Override
     public Result updateBroadcastAudio(Integer userId, Integer broadcastId, MultipartFile broadcastAudio) {
+        Map<String, Object> data = new HashMap<>();
+        try (InputStream audioStream = broadcastAudio.getInputStream()) {
+            return uploadBroadcastAudio(userId, broadcastId, audioStream);
+        } catch (IOException e) {
+            data.put("error.message", e.getMessage());
+            return new Result(false,20001,"未知错误,音频文件修改失败",data);
+        }
+    }
+
+    /**
+     * 上传节目音频(以流的方式写入,添加和修改音频均可使用)
+     * @param userId
+     * @param broadcastId
+     * @param audioStream 音频数据输入流
+     * @return
+     */
+    @Override
+    public Result uploadBroadcastAudio(Integer userId, Integer broadcastId, InputStream audioStream) {
         Map<String, Object> data = new HashMap<>();
         try{
             Broadcast broadcast=broadcastMapper.getBroadcastByBroadcastId(broadcastId);
@@ -227,15 +280,22 @@ public class BroadcastServiceImpl implements BroadcastService {
                 return new Result(false,20002,"修改失败,无权操作",data);
             }
 
-            //用于储存新音频文件名称和音频时长(fileName,)
+            //用于储存新音频文件名称和音频时长(fileName,duration,contentHash,size)
             Map<String, Object> audioFile;
             //获取旧音频文件路径
             String oldAudioPath = broadcast.getBroadcastAudio();
             try {
-                //储存新图片文件并获取文件名称
-                audioFile = FileUtils.saveAudio(broadcastId,broadcastAudio,BROADCAST_AUDIO_PATH);
+                //边接收边储存新音频文件,同时得到时长和内容哈希
+                audioFile = FileUtils.saveAudio(broadcastId,audioStream,BROADCAST_AUDIO_PATH);
+                if((Long) audioFile.get("size")==0){
+                    FileUtils.deleteAudio("/audio/"+audioFile.get("fileName"));
+                    data.put("error","音频文件为空");
+                    return new Result(false,70001,"文件上传失败",data);
+                }
                 //删除旧音频文件
-                FileUtils.deleteAudio(oldAudioPath);
+                if(oldAudioPath!=null){
+                    FileUtils.deleteAudio(oldAudioPath);
+                }
             } catch (IOException e) {
                 data.put("error.message", e.getMessage());
                 return new Result(false,20001,"未知错误,音频文件修改失败",data);
@@ -247,6 +307,7 @@ public class BroadcastServiceImpl implements BroadcastService {
             //向客户端返回相关数据
             data.put("broadcastAudio","/audio/"+audioFile.get("fileName"));
             data.put("broadcastDuraction",(Long) audioFile.get("duration"));
+            data.put("audioHash",audioFile.get("contentHash"));
             return Result.ok().data(data);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
@@ -276,6 +337,8 @@ public class BroadcastServiceImpl implements BroadcastService {
             }
             //更新数据库中节目的标题
             broadcastMapper.updateBroadcastTitleByChannelId(broadcastId,broadcastTitle);
+            searchIndex.refresh(DocType.BROADCAST, broadcastId);
+            suggestIndex.add(broadcastTitle, 0);
             data.put("broadcastTitle",broadcastTitle);
             return Result.ok().data(data);
         }catch (RuntimeException e){
@@ -306,6 +369,7 @@ public class BroadcastServiceImpl implements BroadcastService {
                 return new Result(false,20002,"修改失败,无权操作",data);
             }
             broadcastMapper.updateBroadcastDetailByChannelId(broadcastId,broadcastDetail);
+            searchIndex.refresh(DocType.BROADCAST, broadcastId);
             data.put("broadcastDetail",broadcastDetail);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
@@ -324,19 +388,23 @@ public class BroadcastServiceImpl implements BroadcastService {
     public Result searchBroadcast(String keyWord) {
         Map<String, Object> data = new HashMap<>();
         try{
-            //根据关键词获取节目数据
-            List<Broadcast> broadcastList = broadcastMapper.listBroadcastByKeyWord(keyWord);
-            //将节目信息整合到节目简项 并存入返回体的数据部分
-            List<BroadcastItemVO> broadcastItemVOList = new ArrayList<>();
-            for (Broadcast broadcast : broadcastList) {
-                BroadcastItemVO broadcastItemVO = new BroadcastItemVO();
-                Channel channel=channelMapper.getChannelByChannelId(broadcast.getChannelId());
-                User user=userMapper.getUserByUserId(broadcast.getUserId());
-                broadcastItemVO.setBroadcast(broadcast);
-                broadcastItemVO.setChannelTitle(channel.getChannelTitle());
-                broadcastItemVO.setUserName(user.getUserName());
-                broadcastItemVOList.add(broadcastItemVO);
+            //根据关键词获取节目数据:优先使用全文索引(按相关度排序),索引不可用时退回数据库模糊查询
+            List<Broadcast> broadcastList;
+            List<Integer> broadcastIdList = searchIndex.search(DocType.BROADCAST, keyWord);
+            if (broadcastIdList == null) {
+                broadcastList = broadcastMapper.listBroadcastByKeyWord(keyWord);
+            } else {
+                Map<Integer, Broadcast> broadcastMap = broadcastItemAssembler.loadBroadcasts(broadcastIdList);
+                broadcastList = new ArrayList<>(broadcastMap.size());
+                for (Integer broadcastId : broadcastIdList) {
+                    Broadcast broadcast = broadcastMap.get(broadcastId);
+                    if (broadcast != null) {
+                        broadcastList.add(broadcast);
+                    }
+                }
             }
+            //将节目信息整合到节目简项 并存入返回体的数据部分
+            List<BroadcastItemVO> broadcastItemVOList = broadcastItemAssembler.toItemList(broadcastList);
             data.put("broadcastList", broadcastItemVOList);
             return Result.ok().data(data);
         }catch (RuntimeException e){
@@ -382,6 +450,12 @@ public class BroadcastServiceImpl implements BroadcastService {
             broadcastMapper.deleteBroadcast(broadcastId);
             broadcastMapper.deleteBroadcastHistoryByBroadcastId(broadcastId);
             broadcastMapper.deleteBroadcastFavoriteByBroadcastId(broadcastId);
+            membershipIndex.removeFromAll(MembershipType.BROADCAST_FAVORITE, broadcastId);
+            playCountBuffer.discard(broadcastId);
+            engagementCounter.discard(CounterType.BROADCAST_COLLECTION, broadcastId);
+            listenHistoryBuffer.removeByBroadcastId(broadcastId);
+            popularityRanking.remove(RankingType.BROADCAST, broadcastId);
+            searchIndex.remove(DocType.BROADCAST, broadcastId);
             //删除
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
@@ -391,51 +465,27 @@ public class BroadcastServiceImpl implements BroadcastService {
     }
 
 
-    /**
-     * 计算热门分数
-     * @param broadcast
-     * @return
-     */
-    private double calculateHotScore(Broadcast broadcast) {
-        return (broadcast.getBroadcastPlayCount() * WEIGHT_PLAY_COUNT) +
-                (broadcast.getBroadcastCollectionCount() * WEIGHT_COLLECTION_COUNT) +
-                (broadcast.getBroadcastPostCount() * WEIGHT_POST_COUNT);
-    }
     /**
      * 获取热门节目
+     * 排名由PopularityRanking在后台预先算好,这里只按排名批量取回节目
      * @return
      */
     @Override
     public Result listPopularBroadcast() {
         Map<String, Object> data = new HashMap<>();
-        //单位 小时
-        int hour = 72;
-        //获取近期(一个月以内)更新的至少88个节目
-        List<Broadcast> broadcastList=new ArrayList<>();
-        while(broadcastList.size()<88 && hour<24*30){
-            broadcastList=broadcastMapper.listBroadcastCtreateInHour(hour,89);
-            hour+=6;
-        }
-        // 计算每个节目的热门分数并排序
-        Collections.sort(broadcastList, new Comparator<Broadcast>() {
-            @Override
-            public int compare(Broadcast b1, Broadcast b2) {
-                return Double.compare(calculateHotScore(b2), calculateHotScore(b1));
+        List<Integer> topIdList = popularityRanking.top(RankingType.BROADCAST);
+        Map<Integer, Broadcast> broadcastMap = broadcastItemAssembler.loadBroadcasts(topIdList);
+        //保持排名顺序,跳过已被删除的节目
+        List<Broadcast> topBroadcasts = new ArrayList<>(topIdList.size());
+        for (Integer broadcastId : topIdList) {
+            Broadcast broadcast = broadcastMap.get(broadcastId);
+            if (broadcast != null) {
+                broadcast.setBroadcastPlayCount((int) (broadcast.getBroadcastPlayCount() + playCountBuffer.getPending(broadcastId)));
+                topBroadcasts.add(broadcast);
             }
-        });
-        // 获取前20个热门节目
-        List<Broadcast> top20Broadcasts = broadcastList.subList(0, Math.min(20, broadcastList.size()));
-        //将节目信息整合到节目简项 并存入返回体的数据部分
-        List<BroadcastItemVO> broadcastItemVOList = new ArrayList<>();
-        for (Broadcast broadcast : top20Broadcasts) {
-            BroadcastItemVO broadcastItemVO = new BroadcastItemVO();
-            Channel channel=channelMapper.getChannelByChannelId(broadcast.getChannelId());
-            User user=userMapper.getUserByUserId(broadcast.getUserId());
-            broadcastItemVO.setBroadcast(broadcast);
-            broadcastItemVO.setChannelTitle(channel.getChannelTitle());
-            broadcastItemVO.setUserName(user.getUserName());
-            broadcastItemVOList.add(broadcastItemVO);
         }
+        //将节目信息整合到节目简项 并存入返回体的数据部分
+        List<BroadcastItemVO> broadcastItemVOList = broadcastItemAssembler.toItemList(topBroadcasts);
         data.put("broadcastList",broadcastItemVOList);
         return Result.ok().data(data);
     }
@@ -451,7 +501,25 @@ public class BroadcastServiceImpl implements BroadcastService {
         Map<String, Object> data = new HashMap<>();
         try{
             //订阅信息储存于返回体
-            data.put("favorite",broadcastMapper.checkBroadcastFavoriteById(userId,broadcastId));
+            data.put("favorite",membershipIndex.contains(MembershipType.BROADCAST_FAVORITE,userId,broadcastId));
+        }catch (RuntimeException e){
+            data.put("error.message", e.getMessage());
+            return new Result(false,20001,"未知错误",data);
+        }
+        return Result.ok().data(data);
+    }
+
+    /**
+     * 批量检查节目是否被用户收藏
+     * @param userId
+     * @param broadcastIdList
+     * @return 节目id -> 是否收藏
+     */
+    @Override
+    public Result checkBroadcastList(Integer userId, List<Integer> broadcastIdList) {
+        Map<String, Object> data = new HashMap<>();
+        try{
+            data.put("favoriteMap",membershipIndex.containsAll(MembershipType.BROADCAST_FAVORITE,userId,broadcastIdList));
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
             return new Result(false,20001,"未知错误",data);
@@ -470,14 +538,8 @@ public class BroadcastServiceImpl implements BroadcastService {
     public Result updateHistory(Integer userId, Integer broadcastId, Integer lastListenDuration) {
         Map<String, Object> data = new HashMap<>();
         try{
-            //检查收听历史记录是否已存在
-            if(broadcastMapper.checkBroadcastHistoryById(userId,broadcastId)){
-                //存在则跟新
-                broadcastMapper.updateBroadcastHistory(userId,broadcastId,lastListenDuration);
-            }else{
-                //否则添加收听历史记录
-                broadcastMapper.insertBroadcastHistory(userId,broadcastId,lastListenDuration);
-            }
+            //只保留最新进度,由ListenHistoryBuffer定时批量写回数据库
+            listenHistoryBuffer.record(userId,broadcastId,lastListenDuration);
             return Result.ok();
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
@@ -497,17 +559,17 @@ public class BroadcastServiceImpl implements BroadcastService {
     public Result changeFavorite(Integer userId, Integer broadcastId) {
         Map<String, Object> data = new HashMap<>();
         try{
-            if(broadcastMapper.checkBroadcastFavoriteById(userId,broadcastId)){
-                //取消收藏,返回收藏结果:false
-                broadcastMapper.deleteBroadcastFavorite(userId,broadcastId);
-                broadcastMapper.updateBroadcastCollectionCount(broadcastId,-1);
-                data.put("favorite",false);
-            }else{
-                //收藏频道,返回收藏结果:true
-                broadcastMapper.insertBroadcastFavorite(userId,broadcastId);
-                broadcastMapper.updateBroadcastCollectionCount(broadcastId,1);
-                data.put("favorite",true);
+            //已收藏则取消收藏,否则收藏;收藏数由EngagementCounter批量写回
+            EngagementCounter.Toggle toggle = engagementCounter.toggle(CounterType.BROADCAST_COLLECTION, broadcastId, null,
+                    () -> broadcastMapper.insertBroadcastFavorite(userId, broadcastId),
+                    () -> broadcastMapper.deleteBroadcastFavorite(userId, broadcastId));
+            if (toggle.isActive()) {
+                membershipIndex.add(MembershipType.BROADCAST_FAVORITE,userId,broadcastId);
+            } else {
+                membershipIndex.remove(MembershipType.BROADCAST_FAVORITE,userId,broadcastId);
             }
+            popularityRanking.adjust(RankingMetric.BROADCAST_COLLECTION, broadcastId, toggle.getDelta());
+            data.put("favorite",toggle.isActive());
             return Result.ok().data(data);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
@@ -525,8 +587,9 @@ public class BroadcastServiceImpl implements BroadcastService {
     public Result increasePlayCount(Integer broadcastId) {
         Map<String, Object> data = new HashMap<>();
         try{
-            //播放量加一
-            broadcastMapper.updateBroadcastPlayCount(broadcastId);
+            //播放量加一(先累加在内存中,由PlayCountBuffer定时批量写回数据库)
+            playCountBuffer.increment(broadcastId);
+            popularityRanking.adjust(RankingMetric.BROADCAST_PLAY, broadcastId, 1);
             return Result.ok();
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
@@ -544,7 +607,9 @@ public class BroadcastServiceImpl implements BroadcastService {
     public Result deleteBroadcastHistory(Integer userId, Integer broadcastId){
         Map<String, Object> data = new HashMap<>();
         try{
-            if(!broadcastMapper.checkBroadcastHistoryById(userId,broadcastId)){
+            //先移除缓冲中的进度,避免删除后又被写回
+            boolean buffered = listenHistoryBuffer.remove(userId,broadcastId);
+            if(!buffered && !broadcastMapper.checkBroadcastHistoryById(userId,broadcastId)){
                 data.put("error", "id为 "+broadcastId+" 的节目不在收听历史记录中");
                 return new Result(false,90002,"历史记录删除失败",data);
             }
@@ -559,32 +624,51 @@ public class BroadcastServiceImpl implements BroadcastService {
     }
 
     /**
-     * 获取用户收听历史表中的节目(附带上次收听时长)
+     * 分页获取用户收听历史表中的节目(附带上次收听时长,按上次收听时间从新到旧)
      * @param userId
+     * @param cursor 分页游标,为空表示第一页
+     * @param size 每页条数
      * @return
      */
     @Override
-    public Result listBroadcastHistory(Integer userId){
+    public Result listBroadcastHistory(Integer userId, String cursor, Integer size){
         Map<String, Object> data = new HashMap<>();
         try {
             //获取此用户节目历史收听记录数据
-            List<BroadcastHistory> broadcastHistoryList=broadcastMapper.listHistoryBroadcastByUserId(userId);
-            //整合节目数据,储存到返回体中
-            List<BroadcastItemVO> broadcastItemVOList=new ArrayList<>();
+            PageQuery page = PageQuery.of(cursor, size);
+            CursorPage<BroadcastHistory> historyPage=listHistoryPage(userId,page);
+            List<BroadcastHistory> broadcastHistoryList=historyPage.getList();
+            //批量获取节目基础数据
+            List<Integer> broadcastIdList=new ArrayList<>(broadcastHistoryList.size());
+            for(BroadcastHistory broadcastHistory:broadcastHistoryList){
+                broadcastIdList.add(broadcastHistory.getBroadcastId());
+            }
+            Map<Integer,Broadcast> broadcastMap=broadcastItemAssembler.loadBroadcasts(broadcastIdList);
+            //跳过已被删除的节目
+            List<Broadcast> broadcastList=new ArrayList<>(broadcastHistoryList.size());
+            List<BroadcastHistory> existHistoryList=new ArrayList<>(broadcastHistoryList.size());
             for(BroadcastHistory broadcastHistory:broadcastHistoryList){
-                //整合节目基础数据
-                Broadcast broadcast=broadcastMapper.getBroadcastByBroadcastId(broadcastHistory.getBroadcastId());
+                Broadcast broadcast=broadcastMap.get(broadcastHistory.getBroadcastId());
                 if(broadcast==null){continue;}
-                BroadcastItemVO broadcastItemVO=new BroadcastItemVO();
-                broadcastItemVO.setBroadcast(broadcast);
+                broadcastList.add(broadcast);
+                existHistoryList.add(broadcastHistory);
+            }
+            //整合节目数据,储存到返回体中
+            List<BroadcastItemVO> broadcastItemVOList=broadcastItemAssembler.toItemList(broadcastList);
+            for(int i=0;i<broadcastItemVOList.size();i++){
+                BroadcastHistory broadcastHistory=existHistoryList.get(i);
+                BroadcastItemVO broadcastItemVO=broadcastItemVOList.get(i);
                 //获取上次收听到的时长
                 broadcastItemVO.setLastListenDuration(broadcastHistory.getLastListenDuration());
                 //获取上次收听的时间戳
                 broadcastItemVO.setHitoryTime(broadcastHistory.getHistoryTime().toInstant(ZoneOffset.of("+8")).toEpochMilli());
-                broadcastItemVOList.add(broadcastItemVO);
             }
             data.put("broadcastList",broadcastItemVOList);
+            historyPage.fill(data);
             return Result.ok().data(data);
+        }catch (InvalidCursorException e){
+            data.put("error", e.getMessage());
+            return new Result(false,20006,"分页游标无效",data);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
             return new Result(false,20001,"未知错误,历史收听节目数据获取失败",data);
@@ -602,7 +686,7 @@ public class BroadcastServiceImpl implements BroadcastService {
         Map<String, Object> data = new HashMap<>();
         try {
             //获取此用户节目历史收听记录数据
-            BroadcastHistory broadcastHistory = broadcastMapper.getHistoryBroadcastByUserId(userId,broadcastId);
+            BroadcastHistory broadcastHistory = getLatestHistory(userId,broadcastId);
             if(broadcastHistory==null){
                 data.put("lastListenDuration",0);
             }else {
@@ -616,36 +700,109 @@ public class BroadcastServiceImpl implements BroadcastService {
     }
 
     /**
-     * 获取用户收藏表中的节目
+     * 获取用户对该节目最新的收听进度(优先取尚未写回数据库的缓冲进度)
      * @param userId
+     * @param broadcastId
+     * @return
+     */
+    private BroadcastHistory getLatestHistory(Integer userId,Integer broadcastId){
+        BroadcastHistory broadcastHistory = listenHistoryBuffer.get(userId,broadcastId);
+        if(broadcastHistory!=null){
+            return broadcastHistory;
+        }
+        return broadcastMapper.getHistoryBroadcastByUserId(userId,broadcastId);
+    }
+
+    /**
+     * 获取一页收听历史,并合并缓冲中尚未写回数据库的收听进度
+     * 缓冲中的进度比数据库新,对应节目的数据库记录一律跳过,缓冲记录按其收听时间落入对应的页;
+     * 数据库多取与缓冲记录数相同的条数,跳过旧记录后仍能凑满一页
+     * @param userId
+     * @param page
+     * @return
+     */
+    private CursorPage<BroadcastHistory> listHistoryPage(Integer userId,PageQuery page){
+        Collection<BroadcastHistory> bufferedList = listenHistoryBuffer.listByUserId(userId);
+        if(bufferedList.isEmpty()){
+            return CursorPage.of(broadcastMapper.listHistoryBroadcastByUserIdPage(userId,page),
+                    page, BroadcastHistory::getHistoryTime, BroadcastHistory::getBroadcastId);
+        }
+        Set<Integer> bufferedIdSet = new HashSet<>();
+        for(BroadcastHistory broadcastHistory:bufferedList){
+            bufferedIdSet.add(broadcastHistory.getBroadcastId());
+        }
+        List<BroadcastHistory> merged = new ArrayList<>();
+        for(BroadcastHistory broadcastHistory:broadcastMapper.listHistoryBroadcastByUserIdPage(userId,page.extend(bufferedIdSet.size()))){
+            if(!bufferedIdSet.contains(broadcastHistory.getBroadcastId())){
+                merged.add(broadcastHistory);
+            }
+        }
+        PageCursor pageCursor = page.getCursor();
+        for(BroadcastHistory broadcastHistory:bufferedList){
+            //只保留排在游标之后的缓冲记录(更早的已在前面的页返回)
+            if(pageCursor==null || HISTORY_ORDER.compare(broadcastHistory,cursorHistory(pageCursor))>0){
+                merged.add(broadcastHistory);
+            }
+        }
+        merged.sort(HISTORY_ORDER);
+        return CursorPage.of(merged, page, BroadcastHistory::getHistoryTime, BroadcastHistory::getBroadcastId);
+    }
+
+    private static BroadcastHistory cursorHistory(PageCursor pageCursor){
+        BroadcastHistory broadcastHistory = new BroadcastHistory();
+        broadcastHistory.setHistoryTime(pageCursor.getTime());
+        broadcastHistory.setBroadcastId(pageCursor.getId());
+        return broadcastHistory;
+    }
+
+    /**
+     * 分页获取用户收藏表中的节目(按收藏时间从新到旧)
+     * @param userId
+     * @param cursor 分页游标,为空表示第一页
+     * @param size 每页条数
      * @return
      */
     @Override
-    public Result listFavoriteBroadcast(Integer userId){
+    public Result listFavoriteBroadcast(Integer userId, String cursor, Integer size){
         Map<String, Object> data = new HashMap<>();
         try {
             //获取此用户节目收藏表数据
-            List<BroadcastFavorite> broadcastFavoriteList=broadcastMapper.listFavoriteBroadcastByUserId(userId);
-            //整合节目数据,储存到返回体中
-            List<BroadcastItemVO> broadcastItemVOList=new ArrayList<>();
+            PageQuery page = PageQuery.of(cursor, size);
+            CursorPage<BroadcastFavorite> favoritePage=CursorPage.of(broadcastMapper.listFavoriteBroadcastByUserIdPage(userId,page),
+                    page, BroadcastFavorite::getGmtCreate, BroadcastFavorite::getBroadcastId);
+            List<BroadcastFavorite> broadcastFavoriteList=favoritePage.getList();
+            //批量获取节目基础数据
+            List<Integer> broadcastIdList=new ArrayList<>(broadcastFavoriteList.size());
             for(BroadcastFavorite broadcastFavorite:broadcastFavoriteList){
-                //整合节目基础数据
-                Broadcast broadcast=broadcastMapper.getBroadcastByBroadcastId(broadcastFavorite.getBroadcastId());
+                broadcastIdList.add(broadcastFavorite.getBroadcastId());
+            }
+            Map<Integer,Broadcast> broadcastMap=broadcastItemAssembler.loadBroadcasts(broadcastIdList);
+            //跳过已被删除的节目
+            List<Broadcast> broadcastList=new ArrayList<>(broadcastFavoriteList.size());
+            List<BroadcastFavorite> existFavoriteList=new ArrayList<>(broadcastFavoriteList.size());
+            for(BroadcastFavorite broadcastFavorite:broadcastFavoriteList){
+                Broadcast broadcast=broadcastMap.get(broadcastFavorite.getBroadcastId());
                 if(broadcast==null){continue;}
-                Channel channel = channelMapper.getChannelByChannelId(broadcast.getChannelId());
-                BroadcastItemVO broadcastItemVO=new BroadcastItemVO();
-                broadcastItemVO.setBroadcast(broadcast);
-                if(channel!=null){
-                    broadcastItemVO.setChannelTitle(channel.getChannelTitle());
-                } else {
-                    continue;
-                }
+                broadcastList.add(broadcast);
+                existFavoriteList.add(broadcastFavorite);
+            }
+            //整合节目数据,储存到返回体中
+            List<BroadcastItemVO> broadcastItemVOList=new ArrayList<>(broadcastList.size());
+            List<BroadcastItemVO> itemList=broadcastItemAssembler.toItemList(broadcastList);
+            for(int i=0;i<itemList.size();i++){
+                BroadcastItemVO broadcastItemVO=itemList.get(i);
+                //跳过所属频道已被删除的节目
+                if(broadcastItemVO.getChannelTitle()==null){continue;}
                 //获取收藏时间戳
-                broadcastItemVO.setFavoriteTime(broadcastFavorite.getGmtCreate().toInstant(ZoneOffset.of("+8")).toEpochMilli());
+                broadcastItemVO.setFavoriteTime(existFavoriteList.get(i).getGmtCreate().toInstant(ZoneOffset.of("+8")).toEpochMilli());
                 broadcastItemVOList.add(broadcastItemVO);
             }
             data.put("broadcastList",broadcastItemVOList);
+            favoritePage.fill(data);
             return Result.ok().data(data);
+        }catch (InvalidCursorException e){
+            data.put("error", e.getMessage());
+            return new Result(false,20006,"分页游标无效",data);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
             return new Result(false,20001,"未知错误,历史收听节目数据获取失败",data);
@@ -663,7 +820,7 @@ public class BroadcastServiceImpl implements BroadcastService {
         Map<String, Object> data = new HashMap<>();
         try {
             //获取此用户节目历史收听记录数据
-            BroadcastHistory broadcastHistory = broadcastMapper.getHistoryBroadcastByUserId(userId,broadcastId);
+            BroadcastHistory broadcastHistory = getLatestHistory(userId,broadcastId);
             BroadcastItemVO broadcastItemVO=new BroadcastItemVO();
             Broadcast broadcast=broadcastMapper.getBroadcastByBroadcastId(broadcastId);
             broadcastItemVO.setBroadcast(broadcast);
@@ -684,13 +841,16 @@ public class BroadcastServiceImpl implements BroadcastService {
     public Result getBroadcastByIdList(List<Integer> broadcastIdList){
         Map<String, Object> data = new HashMap<>();
         try {
-            List<BroadcastItemVO> broadcastItemVOList=new ArrayList<>();
+            //批量获取节目,按请求的id顺序返回,跳过不存在的节目
+            Map<Integer,Broadcast> broadcastMap=broadcastItemAssembler.loadBroadcasts(broadcastIdList);
+            List<Broadcast> broadcastList=new ArrayList<>(broadcastIdList.size());
             for(Integer broadcastId:broadcastIdList){
-                Broadcast broadcast=broadcastMapper.getBroadcastByBroadcastId(broadcastId);
-                BroadcastItemVO broadcastItemVO=new BroadcastItemVO();
-                broadcastItemVO.setBroadcast(broadcast);
-                broadcastItemVOList.add(broadcastItemVO);
+                Broadcast broadcast=broadcastMap.get(broadcastId);
+                if(broadcast!=null){
+                    broadcastList.add(broadcast);
+                }
             }
+            List<BroadcastItemVO> broadcastItemVOList=broadcastItemAssembler.toItemList(broadcastList);
             data.put("broadcastList",broadcastItemVOList);
             return Result.ok().data(data);
         }catch (RuntimeException e){
@@ -733,6 +893,7 @@ public class BroadcastServiceImpl implements BroadcastService {
             //更新数据库中该节目的封面图片路径和音频文件路径,音频时长
             broadcastMapper.updateBroadcastAudioByBroadcastId(broadcastId, "/audio/"+ audioFileInfo.get("fileName"));
             broadcastMapper.updateBroadcastDurationByBroadcastId(broadcastId, (Long) audioFileInfo.get("duration"));
+            data.put("audioHash",audioFileInfo.get("contentHash"));
 
             return Result.ok().data(data);
         }catch (RuntimeException e){
@@ -748,6 +909,7 @@ public class BroadcastServiceImpl implements BroadcastService {
         try {
             //更新关联帖子数量
             broadcastMapper.updateBroadcastPostCount(id,num);
+            popularityRanking.adjust(RankingMetric.BROADCAST_POST, id, num);
             return Result.ok().data(data);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
@@ -1,8 +1,14 @@
 package com.pxx.ifmserver.service.impl;
 
 
+import com.pxx.ifmserver.cache.CounterType;
+import com.pxx.ifmserver.cache.EngagementCounter;
+import com.pxx.ifmserver.cache.MembershipIndex;
+import com.pxx.ifmserver.cache.MembershipType;
+import com.pxx.ifmserver.cache.UserSummaryCache;
 import com.pxx.ifmserver.entity.dto.Broadcast;
 import com.pxx.ifmserver.entity.dto.Channel;
+import com.pxx.ifmserver.entity.dto.ChannelSubscription;
 import com.pxx.ifmserver.entity.dto.Hashtag;
 import com.pxx.ifmserver.entity.dto.User;
 import com.pxx.ifmserver.entity.vo.ChannelItemVO;
@@ -10,8 +16,18 @@ import com.pxx.ifmserver.entity.vo.ChannelVO;
 import com.pxx.ifmserver.mapper.BroadcastMapper;
 import com.pxx.ifmserver.mapper.ChannelMapper;
 import com.pxx.ifmserver.mapper.HashtagMapper;
-import com.pxx.ifmserver.mapper.UserMapper;
+import com.pxx.ifmserver.pagination.CursorPage;
+import com.pxx.ifmserver.pagination.InvalidCursorException;
+import com.pxx.ifmserver.pagination.PageQuery;
+import com.pxx.ifmserver.ranking.PopularityRanking;
+import com.pxx.ifmserver.ranking.RankingMetric;
+import com.pxx.ifmserver.ranking.RankingType;
+import com.pxx.ifmserver.ranking.TrendingTracker;
+import com.pxx.ifmserver.ranking.TrendingType;
 import com.pxx.ifmserver.result.Result;
+import com.pxx.ifmserver.search.DocType;
+import com.pxx.ifmserver.search.SearchIndex;
+import com.pxx.ifmserver.search.SuggestIndex;
 import com.pxx.ifmserver.service.BroadcastService;
 import com.pxx.ifmserver.service.ChannelService;
 import com.pxx.ifmserver.utils.FileUtils;
@@ -34,9 +50,21 @@ public class ChannelServiceImpl implements ChannelService {
     @Autowired
     private HashtagMapper hashtagMapper;
     @Autowired
-    private UserMapper userMapper;
+    private UserSummaryCache userSummaryCache;
     @Autowired
     private BroadcastMapper broadcastMapper;
+    @Autowired
+    private PopularityRanking popularityRanking;
+    @Autowired
+    private MembershipIndex membershipIndex;
+    @Autowired
+    private EngagementCounter engagementCounter;
+    @Autowired
+    private SearchIndex searchIndex;
+    @Autowired
+    private SuggestIndex suggestIndex;
+    @Autowired
+    private TrendingTracker trendingTracker;
 
     /**
      * 根据频道Id获取该频道详细信息
@@ -57,7 +85,7 @@ public class ChannelServiceImpl implements ChannelService {
             //获取频道主题标签信息
             List<Hashtag> channelHashtag = channelMapper.listHashtagByChannelId(channelId);
             //获取频道作者用户信息
-            User user=userMapper.getUserByUserId(channel.getUserId());
+            User user=userSummaryCache.get(channel.getUserId());
             //整合 频道基本信息+频道主题标签信息+作者基本信息
             ChannelVO channelVO = new ChannelVO();
             channelVO.setChannel(channel);
@@ -74,19 +102,24 @@ public class ChannelServiceImpl implements ChannelService {
     }
 
     /**
-     * 根据用户id获取该用户创建的所有频道
+     * 根据用户id分页获取该用户创建的频道(从新到旧)
      * 其中频道基本信息和频道主题标签信息分贝获取再整合
      * @param userId
+     * @param cursor 分页游标,为空表示第一页
+     * @param size 每页条数
      * @return
      */
     @Override
-    public Result listChannelByUserId(Integer userId){
+    public Result listChannelByUserId(Integer userId, String cursor, Integer size){
         Map<String, Object> data = new HashMap<>();
         try{
+            PageQuery page = PageQuery.of(cursor, size);
             //获取用户昵称
-            String userName=userMapper.getUserByUserId(userId).getUserName();
-            //获取用户创建的所有频道信息列表
-            List<Channel> channelList = channelMapper.listChannelByUserId(userId);
+            String userName=userSummaryCache.get(userId).getUserName();
+            //分页获取用户创建的频道信息列表
+            CursorPage<Channel> channelPage = CursorPage.of(channelMapper.listChannelByUserIdPage(userId, page),
+                    page, Channel::getGmtCreate, Channel::getChannelId);
+            List<Channel> channelList = channelPage.getList();
             List<ChannelItemVO> channelItemVOList = new ArrayList<>();
             //将频道信息存入返回体的数据部分
             for (Channel channel : channelList) {
@@ -102,7 +135,11 @@ public class ChannelServiceImpl implements ChannelService {
                 channelItemVOList.add(channelItemVO);
             }
             data.put("channelList", channelItemVOList);
+            channelPage.fill(data);
             return Result.ok().data(data);
+        }catch (InvalidCursorException e){
+            data.put("error", e.getMessage());
+            return new Result(false,20006,"分页游标无效",data);
         }catch (RuntimeException e){
             data.put("error", e.getMessage());
             return new Result(false,20001,"未知错误",data);
@@ -141,9 +178,12 @@ public class ChannelServiceImpl implements ChannelService {
             channel.setChannelDetail(channelDetail);
             //储存频道数据记录到表中,并获得频道id(自动保存在channel.channelId中)
             channelMapper.insertChannel(channel);
+            searchIndex.refresh(DocType.CHANNEL, channel.getChannelId());
+            suggestIndex.add(channelTitle, 0);
             //储存频道的主题标签到数据库表中
             for (Hashtag hashtag : hashtagList) {
                 channelMapper.insertChannleHashtag(channel.getChannelId(), hashtag);
+                trendingTracker.record(TrendingType.HASHTAG, hashtag.getHashtagName());
             }
             //储存频道封面图片并获得图片文件名称
             String pictureFileName;
@@ -163,6 +203,7 @@ public class ChannelServiceImpl implements ChannelService {
             data.put("error.message", e.getMessage());
             return new Result(false,20001,"未知错误",data);
         }
+        popularityRanking.add(RankingType.CHANNEL, channel.getChannelId());
         data.put("channelId",channel.getChannelId());//返回频道ID
         return Result.ok().data(data);
     }
@@ -237,6 +278,7 @@ public class ChannelServiceImpl implements ChannelService {
                 return new Result(false,20002,"修改失败,无权操作",data);
             }
            channelMapper.updateChannelDetailByChannelId(channelId,channelDetail);
+            searchIndex.refresh(DocType.CHANNEL, channelId);
             data.put("channelDetail",channelDetail);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
@@ -267,6 +309,8 @@ public class ChannelServiceImpl implements ChannelService {
                 return new Result(false,20002,"修改失败,无权操作",data);
             }
            channelMapper.updateChannelTitleByChannelId(channelId,channelTitle);
+            searchIndex.refresh(DocType.CHANNEL, channelId);
+            suggestIndex.add(channelTitle, 0);
             data.put("channelTitle",channelTitle);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
@@ -313,6 +357,9 @@ public class ChannelServiceImpl implements ChannelService {
             channelMapper.deleteChannelByChannelId(channelId);
             //删除频道-主题标签记录
             channelMapper.deleteChannelHashtagByChannelId(channelId);
+            engagementCounter.discard(CounterType.CHANNEL_SUBSCRIBE, channelId);
+            popularityRanking.remove(RankingType.CHANNEL, channelId);
+            searchIndex.remove(DocType.CHANNEL, channelId);
         }catch (RuntimeException e){
             data.put("error", e.getMessage());
             return new Result(false,20001,"未知错误",data);
@@ -339,13 +386,21 @@ public class ChannelServiceImpl implements ChannelService {
     public Result listPopularChannel(){
         Map<String, Object> data = new HashMap<>();
         try {
-            //单位 小时
-            int hour = 72;
-            //获取近期(一个月以内)更新的至少88个频道
-            List<Channel> channelList= new ArrayList<>();
-            while(channelList.size()<88 && hour<24*30){
-                channelList=channelMapper.listPopularChannel(hour, 89);
-                hour+=6;
+            //热门频道排名由PopularityRanking在后台预先算好
+            List<Integer> topIdList = popularityRanking.top(RankingType.CHANNEL);
+            List<Channel> channelList = new ArrayList<>(topIdList.size());
+            if (!topIdList.isEmpty()) {
+                Map<Integer, Channel> channelMap = new HashMap<>();
+                for (Channel channel : channelMapper.listChannelByIdList(topIdList)) {
+                    channelMap.put(channel.getChannelId(), channel);
+                }
+                //保持排名顺序,跳过已被删除的频道
+                for (Integer channelId : topIdList) {
+                    Channel channel = channelMap.get(channelId);
+                    if (channel != null) {
+                        channelList.add(channel);
+                    }
+                }
             }
             //将频道信息存入返回体的数据部分
             List<ChannelItemVO> channelItemVOList = new ArrayList<>();
@@ -353,7 +408,7 @@ public class ChannelServiceImpl implements ChannelService {
             for (Channel channel : channelList) {
                 //获取每个频道的主题标签
                 List<Hashtag> channelHashtag = channelMapper.listHashtagByChannelId(channel.getChannelId());
-                User user = userMapper.getUserByUserId(channel.getUserId());
+                User user = userSummaryCache.get(channel.getUserId());
                 ChannelItemVO channelItemVO = new ChannelItemVO();
                 //整合频道信息数据
                 channelItemVO.setChannel(channel);
@@ -382,7 +437,25 @@ public class ChannelServiceImpl implements ChannelService {
         Map<String, Object> data = new HashMap<>();
         try{
             //订阅信息储存于返回体
-            data.put("subscribe",channelMapper.checkChannelSubscriptionById(userId,channelId));
+            data.put("subscribe",membershipIndex.contains(MembershipType.CHANNEL_SUBSCRIPTION,userId,channelId));
+        }catch (RuntimeException e){
+            data.put("error.message", e.getMessage());
+            return new Result(false,20001,"未知错误",data);
+        }
+        return Result.ok().data(data);
+    }
+
+    /**
+     * 批量检查用户是否订阅了频道
+     * @param userId
+     * @param channelIdList
+     * @return 频道id -> 是否订阅
+     */
+    @Override
+    public Result checkChannelSubscriptionList(Integer userId, List<Integer> channelIdList){
+        Map<String, Object> data = new HashMap<>();
+        try{
+            data.put("subscribeMap",membershipIndex.containsAll(MembershipType.CHANNEL_SUBSCRIPTION,userId,channelIdList));
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
             return new Result(false,20001,"未知错误",data);
@@ -400,17 +473,17 @@ public class ChannelServiceImpl implements ChannelService {
     public Result changeSubscribe(Integer userId, Integer channelId){
         Map<String, Object> data = new HashMap<>();
         try{
-            if(channelMapper.checkChannelSubscriptionById(userId,channelId)){
-                //取消订阅,返回订阅结果:false
-                channelMapper.deleteChannelSubscriptionById(userId,channelId);
-                channelMapper.updateChannelSubscribeByChannelId(channelId,-1);
-                data.put("subscribe",false);
-            }else{
-                //订阅频道,返回订阅结果:true
-                channelMapper.insertChannelSubscription(userId,channelId);
-                channelMapper.updateChannelSubscribeByChannelId(channelId,1);
-                data.put("subscribe",true);
+            //已订阅则取消订阅,否则订阅;订阅数由EngagementCounter批量写回
+            EngagementCounter.Toggle toggle = engagementCounter.toggle(CounterType.CHANNEL_SUBSCRIBE, channelId, null,
+                    () -> channelMapper.insertChannelSubscription(userId, channelId),
+                    () -> channelMapper.deleteChannelSubscriptionById(userId, channelId));
+            if (toggle.isActive()) {
+                membershipIndex.add(MembershipType.CHANNEL_SUBSCRIPTION,userId,channelId);
+            } else {
+                membershipIndex.remove(MembershipType.CHANNEL_SUBSCRIPTION,userId,channelId);
             }
+            popularityRanking.adjust(RankingMetric.CHANNEL_SUBSCRIBE, channelId, toggle.getDelta());
+            data.put("subscribe",toggle.isActive());
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
             return new Result(false,20001,"未知错误",data);
@@ -419,21 +492,36 @@ public class ChannelServiceImpl implements ChannelService {
     }
 
     /**
-     *  获取用户订阅的频道信息
+     *  分页获取用户订阅的频道信息(按订阅时间从新到旧)
      * @param userId
+     * @param cursor 分页游标,为空表示第一页
+     * @param size 每页条数
      * @return
      */
     @Override
-    public  Result listSubscribedChannel(Integer userId){
+    public  Result listSubscribedChannel(Integer userId, String cursor, Integer size){
         Map<String, Object> data = new HashMap<>();
         try{
-            //获取用户创建的所有频道信息列表
-            List<Integer> channelIdList = channelMapper.listSubscribedChannelIdByUserId(userId);
+            //分页获取用户的订阅记录
+            PageQuery page = PageQuery.of(cursor, size);
+            CursorPage<ChannelSubscription> subscriptionPage = CursorPage.of(channelMapper.listSubscribedChannelByUserIdPage(userId, page),
+                    page, ChannelSubscription::getGmtCreate, ChannelSubscription::getChannelId);
             List<Channel> channelList=new ArrayList<>();
-            for(Integer channelId:channelIdList){
-                Channel channel = channelMapper.getChannelByChannelId(channelId);
-                if(channel!=null){
-                    channelList.add(channel);
+            if(!subscriptionPage.getList().isEmpty()){
+                //一次查询取回本页的频道,按订阅顺序排列,跳过已被删除的频道
+                Map<Integer,Channel> channelMap=new HashMap<>();
+                List<Integer> channelIdList=new ArrayList<>();
+                for(ChannelSubscription subscription:subscriptionPage.getList()){
+                    channelIdList.add(subscription.getChannelId());
+                }
+                for(Channel channel:channelMapper.listChannelByIdList(channelIdList)){
+                    channelMap.put(channel.getChannelId(),channel);
+                }
+                for(Integer channelId:channelIdList){
+                    Channel channel = channelMap.get(channelId);
+                    if(channel!=null){
+                        channelList.add(channel);
+                    }
                 }
             }
             //将频道信息存入返回体的数据部分
@@ -443,7 +531,7 @@ public class ChannelServiceImpl implements ChannelService {
                 //获取每个频道的主题标签
                 List<Hashtag> channelHashtag = channelMapper.listHashtagByChannelId(channel.getChannelId());
                 ChannelItemVO channelItemVO = new ChannelItemVO();
-                User user = userMapper.getUserByUserId(channel.getUserId());
+                User user = userSummaryCache.get(channel.getUserId());
                 //整合频道信息数据
                 channelItemVO.setChannel(channel);
                 //用户昵称
@@ -453,7 +541,11 @@ public class ChannelServiceImpl implements ChannelService {
                 channelItemVOList.add(channelItemVO);
             }
             data.put("channelList", channelItemVOList);
+            subscriptionPage.fill(data);
             return Result.ok().data(data);
+        }catch (InvalidCursorException e){
+            data.put("error", e.getMessage());
+            return new Result(false,20006,"分页游标无效",data);
         }catch (RuntimeException e){
             data.put("error", e.getMessage());
             return new Result(false,20001,"未知错误",data);
@@ -469,8 +561,26 @@ public class ChannelServiceImpl implements ChannelService {
     public Result searchChannel(String keyWord){
         Map<String, Object> data = new HashMap<>();
         try{
-            //根据关键词获取频道数据
-            List<Channel> channelList = channelMapper.listChannelByKeyWord(keyWord);
+            //根据关键词获取频道数据:优先使用全文索引(按相关度排序),索引不可用时退回数据库模糊查询
+            List<Channel> channelList;
+            List<Integer> channelIdList = searchIndex.search(DocType.CHANNEL, keyWord);
+            if (channelIdList == null) {
+                channelList = channelMapper.listChannelByKeyWord(keyWord);
+            } else {
+                channelList = new ArrayList<>(channelIdList.size());
+                if (!channelIdList.isEmpty()) {
+                    Map<Integer, Channel> channelMap = new HashMap<>();
+                    for (Channel channel : channelMapper.listChannelByIdList(channelIdList)) {
+                        channelMap.put(channel.getChannelId(), channel);
+                    }
+                    for (Integer channelId : channelIdList) {
+                        Channel channel = channelMap.get(channelId);
+                        if (channel != null) {
+                            channelList.add(channel);
+                        }
+                    }
+                }
+            }
             //将频道信息存入返回体的数据部分
             List<ChannelItemVO> channelItemVOList = new ArrayList<>();
             //将频道信息存入返回体的数据部分
@@ -478,7 +588,7 @@ public class ChannelServiceImpl implements ChannelService {
                 //获取每个频道的主题标签
                 List<Hashtag> channelHashtag = channelMapper.listHashtagByChannelId(channel.getChannelId());
                 ChannelItemVO channelItemVO = new ChannelItemVO();
-                User user = userMapper.getUserByUserId(channel.getUserId());
+                User user = userSummaryCache.get(channel.getUserId());
                 //整合频道信息数据
                 channelItemVO.setChannel(channel);
                 //用户昵称
@@ -529,7 +639,7 @@ public class ChannelServiceImpl implements ChannelService {
             for (Integer channelId : channelIdList) {
                 //获取频道数据
                 Channel channel = channelMapper.getChannelByChannelId(channelId);
-                User user = userMapper.getUserByUserId(channel.getUserId());
+                User user = userSummaryCache.get(channel.getUserId());
                 //获取每个频道的主题标签
                 List<Hashtag> channelHashtag = channelMapper.listHashtagByChannelId(channel.getChannelId());
                 ChannelItemVO channelItemVO = new ChannelItemVO();
@@ -554,6 +664,7 @@ public class ChannelServiceImpl implements ChannelService {
         try {
             //更新关联帖子数量
             channelMapper.updateChannelPostCount(id, num);
+            popularityRanking.adjust(RankingMetric.CHANNEL_POST, id, num);
             return Result.ok().data(data);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
@@ -1,12 +1,19 @@
 package com.pxx.ifmserver.service.impl;
 
+import com.pxx.ifmserver.cache.CounterType;
+import com.pxx.ifmserver.cache.EngagementCounter;
+import com.pxx.ifmserver.cache.UserSummaryCache;
 import com.pxx.ifmserver.entity.dto.CommentDTO;
 import com.pxx.ifmserver.entity.dto.User;
 import com.pxx.ifmserver.entity.vo.CommentVO;
 import com.pxx.ifmserver.mapper.CommentMapper;
 import com.pxx.ifmserver.mapper.PostMapper;
 import com.pxx.ifmserver.mapper.ReplyMapper;
-import com.pxx.ifmserver.mapper.UserMapper;
+import com.pxx.ifmserver.pagination.CursorPage;
+import com.pxx.ifmserver.pagination.InvalidCursorException;
+import com.pxx.ifmserver.pagination.PageQuery;
+import com.pxx.ifmserver.ranking.PopularityRanking;
+import com.pxx.ifmserver.ranking.RankingMetric;
 import com.pxx.ifmserver.result.Result;
 import com.pxx.ifmserver.service.CommentService;
 import com.pxx.ifmserver.utils.FileUtils;
@@ -27,11 +34,15 @@ public class CommentServiceImpl implements CommentService {
     @Autowired
     CommentMapper commentMapper;
     @Autowired
-    UserMapper userMapper;
+    UserSummaryCache userSummaryCache;
     @Autowired
     PostMapper postMapper;
     @Autowired
     ReplyMapper replyMapper;
+    @Autowired
+    PopularityRanking popularityRanking;
+    @Autowired
+    EngagementCounter engagementCounter;
 
     //评论图片储存路径
     private static final String COMMENT_IMAGE_PATH="/resources/images/comment/";
@@ -45,7 +56,7 @@ public class CommentServiceImpl implements CommentService {
             //获取帖子图片数据
             List<String> commentImageList = commentMapper.listImageByCommentId(commentId);
             //获取帖子创作用户的数据
-            User user=userMapper.getUserByUserId(comment.getUserId());
+            User user=userSummaryCache.get(comment.getUserId());
             //视图层帖子实体类
             CommentVO commentVo = new CommentVO();
             commentVo.setComment(comment);
@@ -61,17 +72,19 @@ public class CommentServiceImpl implements CommentService {
     }
 
     @Override
-    public Result listCommentByPostId(Integer postId) {
+    public Result listCommentByPostId(Integer postId, String cursor, Integer size) {
         Map<String, Object> data = new HashMap<>();
         try {
             List<CommentVO> commentVOList = new ArrayList<>();
-            //获取帖子下的所有评论
-            List<CommentDTO> commentList = commentMapper.listCommentByPostId(postId);
-            for (CommentDTO comment : commentList) {
+            //分页获取帖子下的评论(从早到晚)
+            PageQuery page = PageQuery.of(cursor, size);
+            CursorPage<CommentDTO> commentPage = CursorPage.of(commentMapper.listCommentByPostIdPage(postId, page),
+                    page, CommentDTO::getGmtCreate, CommentDTO::getCommentId);
+            for (CommentDTO comment : commentPage.getList()) {
                 //获取帖子图片数据
                 List<String> commentImageList = commentMapper.listImageByCommentId(comment.getCommentId());
                 //获取帖子创作用户的数据
-                User user=userMapper.getUserByUserId(comment.getUserId());
+                User user=userSummaryCache.get(comment.getUserId());
                 //视图层帖子实体类
                 CommentVO commentVO = new CommentVO();
                 commentVO.setComment(comment);
@@ -81,7 +94,11 @@ public class CommentServiceImpl implements CommentService {
             }
             //将数据填入返回体
             data.put("commentList", commentVOList);
+            commentPage.fill(data);
             return Result.ok().data(data);
+        }catch (InvalidCursorException e){
+            data.put("error", e.getMessage());
+            return new Result(false,20006,"分页游标无效",data);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
             return new Result(false,20001,"未知错误, 评论数据获取失败",data);
@@ -95,6 +112,7 @@ public class CommentServiceImpl implements CommentService {
             commentMapper.insertComment(comment);
             //更新帖子的评论数
             postMapper.updatePostCommentCount(comment.getPostId(),1);
+            popularityRanking.adjust(RankingMetric.POST_COMMENT, comment.getPostId(), 1);
             data.put("commentId",comment.getCommentId() );
             return Result.ok().data(data);
         }catch (RuntimeException e){
@@ -139,10 +157,14 @@ public class CommentServiceImpl implements CommentService {
     }
 
     @Override
-    public Result changeLike(Integer commentId, int value) {
+    public Result changeLike(Integer userId, Integer commentId, Integer value) {
         Map<String, Object> data = new HashMap<>();
         try {
-            commentMapper.updateCommentLikeCount(commentId,value);
+            //记录/删除点赞关系,点赞数由EngagementCounter批量写回
+            EngagementCounter.Toggle toggle = engagementCounter.toggle(CounterType.COMMENT_LIKE, commentId, value,
+                    () -> commentMapper.insertCommentLike(userId, commentId),
+                    () -> commentMapper.deleteCommentLike(userId, commentId));
+            data.put("like",toggle.isActive());
             return Result.ok().data(data);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
@@ -154,10 +176,13 @@ public class CommentServiceImpl implements CommentService {
     public Result deleteComment(Integer commentId) {
         Map<String, Object> data = new HashMap<>();
         try {
-            //删除评论下所有回复
+            //删除评论下所有回复及其点赞记录
+            replyMapper.deleteReplyLikeByCommentId(commentId);
             replyMapper.deleteReplyByCommentId(commentId);
-            //删除评论
+            //删除评论及其点赞记录
             commentMapper.deleteCommentByPostId(commentId);
+            commentMapper.deleteCommentLikeByCommentId(commentId);
+            engagementCounter.discard(CounterType.COMMENT_LIKE, commentId);
             return Result.ok().data(data);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
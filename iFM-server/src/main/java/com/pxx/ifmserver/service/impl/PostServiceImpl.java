@@ -1,17 +1,32 @@
 package com.pxx.ifmserver.service.impl;
 
+import com.pxx.ifmserver.cache.CounterType;
+import com.pxx.ifmserver.cache.EngagementCounter;
+import com.pxx.ifmserver.cache.MembershipIndex;
+import com.pxx.ifmserver.cache.MembershipType;
+import com.pxx.ifmserver.cache.UserSummaryCache;
 import com.pxx.ifmserver.entity.dto.*;
 import com.pxx.ifmserver.entity.vo.BroadcastItemVO;
 import com.pxx.ifmserver.entity.vo.PostVO;
 import com.pxx.ifmserver.mapper.CommentMapper;
 import com.pxx.ifmserver.mapper.HashtagMapper;
 import com.pxx.ifmserver.mapper.PostMapper;
-import com.pxx.ifmserver.mapper.UserMapper;
+import com.pxx.ifmserver.pagination.CursorPage;
+import com.pxx.ifmserver.pagination.InvalidCursorException;
+import com.pxx.ifmserver.pagination.PageQuery;
+import com.pxx.ifmserver.ranking.PopularityRanking;
+import com.pxx.ifmserver.ranking.RankingMetric;
+import com.pxx.ifmserver.ranking.RankingType;
+import com.pxx.ifmserver.ranking.TrendingTracker;
+import com.pxx.ifmserver.ranking.TrendingType;
 import com.pxx.ifmserver.result.Result;
+import com.pxx.ifmserver.search.DocType;
+import com.pxx.ifmserver.search.SearchIndex;
 import com.pxx.ifmserver.service.BroadcastService;
 import com.pxx.ifmserver.service.ChannelService;
 import com.pxx.ifmserver.service.CommentService;
 import com.pxx.ifmserver.service.PostService;
+import com.pxx.ifmserver.service.assembler.PostAssembler;
 import com.pxx.ifmserver.utils.FileUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -27,13 +42,25 @@ public class PostServiceImpl implements PostService {
     @Autowired
     HashtagMapper hashtagMapper;
     @Autowired
-    UserMapper userMapper;
+    UserSummaryCache userSummaryCache;
     @Autowired
     ChannelService channelService;
     @Autowired
     BroadcastService broadcastService;
     @Autowired
     CommentService commentService;
+    @Autowired
+    PopularityRanking popularityRanking;
+    @Autowired
+    MembershipIndex membershipIndex;
+    @Autowired
+    PostAssembler postAssembler;
+    @Autowired
+    EngagementCounter engagementCounter;
+    @Autowired
+    SearchIndex searchIndex;
+    @Autowired
+    TrendingTracker trendingTracker;
 
     //图片储存路径
     private static final String POST_IMAGE_PATH="/resources/images/post/";
@@ -51,7 +78,7 @@ public class PostServiceImpl implements PostService {
             //获取帖子主题标签数据
             List<Hashtag> postHashtagList = postMapper.listHashtagByPostId(postId);
             //获取帖子创作用户的数据
-            User user=userMapper.getUserByUserId(post.getUserId());
+            User user=userSummaryCache.get(post.getUserId());
             //视图层帖子实体类
             PostVO postVO = new PostVO();
             postVO.setPost(post);
@@ -68,32 +95,23 @@ public class PostServiceImpl implements PostService {
     }
 
     @Override
-    public Result listPostByUserId(Integer userId) {
+    public Result listPostByUserId(Integer userId, String cursor, Integer size) {
         Map<String, Object> data = new HashMap<>();
         try {
-            //根据用户id获取帖子基础数据列表
-            List<Post> postIdList = postMapper.listPostByUserId(userId);
-            //视图层帖子实体类列表
-            List<PostVO> postVOList = new ArrayList<>();
-            //获取帖子创作用户的数据
-            User user=userMapper.getUserByUserId(userId);
-            for (Post post : postIdList) {
-                //获取帖子图片数据
-                List<String> postImageList = postMapper.listImageByPostId(post.getPostId());
-                //获取帖子主题标签数据
-                List<Hashtag> postHashtagList = postMapper.listHashtagByPostId(post.getPostId());
-                //视图层帖子实体类
-                PostVO postVO = new PostVO();
-                postVO.setPost(post);
-                postVO.setUser(user);
-                postVO.setPostImageList(postImageList);
-                postVO.setPostHashtagList(postHashtagList);
-                //添加至视图层帖子实体类列表中
-                postVOList.add(postVO);
-            }
+            //根据用户id分页获取帖子基础数据列表
+            PageQuery page = PageQuery.of(cursor, size);
+            CursorPage<Post> postPage = CursorPage.of(postMapper.listPostByUserIdPage(userId, page),
+                    page, Post::getGmtCreate, Post::getPostId);
+            List<Post> postIdList = postPage.getList();
+            //批量获取帖子的图片、主题标签和作者
+            List<PostVO> postVOList = postAssembler.toVOList(postIdList);
             //将数据填入返回体
             data.put("postList", postVOList);
+            postPage.fill(data);
             return Result.ok().data(data);
+        }catch (InvalidCursorException e){
+            data.put("error", e.getMessage());
+            return new Result(false,20006,"分页游标无效",data);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
             return new Result(false,20001,"未知错误, 帖子数据获取失败",data);
@@ -101,32 +119,23 @@ public class PostServiceImpl implements PostService {
     }
 
     @Override
-    public Result listPostByAssociationId(Integer postAssociation, Integer associationId) {
+    public Result listPostByAssociationId(Integer postAssociation, Integer associationId, String cursor, Integer size) {
         Map<String, Object> data = new HashMap<>();
         try {
-            //根据关联id获取帖子基础数据列表
-            List<Post> postIdList = postMapper.listPostByAssociationId(postAssociation, associationId);
-            //视图层帖子实体类列表
-            List<PostVO> postVOList = new ArrayList<>();
-            for (Post post : postIdList) {
-                //获取帖子图片数据
-                List<String> postImageList = postMapper.listImageByPostId(post.getPostId());
-                //获取帖子主题标签数据
-                List<Hashtag> postHashtagList = postMapper.listHashtagByPostId(post.getPostId());
-                //获取帖子创作用户的数据
-                User user=userMapper.getUserByUserId(post.getUserId());
-                //视图层帖子实体类
-                PostVO postVO = new PostVO();
-                postVO.setPost(post);
-                postVO.setUser(user);
-                postVO.setPostImageList(postImageList);
-                postVO.setPostHashtagList(postHashtagList);
-                //添加至视图层帖子实体类列表中
-                postVOList.add(postVO);
-            }
+            //根据关联id分页获取帖子基础数据列表
+            PageQuery page = PageQuery.of(cursor, size);
+            CursorPage<Post> postPage = CursorPage.of(postMapper.listPostByAssociationIdPage(postAssociation, associationId, page),
+                    page, Post::getGmtCreate, Post::getPostId);
+            List<Post> postIdList = postPage.getList();
+            //批量获取帖子的图片、主题标签和作者
+            List<PostVO> postVOList = postAssembler.toVOList(postIdList);
             //将数据填入返回体
             data.put("postList", postVOList);
+            postPage.fill(data);
             return Result.ok().data(data);
+        }catch (InvalidCursorException e){
+            data.put("error", e.getMessage());
+            return new Result(false,20006,"分页游标无效",data);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
             return new Result(false,20001,"未知错误, 帖子数据获取失败",data);
@@ -134,107 +143,39 @@ public class PostServiceImpl implements PostService {
     }
 
     @Override
-    public Result listPostBySectionId(Integer sectionId) {
+    public Result listPostBySectionId(Integer sectionId, String cursor, Integer size) {
         Map<String, Object> data = new HashMap<>();
         try {
-            //根据社区板块id获取帖子基础数据列表
-            List<Post> postIdList = postMapper.listPostByPostSection(sectionId);
-            //视图层帖子实体类列表
-            List<PostVO> postVOList = new ArrayList<>();
-            for (Post post : postIdList) {
-                //获取帖子图片数据
-                List<String> postImageList = postMapper.listImageByPostId(post.getPostId());
-                //获取帖子主题标签数据
-                List<Hashtag> postHashtagList = postMapper.listHashtagByPostId(post.getPostId());
-                //获取帖子创作用户的数据
-                User user=userMapper.getUserByUserId(post.getUserId());
-                //视图层帖子实体类
-                PostVO postVO = new PostVO();
-                postVO.setPost(post);
-                postVO.setUser(user);
-                postVO.setPostImageList(postImageList);
-                postVO.setPostHashtagList(postHashtagList);
-                //添加至视图层帖子实体类列表中
-                postVOList.add(postVO);
-            }
+            //根据社区板块id分页获取帖子基础数据列表
+            PageQuery page = PageQuery.of(cursor, size);
+            CursorPage<Post> postPage = CursorPage.of(postMapper.listPostByPostSectionPage(sectionId, page),
+                    page, Post::getGmtCreate, Post::getPostId);
+            List<Post> postIdList = postPage.getList();
+            //批量获取帖子的图片、主题标签和作者
+            List<PostVO> postVOList = postAssembler.toVOList(postIdList);
             //将数据填入返回体
             data.put("postList", postVOList);
+            postPage.fill(data);
             return Result.ok().data(data);
+        }catch (InvalidCursorException e){
+            data.put("error", e.getMessage());
+            return new Result(false,20006,"分页游标无效",data);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
             return new Result(false,20001,"未知错误, 帖子数据获取失败",data);
         }
     }
 
-    /**
-     * 热门帖子算法
-     * @param postList  帖子列表
-     * @param limit 要筛选帖子的数量
-     * @return 热门帖子列表
-     */
-    private static List<Post> filterHotPosts(List<Post> postList, int limit) {
-        // 根据热度得分排序
-        Collections.sort(postList, new Comparator<Post>() {
-            @Override
-            public int compare(Post p1, Post p2) {
-                return calculateScore(p2) - calculateScore(p1); // 降序排序
-            }
-        });
-
-        // 返回前limit个帖子
-        return postList.subList(0, Math.min(limit, postList.size()));
-    }
-
-    /**
-     * 热门标准权重计算
-     * @param post
-     * @return
-     */
-    private static int calculateScore(Post post) {
-        // 热度得分计算公式可以根据实际情况调整
-        // 根据收藏数、点赞数和评论数的权重来计算得分
-        int likeWeight = 1;
-        int commentWeight = 2;
-        int collectionWeight = 3;
-
-        return (post.getPostCollectionCount() * collectionWeight) +
-                (post.getPostLikeCount() * likeWeight) +
-                (post.getPostCommentCount() * commentWeight);
-    }
-
     @Override
     public Result listPopularPost() {
         Map<String, Object> data = new HashMap<>();
         try {
-            //单位 小时
-            int hour = 72;
-            //获取近期(一个月以内)更新的至少88个帖子
-            List<Post> postIdList = new ArrayList<>();
-            while(postIdList.size()<88 && hour<24*30){
-                postIdList = postMapper.listPostCtreateInHour(hour,89);
-                hour+=6;
-            }
-            //根据热门算法筛选30个帖子数据
-            postIdList=filterHotPosts(postIdList,30);
-
-            //视图层帖子实体类列表
-            List<PostVO> postVOList = new ArrayList<>();
-            for (Post post : postIdList) {
-                //获取帖子图片数据
-                List<String> postImageList = postMapper.listImageByPostId(post.getPostId());
-                //获取帖子主题标签数据
-                List<Hashtag> postHashtagList = postMapper.listHashtagByPostId(post.getPostId());
-                //获取帖子创作用户的数据
-                User user=userMapper.getUserByUserId(post.getUserId());
-                //视图层帖子实体类
-                PostVO postVO = new PostVO();
-                postVO.setPost(post);
-                postVO.setUser(user);
-                postVO.setPostImageList(postImageList);
-                postVO.setPostHashtagList(postHashtagList);
-                //添加至视图层帖子实体类列表中
-                postVOList.add(postVO);
-            }
+            //热门帖子排名由PopularityRanking在后台预先算好
+            List<Integer> topIdList = popularityRanking.top(RankingType.POST);
+            //保持排名顺序,跳过已被删除的帖子
+            List<Post> postIdList = postAssembler.loadPosts(topIdList);
+            //批量获取帖子的图片、主题标签和作者
+            List<PostVO> postVOList = postAssembler.toVOList(postIdList);
             //将数据填入返回体
             data.put("postList", postVOList);
             return Result.ok().data(data);
@@ -249,7 +190,20 @@ public class PostServiceImpl implements PostService {
         Map<String, Object> data = new HashMap<>();
         try{
             //订阅信息储存于返回体
-            data.put("favorite",postMapper.checkPostFavoriteById(userId,postId));
+            data.put("favorite",membershipIndex.contains(MembershipType.POST_FAVORITE,userId,postId));
+        }catch (RuntimeException e){
+            data.put("error.message", e.getMessage());
+            return new Result(false,20001,"未知错误",data);
+        }
+        return Result.ok().data(data);
+    }
+
+    @Override
+    public Result checkCollectionList(Integer userId, List<Integer> postIdList) {
+        Map<String, Object> data = new HashMap<>();
+        try{
+            //帖子id -> 是否收藏
+            data.put("favoriteMap",membershipIndex.containsAll(MembershipType.POST_FAVORITE,userId,postIdList));
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
             return new Result(false,20001,"未知错误",data);
@@ -261,26 +215,11 @@ public class PostServiceImpl implements PostService {
     public Result listPostByKeyword(String keyword) {
         Map<String, Object> data = new HashMap<>();
         try {
-            //根据关键词获取帖子
-            List<Post> postIdList = postMapper.listPostByKeyWord(keyword);
-            //视图层帖子实体类列表
-            List<PostVO> postVOList = new ArrayList<>();
-            for (Post post : postIdList) {
-                //获取帖子图片数据
-                List<String> postImageList = postMapper.listImageByPostId(post.getPostId());
-                //获取帖子主题标签数据
-                List<Hashtag> postHashtagList = postMapper.listHashtagByPostId(post.getPostId());
-                //获取帖子创作用户的数据
-                User user=userMapper.getUserByUserId(post.getUserId());
-                //视图层帖子实体类
-                PostVO postVO = new PostVO();
-                postVO.setPost(post);
-                postVO.setUser(user);
-                postVO.setPostImageList(postImageList);
-                postVO.setPostHashtagList(postHashtagList);
-                //添加至视图层帖子实体类列表中
-                postVOList.add(postVO);
-            }
+            //根据关键词获取帖子:优先使用全文索引(按相关度排序),索引不可用时退回数据库模糊查询
+            List<Integer> postIdList = searchIndex.search(DocType.POST, keyword);
+            List<Post> postList = postIdList == null ? postMapper.listPostByKeyWord(keyword) : postAssembler.loadPosts(postIdList);
+            //批量获取帖子的图片、主题标签和作者
+            List<PostVO> postVOList = postAssembler.toVOList(postList);
             //将数据填入返回体
             data.put("postList", postVOList);
             return Result.ok().data(data);
@@ -294,17 +233,17 @@ public class PostServiceImpl implements PostService {
     public Result changeCollection(Integer userId, Integer postId) {
         Map<String, Object> data = new HashMap<>();
         try{
-            if(postMapper.checkPostFavoriteById(userId,postId)){
-                //已收藏帖子, 则取消收藏,返回收藏结果:false
-                postMapper.deletePostFavoriteById(userId,postId);
-                postMapper.updatePostCollectionCount(postId,-1);
-                data.put("favorite",false);
-            }else{
-                //收藏频道,返回收藏结果:true
-                postMapper.insertPostFavorite(userId,postId);
-                postMapper.updatePostCollectionCount(postId,1);
-                data.put("favorite",true);
+            //已收藏则取消收藏,否则收藏;收藏数由EngagementCounter批量写回
+            EngagementCounter.Toggle toggle = engagementCounter.toggle(CounterType.POST_COLLECTION, postId, null,
+                    () -> postMapper.insertPostFavorite(userId, postId),
+                    () -> postMapper.deletePostFavoriteById(userId, postId));
+            if (toggle.isActive()) {
+                membershipIndex.add(MembershipType.POST_FAVORITE,userId,postId);
+            } else {
+                membershipIndex.remove(MembershipType.POST_FAVORITE,userId,postId);
             }
+            popularityRanking.adjust(RankingMetric.POST_COLLECTION, postId, toggle.getDelta());
+            data.put("favorite",toggle.isActive());
             return Result.ok().data(data);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
@@ -319,10 +258,12 @@ public class PostServiceImpl implements PostService {
         try{
             //保存帖子的基本信息, 并获得帖子id(自动赋值给post的postId)
             postMapper.insertPost(post);
+            searchIndex.refresh(DocType.POST, post.getPostId());
             //保存帖子的主题标签数据记录
             for (Integer hashtagId : hashtagIdList) {
                 Hashtag hashtag = hashtagMapper.getHashtagByHashId(hashtagId);
                 postMapper.insertPostHashtag(post.getPostId(), hashtag.getHashtagId(),hashtag.getHashtagName());
+                trendingTracker.record(TrendingType.HASHTAG, hashtag.getHashtagName());
             }
             //若有关联内容,更新其关联帖子数量
             if(post.getPostAssociation()==0) {
@@ -330,6 +271,7 @@ public class PostServiceImpl implements PostService {
             } else if (post.getPostAssociation()==1) {
                 broadcastService.changeBroadcastPostCount(post.getAssociationId(), 1);
             }
+            popularityRanking.add(RankingType.POST, post.getPostId());
             //返回帖子的id
             data.put("postId",post.getPostId());
             return Result.ok().data(data);
@@ -344,11 +286,16 @@ public class PostServiceImpl implements PostService {
     }
 
     @Override
-    public Result addImageForPost(Integer postId, MultipartFile image){
+    public Result addImageForPost(Integer userId, Integer postId, MultipartFile image){
         Map<String, Object> data = new HashMap<>();
         if (image.isEmpty()){
             return new Result(false,70000,"未知错误, 帖子图像上传失败",data);
         }
+        Post post = postMapper.getPostById(postId);
+        if (post == null || !post.getUserId().equals(userId)) {
+            data.put("error","您非此帖子的发布用户");
+            return new Result(false,20002,"无权操作",data);
+        }
         //储存帖子图像相对路径
         String imageFilePath ="";
         try {
@@ -409,10 +356,16 @@ public class PostServiceImpl implements PostService {
                 } else if (post.getPostAssociation()==1) {
                     broadcastService.changeBroadcastPostCount(post.getAssociationId(), -1);
                 }
-                postMapper.deletePostFavoriteById(postId,post.getPostId());
+                postMapper.deletePostFavoriteByPostId(postId);
+                membershipIndex.removeFromAll(MembershipType.POST_FAVORITE, postId);
                 postMapper.deletePostById(postId);
                 postMapper.deletePostHashtag(postId);
                 postMapper.deletePostImage(postId);
+                postMapper.deletePostLikeByPostId(postId);
+                engagementCounter.discard(CounterType.POST_LIKE, postId);
+                engagementCounter.discard(CounterType.POST_COLLECTION, postId);
+                popularityRanking.remove(RankingType.POST, postId);
+                searchIndex.remove(DocType.POST, postId);
             }
         }catch (RuntimeException e){
             return e.getMessage();
@@ -421,11 +374,15 @@ public class PostServiceImpl implements PostService {
     }
 
     @Override
-    public Result changeLike(Integer postId, int value) {
+    public Result changeLike(Integer userId, Integer postId, Integer value) {
         Map<String, Object> data = new HashMap<>();
         try{
-            //更新帖子点赞数
-            postMapper.updatePostLikeCount(postId,value);
+            //记录/删除点赞关系,点赞数只按实际变化累加,由EngagementCounter批量写回
+            EngagementCounter.Toggle toggle = engagementCounter.toggle(CounterType.POST_LIKE, postId, value,
+                    () -> postMapper.insertPostLike(userId, postId),
+                    () -> postMapper.deletePostLike(userId, postId));
+            popularityRanking.adjust(RankingMetric.POST_LIKE, postId, toggle.getDelta());
+            data.put("like",toggle.isActive());
             return Result.ok().data(data);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
@@ -460,34 +417,26 @@ public class PostServiceImpl implements PostService {
     }
 
     @Override
-    public Result listFavoritePost(Integer userId) {
+    public Result listFavoritePost(Integer userId, String cursor, Integer size) {
         Map<String, Object> data = new HashMap<>();
         try {
-            //获取用户收藏的帖子id
-            List<Integer> postIdList = postMapper.listFavoritePostIdByUserId(userId);
-            //视图层帖子实体类列表
-            List<PostVO> postVOList = new ArrayList<>();
-            for (Integer postId : postIdList) {
-                Post post = postMapper.getPostById(postId);
-                if(post==null){continue;}
-                //获取帖子图片数据
-                List<String> postImageList = postMapper.listImageByPostId(post.getPostId());
-                //获取帖子主题标签数据
-                List<Hashtag> postHashtagList = postMapper.listHashtagByPostId(post.getPostId());
-                //获取帖子创作用户的数据
-                User user=userMapper.getUserByUserId(post.getUserId());
-                //视图层帖子实体类
-                PostVO postVO = new PostVO();
-                postVO.setPost(post);
-                postVO.setUser(user);
-                postVO.setPostImageList(postImageList);
-                postVO.setPostHashtagList(postHashtagList);
-                //添加至视图层帖子实体类列表中
-                postVOList.add(postVO);
+            //分页获取用户收藏的帖子id
+            PageQuery page = PageQuery.of(cursor, size);
+            CursorPage<PostFavorite> postPage = CursorPage.of(postMapper.listFavoritePostByUserIdPage(userId, page),
+                    page, PostFavorite::getGmtCreate, PostFavorite::getPostId);
+            List<Integer> postIdList = new ArrayList<>(postPage.getList().size());
+            for (PostFavorite postFavorite : postPage.getList()) {
+                postIdList.add(postFavorite.getPostId());
             }
+            //按收藏顺序批量获取帖子(跳过已被删除的帖子),再批量获取图片、主题标签和作者
+            List<PostVO> postVOList = postAssembler.toVOList(postAssembler.loadPosts(postIdList));
             //将数据填入返回体
             data.put("postList", postVOList);
+            postPage.fill(data);
             return Result.ok().data(data);
+        }catch (InvalidCursorException e){
+            data.put("error", e.getMessage());
+            return new Result(false,20006,"分页游标无效",data);
         }catch (RuntimeException e){
             data.put("error.message", e.getMessage());
             return new Result(false,20001,"未知错误, 帖子数据获取失败",data);
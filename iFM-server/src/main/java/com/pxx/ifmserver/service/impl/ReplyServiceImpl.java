@@ -1,12 +1,19 @@
 package com.pxx.ifmserver.service.impl;
 
+import com.pxx.ifmserver.cache.CounterType;
+import com.pxx.ifmserver.cache.EngagementCounter;
+import com.pxx.ifmserver.cache.UserSummaryCache;
 import com.pxx.ifmserver.entity.dto.*;
 import com.pxx.ifmserver.entity.vo.ChannelItemVO;
 import com.pxx.ifmserver.entity.vo.ReplyVO;
 import com.pxx.ifmserver.mapper.CommentMapper;
 import com.pxx.ifmserver.mapper.PostMapper;
 import com.pxx.ifmserver.mapper.ReplyMapper;
-import com.pxx.ifmserver.mapper.UserMapper;
+import com.pxx.ifmserver.pagination.CursorPage;
+import com.pxx.ifmserver.pagination.InvalidCursorException;
+import com.pxx.ifmserver.pagination.PageQuery;
+import com.pxx.ifmserver.ranking.PopularityRanking;
+import com.pxx.ifmserver.ranking.RankingMetric;
 import com.pxx.ifmserver.result.Result;
 import com.pxx.ifmserver.service.ReplyService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,28 +29,38 @@ public class ReplyServiceImpl implements ReplyService {
     @Autowired
     ReplyMapper replyMapper;
     @Autowired
-    UserMapper userMapper;
+    UserSummaryCache userSummaryCache;
     @Autowired
     CommentMapper commentMapper;
     @Autowired
     PostMapper postMapper;
+    @Autowired
+    PopularityRanking popularityRanking;
+    @Autowired
+    EngagementCounter engagementCounter;
 
     @Override
-    public Result listReplyByCommentId(Integer commentId) {
+    public Result listReplyByCommentId(Integer commentId, String cursor, Integer size) {
         Map<String, Object> data = new HashMap<>();
         try{
             List<ReplyVO> replyVOList = new ArrayList<>();
-            //获取评论下的回复数据
-            List<Reply> replyList = replyMapper.listReplyByCommentId(commentId);
-            for (Reply reply : replyList) {
-                User usre = userMapper.getUserByUserId(reply.getUserId());
+            //分页获取评论下的回复数据(从早到晚)
+            PageQuery page = PageQuery.of(cursor, size);
+            CursorPage<Reply> replyPage = CursorPage.of(replyMapper.listReplyByCommentIdPage(commentId, page),
+                    page, Reply::getGmtCreate, Reply::getReplyId);
+            for (Reply reply : replyPage.getList()) {
+                User usre = userSummaryCache.get(reply.getUserId());
                 ReplyVO replyVO = new ReplyVO();
                 replyVO.setReply(reply);
                 replyVO.setUser(usre);
                 replyVOList.add(replyVO);
             }
             data.put("replyList", replyVOList);
+            replyPage.fill(data);
             return Result.ok().data(data);
+        }catch (InvalidCursorException e){
+            data.put("error", e.getMessage());
+            return new Result(false,20006,"分页游标无效",data);
         }catch (RuntimeException e){
             data.put("error", e.getMessage());
             return new Result(false,20001,"未知错误,回复数据获取失败",data);
@@ -58,6 +75,7 @@ public class ReplyServiceImpl implements ReplyService {
             commentMapper.updateCommentReplyCount(reply.getCommentId(),1);
             CommentDTO comment = commentMapper.getCommentByCommentId(reply.getCommentId());
             postMapper.updatePostCommentCount(comment.getPostId(),1);
+            popularityRanking.adjust(RankingMetric.POST_COMMENT, comment.getPostId(), 1);
             return Result.ok().data(data);
         }catch (RuntimeException e){
             data.put("error", e.getMessage());
@@ -66,10 +84,14 @@ public class ReplyServiceImpl implements ReplyService {
     }
 
     @Override
-    public Result changeLike(Integer replyId, int value) {
+    public Result changeLike(Integer userId, Integer replyId, Integer value) {
         Map<String, Object> data = new HashMap<>();
         try{
-            replyMapper.updateReplyLikeCount(replyId,value);
+            //记录/删除点赞关系,点赞数由EngagementCounter批量写回
+            EngagementCounter.Toggle toggle = engagementCounter.toggle(CounterType.REPLY_LIKE, replyId, value,
+                    () -> replyMapper.insertReplyLike(userId, replyId),
+                    () -> replyMapper.deleteReplyLike(userId, replyId));
+            data.put("like",toggle.isActive());
             return Result.ok().data(data);
         }catch (RuntimeException e){
             data.put("error", e.getMessage());
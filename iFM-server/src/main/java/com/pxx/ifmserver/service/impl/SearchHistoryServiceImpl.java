@@ -1,11 +1,15 @@
 package com.pxx.ifmserver.service.impl;
 
+import com.pxx.ifmserver.cache.SearchHistoryCache;
 import com.pxx.ifmserver.entity.dto.Reply;
 import com.pxx.ifmserver.entity.dto.SearchHistory;
 import com.pxx.ifmserver.entity.dto.User;
 import com.pxx.ifmserver.entity.vo.ReplyVO;
 import com.pxx.ifmserver.mapper.SearchHistoryMapper;
+import com.pxx.ifmserver.ranking.TrendingTracker;
+import com.pxx.ifmserver.ranking.TrendingType;
 import com.pxx.ifmserver.result.Result;
+import com.pxx.ifmserver.search.SuggestIndex;
 import com.pxx.ifmserver.service.SearchHistoryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -20,13 +24,19 @@ public class SearchHistoryServiceImpl implements SearchHistoryService {
 
     @Autowired
     private SearchHistoryMapper searchHistoryMapper;
+    @Autowired
+    private SuggestIndex suggestIndex;
+    @Autowired
+    private SearchHistoryCache searchHistoryCache;
+    @Autowired
+    private TrendingTracker trendingTracker;
 
     @Override
     public Result listSearchHistoryByUserId(Integer userId) {
         Map<String, Object> data = new HashMap<>();
         try{
             //返回用户搜索记录, 按时间排序
-            List<SearchHistory> searchHistoryList = searchHistoryMapper.listSearchHistoyByUserId(userId);
+            List<SearchHistory> searchHistoryList = searchHistoryCache.list(userId);
             data.put("searchHistoryList", searchHistoryList);
             return Result.ok().data(data);
         }catch (RuntimeException e){
@@ -39,21 +49,14 @@ public class SearchHistoryServiceImpl implements SearchHistoryService {
     public Result saveSearchHistory(Integer userId, String keyword) {
         Map<String, Object> data = new HashMap<>();
         try{
-            //检查是否已有该搜索内容的历史记录 有则更新该搜索记录的时间, 无则添加
-            if (searchHistoryMapper.updateSearchHistoryIfExist(userId, keyword) == 0) {
-                //无则添加
-                searchHistoryMapper.insertSearchHistory(userId,keyword);
-            }
-            //检查用户的搜索记录是否超过了20条
-            final int maxHistorySize = 20;
-            int currentHistorySize = searchHistoryMapper.countSearchHistoryByUserId(userId);
-            // 如果当前记录数量超过最大限制，则删除超出部分的旧记录
-            if (currentHistorySize > maxHistorySize) {
-                int recordsToDelete = currentHistorySize - maxHistorySize;
-                searchHistoryMapper.deleteOldSearchHistory(userId,  recordsToDelete);
+            //已有该搜索内容的历史记录则更新其时间, 无则添加; 只保留最近20条
+            //只修改内存, 由SearchHistoryCache批量写回数据库
+            if (searchHistoryCache.record(userId, keyword)) {
+                suggestIndex.addKeyword(keyword, userId);
             }
+            trendingTracker.record(TrendingType.KEYWORD, keyword);
             //返回最新的用户的所有搜索记录
-            List<SearchHistory> searchHistoryList = searchHistoryMapper.listSearchHistoyByUserId(userId);
+            List<SearchHistory> searchHistoryList = searchHistoryCache.list(userId);
             data.put("searchHistoryList", searchHistoryList);
             return Result.ok().data(data);
         }catch (RuntimeException e){
@@ -67,12 +70,16 @@ public class SearchHistoryServiceImpl implements SearchHistoryService {
         Map<String, Object> data = new HashMap<>();
         try{
             //检查是否有权删除
-            SearchHistory searchHistory = searchHistoryMapper.getSearchHistoyBySearchHistoyId(searchHistoryId);
-            if(!userId.equals(searchHistory.getUserId())) {
+            SearchHistory searchHistory = searchHistoryCache.get(userId, searchHistoryId);
+            if (searchHistory == null) {
+                searchHistory = searchHistoryMapper.getSearchHistoyBySearchHistoyId(searchHistoryId);
+            }
+            if(searchHistory == null || !userId.equals(searchHistory.getUserId())) {
                 data.put("error","无权删除此搜索记录");
                 return new Result(false,20002,"删除失败",data);
             }
             //删除
+            searchHistoryCache.remove(userId, searchHistory.getKeyword());
             searchHistoryMapper.deleteSearchHistory(searchHistoryId);
             return Result.ok().data(data);
         }catch (RuntimeException e){
@@ -85,6 +92,7 @@ public class SearchHistoryServiceImpl implements SearchHistoryService {
     public Result deleteSearchHistoryByUserId(Integer userId) {
         Map<String, Object> data = new HashMap<>();
         try{
+            searchHistoryCache.clear(userId);
             searchHistoryMapper.deleteSearchHistoryByUserId(userId);
             return Result.ok().data(data);
         }catch (RuntimeException e){
@@ -0,0 +1,175 @@
+package com.pxx.ifmserver.service.impl;
+
+import com.pxx.ifmserver.ranking.TrendingTracker;
+import com.pxx.ifmserver.ranking.TrendingType;
+import com.pxx.ifmserver.result.Result;
+import com.pxx.ifmserver.search.SuggestIndex;
+import com.pxx.ifmserver.service.BroadcastService;
+import com.pxx.ifmserver.service.ChannelService;
+import com.pxx.ifmserver.service.PostService;
+import com.pxx.ifmserver.service.SearchHistoryService;
+import com.pxx.ifmserver.service.SearchService;
+import com.pxx.ifmserver.service.UserService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 综合搜索
+ * 四类内容的搜索并行提交到有界线程池,共用一个截止时间:超时或失败的类型返回空列表并记入failedSections,
+ * 不影响其他类型的结果;搜索历史在后台保存,不占用响应时间
+ */
+@Service
+public class SearchServiceImpl implements SearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchServiceImpl.class);
+
+    @Autowired
+    private BroadcastService broadcastService;
+    @Autowired
+    private ChannelService channelService;
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private SearchHistoryService searchHistoryService;
+    @Autowired
+    private SuggestIndex suggestIndex;
+    @Autowired
+    private TrendingTracker trendingTracker;
+
+    //搜索线程数和排队上限
+    @Value("${ifm.search.pool-size:16}")
+    private int poolSize;
+    @Value("${ifm.search.queue-capacity:256}")
+    private int queueCapacity;
+    //每类内容的搜索最多等待的时间(毫秒)
+    @Value("${ifm.search.timeout:800}")
+    private long timeout;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 一类内容的搜索
+     * @param name 返回体中的字段名(与各自搜索接口一致)
+     * @param search 调用对应的service
+     */
+    private record Section(String name, Callable<Result> search) {
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "search-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public Result search(Integer userId, String keyword) {
+        Map<String, Object> data = new HashMap<>();
+        List<Section> sections = List.of(
+                new Section("broadcastList", () -> broadcastService.searchBroadcast(keyword)),
+                new Section("channelList", () -> channelService.searchChannel(keyword)),
+                new Section("postList", () -> postService.listPostByKeyword(keyword)),
+                new Section("userList", () -> userService.searchUser(keyword)));
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        Map<Section, Future<Result>> futures = new LinkedHashMap<>();
+        List<String> failedSections = new ArrayList<>();
+        for (Section section : sections) {
+            try {
+                futures.put(section, executor.submit(section.search()));
+            } catch (RejectedExecutionException e) {
+                //线程池已满,该类型直接视为失败
+                failedSections.add(section.name());
+                data.put(section.name(), new ArrayList<>());
+            }
+        }
+        for (Map.Entry<Section, Future<Result>> entry : futures.entrySet()) {
+            String name = entry.getKey().name();
+            Future<Result> future = entry.getValue();
+            Object list = null;
+            try {
+                Result result = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (Boolean.TRUE.equals(result.getSuccess())) {
+                    list = result.getData().get(name);
+                }
+            } catch (TimeoutException e) {
+                future.cancel(true);
+            } catch (ExecutionException e) {
+                log.warn("{} 搜索失败: {}", name, e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+            }
+            if (list == null) {
+                failedSections.add(name);
+                list = new ArrayList<>();
+            }
+            data.put(name, list);
+        }
+        data.put("failedSections", failedSections);
+
+        //后台保存搜索历史
+        if (userId != null && keyword != null && !keyword.isBlank()) {
+            try {
+                executor.execute(() -> searchHistoryService.saveSearchHistory(userId, keyword));
+            } catch (RejectedExecutionException e) {
+                log.warn("搜索历史保存任务被拒绝: userId={}", userId);
+            }
+        }
+        return Result.ok().data(data);
+    }
+
+    @Override
+    public Result suggest(String prefix, Integer limit) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("suggestionList", suggestIndex.suggest(prefix, limit == null ? 10 : limit));
+        return Result.ok().data(data);
+    }
+
+    @Override
+    public Result listHotKeyword(Integer limit) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("keywordList", trendingTracker.list(TrendingType.KEYWORD, limit == null ? 10 : limit));
+        return Result.ok().data(data);
+    }
+
+    @Override
+    public Result listHotHashtag(Integer limit) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("hashtagList", trendingTracker.list(TrendingType.HASHTAG, limit == null ? 10 : limit));
+        return Result.ok().data(data);
+    }
+}
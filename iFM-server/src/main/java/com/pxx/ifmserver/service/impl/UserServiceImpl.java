@@ -1,12 +1,19 @@
 package com.pxx.ifmserver.service.impl;
 
+import com.pxx.ifmserver.cache.UserIdentityFilter;
+import com.pxx.ifmserver.cache.UserSummaryCache;
 import com.pxx.ifmserver.entity.dto.User;
+import com.pxx.ifmserver.mail.MailDispatcher;
 import com.pxx.ifmserver.mapper.UserMapper;
 import com.pxx.ifmserver.result.Result;
+import com.pxx.ifmserver.search.DocType;
+import com.pxx.ifmserver.search.SearchIndex;
 import com.pxx.ifmserver.service.UserService;
 import com.pxx.ifmserver.utils.EmailUtil;
 import com.pxx.ifmserver.utils.FileUtils;
 import com.pxx.ifmserver.utils.TokenUtil;
+import com.pxx.ifmserver.utils.VCodeUtill;
+import com.pxx.ifmserver.verification.VerificationCodeStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.ResponseEntity;
@@ -14,12 +21,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 @Service
@@ -29,6 +34,17 @@ public class UserServiceImpl implements UserService {
 
     @Autowired
     private UserMapper userMapper;
+    @Autowired
+    private UserSummaryCache userSummaryCache;
+    @Autowired
+    private UserIdentityFilter userIdentityFilter;
+    @Autowired
+    private SearchIndex searchIndex;
+    @Autowired
+    private MailDispatcher mailDispatcher;
+    //后台产生的验证码(有效期、输错次数由存储实现控制)
+    @Autowired
+    private VerificationCodeStore verificationCodeStore;
     @Override
     public List<User> listUser(){
         return userMapper.listUser();
@@ -65,7 +81,7 @@ public class UserServiceImpl implements UserService {
     public Result checkEmail(String userEmail){
         Map<String, Object> data = new HashMap<>();
         try{
-            User user = userMapper.getUserByUserEmail(userEmail);
+            User user = userIdentityFilter.findByEmail(userEmail, userMapper::getUserByUserEmail);
             if (user!=null){
                 data.put("hasRegistered",true);
             } else {
@@ -132,6 +148,7 @@ public class UserServiceImpl implements UserService {
             try {
                 // 更新数据库
                 userMapper.updateUserPicurlByUserId(userId, "/images/user/head/" + filename);
+                userSummaryCache.invalidate(userId);
                 data.put("userPicture","/images/user/head/" + filename);
                 return  Result.ok().data(data);
             } catch (RuntimeException e) {
@@ -186,7 +203,7 @@ public class UserServiceImpl implements UserService {
     public Result updateUserEmail(Integer userId, String userEmail, String newEmail,  String code1,String code2){
         Map<String, Object> data = new HashMap<>();
         try{
-            User user=userMapper.getUserByUserEmail(newEmail);
+            User user=userIdentityFilter.findByEmail(newEmail, userMapper::getUserByUserEmail);
             if(user!=null){
                 data.put("error","该邮箱已被其他用户绑定");
                 return new Result(false,50002,"修改失败",data);
@@ -195,9 +212,15 @@ public class UserServiceImpl implements UserService {
                 data.put("error","验证码错误");
                 return new Result(false,20004,"修改失败",data);
             }
+            User old=userMapper.getUserByUserId(userId);
             userMapper.updateUserEmailByUserId(userId,newEmail);
+            if(old!=null){
+                userIdentityFilter.replaceEmail(old.getUserEmail(),newEmail);
+            }
             data.put("userEmail",newEmail);
             return  Result.ok().data(data);
+        }catch (DuplicateKeyException e){
+            return duplicateResult(e,"修改失败",data);
         }catch (RuntimeException e){
             data.put("error",e.getMessage());
             Result result = new Result(false,20001,"未知错误,修改失败",data);
@@ -216,12 +239,12 @@ public class UserServiceImpl implements UserService {
     @Override
     public Result insertUser(User user,String code) {
         Map<String, Object> data = new HashMap<>();
-        if(userMapper.getUserByUserName(user.getUserName())!=null){
+        if(userIdentityFilter.findByName(user.getUserName(), userMapper::getUserByUserName)!=null){
             data.put("error","昵称已被使用");
             Result result = new Result(false,50001,"用户创建失败",data);
             return result;
 
-        }else if(userMapper.getUserByUserEmail(user.getUserEmail())!=null){
+        }else if(userIdentityFilter.findByEmail(user.getUserEmail(), userMapper::getUserByUserEmail)!=null){
             data.put("error","邮箱已被使用");
             Result result = new Result(false,50002,"用户创建失败",data);
             return result;
@@ -234,12 +257,12 @@ public class UserServiceImpl implements UserService {
         try {
             user.setUserPicture("/images/user/head/D.png");//默认头像
             userMapper.insertUser(user);
+            userIdentityFilter.add(user.getUserName(), user.getUserEmail());
+            searchIndex.refresh(DocType.USER, user.getUserId());
             data.put("user",user);
             return  Result.ok().data(data);
         } catch (DuplicateKeyException e) {
-            data.put("error",e.getMessage());
-            Result result = new Result(false,20001,"未知错误",data);
-            return result;
+            return duplicateResult(e,"用户创建失败",data);
         }
 
 
@@ -255,6 +278,7 @@ public class UserServiceImpl implements UserService {
         Map<String, Object> data = new HashMap<>();
         try {
             userMapper.updateUserProfileByUserId(userId, userProfile);
+            searchIndex.refresh(DocType.USER, userId);
             data.put("userProfile",userProfile);
             return Result.ok().data(data);
         }catch (DuplicateKeyException e) {
@@ -272,22 +296,49 @@ public class UserServiceImpl implements UserService {
     @Override
     public Result updateUserNameByUserId(Integer userId, String userName){
         Map<String, Object> data = new HashMap<>();
-        User user=userMapper.getUserByUserName(userName);
+        User user=userIdentityFilter.findByName(userName, userMapper::getUserByUserName);
         if(user!=null){
             data.put("error","昵称已被其他用户使用");
             return new Result(false,50001,"修改失败",data);
         }
 
         try {
+            User old=userMapper.getUserByUserId(userId);
             userMapper.updateUserNameByUserId(userId, userName);
+            if(old!=null){
+                userIdentityFilter.replaceName(old.getUserName(), userName);
+            }
+            userSummaryCache.invalidate(userId);
+            searchIndex.refresh(DocType.USER, userId);
             data.put("userName",userName);
             return Result.ok().data(data);
         }catch (DuplicateKeyException e) {
-            data.put("error",e.getMessage());
-            return new Result(false,20001,"未知错误",data);
+            return duplicateResult(e,"修改失败",data);
         }
     }
 
+    /**
+     * 昵称/邮箱查重过滤器的归一化与数据库排序规则(utf8mb4_general_ci)不完全一致,
+     * 检查通过后仍可能违反user表的唯一索引,按冲突的索引返回与前置检查相同的错误码
+     * @param e 唯一索引冲突
+     * @param message 失败时的提示
+     * @param data
+     * @return 昵称冲突50001,邮箱冲突50002,其他20001
+     */
+    private Result duplicateResult(DuplicateKeyException e, String message, Map<String, Object> data) {
+        String cause = String.valueOf(e.getMostSpecificCause().getMessage());
+        if (cause.contains("user_name'")) {
+            data.put("error","昵称已被使用");
+            return new Result(false,50001,message,data);
+        }
+        if (cause.contains("user_email'")) {
+            data.put("error","邮箱已被使用");
+            return new Result(false,50002,message,data);
+        }
+        data.put("error",e.getMessage());
+        return new Result(false,20001,"未知错误",data);
+    }
+
     /**
      * 用户登录 先检查账号是否存在 再检查密码是否匹配
      * @param userId 账号
@@ -295,7 +346,7 @@ public class UserServiceImpl implements UserService {
      * @return 成功则返回完整的用户信息,失败则返回错误信息
      */
     @Override
-    public Result loginPassword(Integer userId, String userPassword) throws UnsupportedEncodingException, NoSuchAlgorithmException {
+    public Result loginPassword(Integer userId, String userPassword) {
         Map<String, Object> data = new HashMap<>();
         User user = userMapper.getUserByUserId(userId);
         if(user==null){
@@ -320,7 +371,7 @@ public class UserServiceImpl implements UserService {
      * @return
      */
     @Override
-    public  Result loginEamil(String userEmail, String code) throws UnsupportedEncodingException, NoSuchAlgorithmException {
+    public  Result loginEamil(String userEmail, String code) {
         Map<String, Object> data = new HashMap<>();
         User user = userMapper.getUserByUserEmail(userEmail);
         if(user==null){
@@ -347,7 +398,26 @@ public class UserServiceImpl implements UserService {
     public  Result searchUser(String keyword) {
         Map<String, Object> data = new HashMap<>();
         try {
-            List<User> userList = userMapper.listUserByKeyWord(keyword);
+            //优先使用全文索引(按相关度排序),索引不可用时退回数据库模糊查询
+            List<User> userList;
+            List<Integer> userIdList = searchIndex.search(DocType.USER, keyword);
+            if (userIdList == null) {
+                userList = userMapper.listUserByKeyWord(keyword);
+            } else {
+                userList = new ArrayList<>(userIdList.size());
+                if (!userIdList.isEmpty()) {
+                    Map<Integer, User> userMap = new HashMap<>();
+                    for (User user : userMapper.listUserByIdList(userIdList)) {
+                        userMap.put(user.getUserId(), user);
+                    }
+                    for (Integer userId : userIdList) {
+                        User user = userMap.get(userId);
+                        if (user != null) {
+                            userList.add(user);
+                        }
+                    }
+                }
+            }
             data.put("userList",userList);
             return Result.ok().data(data);
         }catch (DuplicateKeyException e) {
@@ -370,10 +440,6 @@ public class UserServiceImpl implements UserService {
         return pattern.matcher(email).matches();
     }
 
-    private EmailUtil emailUtil = EmailUtil.instance;
-    //private String vCode;  // 后台产生的验证码
-    private Map<String, String> vCode=new ConcurrentHashMap<>();
-
     /**
      * 向邮箱发生验证码
      * @param userEmail
@@ -388,22 +454,15 @@ public class UserServiceImpl implements UserService {
             data.put("error","邮箱格式错误");
             return new Result(false,20003,"验证码发送失败",data);
         }
-        try {
-            //生成验证码并发送验证码
-            emailUtil.sendEmail(userEmail);
-        } catch (Exception e) {
-            data.put("error",e.getMessage());
-            return new Result(false,20003,"未知错误,验证码发送失败",data);
-        }
-        //获取验证码
-        String vCode_ = emailUtil.getVCode();
-
-        if(vCode.containsKey(userEmail)){
-            //删除该邮箱的旧验证码(如果存在的话)
-            vCode.remove(userEmail);
+        //生成验证码,先保存邮箱和对应的新验证码(覆盖旧验证码),邮件可能在保存前就被发出并送达
+        String code = VCodeUtill.verifyCode(6);
+        verificationCodeStore.save(userEmail, code);
+        //放入邮件队列后立即返回,入队失败时验证码作废
+        if (!mailDispatcher.submit(EmailUtil.createVerificationMail(userEmail, code))) {
+            verificationCodeStore.discard(userEmail, code);
+            data.put("error","邮件发送繁忙,请稍后再试");
+            return new Result(false,20003,"验证码发送失败",data);
         }
-        //保存邮箱和对应的新验证码
-        vCode.put(userEmail, vCode_);
         return Result.ok().data(data);
     }
 
@@ -415,12 +474,7 @@ public class UserServiceImpl implements UserService {
      */
     @Override
     public boolean verifyEmail(String userEmail, String code){
-        if ((vCode.containsKey(userEmail) && vCode.get(userEmail).equals(code))) {
-            // 验证成功后，删除验证码和定时任务
-            vCode.remove(userEmail);
-            return true;
-        } else {
-            return false;
-        }
+        // 验证成功后验证码失效
+        return verificationCodeStore.verify(userEmail, code);
     }
 }
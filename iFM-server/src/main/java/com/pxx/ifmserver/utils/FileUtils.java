@@ -1,19 +1,29 @@
 package com.pxx.ifmserver.utils;
 
+import org.apache.commons.codec.binary.Hex;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.sound.sampled.*;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.Map;
 
 public class FileUtils {
 
     private static final String STATIC_RESOURCE_PATH="/resources";
+    //音频跳转索引文件的后缀
+    private static final String SEEK_INDEX_SUFFIX=".idx";
+    //音频文件大小上限,与spring.servlet.multipart.max-file-size一致
+    private static final long MAX_AUDIO_SIZE=1024L*1024*1024;
+    //音频流式写入时的缓冲区大小
+    private static final int AUDIO_BUFFER_SIZE=64*1024;
 
     /**
      *  储存图片文件到服务器,返回文件名称
@@ -64,10 +74,25 @@ public class FileUtils {
      * @param id 文件所属对象的ID(命名用)
      * @param audio 音频文件
      * @param path 文件所储存的路径
-     * @return 文件名|音频时长
+     * @return 文件名|音频时长|内容哈希|文件大小
      * @throws IOException
      */
     public static Map<String, Object> saveAudio(Integer id, MultipartFile audio,String path) throws IOException {
+        try (InputStream in = audio.getInputStream()) {
+            return saveAudio(id, in, path);
+        }
+    }
+
+    /**
+     * 以流的方式储存音频文件:只读一遍输入流,直接写入最终位置,
+     * 同时计算音频时长、内容哈希(SHA-256)并生成跳转索引文件(音频文件名+.idx)
+     * @param id 文件所属对象的ID(命名用)
+     * @param in 音频数据输入流(由调用方关闭)
+     * @param path 文件所储存的路径
+     * @return 文件名(fileName)|音频时长(duration,秒)|内容哈希(contentHash)|文件大小(size,字节)
+     * @throws IOException
+     */
+    public static Map<String, Object> saveAudio(Integer id, InputStream in, String path) throws IOException {
         Map<String, Object> data = new HashMap<>();
         //获取时间戳,用于组成图片名称
         long currentTimestamp = System.currentTimeMillis() / 1000;
@@ -77,21 +102,48 @@ public class FileUtils {
         String filename = id.toString() + "_" + timestampString + ".mp3";
         Path destinationFile = Paths.get(directory.getCanonicalPath()+ path + filename);
 
-        // 检查同名文件是否存在，如果存在则删除
-        if (Files.exists(destinationFile)) {
-            Files.delete(destinationFile);
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        Mp3StreamScanner scanner = new Mp3StreamScanner();
+        byte[] buffer = new byte[AUDIO_BUFFER_SIZE];
+        long size = 0;
+        // 保存新文件(同名文件直接覆盖),写入的同时计算哈希和扫描音频帧
+        try (OutputStream out = Files.newOutputStream(destinationFile)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                size += n;
+                if (size > MAX_AUDIO_SIZE) {
+                    throw new IOException("音频文件超过大小限制");
+                }
+                out.write(buffer, 0, n);
+                digest.update(buffer, 0, n);
+                scanner.update(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(destinationFile);
+            throw e;
+        }
+        long duration = 0;
+        try {
+            Mp3Parser.Mp3Info info = scanner.finish();
+            duration = Math.round(info.getDurationMillis() / 1000.0);
+            scanner.writeSeekIndex(Paths.get(destinationFile + SEEK_INDEX_SUFFIX));
+        } catch (IOException e) {
+            //不是有效的MP3数据,时长记为0
         }
-        // 保存新文件
-        audio.transferTo(destinationFile.toFile());
-        // 获取音频时长
-        long duration = getAudioDuration(destinationFile.toFile());
         data.put("fileName", filename);
         data.put("duration", duration);
+        data.put("contentHash", Hex.encodeHexString(digest.digest()));
+        data.put("size", size);
         return data;
     }
 
     /**
-     * 删除音频文件
+     * 删除音频文件(连同跳转索引文件)
      * @param path
      * @throws IOException
      */
@@ -104,6 +156,7 @@ public class FileUtils {
             if (Files.exists(destinationFile)) {
                 Files.delete(destinationFile);
             }
+            Files.deleteIfExists(Paths.get(destinationFile + SEEK_INDEX_SUFFIX));
         }
 
     }
@@ -111,21 +164,14 @@ public class FileUtils {
     /**
      * 获取音频文件的时长
      * @param audioFile 音频文件.mp3
-     * @return
+     * @return 时长(秒,四舍五入),文件无法解析时返回0
      */
     public static long getAudioDuration(File audioFile) {
-        long total = 0;
         try {
-            AudioFileFormat aff = AudioSystem.getAudioFileFormat(audioFile);
-            Map props = aff.properties();
-            if (props.containsKey("duration")) {
-                total = (long) Math.round((((Long) props.get("duration")).longValue()) / 1000);
-            }
-            System.out.println(total / 1000);
-        } catch (Exception e) {
-            e.printStackTrace();
+            Mp3Parser.Mp3Info info = Mp3Parser.parse(audioFile.toPath());
+            return Math.round(info.getDurationMillis() / 1000.0);
+        } catch (IOException e) {
+            return 0;
         }
-        total=total/1000;
-        return total;
     }
 }
@@ -0,0 +1,425 @@
+package com.pxx.ifmserver.utils;
+
+import lombok.Data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MP3文件解析工具
+ * 优先读取首帧中的Xing/Info/VBRI头直接得到总帧数,没有时逐帧遍历帧头,
+ * 不解码音频数据,也不创建逐帧对象。
+ * 解析文件时只用一个小缓冲区分块读取(不映射文件,映射要等GC回收才释放,频繁调用会耗尽进程可用的映射数)
+ */
+public class Mp3Parser {
+
+    /**
+     * 码率模式
+     */
+    public enum BitrateMode {
+        CBR, ABR, VBR
+    }
+
+    /**
+     * 解析结果
+     */
+    @Data
+    public static class Mp3Info {
+        //时长(毫秒)
+        private long durationMillis;
+        //采样率(Hz)
+        private int sampleRate;
+        //码率模式
+        private BitrateMode bitrateMode;
+        //平均码率(kbps)
+        private int bitrate;
+        //音频帧数
+        private long frameCount;
+        //首个音频帧在文件中的偏移
+        private long audioStart;
+    }
+
+    //码率表(kbps),[MPEG1 L1, MPEG1 L2, MPEG1 L3, MPEG2/2.5 L1, MPEG2/2.5 L2&L3]
+    private static final int[][] BITRATES = {
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+    };
+    //采样率表(Hz),[MPEG1, MPEG2, MPEG2.5]
+    private static final int[][] SAMPLE_RATES = {
+            {44100, 48000, 32000},
+            {22050, 24000, 16000},
+            {11025, 12000, 8000},
+    };
+
+    //MPEG版本(帧头19-20位)
+    private static final int VERSION_2 = 2;
+    private static final int VERSION_1 = 3;
+    //Layer(帧头17-18位)
+    private static final int LAYER_3 = 1;
+    private static final int LAYER_2 = 2;
+    private static final int LAYER_1 = 3;
+
+    private static final int XING = 0x58696E67;
+    private static final int INFO = 0x496E666F;
+    private static final int VBRI = 0x56425249;
+    private static final int LAME = 0x4C414D45;
+
+    //读取文件开头(首帧和Xing/VBRI头)的字节数,需大于最大帧长(Layer1约2.9KB)加下一帧帧头
+    private static final int HEAD_SIZE = 8 * 1024;
+    //逐帧遍历时每次读取的字节数
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private Mp3Parser() {
+    }
+
+    /**
+     * 解析MP3文件
+     * @param file 音频文件
+     * @return 解析结果
+     * @throws IOException 文件读取失败,或文件中找不到有效的MP3帧
+     */
+    public static Mp3Info parse(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            //跳过ID3v2标签(可能含有很大的封面图片),每次只读标签头
+            ByteBuffer tagHeader = ByteBuffer.allocate(10);
+            long base = 0;
+            int tagLength;
+            while (read(channel, tagHeader, base) == 10 && (tagLength = skipId3v2(tagHeader, 0)) > 0) {
+                base += tagLength;
+            }
+            //首帧中有Xing/VBRI头时直接得到结果
+            ByteBuffer head = ByteBuffer.allocate(HEAD_SIZE);
+            int headLength = read(channel, head, base);
+            int offset = findFirstFrame(head, 0, headLength);
+            if (offset >= 0) {
+                Mp3Info info = new Mp3Info();
+                int header = head.getInt(offset);
+                info.setSampleRate(sampleRate(header));
+                if (readVbrHeader(head, offset, header, base, size, info)) {
+                    return info;
+                }
+            }
+            //逐帧遍历:分块读取交给流式扫描器
+            Mp3StreamScanner scanner = new Mp3StreamScanner();
+            byte[] chunk = new byte[CHUNK_SIZE];
+            ByteBuffer chunkBuffer = ByteBuffer.wrap(chunk);
+            for (long position = base; position < size; ) {
+                int n = read(channel, chunkBuffer, position);
+                if (n <= 0) {
+                    break;
+                }
+                scanner.update(chunk, 0, n);
+                position += n;
+            }
+            //扫描器从base开始计数,换算为文件中的偏移
+            Mp3Info info = scanner.finish();
+            info.setAudioStart(base + info.getAudioStart());
+            return info;
+        }
+    }
+
+    /**
+     * 从文件的position处读满buffer(文件末尾除外)
+     * @return 读到的字节数,buffer的[0,返回值)为数据,limit设为返回值
+     */
+    private static int read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.limit();
+    }
+
+    /**
+     * 解析内存中的MP3数据(position到limit之间)
+     * @param buffer
+     * @return 解析结果
+     * @throws IOException 找不到有效的MP3帧
+     */
+    public static Mp3Info parse(ByteBuffer buffer) throws IOException {
+        int limit = buffer.limit();
+        int offset = findFirstFrame(buffer, skipId3v2(buffer, buffer.position()), limit);
+        if (offset < 0) {
+            throw new IOException("不是有效的MP3文件");
+        }
+        int header = buffer.getInt(offset);
+        int sampleRate = sampleRate(header);
+        int samplesPerFrame = samplesPerFrame(header);
+
+        Mp3Info info = new Mp3Info();
+        info.setSampleRate(sampleRate);
+        info.setAudioStart(offset);
+        if (readVbrHeader(buffer, offset, header, 0, limit, info)) {
+            return info;
+        }
+
+        //没有Xing/VBRI头,逐帧遍历
+        long frames = 0;
+        long audioBytes = 0;
+        int firstBitrate = bitrate(header);
+        boolean variable = false;
+        int position = offset;
+        while (position + 4 <= limit) {
+            int current = buffer.getInt(position);
+            int frameLength = frameLength(current);
+            if (frameLength <= 0 || sampleRate(current) != sampleRate) {
+                //帧头损坏或遇到ID3v1/APE标签,向后重新同步
+                int next = findFirstFrame(buffer, position + 1, limit);
+                if (next < 0) {
+                    break;
+                }
+                position = next;
+                continue;
+            }
+            if (position + frameLength > limit) {
+                break;
+            }
+            if (bitrate(current) != firstBitrate) {
+                variable = true;
+            }
+            frames++;
+            audioBytes += frameLength;
+            position += frameLength;
+        }
+        fill(info, frames, samplesPerFrame, 0, audioBytes, variable ? BitrateMode.VBR : BitrateMode.CBR);
+        return info;
+    }
+
+    /**
+     * 读取首帧中的Xing/Info或VBRI头
+     * @param buffer 包含首帧的数据
+     * @param offset 首帧在buffer中的偏移
+     * @param header 首帧帧头
+     * @param base buffer[0]在文件中的偏移
+     * @param fileSize 文件长度
+     * @param info
+     * @return 头中包含总帧数时返回true,此时info已填充完整
+     */
+    private static boolean readVbrHeader(ByteBuffer buffer, int offset, int header, long base, long fileSize, Mp3Info info) {
+        int limit = buffer.limit();
+        int samplesPerFrame = samplesPerFrame(header);
+        int frameLength = frameLength(header);
+        int xingOffset = offset + 4 + sideInfoLength(header);
+        if (xingOffset + 16 <= limit) {
+            int tag = buffer.getInt(xingOffset);
+            if (tag == XING || tag == INFO) {
+                int flags = buffer.getInt(xingOffset + 4);
+                if ((flags & 1) == 0) {
+                    return false;
+                }
+                int cursor = xingOffset + 8;
+                long frames = Integer.toUnsignedLong(buffer.getInt(cursor));
+                cursor += 4;
+                long bytes = 0;
+                if ((flags & 2) != 0 && cursor + 4 <= limit) {
+                    bytes = Integer.toUnsignedLong(buffer.getInt(cursor));
+                    cursor += 4;
+                }
+                if ((flags & 4) != 0) {
+                    cursor += 100;
+                }
+                if ((flags & 8) != 0) {
+                    cursor += 4;
+                }
+                BitrateMode mode = tag == INFO ? BitrateMode.CBR : BitrateMode.VBR;
+                int padding = 0;
+                //LAME扩展头:编码方式与首尾填充的采样数
+                if (cursor + 24 <= limit && buffer.getInt(cursor) == LAME) {
+                    int method = buffer.get(cursor + 9) & 0x0F;
+                    if (method == 1 || method == 8) {
+                        mode = BitrateMode.CBR;
+                    } else if (method == 2 || method == 9) {
+                        mode = BitrateMode.ABR;
+                    } else if (method >= 3 && method <= 6) {
+                        mode = BitrateMode.VBR;
+                    }
+                    int delayPadding = ((buffer.get(cursor + 21) & 0xFF) << 16)
+                            | ((buffer.get(cursor + 22) & 0xFF) << 8)
+                            | (buffer.get(cursor + 23) & 0xFF);
+                    padding = (delayPadding >>> 12) + (delayPadding & 0xFFF);
+                }
+                if (bytes <= frameLength) {
+                    bytes = fileSize - base - offset - frameLength;
+                }
+                info.setAudioStart(base + offset + frameLength);
+                fill(info, frames, samplesPerFrame, padding, bytes, mode);
+                return true;
+            }
+        }
+        //VBRI头固定位于帧头后32字节
+        int vbriOffset = offset + 4 + 32;
+        if (vbriOffset + 18 <= limit && buffer.getInt(vbriOffset) == VBRI) {
+            long bytes = Integer.toUnsignedLong(buffer.getInt(vbriOffset + 10));
+            long frames = Integer.toUnsignedLong(buffer.getInt(vbriOffset + 14));
+            info.setAudioStart(base + offset + frameLength);
+            fill(info, frames, samplesPerFrame, 0, bytes, BitrateMode.VBR);
+            return true;
+        }
+        return false;
+    }
+
+    static void fill(Mp3Info info, long frames, int samplesPerFrame, int paddingSamples, long audioBytes, BitrateMode mode) {
+        long samples = Math.max(0, frames * samplesPerFrame - paddingSamples);
+        long durationMillis = samples * 1000 / info.getSampleRate();
+        info.setFrameCount(frames);
+        info.setDurationMillis(durationMillis);
+        info.setBitrateMode(mode);
+        info.setBitrate(durationMillis == 0 ? 0 : (int) Math.round(audioBytes * 8.0 / durationMillis));
+    }
+
+    /**
+     * 判断该帧是否为Xing/Info/VBRI头所在的帧(不含音频数据)
+     * @param buffer
+     * @param offset 帧头偏移
+     * @param header 32位帧头
+     * @return
+     */
+    static boolean isVbrHeaderFrame(ByteBuffer buffer, int offset, int header) {
+        int xingOffset = offset + 4 + sideInfoLength(header);
+        if (xingOffset + 4 <= buffer.limit()) {
+            int tag = buffer.getInt(xingOffset);
+            if (tag == XING || tag == INFO) {
+                return true;
+            }
+        }
+        int vbriOffset = offset + 4 + 32;
+        return vbriOffset + 4 <= buffer.limit() && buffer.getInt(vbriOffset) == VBRI;
+    }
+
+    /**
+     * 跳过文件开头的ID3v2标签
+     * @return 标签之后的偏移
+     */
+    static int skipId3v2(ByteBuffer buffer, int offset) {
+        while (offset + 10 <= buffer.limit()
+                && buffer.get(offset) == 'I' && buffer.get(offset + 1) == 'D' && buffer.get(offset + 2) == '3') {
+            int flags = buffer.get(offset + 5) & 0xFF;
+            //标签长度是4个7位的syncsafe整数
+            int size = ((buffer.get(offset + 6) & 0x7F) << 21)
+                    | ((buffer.get(offset + 7) & 0x7F) << 14)
+                    | ((buffer.get(offset + 8) & 0x7F) << 7)
+                    | (buffer.get(offset + 9) & 0x7F);
+            offset += 10 + size + ((flags & 0x10) != 0 ? 10 : 0);
+        }
+        return offset;
+    }
+
+    /**
+     * 从offset开始查找第一个有效帧,要求紧随其后的下一帧帧头也有效,避免把音频数据误认为帧头
+     * @return 帧头偏移,找不到返回-1
+     */
+    static int findFirstFrame(ByteBuffer buffer, int offset, int limit) {
+        for (int position = Math.max(offset, 0); position + 4 <= limit; position++) {
+            if ((buffer.get(position) & 0xFF) != 0xFF) {
+                continue;
+            }
+            int header = buffer.getInt(position);
+            int frameLength = frameLength(header);
+            if (frameLength <= 0) {
+                continue;
+            }
+            int next = position + frameLength;
+            if (next + 4 > limit) {
+                //文件末尾只剩一帧,无法再校验下一帧
+                return next == limit ? position : -1;
+            }
+            int nextHeader = buffer.getInt(next);
+            if (frameLength(nextHeader) > 0 && sampleRate(nextHeader) == sampleRate(header)) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 根据帧头计算帧长度(字节)
+     * @param header 32位帧头
+     * @return 帧长度,帧头无效(或为自由码率)时返回-1
+     */
+    public static int frameLength(int header) {
+        if ((header & 0xFFE00000) != 0xFFE00000) {
+            return -1;
+        }
+        int version = (header >>> 19) & 3;
+        int layer = (header >>> 17) & 3;
+        int bitrateIndex = (header >>> 12) & 0xF;
+        int sampleRateIndex = (header >>> 10) & 3;
+        if (version == 1 || layer == 0 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            return -1;
+        }
+        int bitrate = bitrate(header) * 1000;
+        int sampleRate = sampleRate(header);
+        int padding = (header >>> 9) & 1;
+        if (layer == LAYER_1) {
+            return (12 * bitrate / sampleRate + padding) * 4;
+        }
+        return samplesPerFrame(header) / 8 * bitrate / sampleRate + padding;
+    }
+
+    /**
+     * 帧头中的码率(kbps)
+     */
+    public static int bitrate(int header) {
+        int version = (header >>> 19) & 3;
+        int layer = (header >>> 17) & 3;
+        int bitrateIndex = (header >>> 12) & 0xF;
+        int table;
+        if (version == VERSION_1) {
+            table = layer == LAYER_1 ? 0 : layer == LAYER_2 ? 1 : 2;
+        } else {
+            table = layer == LAYER_1 ? 3 : 4;
+        }
+        return bitrateIndex < 15 ? BITRATES[table][bitrateIndex] : 0;
+    }
+
+    /**
+     * 帧头中的采样率(Hz)
+     */
+    public static int sampleRate(int header) {
+        int version = (header >>> 19) & 3;
+        int sampleRateIndex = (header >>> 10) & 3;
+        if (sampleRateIndex == 3 || version == 1) {
+            return 0;
+        }
+        int row = version == VERSION_1 ? 0 : version == VERSION_2 ? 1 : 2;
+        return SAMPLE_RATES[row][sampleRateIndex];
+    }
+
+    /**
+     * 每帧包含的采样数
+     */
+    public static int samplesPerFrame(int header) {
+        int version = (header >>> 19) & 3;
+        int layer = (header >>> 17) & 3;
+        if (layer == LAYER_1) {
+            return 384;
+        }
+        if (layer == LAYER_3 && version != VERSION_1) {
+            return 576;
+        }
+        return 1152;
+    }
+
+    /**
+     * Layer3帧头之后的边信息长度,Xing头紧随其后
+     */
+    private static int sideInfoLength(int header) {
+        int version = (header >>> 19) & 3;
+        boolean mono = ((header >>> 6) & 3) == 3;
+        if (version == VERSION_1) {
+            return mono ? 17 : 32;
+        }
+        return mono ? 9 : 17;
+    }
+}
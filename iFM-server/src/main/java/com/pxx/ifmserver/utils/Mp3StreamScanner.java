@@ -0,0 +1,212 @@
+package com.pxx.ifmserver.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * MP3流式扫描器
+ * 上传音频时边写文件边把数据交给扫描器,逐帧累计时长并记录每秒对应的字节偏移(拖动进度用的跳转索引),
+ * 不需要在写完文件后再读一遍
+ */
+public class Mp3StreamScanner {
+
+    //跳转索引文件的魔数("IFMI")
+    private static final int SEEK_INDEX_MAGIC = 0x49464D49;
+    //跳转索引的时间间隔(毫秒)
+    public static final int SEEK_INDEX_INTERVAL_MILLIS = 1000;
+    //扫描窗口,需大于最大帧长(Layer1约2.9KB)加下一帧帧头
+    private static final int WINDOW_SIZE = 16 * 1024;
+
+    private final byte[] window = new byte[WINDOW_SIZE];
+    private final ByteBuffer view = ByteBuffer.wrap(window);
+    //窗口中未处理数据的区间[start,end)
+    private int start;
+    private int end;
+    //window[0]在文件中的偏移
+    private long base;
+    //还需跳过的字节数(ID3v2标签超出窗口的部分)
+    private long skip;
+
+    private int sampleRate;
+    private int samplesPerFrame;
+    private int firstBitrate;
+    private boolean variable;
+    private long audioStart = -1;
+    private long frames;
+    private long samples;
+    private long audioBytes;
+    //第i项为第i秒开始处的帧在文件中的偏移
+    private long[] seekIndex = new long[64];
+    private int seekIndexSize;
+
+    /**
+     * 扫描一段数据
+     * @param data
+     * @param offset
+     * @param length
+     */
+    public void update(byte[] data, int offset, int length) {
+        while (length > 0) {
+            if (skip > 0) {
+                int n = (int) Math.min(skip, length);
+                skip -= n;
+                base += n;
+                offset += n;
+                length -= n;
+                continue;
+            }
+            if (end == window.length) {
+                compact();
+            }
+            int n = Math.min(length, window.length - end);
+            System.arraycopy(data, offset, window, end, n);
+            end += n;
+            offset += n;
+            length -= n;
+            scan(false);
+        }
+    }
+
+    /**
+     * 数据结束,返回扫描结果
+     * @return
+     * @throws IOException 没有扫描到任何MP3帧
+     */
+    public Mp3Parser.Mp3Info finish() throws IOException {
+        scan(true);
+        if (frames == 0) {
+            throw new IOException("不是有效的MP3文件");
+        }
+        Mp3Parser.Mp3Info info = new Mp3Parser.Mp3Info();
+        info.setSampleRate(sampleRate);
+        info.setAudioStart(audioStart);
+        Mp3Parser.fill(info, frames, samplesPerFrame, 0, audioBytes,
+                variable ? Mp3Parser.BitrateMode.VBR : Mp3Parser.BitrateMode.CBR);
+        return info;
+    }
+
+    /**
+     * 获取跳转索引:第i项为第i秒开始处的帧在文件中的偏移
+     * @return
+     */
+    public long[] getSeekIndex() {
+        return Arrays.copyOf(seekIndex, seekIndexSize);
+    }
+
+    /**
+     * 把跳转索引写入文件
+     * 格式:魔数(int) 间隔毫秒(int) 项数(int) 偏移(long)*项数
+     * @param file
+     * @throws IOException
+     */
+    public void writeSeekIndex(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(SEEK_INDEX_MAGIC);
+            out.writeInt(SEEK_INDEX_INTERVAL_MILLIS);
+            out.writeInt(seekIndexSize);
+            for (int i = 0; i < seekIndexSize; i++) {
+                out.writeLong(seekIndex[i]);
+            }
+        }
+    }
+
+    private void compact() {
+        System.arraycopy(window, start, window, 0, end - start);
+        base += start;
+        end -= start;
+        start = 0;
+    }
+
+    /**
+     * 逐帧处理窗口中的数据
+     * 在找到第一帧之前要求下一帧帧头也有效,之后只要求帧头有效且采样率一致
+     * @param last 是否已经没有后续数据
+     */
+    private void scan(boolean last) {
+        int position = start;
+        while (end - position >= 4) {
+            if (audioStart < 0 && window[position] == 'I' && window[position + 1] == 'D' && window[position + 2] == '3') {
+                if (end - position < 10) {
+                    if (last) {
+                        position = end;
+                    }
+                    break;
+                }
+                long tagLength = 10L + (((window[position + 6] & 0x7F) << 21)
+                        | ((window[position + 7] & 0x7F) << 14)
+                        | ((window[position + 8] & 0x7F) << 7)
+                        | (window[position + 9] & 0x7F))
+                        + ((window[position + 5] & 0x10) != 0 ? 10 : 0);
+                if (tagLength <= end - position) {
+                    position += (int) tagLength;
+                    continue;
+                }
+                //标签超出窗口,剩余部分在后续数据中直接跳过
+                skip = tagLength - (end - position);
+                base += end;
+                start = 0;
+                end = 0;
+                return;
+            }
+            int header = view.getInt(position);
+            int frameLength = Mp3Parser.frameLength(header);
+            if (frameLength <= 0 || (sampleRate != 0 && Mp3Parser.sampleRate(header) != sampleRate)) {
+                position++;
+                continue;
+            }
+            if (end - position < frameLength + 4) {
+                if (!last) {
+                    break;
+                }
+                if (end - position < frameLength) {
+                    //末尾不完整的帧
+                    position = end;
+                    break;
+                }
+            } else if (sampleRate == 0) {
+                int next = view.getInt(position + frameLength);
+                if (Mp3Parser.frameLength(next) <= 0 || Mp3Parser.sampleRate(next) != Mp3Parser.sampleRate(header)) {
+                    position++;
+                    continue;
+                }
+            }
+            if (sampleRate == 0) {
+                sampleRate = Mp3Parser.sampleRate(header);
+                samplesPerFrame = Mp3Parser.samplesPerFrame(header);
+                firstBitrate = Mp3Parser.bitrate(header);
+                if (Mp3Parser.isVbrHeaderFrame(view, position, header)) {
+                    //Xing/Info/VBRI帧不含音频
+                    position += frameLength;
+                    continue;
+                }
+            }
+            addFrame(base + position, header, frameLength);
+            position += frameLength;
+        }
+        start = position;
+    }
+
+    private void addFrame(long offset, int header, int frameLength) {
+        if (audioStart < 0) {
+            audioStart = offset;
+        }
+        long millis = samples * 1000 / sampleRate;
+        while ((long) seekIndexSize * SEEK_INDEX_INTERVAL_MILLIS <= millis) {
+            if (seekIndexSize == seekIndex.length) {
+                seekIndex = Arrays.copyOf(seekIndex, seekIndexSize * 2);
+            }
+            seekIndex[seekIndexSize++] = offset;
+        }
+        if (Mp3Parser.bitrate(header) != firstBitrate) {
+            variable = true;
+        }
+        frames++;
+        samples += samplesPerFrame;
+        audioBytes += frameLength;
+    }
+}
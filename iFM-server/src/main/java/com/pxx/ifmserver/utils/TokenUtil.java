@@ -1,180 +1,290 @@
 package com.pxx.ifmserver.utils;
 
-import com.alibaba.fastjson.JSONObject;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.apache.commons.codec.binary.Hex;
-import org.springframework.util.DigestUtils;
-
-import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Arrays;
-import java.util.Date;
 import java.util.Base64;
-import java.util.UUID;
+import java.util.function.LongSupplier;
 
+/**
+ * Token安全令牌
+ * 二进制格式: 版本(1字节) | 用户id(4) | 状态(1) | 过期时间毫秒(8) | HMAC-SHA256签名(32),整体用URL安全的Base64编码(无填充,62个字符)。
+ * 签名密钥由ifm.token.secret配置(见TokenConfig),未配置时启动时随机生成(重启后所有人需重新登录)。
+ * 校验时直接把请求头解码到线程内复用的缓冲区并按常量时间比较签名,不创建中间字符串;
+ * 只有剩余有效期不足RENEW_BEFORE时才签发新Token,否则原样返回请求中的Token
+ */
 public class TokenUtil {
 
-    private static final String SALT = "your-salt"; // 用于增强 Token 安全性的盐值
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte VERSION = 1;
+    private static final int PAYLOAD_LENGTH = 14;
+    private static final int SIGNATURE_LENGTH = 32;
+    private static final int TOKEN_LENGTH = PAYLOAD_LENGTH + SIGNATURE_LENGTH;
+    //Base64编码后的长度(无填充)
+    private static final int ENCODED_LENGTH = (TOKEN_LENGTH * 8 + 5) / 6;
+    // Token 的有效时间:60分钟
+    private static final long VALIDITY = 3600000;
+    // 剩余有效期不足10分钟时签发新 Token
+    private static final long RENEW_BEFORE = 600000;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    //URL安全Base64字符 -> 6位值,-1表示非法字符
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private static volatile SecretKeySpec key = randomKey();
+    //当前时间(毫秒),测试时可替换
+    static LongSupplier clock = System::currentTimeMillis;
 
     /**
-     * 创建 Token 对象
-     *
-     * @param id
-     * @param status
-     * @return 返回 Token 字符串
+     * 每个线程复用的Mac和缓冲区;密钥更换后在下次使用时重新初始化
      */
-    public static String createToken(int id, int status) throws UnsupportedEncodingException, NoSuchAlgorithmException {
-        SimpleDateFormat sif = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        Date date = new Date();
-        // 当前时间加60分钟，作为 Token 的有效时间
-        Date dateafter = new Date(date.getTime() + 3600000);
-        Object endtime = sif.format(dateafter);
-        String json = "id:" + id + ",status:" + status + ",endtime:" + endtime;
-        JSONObject jsonObject = new JSONObject();
-        String ss = jsonObject.toJSONString(json);
-
-        // 使用 UUID 生成随机字符串
-        String randomString = UUID.randomUUID().toString();
-
-        // 使用 SHA-256 进行签名
-        MessageDigest md = MessageDigest.getInstance("SHA-256");
-        md.reset();
-        md.update(ss.getBytes("UTF-8"));
-        byte[] byteArray = md.digest();
-        StringBuilder sha256StrBuff = new StringBuilder();
-        for (int i = 0; i < byteArray.length; i++) {
-            if (Integer.toHexString(0xFF & byteArray[i]).length() == 1){
-                sha256StrBuff.append("0").append(Integer.toHexString(0xFF & byteArray[i]));
+    private static final class Signer {
+        private SecretKeySpec key;
+        private final Mac mac;
+        private final byte[] token = new byte[TOKEN_LENGTH];
+        private final byte[] signature = new byte[SIGNATURE_LENGTH];
+
+        private Signer() {
+            try {
+                mac = Mac.getInstance(ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
             }
-            else{
-                sha256StrBuff.append(Integer.toHexString(0xFF & byteArray[i]));
+        }
+
+        private Mac mac() {
+            SecretKeySpec current = TokenUtil.key;
+            if (key != current) {
+                try {
+                    mac.init(current);
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(e);
+                }
+                key = current;
             }
+            return mac;
         }
 
-        String token = ss + ";" + sha256StrBuff.toString() + ";" + randomString;
-        // 使用 Base64 编码 Token
-        return Base64.getEncoder().encodeToString(token.getBytes("UTF-8"));
+        /**
+         * 对token[0, PAYLOAD_LENGTH)签名,结果写入signature
+         */
+        private void sign() {
+            Mac mac = mac();
+            mac.update(token, 0, PAYLOAD_LENGTH);
+            try {
+                mac.doFinal(signature, 0);
+            } catch (ShortBufferException e) {
+                throw new IllegalStateException(e);
+            }
+        }
     }
 
+    private static final ThreadLocal<Signer> SIGNERS = ThreadLocal.withInitial(Signer::new);
 
     /**
-     * 后端拿到前端请求头的token对象，验证身份，比较有效时间
+     * 设置签名密钥(启动时由TokenConfig调用)
+     * @param secret 至少32字节
+     */
+    public static void setSecret(byte[] secret) {
+        if (secret == null || secret.length < SIGNATURE_LENGTH) {
+            throw new IllegalArgumentException("Token密钥至少需要" + SIGNATURE_LENGTH + "字节");
+        }
+        key = new SecretKeySpec(secret, ALGORITHM);
+    }
+
+    private static SecretKeySpec randomKey() {
+        byte[] secret = new byte[SIGNATURE_LENGTH];
+        new SecureRandom().nextBytes(secret);
+        return new SecretKeySpec(secret, ALGORITHM);
+    }
+
+    /**
+     * 创建 Token 对象
      *
-     * @param req
-     * @param resp
-     * @param userId
-     * @return
-     * @throws ParseException
-     * @throws IOException
-     * @throws NoSuchAlgorithmException
+     * @param id
+     * @param status
+     * @return 返回 Token 字符串
      */
-    public static String verifyToken(HttpServletRequest req, HttpServletResponse resp,Integer userId) throws IOException, ParseException, NoSuchAlgorithmException {
+    public static String createToken(int id, int status) {
+        Signer signer = SIGNERS.get();
+        byte[] token = signer.token;
+        long expiresAt = clock.getAsLong() + VALIDITY;
+        token[0] = VERSION;
+        putInt(token, 1, id);
+        token[5] = (byte) status;
+        putLong(token, 6, expiresAt);
+        signer.sign();
+        System.arraycopy(signer.signature, 0, token, PAYLOAD_LENGTH, SIGNATURE_LENGTH);
+        return ENCODER.encodeToString(token);
+    }
 
-        // 拿到token对象
-        String token = req.getHeader("Token");
-        if (token == null || token.isEmpty()) {
-            //resp.getWriter().println("Token 缺失或无效");
-            return null;
+
+    /**
+     * 校验通过的Token携带的信息
+     */
+    public static final class Claims {
+        private final int userId;
+        private final int status;
+        private final String token;
+        private final boolean renewed;
+
+        private Claims(int userId, int status, String token, boolean renewed) {
+            this.userId = userId;
+            this.status = status;
+            this.token = token;
+            this.renewed = renewed;
         }
 
-        // 解码 Base64 编码的 Token
-        String decodedToken = new String(Base64.getDecoder().decode(token), "UTF-8");
-        String[] parts = decodedToken.split(";");
-        if (parts.length != 3) {
-            //resp.getWriter().println("Token 格式错误");
-            return null;
+        public int getUserId() {
+            return userId;
         }
 
+        public int getStatus() {
+            return status;
+        }
 
-        // 解析 Token 内容
-        String jsonPart = URLDecoder.decode(parts[0], "UTF-8");
-        String sha256Hex = parts[1];
-        String randomString = parts[2]; // 这个字段在验证过程中并不使用
+        /**
+         * @return 之后应使用的Token(续签时为新Token,否则为原Token)
+         */
+        public String getToken() {
+            return token;
+        }
 
-        // 提取 id 和 status
-        String idPart = jsonPart.substring(jsonPart.indexOf("id:") + 3, jsonPart.indexOf(","));
-        int id = Integer.parseInt(idPart);
-        String statusPart = jsonPart.substring(jsonPart.indexOf("status:") + 7, jsonPart.indexOf(",endtime:"));
-        int status = Integer.parseInt(statusPart);
+        /**
+         * @return 是否签发了新Token
+         */
+        public boolean isRenewed() {
+            return renewed;
+        }
+    }
 
-        // 验证 Token 是否过期
-        String endtimePart = jsonPart.substring(jsonPart.indexOf("endtime:") + 8);
-        SimpleDateFormat sif = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        Date endTime = sif.parse(endtimePart);
-        long currentTime = System.currentTimeMillis();
-        if (currentTime > endTime.getTime()) {
-            //resp.getWriter().println("Token有效时间已过，请重新登录!");
+    /**
+     * 校验Token的签名和有效期
+     *
+     * @param token 请求头中的Token
+     * @return 校验通过时返回Token中的用户信息(快过期时附带新签发的 Token),否则返回null
+     */
+    public static Claims authenticate(String token) {
+        if (token == null || token.length() != ENCODED_LENGTH) {
+            return null;
+        }
+        Signer signer = SIGNERS.get();
+        byte[] bytes = signer.token;
+        if (!decode(token, bytes) || bytes[0] != VERSION) {
             return null;
         }
 
-        // 验证 Token 签名
-        MessageDigest md = MessageDigest.getInstance("SHA-256");
-        md.update(jsonPart.getBytes("UTF-8"));
-        byte[] digest = md.digest();
-        String calculatedSha256Hex = Hex.encodeHexString(digest);
-        if (!calculatedSha256Hex.equals(sha256Hex) || id != userId) {
-            //resp.getWriter().println("Token信息有误!");
+        // 验证 Token 签名(常量时间比较)
+        signer.sign();
+        byte[] signature = signer.signature;
+        int diff = 0;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            diff |= signature[i] ^ bytes[PAYLOAD_LENGTH + i];
+        }
+        if (diff != 0) {
             return null;
         }
 
-        // 业务处理成功，返回新的 Token
-        return createToken(id, status);
-    }
+        int id = getInt(bytes, 1);
+        int status = bytes[5] & 0xff;
+        long expiresAt = getLong(bytes, 6);
+        long now = clock.getAsLong();
+        // 验证 Token 是否过期
+        if (now > expiresAt) {
+            return null;
+        }
 
+        // 快过期时签发新的 Token
+        if (expiresAt - now < RENEW_BEFORE) {
+            return new Claims(id, status, createToken(id, status), true);
+        }
+        return new Claims(id, status, token, false);
+    }
 
     /**
-     * 生成一个随机的字符串
+     * 后端拿到前端请求头的token对象，验证身份，比较有效时间
      *
-     * @return 返回随机字符串
+     * @param req
+     * @param resp
+     * @param userId
+     * @return 验证通过时返回 Token(快过期时为新签发的 Token),否则返回null
      */
-    private static String getRandomString() {
-        String characters = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
-        StringBuilder sb = new StringBuilder();
-        SecureRandom random = new SecureRandom();
-        for (int i = 0; i < 16; i++) {
-            sb.append(characters.charAt(random.nextInt(characters.length())));
-        }
-        return sb.toString();
+    public static String verifyToken(HttpServletRequest req, HttpServletResponse resp,Integer userId) {
+        Claims claims = authenticate(req.getHeader("Token"));
+        if (claims == null || userId == null || claims.getUserId() != userId) {
+            return null;
+        }
+        return claims.getToken();
+    }
+
+    /**
+     * 把Base64编码的Token解码到out中
+     * @return 含非法字符时返回false
+     */
+    private static boolean decode(String token, byte[] out) {
+        int buffer = 0;
+        int bits = 0;
+        int position = 0;
+        for (int i = 0; i < ENCODED_LENGTH; i++) {
+            char c = token.charAt(i);
+            int value = c < 128 ? DECODE[c] : -1;
+            if (value < 0) {
+                return false;
+            }
+            buffer = (buffer << 6) | value;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                out[position++] = (byte) (buffer >> bits);
+            }
+        }
+        //末尾多出的位必须为0,保证同一Token只有一种编码
+        return position == TOKEN_LENGTH && (buffer & ((1 << bits) - 1)) == 0;
     }
 
+    private static void putInt(byte[] bytes, int offset, int value) {
+        for (int i = 3; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
 
 }
-//        // 解析当前token对象的id，状态
-//        int id = Integer.parseInt(decodedParts[0].substring(decodedParts[0].indexOf(":") + 1, decodedParts[0].indexOf(",")));
-//        int status = Integer.parseInt(decodedParts[0].substring(decodedParts[0].indexOf(":") + 1, decodedParts[0].lastIndexOf(",")));
-//
-//        // 验证 Token 是否过期
-//        String endtime = decodedParts[2].substring(decodedParts[2].indexOf(":") + 1, decodedParts[2].length());
-//        SimpleDateFormat sif = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-//        Date data = sif.parse(endtime);
-//        long stime = data.getTime();
-//        Date date1 = new Date();
-//        long nowtime = date1.getTime();
-//        long differen = stime - nowtime;
-//
-//        if (differen < 0) {
-//            resp.getWriter().println("Token有效时间已过，请重新登录!");
-//            return null;
-//        }
-//
-//        // 验证 Token 签名
-//        String ss = decodedParts[0] + ";" + decodedParts[1];
-//        MessageDigest md = MessageDigest.getInstance("SHA-256");
-//        md.update(ss.getBytes("UTF-8"));
-//        byte[] digest = md.digest();
-//        String sha256Hex = Hex.encodeHexString(digest);
-//        if (!sha256Hex.equals(decodedParts[1])) {
-//            resp.getWriter().println("Token信息有误!");
-//            return null;
-//        }
-
-// 处理业务逻辑
-// 解析当前token对象的id，状态
\ No newline at end of file
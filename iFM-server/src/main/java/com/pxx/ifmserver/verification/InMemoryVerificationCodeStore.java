@@ -0,0 +1,195 @@
+package com.pxx.ifmserver.verification;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * 内存验证码存储(时间轮)
+ * 时间轮每格ifm.verification.tick-millis,格数覆盖整个有效期,验证码按过期时刻挂在对应格的双向链表上;
+ * 指针每走一格就把该格上的验证码全部删除,过期清理为O(1),不需要扫描全部验证码。
+ * 覆盖/校验通过/作废时直接从链表摘除。验证码总数超过ifm.verification.max-entries时淘汰最早过期的,
+ * 持续有人注册时内存保持不变
+ */
+@Component
+@ConditionalOnProperty(name = "ifm.verification.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryVerificationCodeStore implements VerificationCodeStore {
+
+    //有效期(秒)
+    @Value("${ifm.verification.ttl-seconds:600}")
+    private long ttlSeconds;
+    //时间轮每格的长度(毫秒)
+    @Value("${ifm.verification.tick-millis:1000}")
+    private long tickMillis;
+    //最多连续输错的次数
+    @Value("${ifm.verification.max-attempts:5}")
+    private int maxAttempts;
+    //最多保存的验证码数
+    @Value("${ifm.verification.max-entries:100000}")
+    private int maxEntries;
+
+    //当前时间(毫秒),测试时可替换
+    private LongSupplier clock = System::currentTimeMillis;
+
+    /**
+     * 一个验证码,同时是时间轮某一格链表上的节点
+     */
+    private static final class Entry {
+        private final String email;
+        private final byte[] code;
+        private final long expireTick;
+        private int attempts;
+        private Entry prev;
+        private Entry next;
+
+        private Entry(String email, byte[] code, long expireTick) {
+            this.email = email;
+            this.code = code;
+            this.expireTick = expireTick;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    //时间轮:格 -> 链表头
+    private Entry[] wheel;
+    //指针已经走到的格(绝对刻度)
+    private long currentTick = -1;
+
+    @Override
+    public synchronized void save(String email, String code) {
+        advance();
+        Entry old = entries.remove(email);
+        if (old != null) {
+            unlink(old);
+        }
+        while (entries.size() >= maxEntries) {
+            evictOldest();
+        }
+        Entry entry = new Entry(email, code.getBytes(StandardCharsets.UTF_8), currentTick + ttlTicks());
+        link(entry);
+        entries.put(email, entry);
+    }
+
+    @Override
+    public synchronized boolean verify(String email, String code) {
+        advance();
+        Entry entry = entries.get(email);
+        if (entry == null || code == null) {
+            return false;
+        }
+        //常量时间比较,避免按响应时间逐位猜测
+        if (MessageDigest.isEqual(entry.code, code.getBytes(StandardCharsets.UTF_8))) {
+            remove(entry);
+            return true;
+        }
+        if (++entry.attempts >= maxAttempts) {
+            remove(entry);
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void discard(String email, String code) {
+        Entry entry = entries.get(email);
+        if (entry != null && code != null && MessageDigest.isEqual(entry.code, code.getBytes(StandardCharsets.UTF_8))) {
+            remove(entry);
+        }
+    }
+
+    /**
+     * 没有请求时也定期推进时间轮,及时释放过期验证码
+     */
+    @Scheduled(fixedRateString = "${ifm.verification.tick-millis:1000}")
+    public synchronized void tick() {
+        advance();
+    }
+
+    /**
+     * @return 当前保存的验证码数
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private long ttlTicks() {
+        return Math.max(1, (ttlSeconds * 1000 + tickMillis - 1) / tickMillis);
+    }
+
+    /**
+     * 指针走到当前时刻,删除经过的格上的验证码
+     */
+    private void advance() {
+        long now = clock.getAsLong() / tickMillis;
+        if (wheel == null) {
+            //格数比有效期多一格,保证同一格上只有同一时刻过期的验证码
+            wheel = new Entry[(int) ttlTicks() + 1];
+            currentTick = now;
+            return;
+        }
+        if (now - currentTick >= wheel.length) {
+            //长时间没有推进(或时钟跳变),所有验证码都已过期
+            entries.clear();
+            java.util.Arrays.fill(wheel, null);
+            currentTick = now;
+            return;
+        }
+        while (currentTick < now) {
+            currentTick++;
+            int slot = (int) (currentTick % wheel.length);
+            for (Entry entry = wheel[slot]; entry != null; entry = entry.next) {
+                entries.remove(entry.email);
+            }
+            wheel[slot] = null;
+        }
+    }
+
+    /**
+     * 从指针的下一格开始找到最早过期的验证码并删除
+     */
+    private void evictOldest() {
+        for (int i = 1; i <= wheel.length; i++) {
+            Entry head = wheel[(int) ((currentTick + i) % wheel.length)];
+            if (head != null) {
+                remove(head);
+                return;
+            }
+        }
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry.email);
+        unlink(entry);
+    }
+
+    private void link(Entry entry) {
+        int slot = (int) (entry.expireTick % wheel.length);
+        entry.next = wheel[slot];
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+        wheel[slot] = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            int slot = (int) (entry.expireTick % wheel.length);
+            if (wheel[slot] == entry) {
+                wheel[slot] = entry.next;
+            }
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+    }
+}
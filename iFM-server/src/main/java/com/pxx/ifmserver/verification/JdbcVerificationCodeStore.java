@@ -0,0 +1,70 @@
+package com.pxx.ifmserver.verification;
+
+import com.pxx.ifmserver.mapper.VerificationCodeMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 数据库验证码存储(verification_code表),多个实例共享验证码
+ * 过期时刻由数据库的NOW()计算,不受各实例时钟误差影响;
+ * 校验通过用一条带条件的DELETE完成,并发校验同一验证码只有一个成功。
+ * 过期行由后台任务按expire_at索引分批删除
+ */
+@Component
+@ConditionalOnProperty(name = "ifm.verification.store", havingValue = "jdbc")
+public class JdbcVerificationCodeStore implements VerificationCodeStore {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcVerificationCodeStore.class);
+    //每次最多删除的过期行数
+    private static final int PURGE_BATCH = 1000;
+
+    @Autowired
+    private VerificationCodeMapper verificationCodeMapper;
+
+    @Value("${ifm.verification.ttl-seconds:600}")
+    private long ttlSeconds;
+    @Value("${ifm.verification.max-attempts:5}")
+    private int maxAttempts;
+
+    @Override
+    public void save(String email, String code) {
+        verificationCodeMapper.upsertVerificationCode(email, code, ttlSeconds);
+    }
+
+    @Override
+    public boolean verify(String email, String code) {
+        if (code == null) {
+            return false;
+        }
+        if (verificationCodeMapper.deleteMatchedVerificationCode(email, code, maxAttempts) > 0) {
+            return true;
+        }
+        verificationCodeMapper.increaseAttempts(email);
+        return false;
+    }
+
+    @Override
+    public void discard(String email, String code) {
+        verificationCodeMapper.deleteVerificationCode(email, code);
+    }
+
+    /**
+     * 删除已过期的验证码
+     */
+    @Scheduled(fixedDelayString = "${ifm.verification.purge-interval:60000}")
+    public void purge() {
+        try {
+            int deleted;
+            do {
+                deleted = verificationCodeMapper.deleteExpiredVerificationCode(PURGE_BATCH);
+            } while (deleted == PURGE_BATCH);
+        } catch (RuntimeException e) {
+            log.warn("过期验证码清理失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.pxx.ifmserver.verification;
+
+/**
+ * 邮箱验证码存储
+ * 验证码在ifm.verification.ttl-seconds后过期;连续输错ifm.verification.max-attempts次后作废,需要重新获取。
+ * ifm.verification.store=memory(默认)保存在本机内存,=jdbc保存在数据库,多实例部署时共享
+ */
+public interface VerificationCodeStore {
+
+    /**
+     * 保存邮箱的新验证码(覆盖旧验证码并重置输错次数)
+     * @param email
+     * @param code
+     */
+    void save(String email, String code);
+
+    /**
+     * 校验验证码,校验通过后验证码失效
+     * @param email
+     * @param code
+     * @return 验证码正确且未过期、未作废时返回true
+     */
+    boolean verify(String email, String code);
+
+    /**
+     * 作废刚保存的验证码(验证码邮件没能放入发送队列时回滚)
+     * 只有当前保存的仍是这个验证码时才删除,不影响之后重新获取的验证码
+     * @param email
+     * @param code
+     */
+    void discard(String email, String code);
+}
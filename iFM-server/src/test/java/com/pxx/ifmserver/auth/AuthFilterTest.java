@@ -0,0 +1,154 @@
+package com.pxx.ifmserver.auth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pxx.ifmserver.utils.TokenUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 校验登录过滤器在读取请求体之前拒绝未登录请求,以及拦截器对userId的检查
+ */
+class AuthFilterTest {
+
+    private AuthFilter authFilter;
+    private AuthInterceptor authInterceptor;
+    private RequestMappingHandlerMapping handlerMapping;
+
+    static class Handlers {
+        @LoginRequired
+        public void required() {
+        }
+
+        @LoginRequired(optional = true)
+        public void optional() {
+        }
+
+        public void open() {
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        authFilter = new AuthFilter();
+        ReflectionTestUtils.setField(authFilter, "objectMapper", new ObjectMapper());
+        handlerMapping = new RequestMappingHandlerMapping();
+        Handlers handlers = new Handlers();
+        handlerMapping.registerMapping(RequestMappingInfo.paths("/broadcast/addAudio").methods(RequestMethod.POST).build(),
+                handlers, Handlers.class.getMethod("required"));
+        handlerMapping.registerMapping(RequestMappingInfo.paths("/search").build(),
+                handlers, Handlers.class.getMethod("optional"));
+        handlerMapping.registerMapping(RequestMappingInfo.paths("/broadcast/getPopularBroadcast").build(),
+                handlers, Handlers.class.getMethod("open"));
+        ReflectionTestUtils.setField(authFilter, "handlerMapping", handlerMapping);
+        authInterceptor = new AuthInterceptor();
+        ReflectionTestUtils.setField(authInterceptor, "authFilter", authFilter);
+    }
+
+    private static MockHttpServletRequest upload(String token) {
+        return upload("/broadcast/addAudio", token);
+    }
+
+    private static MockHttpServletRequest upload(String uri, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.setContentType("multipart/form-data; boundary=xyz");
+        request.setContent(new byte[1 << 20]);
+        if (token != null) {
+            request.addHeader("Token", token);
+        }
+        return request;
+    }
+
+    @Test
+    void rejectsUploadWithoutReadingBody() throws Exception {
+        MockHttpServletRequest request = upload(null);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        authFilter.doFilter(request, response, chain);
+
+        assertNull(chain.getRequest());
+        assertEquals(1 << 20, request.getInputStream().available());
+        assertTrue(response.getContentAsString().contains("20005"));
+        assertEquals("close", response.getHeader("Connection"));
+
+        response = new MockHttpServletResponse();
+        chain = new MockFilterChain();
+        authFilter.doFilter(upload("not-a-token"), response, chain);
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    void passesValidTokenAndChecksUserId() throws Exception {
+        String token = TokenUtil.createToken(42, 1);
+        MockHttpServletRequest request = upload(token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        authFilter.doFilter(request, response, chain);
+
+        assertNotNull(chain.getRequest());
+        TokenUtil.Claims claims = (TokenUtil.Claims) request.getAttribute(AuthFilter.PRINCIPAL);
+        assertEquals(42, claims.getUserId());
+        //没有续签时不返回Token响应头
+        assertNull(response.getHeader("Token"));
+
+        HandlerMethod required = new HandlerMethod(new Handlers(), "required");
+        request.setParameter("userId", "42");
+        assertTrue(authInterceptor.preHandle(request, response, required));
+        request.setParameter("userId", "43");
+        response = new MockHttpServletResponse();
+        assertFalse(authInterceptor.preHandle(request, response, required));
+        assertTrue(response.getContentAsString().contains("20005"));
+    }
+
+    @Test
+    void optionalLoginOnlyWhenUserIdGiven() throws Exception {
+        HandlerMethod optional = new HandlerMethod(new Handlers(), "optional");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/search");
+        request.setParameter("keyword", "电台");
+        MockFilterChain chain = new MockFilterChain();
+        authFilter.doFilter(request, new MockHttpServletResponse(), chain);
+        assertNotNull(chain.getRequest());
+        assertTrue(authInterceptor.preHandle(request, new MockHttpServletResponse(), optional));
+
+        request.setParameter("userId", "42");
+        assertFalse(authInterceptor.preHandle(request, new MockHttpServletResponse(), optional));
+
+        //其他接口不经过校验
+        chain = new MockFilterChain();
+        authFilter.doFilter(new MockHttpServletRequest("GET", "/broadcast/getPopularBroadcast"), new MockHttpServletResponse(), chain);
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    void pathVariantsCannotBypassLogin() throws Exception {
+        for (String uri : new String[]{"/broadcast/addAudio;jsessionid=abc", "/broadcast//addAudio",
+                "//broadcast/addAudio", "/broadcast%2FaddAudio", "/broadcast/addAudio/"}) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            MockFilterChain chain = new MockFilterChain();
+            authFilter.doFilter(upload(uri, null), response, chain);
+            if (chain.getRequest() != null) {
+                //过滤器放行的请求,DispatcherServlet也不能把它分派到需要登录的接口
+                assertNull(handlerMapping.getHandler(upload(uri, null)), uri);
+            } else {
+                assertTrue(response.getContentAsString().contains("20005"), uri);
+            }
+        }
+        //路径参数会被忽略,仍然匹配需要登录的接口
+        MockFilterChain chain = new MockFilterChain();
+        authFilter.doFilter(upload("/broadcast/addAudio;jsessionid=abc", null), new MockHttpServletResponse(), chain);
+        assertNull(chain.getRequest());
+    }
+}
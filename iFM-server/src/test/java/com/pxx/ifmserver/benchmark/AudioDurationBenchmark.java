@@ -0,0 +1,85 @@
+package com.pxx.ifmserver.benchmark;
+
+import com.pxx.ifmserver.utils.FileUtils;
+import com.pxx.ifmserver.utils.Mp3Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FileUtils.getAudioDuration的JMH基准:10分钟的128kbps音频,
+ * CBR为逐帧遍历(没有VBR头),XING为首帧带Xing头、直接读出总帧数
+ * 运行: mvn -Pbenchmark verify(见pom.xml),或在IDE中直接运行本类的main方法
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AudioDurationBenchmark {
+
+    //MPEG1 Layer3 44100Hz 立体声 128kbps
+    private static final int HEADER_128 = 0xFFFB9000;
+    //10分钟的帧数(每帧1152个采样)
+    private static final int FRAMES = 10 * 60 * 44100 / 1152;
+
+    @Param({"CBR", "XING"})
+    private String layout;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int frameLength = Mp3Parser.frameLength(HEADER_128);
+        ByteBuffer buffer = ByteBuffer.allocate(FRAMES * frameLength);
+        int start = 0;
+        if ("XING".equals(layout)) {
+            buffer.putInt(HEADER_128);
+            //立体声MPEG1的边信息长度为32字节
+            buffer.position(4 + 32);
+            buffer.put(new byte[]{'X', 'i', 'n', 'g'});
+            buffer.putInt(1);
+            buffer.putInt(FRAMES - 1);
+            start = 1;
+        }
+        for (int i = start; i < FRAMES; i++) {
+            buffer.position(i * frameLength);
+            buffer.putInt(HEADER_128);
+        }
+        file = File.createTempFile("benchmark", ".mp3");
+        Files.write(file.toPath(), buffer.array());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public long getAudioDuration() {
+        return FileUtils.getAudioDuration(file);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(AudioDurationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
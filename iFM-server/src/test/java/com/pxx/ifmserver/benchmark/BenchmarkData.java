@@ -0,0 +1,84 @@
+package com.pxx.ifmserver.benchmark;
+
+import com.pxx.ifmserver.entity.dto.Broadcast;
+import com.pxx.ifmserver.entity.dto.Post;
+import com.pxx.ifmserver.entity.dto.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试用的样例数据,固定随机种子,每次运行的数据相同
+ */
+final class BenchmarkData {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 6, 1, 12, 0);
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @param count 节目数
+     * @return 最近30天内创建的节目,播放/收藏/帖子数随机
+     */
+    static List<Broadcast> broadcasts(int count) {
+        Random random = new Random(count);
+        List<Broadcast> broadcasts = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Broadcast broadcast = new Broadcast();
+            broadcast.setBroadcastId(i);
+            broadcast.setGmtCreate(NOW.minusMinutes(random.nextInt(30 * 24 * 60)));
+            broadcast.setBroadcastTitle("深夜电台第" + i + "期");
+            broadcast.setBroadcastDetail("节目简介" + i);
+            broadcast.setBroadcastDuration(600 + random.nextInt(3000));
+            broadcast.setBroadcastPicture("/images/broadcast/" + i + "_1717214400.png");
+            broadcast.setBroadcastAudio("/audio/" + i + "_1717214400.mp3");
+            broadcast.setChannelId(1 + random.nextInt(100));
+            broadcast.setUserId(1 + random.nextInt(1000));
+            broadcast.setBroadcastPlayCount(random.nextInt(100000));
+            broadcast.setBroadcastCollectionCount(random.nextInt(5000));
+            broadcast.setBroadcastPostCount(random.nextInt(200));
+            broadcasts.add(broadcast);
+        }
+        return broadcasts;
+    }
+
+    /**
+     * @param count 帖子数
+     * @return 帖子,点赞/评论/收藏数随机
+     */
+    static List<Post> posts(int count) {
+        Random random = new Random(count);
+        List<Post> posts = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Post post = new Post();
+            post.setPostId(i);
+            post.setGmtCreate(NOW.minusMinutes(random.nextInt(30 * 24 * 60)));
+            post.setPostTitle("帖子标题" + i);
+            post.setPostDetail("这是第" + i + "个帖子的正文内容,用来模拟一段中等长度的中文文本。".repeat(3));
+            post.setPostAssociation(random.nextInt(2));
+            post.setAssociationId(1 + random.nextInt(100));
+            post.setPostSection(random.nextInt(3));
+            post.setUserId(1 + random.nextInt(1000));
+            post.setPostCollectionCount(random.nextInt(500));
+            post.setPostLikeCount(random.nextInt(2000));
+            post.setPostCommentCount(random.nextInt(300));
+            posts.add(post);
+        }
+        return posts;
+    }
+
+    /**
+     * @param userId
+     * @return 用户
+     */
+    static User user(int userId) {
+        User user = new User();
+        user.setUserId(userId);
+        user.setUserName("用户" + userId);
+        user.setUserPicture("/images/user/" + userId + "_1717214400.png");
+        return user;
+    }
+}
@@ -0,0 +1,87 @@
+package com.pxx.ifmserver.benchmark;
+
+import com.pxx.ifmserver.cache.PlayCountBuffer;
+import com.pxx.ifmserver.mapper.BroadcastMapper;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * 单个热门节目的播放量JMH基准(8个线程同时播放):直接UPDATE vs PlayCountBuffer内存累加、每轮结束时批量写回
+ * 直接UPDATE用同一把锁模拟行锁(同一行的UPDATE串行执行),并停顿100微秒模拟一次数据库往返
+ * 运行: mvn -Pbenchmark verify(见pom.xml),或在IDE中直接运行本类的main方法
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class PlayCountBenchmark {
+
+    private static final int HOT_BROADCAST_ID = 1;
+    //模拟一次UPDATE的往返耗时
+    private static final long ROUND_TRIP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Object rowLock = new Object();
+    private long playCount;
+    private PlayCountBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BroadcastMapper mapper = Mockito.mock(BroadcastMapper.class);
+        Mockito.when(mapper.updateBroadcastPlayCountBatch(any())).thenAnswer(invocation -> {
+            Map<Integer, Long> deltas = invocation.getArgument(0);
+            synchronized (rowLock) {
+                LockSupport.parkNanos(ROUND_TRIP_NANOS);
+                deltas.values().forEach(delta -> playCount += delta);
+            }
+            return deltas.size();
+        });
+        buffer = new PlayCountBuffer();
+        ReflectionTestUtils.setField(buffer, "broadcastMapper", mapper);
+    }
+
+    @TearDown(Level.Iteration)
+    public void flush() {
+        buffer.flush();
+    }
+
+    @Benchmark
+    public void direct() {
+        synchronized (rowLock) {
+            LockSupport.parkNanos(ROUND_TRIP_NANOS);
+            playCount++;
+        }
+    }
+
+    @Benchmark
+    public void buffered() {
+        buffer.increment(HOT_BROADCAST_ID);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(PlayCountBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,119 @@
+package com.pxx.ifmserver.benchmark;
+
+import com.pxx.ifmserver.cache.EngagementCounter;
+import com.pxx.ifmserver.cache.PlayCountBuffer;
+import com.pxx.ifmserver.entity.dto.Broadcast;
+import com.pxx.ifmserver.mapper.BroadcastMapper;
+import com.pxx.ifmserver.mapper.ChannelMapper;
+import com.pxx.ifmserver.mapper.PostMapper;
+import com.pxx.ifmserver.ranking.PopularityRanking;
+import com.pxx.ifmserver.ranking.RankingMetric;
+import com.pxx.ifmserver.ranking.RankingType;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+
+/**
+ * 热门节目排序的JMH基准:legacy*为改造前BroadcastServiceImpl的calculateHotScore + 整个列表排序后取前20,
+ * rank为现在PopularityRanking的重新排序(带时间衰减,大小为20的最小堆)
+ * 运行: mvn -Pbenchmark verify(见pom.xml),或在IDE中直接运行本类的main方法
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PopularityBenchmark {
+
+    private static final double WEIGHT_PLAY_COUNT = 0.5;
+    private static final double WEIGHT_COLLECTION_COUNT = 0.3;
+    private static final double WEIGHT_POST_COUNT = 0.2;
+
+    //候选节目数(改造前每次最多取89个,现在默认最多5000个)
+    @Param({"89", "5000"})
+    private int candidates;
+
+    private List<Broadcast> broadcasts;
+    private PopularityRanking ranking;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        broadcasts = BenchmarkData.broadcasts(candidates);
+        BroadcastMapper broadcastMapper = Mockito.mock(BroadcastMapper.class);
+        Mockito.when(broadcastMapper.listBroadcastCtreateInHour(anyInt(), anyInt())).thenReturn(broadcasts);
+        ranking = new PopularityRanking();
+        ReflectionTestUtils.setField(ranking, "broadcastMapper", broadcastMapper);
+        ReflectionTestUtils.setField(ranking, "postMapper", Mockito.mock(PostMapper.class));
+        ReflectionTestUtils.setField(ranking, "channelMapper", Mockito.mock(ChannelMapper.class));
+        ReflectionTestUtils.setField(ranking, "playCountBuffer", Mockito.mock(PlayCountBuffer.class));
+        ReflectionTestUtils.setField(ranking, "engagementCounter", Mockito.mock(EngagementCounter.class));
+        ReflectionTestUtils.setField(ranking, "gravity", 1.5);
+        ReflectionTestUtils.setField(ranking, "windowHours", 720);
+        ReflectionTestUtils.setField(ranking, "candidateLimit", candidates);
+        ReflectionTestUtils.setField(ranking, "broadcastWeights", new double[]{0.5, 0.3, 0.2});
+        ReflectionTestUtils.setField(ranking, "postWeights", new double[]{1, 2, 3});
+        ReflectionTestUtils.setField(ranking, "channelWeights", new double[]{1, 0.5});
+        ReflectionTestUtils.setField(ranking, "broadcastTop", 20);
+        ReflectionTestUtils.setField(ranking, "postTop", 30);
+        ReflectionTestUtils.setField(ranking, "channelTop", 88);
+        ranking.reload();
+    }
+
+    /**
+     * 一次播放计数变化后重新排序
+     */
+    @Benchmark
+    public List<Integer> rank() {
+        next = next % candidates + 1;
+        ranking.adjust(RankingMetric.BROADCAST_PLAY, next, 1);
+        ranking.rerankDirty();
+        return ranking.top(RankingType.BROADCAST);
+    }
+
+    /**
+     * 改造前:比较时重复计算热度,整个列表排序
+     */
+    @Benchmark
+    public List<Broadcast> legacySort() {
+        List<Broadcast> broadcastList = new ArrayList<>(broadcasts);
+        Collections.sort(broadcastList, new Comparator<Broadcast>() {
+            @Override
+            public int compare(Broadcast b1, Broadcast b2) {
+                return Double.compare(legacyCalculateHotScore(b2), legacyCalculateHotScore(b1));
+            }
+        });
+        return broadcastList.subList(0, Math.min(20, broadcastList.size()));
+    }
+
+    static double legacyCalculateHotScore(Broadcast broadcast) {
+        return (broadcast.getBroadcastPlayCount() * WEIGHT_PLAY_COUNT) +
+                (broadcast.getBroadcastCollectionCount() * WEIGHT_COLLECTION_COUNT) +
+                (broadcast.getBroadcastPostCount() * WEIGHT_POST_COUNT);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(PopularityBenchmark.class.getSimpleName()).build()).run();
+    }
+}
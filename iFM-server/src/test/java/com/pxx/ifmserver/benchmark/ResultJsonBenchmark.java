@@ -0,0 +1,84 @@
+package com.pxx.ifmserver.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pxx.ifmserver.entity.dto.Broadcast;
+import com.pxx.ifmserver.entity.dto.Post;
+import com.pxx.ifmserver.entity.vo.BroadcastItemVO;
+import com.pxx.ifmserver.entity.vo.PostVO;
+import com.pxx.ifmserver.result.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result序列化为JSON的JMH基准:data中放1000个PostVO或1000个BroadcastItemVO,
+ * 与接口返回时一样用Spring默认配置的ObjectMapper写成UTF-8字节
+ * 运行: mvn -Pbenchmark verify(见pom.xml),或在IDE中直接运行本类的main方法
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResultJsonBenchmark {
+
+    private static final int SIZE = 1000;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private Result postResult;
+    private Result broadcastResult;
+
+    @Setup
+    public void setUp() {
+        List<PostVO> postVOList = new ArrayList<>();
+        for (Post post : BenchmarkData.posts(SIZE)) {
+            PostVO postVO = new PostVO();
+            postVO.setPost(post);
+            postVO.setUser(BenchmarkData.user(post.getUserId()));
+            postVO.setPostImageList(List.of("/images/post/" + post.getPostId() + "_1.png"));
+            postVO.setPostHashtagList(List.of());
+            postVOList.add(postVO);
+        }
+        postResult = Result.ok().data("postList", postVOList);
+
+        List<BroadcastItemVO> broadcastItemVOList = new ArrayList<>();
+        for (Broadcast broadcast : BenchmarkData.broadcasts(SIZE)) {
+            BroadcastItemVO broadcastItemVO = new BroadcastItemVO();
+            broadcastItemVO.setBroadcast(broadcast);
+            broadcastItemVO.setChannelTitle("频道" + broadcast.getChannelId());
+            broadcastItemVO.setUserName("用户" + broadcast.getUserId());
+            broadcastItemVOList.add(broadcastItemVO);
+        }
+        broadcastResult = Result.ok().data("broadcastList", broadcastItemVOList);
+    }
+
+    @Benchmark
+    public byte[] postList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(postResult);
+    }
+
+    @Benchmark
+    public byte[] broadcastList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(broadcastResult);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ResultJsonBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,164 @@
+package com.pxx.ifmserver.benchmark;
+
+import com.pxx.ifmserver.entity.dto.SearchDocument;
+import com.pxx.ifmserver.mapper.SearchMapper;
+import com.pxx.ifmserver.search.DocType;
+import com.pxx.ifmserver.search.SearchIndex;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * 关键词搜索的JMH基准:SearchIndex(倒排索引,取前100个) vs 逐行LIKE '%kw%'(用String.contains模拟全表扫描)
+ * 文本由随机的双字词组成,词频近似长尾分布;query为常见词、中频词、罕见词和两词组合
+ * 运行: mvn -Pbenchmark verify(见pom.xml),或在IDE中直接运行本类的main方法
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    private static final int VOCABULARY = 5000;
+
+    @Param({"20000", "1000000"})
+    private int rows;
+
+    @Param({"COMMON", "MID", "RARE", "PAIR"})
+    private String query;
+
+    private String[] titles;
+    private String[] details;
+    private SearchIndex searchIndex;
+    private String keyword;
+    private String[] parts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            words[i] = new String(new char[]{(char) (0x4E00 + random.nextInt(0x5000)), (char) (0x4E00 + random.nextInt(0x5000))});
+        }
+        titles = new String[rows];
+        details = new String[rows];
+        for (int id = 0; id < rows; id++) {
+            titles[id] = text(random, words, 3);
+            details[id] = text(random, words, 30);
+        }
+
+        SearchMapper searchMapper = Mockito.mock(SearchMapper.class);
+        Mockito.doAnswer(invocation -> {
+            ResultHandler<SearchDocument> handler = invocation.getArgument(1);
+            Context context = new Context();
+            for (int id = 0; id < rows; id++) {
+                context.document = new SearchDocument();
+                context.document.setId(id);
+                context.document.setTitle(titles[id]);
+                context.document.setDetail(details[id]);
+                handler.handleResult(context);
+            }
+            return null;
+        }).when(searchMapper).scanDocuments(eq(DocType.BROADCAST), any());
+        searchIndex = new SearchIndex();
+        ReflectionTestUtils.setField(searchIndex, "searchMapper", searchMapper);
+        ReflectionTestUtils.setField(searchIndex, "maxResults", 100);
+        ReflectionTestUtils.setField(searchIndex, "detailMaxChars", 2000);
+        searchIndex.rebuild();
+
+        switch (query) {
+            case "COMMON" -> keyword = words[0];
+            case "MID" -> keyword = words[20];
+            case "RARE" -> keyword = words[3000];
+            default -> keyword = words[1] + " " + words[50];
+        }
+        parts = keyword.split(" ");
+    }
+
+    private static String text(Random random, String[] words, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            double r = random.nextDouble();
+            builder.append(words[(int) (VOCABULARY * r * r * r)]).append(' ');
+        }
+        return builder.toString();
+    }
+
+    @Benchmark
+    public List<Integer> index() {
+        return searchIndex.search(DocType.BROADCAST, keyword);
+    }
+
+    @Benchmark
+    public List<Integer> likeScan() {
+        List<Integer> result = new ArrayList<>();
+        for (int id = 0; id < titles.length; id++) {
+            boolean all = true;
+            for (String part : parts) {
+                if (!titles[id].contains(part) && !details[id].contains(part)) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 逐行交给ResultHandler的当前行
+     */
+    private static final class Context implements ResultContext<SearchDocument> {
+        private SearchDocument document;
+
+        @Override
+        public SearchDocument getResultObject() {
+            return document;
+        }
+
+        @Override
+        public int getResultCount() {
+            return 0;
+        }
+
+        @Override
+        public boolean isStopped() {
+            return false;
+        }
+
+        @Override
+        public void stop() {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(SearchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,89 @@
+package com.pxx.ifmserver.benchmark;
+
+import com.pxx.ifmserver.metrics.SqlMetrics;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.scripting.defaults.RawSqlSource;
+import org.apache.ibatis.session.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL统计插件的JMH基准:direct为直接调用被拦截的方法,intercepted为经过SqlMetrics.intercept,两者之差即每条语句的额外耗时
+ * 运行: mvn -Pbenchmark verify(见pom.xml),或在IDE中直接运行本类的main方法
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SqlMetricsBenchmark {
+
+    private SqlMetrics sqlMetrics;
+    private Invocation invocation;
+
+    /**
+     * 被拦截的目标:直接返回固定结果
+     */
+    public static final class Target {
+        private final List<String> result = List.of("row");
+
+        public Object query(MappedStatement statement, Object parameter) {
+            return result;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchMethodException {
+        sqlMetrics = new SqlMetrics();
+        ReflectionTestUtils.setField(sqlMetrics, "repeatThreshold", 10);
+        Configuration configuration = new Configuration();
+        MappedStatement statement = new MappedStatement.Builder(configuration,
+                "com.pxx.ifmserver.mapper.BroadcastMapper.getBroadcastByBroadcastId",
+                new RawSqlSource(configuration, "SELECT 1", Object.class), SqlCommandType.SELECT).build();
+        invocation = new Invocation(new Target(), Target.class.getMethod("query", MappedStatement.class, Object.class),
+                new Object[]{statement, 1});
+    }
+
+    @Setup(Level.Iteration)
+    public void beginRequest() {
+        sqlMetrics.beginRequest();
+    }
+
+    @TearDown(Level.Iteration)
+    public void endRequest() {
+        sqlMetrics.endRequest("GET /broadcast/getBroadcast");
+    }
+
+    @Benchmark
+    public Object direct() throws Throwable {
+        return invocation.proceed();
+    }
+
+    @Benchmark
+    public Object intercepted() throws Throwable {
+        return sqlMetrics.intercept(invocation);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(SqlMetricsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
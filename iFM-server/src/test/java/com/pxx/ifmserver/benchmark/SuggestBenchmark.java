@@ -0,0 +1,105 @@
+package com.pxx.ifmserver.benchmark;
+
+import com.pxx.ifmserver.entity.dto.SuggestTerm;
+import com.pxx.ifmserver.mapper.HashtagMapper;
+import com.pxx.ifmserver.mapper.SuggestMapper;
+import com.pxx.ifmserver.search.SuggestIndex;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+/**
+ * 搜索补全的JMH基准:20万个随机节目标题,查询前缀为随机标题的前1~3个字
+ * 运行: mvn -Pbenchmark verify(见pom.xml),或在IDE中直接运行本类的main方法
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SuggestBenchmark {
+
+    private static final int PREFIXES = 1024;
+
+    @Param({"200000"})
+    private int titles;
+
+    private SuggestIndex suggestIndex;
+    private final String[] prefixes = new String[PREFIXES];
+    private int next;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Random random = new Random(7);
+        List<SuggestTerm> terms = new ArrayList<>(titles);
+        for (int i = 0; i < titles; i++) {
+            char[] title = new char[4 + random.nextInt(8)];
+            for (int j = 0; j < title.length; j++) {
+                title[j] = (char) (0x4E00 + random.nextInt(3000));
+            }
+            SuggestTerm term = new SuggestTerm();
+            term.setText(new String(title));
+            term.setWeight((long) random.nextInt(100_000));
+            terms.add(term);
+        }
+        for (int i = 0; i < PREFIXES; i++) {
+            String title = terms.get(random.nextInt(titles)).getText();
+            prefixes[i] = title.substring(0, 1 + random.nextInt(3));
+        }
+
+        SuggestMapper suggestMapper = Mockito.mock(SuggestMapper.class);
+        Mockito.doAnswer(invocation -> {
+            ResultHandler<SuggestTerm> handler = invocation.getArgument(0);
+            DefaultResultContext<SuggestTerm> context = new DefaultResultContext<>();
+            for (SuggestTerm term : terms) {
+                context.nextResultObject(term);
+                handler.handleResult(context);
+            }
+            return null;
+        }).when(suggestMapper).scanBroadcastTitles(any());
+        Mockito.when(suggestMapper.listPopularKeyword(anyInt(), anyInt())).thenReturn(List.of());
+        suggestIndex = new SuggestIndex();
+        ReflectionTestUtils.setField(suggestIndex, "suggestMapper", suggestMapper);
+        ReflectionTestUtils.setField(suggestIndex, "hashtagMapper", Mockito.mock(HashtagMapper.class));
+        ReflectionTestUtils.setField(suggestIndex, "topK", 10);
+        ReflectionTestUtils.setField(suggestIndex, "hashtagWeight", 100L);
+        ReflectionTestUtils.setField(suggestIndex, "historyWeight", 100L);
+        ReflectionTestUtils.setField(suggestIndex, "historyLimit", 100);
+        suggestIndex.reload();
+    }
+
+    @Benchmark
+    public List<String> suggest() {
+        next = (next + 1) & (PREFIXES - 1);
+        return suggestIndex.suggest(prefixes[next], 10);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(SuggestBenchmark.class.getSimpleName()).build()).run();
+    }
+}
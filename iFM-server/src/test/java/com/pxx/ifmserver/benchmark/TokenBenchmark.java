@@ -0,0 +1,131 @@
+package com.pxx.ifmserver.benchmark;
+
+import com.pxx.ifmserver.utils.TokenUtil;
+import org.apache.commons.codec.binary.Hex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.text.SimpleDateFormat;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token签发/校验的JMH基准:legacy*为改造前的实现(文本Token + SHA-256 + 每次校验都重新签发),其余为现在的HMAC二进制Token。
+ * 运行: mvn -Pbenchmark verify(见pom.xml),或在IDE中直接运行本类的main方法
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TokenBenchmark {
+
+    private static final int USER_ID = 42;
+
+    private MockHttpServletRequest request;
+    private MockHttpServletRequest legacyRequest;
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @Setup
+    public void setUp() throws Exception {
+        request = new MockHttpServletRequest();
+        request.addHeader("Token", TokenUtil.createToken(USER_ID, 1));
+        legacyRequest = new MockHttpServletRequest();
+        legacyRequest.addHeader("Token", legacyCreateToken(USER_ID, 1));
+    }
+
+    @Benchmark
+    public String createToken() {
+        return TokenUtil.createToken(USER_ID, 1);
+    }
+
+    @Benchmark
+    public String verifyToken() {
+        return TokenUtil.verifyToken(request, response, USER_ID);
+    }
+
+    @Benchmark
+    public String legacyCreateToken() throws Exception {
+        return legacyCreateToken(USER_ID, 1);
+    }
+
+    @Benchmark
+    public String legacyVerifyToken() throws Exception {
+        return legacyVerifyToken(legacyRequest, USER_ID);
+    }
+
+    /**
+     * 改造前的createToken(fastjson把字符串序列化为带引号的JSON字符串,这里直接加引号,结果相同)
+     */
+    static String legacyCreateToken(int id, int status) throws Exception {
+        SimpleDateFormat sif = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        Date dateafter = new Date(new Date().getTime() + 3600000);
+        String json = "id:" + id + ",status:" + status + ",endtime:" + sif.format(dateafter);
+        String ss = "\"" + json + "\"";
+        String randomString = UUID.randomUUID().toString();
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        md.update(ss.getBytes("UTF-8"));
+        byte[] byteArray = md.digest();
+        StringBuilder sha256StrBuff = new StringBuilder();
+        for (byte b : byteArray) {
+            if (Integer.toHexString(0xFF & b).length() == 1) {
+                sha256StrBuff.append("0").append(Integer.toHexString(0xFF & b));
+            } else {
+                sha256StrBuff.append(Integer.toHexString(0xFF & b));
+            }
+        }
+        String token = ss + ";" + sha256StrBuff + ";" + randomString;
+        return Base64.getEncoder().encodeToString(token.getBytes("UTF-8"));
+    }
+
+    /**
+     * 改造前的verifyToken
+     */
+    static String legacyVerifyToken(MockHttpServletRequest req, Integer userId) throws Exception {
+        String token = req.getHeader("Token");
+        String decodedToken = new String(Base64.getDecoder().decode(token), StandardCharsets.UTF_8);
+        String[] parts = decodedToken.split(";");
+        if (parts.length != 3) {
+            return null;
+        }
+        String jsonPart = URLDecoder.decode(parts[0], "UTF-8");
+        String sha256Hex = parts[1];
+        int id = Integer.parseInt(jsonPart.substring(jsonPart.indexOf("id:") + 3, jsonPart.indexOf(",")));
+        int status = Integer.parseInt(jsonPart.substring(jsonPart.indexOf("status:") + 7, jsonPart.indexOf(",endtime:")));
+        String endtimePart = jsonPart.substring(jsonPart.indexOf("endtime:") + 8);
+        SimpleDateFormat sif = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        Date endTime = sif.parse(endtimePart);
+        if (System.currentTimeMillis() > endTime.getTime()) {
+            return null;
+        }
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        md.update(jsonPart.getBytes("UTF-8"));
+        String calculatedSha256Hex = Hex.encodeHexString(md.digest());
+        if (!calculatedSha256Hex.equals(sha256Hex) || id != userId) {
+            return null;
+        }
+        return legacyCreateToken(id, status);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(TokenBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,87 @@
+package com.pxx.ifmserver.benchmark;
+
+import com.pxx.ifmserver.entity.dto.Broadcast;
+import com.pxx.ifmserver.entity.dto.Post;
+import com.pxx.ifmserver.entity.dto.User;
+import com.pxx.ifmserver.entity.vo.BroadcastItemVO;
+import com.pxx.ifmserver.entity.vo.PostVO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 视图对象组装的JMH基准:1000个帖子组装为PostVO(setPost + setUser),1000个节目组装为BroadcastItemVO。
+ * 用户和频道名已在内存中,只测组装本身(时间换算、字段复制)
+ * 运行: mvn -Pbenchmark verify(见pom.xml),或在IDE中直接运行本类的main方法
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ViewAssemblyBenchmark {
+
+    private static final int SIZE = 1000;
+
+    private List<Post> posts;
+    private List<Broadcast> broadcasts;
+    private final Map<Integer, User> users = new HashMap<>();
+    private final Map<Integer, String> channelTitles = new HashMap<>();
+
+    @Setup
+    public void setUp() {
+        posts = BenchmarkData.posts(SIZE);
+        broadcasts = BenchmarkData.broadcasts(SIZE);
+        for (int userId = 1; userId <= 1000; userId++) {
+            users.put(userId, BenchmarkData.user(userId));
+        }
+        for (int channelId = 1; channelId <= 100; channelId++) {
+            channelTitles.put(channelId, "频道" + channelId);
+        }
+    }
+
+    @Benchmark
+    public List<PostVO> postVO() {
+        List<PostVO> postVOList = new ArrayList<>(posts.size());
+        for (Post post : posts) {
+            PostVO postVO = new PostVO();
+            postVO.setPost(post);
+            postVO.setUser(users.get(post.getUserId()));
+            postVOList.add(postVO);
+        }
+        return postVOList;
+    }
+
+    @Benchmark
+    public List<BroadcastItemVO> broadcastItemVO() {
+        List<BroadcastItemVO> broadcastItemVOList = new ArrayList<>(broadcasts.size());
+        for (Broadcast broadcast : broadcasts) {
+            BroadcastItemVO broadcastItemVO = new BroadcastItemVO();
+            broadcastItemVO.setBroadcast(broadcast);
+            broadcastItemVO.setChannelTitle(channelTitles.get(broadcast.getChannelId()));
+            broadcastItemVO.setUserName(users.get(broadcast.getUserId()).getUserName());
+            broadcastItemVOList.add(broadcastItemVO);
+        }
+        return broadcastItemVOList;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ViewAssemblyBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,107 @@
+package com.pxx.ifmserver.cache;
+
+import com.pxx.ifmserver.mapper.CounterMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * 校验点赞切换的去重与计数增量的合并写回
+ */
+class EngagementCounterTest {
+
+    private CounterMapper counterMapper;
+    private EngagementCounter counter;
+    //模拟带唯一索引的点赞表
+    private final Set<Integer> likedUsers = new HashSet<>();
+
+    @BeforeEach
+    void setUp() {
+        counterMapper = Mockito.mock(CounterMapper.class);
+        counter = new EngagementCounter();
+        ReflectionTestUtils.setField(counter, "counterMapper", counterMapper);
+    }
+
+    private EngagementCounter.Toggle like(int userId, Integer value) {
+        return counter.toggle(CounterType.POST_LIKE, 1, value,
+                () -> likedUsers.add(userId) ? 1 : 0,
+                () -> likedUsers.remove(userId) ? 1 : 0);
+    }
+
+    @Test
+    void repeatedLikesCountOnce() {
+        assertTrue(like(7, 1).isActive());
+        assertEquals(0, like(7, 1).getDelta());
+        assertEquals(1, counter.getPending(CounterType.POST_LIKE, 1));
+
+        assertFalse(like(7, -1).isActive());
+        assertEquals(0, like(7, -1).getDelta());
+        assertEquals(0, counter.getPending(CounterType.POST_LIKE, 1));
+
+        //不传value时切换
+        assertTrue(like(8, null).isActive());
+        assertFalse(like(8, null).isActive());
+        assertTrue(like(8, null).isActive());
+        assertEquals(1, counter.getPending(CounterType.POST_LIKE, 1));
+    }
+
+    @Test
+    void concurrentDeltasAreFlushedInOneStatement() throws InterruptedException {
+        int threads = 8;
+        int perThread = 1000;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < perThread; j++) {
+                    counter.add(CounterType.POST_LIKE, 1, 1);
+                    counter.add(CounterType.POST_LIKE, 2, j % 2 == 0 ? 1 : -1);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        Map<Integer, Long> written = new HashMap<>();
+        Mockito.when(counterMapper.updateCountBatch(eq(CounterType.POST_LIKE), any())).thenAnswer(invocation -> {
+            written.putAll(invocation.getArgument(1));
+            return 1;
+        });
+        counter.flush();
+
+        Mockito.verify(counterMapper, Mockito.times(1)).updateCountBatch(eq(CounterType.POST_LIKE), any());
+        //增量为0的行不写回
+        assertEquals(Map.of(1, (long) threads * perThread), written);
+        assertEquals(0, counter.getPending(CounterType.POST_LIKE, 1));
+    }
+
+    @Test
+    void failedFlushKeepsDeltas() {
+        AtomicInteger attempts = new AtomicInteger();
+        Mockito.when(counterMapper.updateCountBatch(any(), any())).thenAnswer(invocation -> {
+            if (attempts.getAndIncrement() == 0) {
+                throw new IllegalStateException("connection reset");
+            }
+            return 1;
+        });
+        counter.add(CounterType.CHANNEL_SUBSCRIBE, 3, 2);
+        counter.flush();
+        assertEquals(2, counter.getPending(CounterType.CHANNEL_SUBSCRIBE, 3));
+        counter.flush();
+        assertEquals(0, counter.getPending(CounterType.CHANNEL_SUBSCRIBE, 3));
+        assertEquals(2, attempts.get());
+    }
+}
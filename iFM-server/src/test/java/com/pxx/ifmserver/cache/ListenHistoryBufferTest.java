@@ -0,0 +1,119 @@
+package com.pxx.ifmserver.cache;
+
+import com.pxx.ifmserver.entity.dto.BroadcastHistory;
+import com.pxx.ifmserver.mapper.BroadcastMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * 校验收听进度缓冲:只保留最新进度、分批写回、写回期间的新进度不丢失、写库失败时保留
+ */
+class ListenHistoryBufferTest {
+
+    //每次批量写入的记录(按调用顺序)
+    private final List<List<BroadcastHistory>> written = new ArrayList<>();
+    private BroadcastMapper broadcastMapper;
+    private ListenHistoryBuffer buffer;
+    //写库时执行的操作(模拟写回期间的新上报)
+    private Runnable duringWrite = () -> { };
+
+    @BeforeEach
+    void setUp() {
+        broadcastMapper = Mockito.mock(BroadcastMapper.class);
+        Mockito.when(broadcastMapper.upsertBroadcastHistoryBatch(any())).thenAnswer(invocation -> {
+            List<BroadcastHistory> batch = invocation.getArgument(0);
+            written.add(new ArrayList<>(batch));
+            duringWrite.run();
+            return batch.size();
+        });
+        buffer = new ListenHistoryBuffer();
+        ReflectionTestUtils.setField(buffer, "broadcastMapper", broadcastMapper);
+    }
+
+    private int bufferedUsers() {
+        return ((Map<?, ?>) ReflectionTestUtils.getField(buffer, "pending")).size();
+    }
+
+    @Test
+    void keepsLatestProgressAndFlushes() {
+        buffer.record(1, 10, 15);
+        buffer.record(1, 10, 30);
+        buffer.record(1, 11, 45);
+        buffer.record(2, 10, 60);
+        assertEquals(30, buffer.get(1, 10).getLastListenDuration());
+        assertEquals(2, buffer.listByUserId(1).size());
+
+        buffer.flush();
+        assertEquals(1, written.size());
+        assertEquals(3, written.get(0).size());
+        assertNull(buffer.get(1, 10));
+        assertTrue(buffer.listByUserId(1).isEmpty());
+        assertEquals(0, bufferedUsers());
+
+        //没有新进度时不写库
+        buffer.flush();
+        assertEquals(1, written.size());
+    }
+
+    @Test
+    void flushesInBatches() {
+        int total = ListenHistoryBuffer.FLUSH_BATCH_SIZE * 2 + 1;
+        for (int i = 0; i < total; i++) {
+            buffer.record(i, 10, i);
+        }
+        buffer.flush();
+        assertEquals(3, written.size());
+        assertEquals(total, written.stream().mapToInt(List::size).sum());
+        assertEquals(0, bufferedUsers());
+    }
+
+    @Test
+    void progressRecordedDuringWriteIsKept() {
+        buffer.record(1, 10, 15);
+        duringWrite = () -> buffer.record(1, 10, 30);
+        buffer.flush();
+        duringWrite = () -> { };
+
+        assertEquals(30, buffer.get(1, 10).getLastListenDuration());
+        buffer.flush();
+        assertEquals(30, written.get(1).get(0).getLastListenDuration());
+        assertNull(buffer.get(1, 10));
+    }
+
+    @Test
+    void failedFlushKeepsPending() {
+        Mockito.doThrow(new RuntimeException("db down")).when(broadcastMapper).upsertBroadcastHistoryBatch(any());
+        buffer.record(1, 10, 15);
+        buffer.record(2, 10, 30);
+        buffer.flush();
+        assertEquals(15, buffer.get(1, 10).getLastListenDuration());
+        assertEquals(30, buffer.get(2, 10).getLastListenDuration());
+        assertEquals(2, bufferedUsers());
+    }
+
+    @Test
+    void removedProgressIsNotWritten() {
+        buffer.record(1, 10, 15);
+        buffer.record(1, 11, 15);
+        buffer.record(2, 10, 30);
+        assertTrue(buffer.remove(1, 11));
+        assertFalse(buffer.remove(1, 11));
+        buffer.removeByBroadcastId(10);
+        assertEquals(0, bufferedUsers());
+
+        buffer.flush();
+        assertTrue(written.isEmpty());
+    }
+}
@@ -0,0 +1,67 @@
+package com.pxx.ifmserver.cache;
+
+import com.pxx.ifmserver.mapper.BroadcastMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 校验收藏关系索引的载入、同步更新与淘汰
+ */
+class MembershipIndexTest {
+
+    private BroadcastMapper broadcastMapper;
+    private MembershipIndex index;
+
+    @BeforeEach
+    void setUp() {
+        broadcastMapper = Mockito.mock(BroadcastMapper.class);
+        Mockito.when(broadcastMapper.listFavoriteBroadcastIdByUserId(1)).thenReturn(new ArrayList<>(Arrays.asList(3, 5, 100000)));
+        Mockito.when(broadcastMapper.listFavoriteBroadcastIdByUserId(2)).thenReturn(new ArrayList<>(Arrays.asList(5)));
+        index = new MembershipIndex(1);
+        ReflectionTestUtils.setField(index, "broadcastMapper", broadcastMapper);
+    }
+
+    @Test
+    void loadsOncePerUser() {
+        assertTrue(index.contains(MembershipType.BROADCAST_FAVORITE, 1, 100000));
+        assertFalse(index.contains(MembershipType.BROADCAST_FAVORITE, 1, 4));
+        Map<Integer, Boolean> result = index.containsAll(MembershipType.BROADCAST_FAVORITE, 1, Arrays.asList(5, 4, 3));
+        assertEquals(Arrays.asList(5, 4, 3), new ArrayList<>(result.keySet()));
+        assertEquals(Arrays.asList(true, false, true), new ArrayList<>(result.values()));
+        Mockito.verify(broadcastMapper, Mockito.times(1)).listFavoriteBroadcastIdByUserId(1);
+    }
+
+    @Test
+    void followsChanges() {
+        //未载入的用户忽略变化
+        index.add(MembershipType.BROADCAST_FAVORITE, 1, 4);
+        assertFalse(index.contains(MembershipType.BROADCAST_FAVORITE, 1, 4));
+
+        index.add(MembershipType.BROADCAST_FAVORITE, 1, 4);
+        index.remove(MembershipType.BROADCAST_FAVORITE, 1, 3);
+        assertTrue(index.contains(MembershipType.BROADCAST_FAVORITE, 1, 4));
+        assertFalse(index.contains(MembershipType.BROADCAST_FAVORITE, 1, 3));
+
+        index.removeFromAll(MembershipType.BROADCAST_FAVORITE, 5);
+        assertFalse(index.contains(MembershipType.BROADCAST_FAVORITE, 1, 5));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedUser() {
+        index.contains(MembershipType.BROADCAST_FAVORITE, 1, 3);
+        //上限为1,载入用户2时淘汰用户1
+        index.contains(MembershipType.BROADCAST_FAVORITE, 2, 5);
+        index.contains(MembershipType.BROADCAST_FAVORITE, 1, 3);
+        Mockito.verify(broadcastMapper, Mockito.times(2)).listFavoriteBroadcastIdByUserId(1);
+    }
+}
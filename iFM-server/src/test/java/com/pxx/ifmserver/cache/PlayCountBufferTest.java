@@ -0,0 +1,95 @@
+package com.pxx.ifmserver.cache;
+
+import com.pxx.ifmserver.mapper.BroadcastMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * 校验播放量缓冲:并发播放与写回同时进行时不丢失、不重复,写回后清空的节目从缓冲中移除,写库失败时增量保留
+ * 直接写库与缓冲写回的吞吐量对比见benchmark.PlayCountBenchmark
+ */
+class PlayCountBufferTest {
+
+    private static final int HOT_BROADCAST_ID = 1;
+    private static final int THREADS = 8;
+    private static final int PLAYS_PER_THREAD = 20000;
+
+    private final AtomicLong playCount = new AtomicLong();
+    private PlayCountBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        BroadcastMapper mapper = Mockito.mock(BroadcastMapper.class);
+        Mockito.when(mapper.updateBroadcastPlayCountBatch(any())).thenAnswer(invocation -> {
+            Map<Integer, Long> deltas = invocation.getArgument(0);
+            deltas.values().forEach(playCount::addAndGet);
+            return deltas.size();
+        });
+        buffer = new PlayCountBuffer();
+        ReflectionTestUtils.setField(buffer, "broadcastMapper", mapper);
+    }
+
+    private int bufferedBroadcasts() {
+        return ((Map<?, ?>) ReflectionTestUtils.getField(buffer, "pending")).size();
+    }
+
+    @Test
+    void concurrentPlaysAndFlushesCountEveryPlayOnce() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            int broadcastId = HOT_BROADCAST_ID + i % 2;
+            new Thread(() -> {
+                for (int j = 0; j < PLAYS_PER_THREAD; j++) {
+                    buffer.increment(broadcastId);
+                }
+                done.countDown();
+            }).start();
+        }
+        //播放的同时不断写回,计数器会反复被清空移除
+        while (done.getCount() > 0) {
+            buffer.flush();
+        }
+        buffer.flush();
+
+        assertEquals((long) THREADS * PLAYS_PER_THREAD, playCount.get());
+        assertEquals(0, buffer.getPending(HOT_BROADCAST_ID));
+        assertEquals(0, bufferedBroadcasts());
+    }
+
+    @Test
+    void flushRemovesDrainedBroadcasts() {
+        for (int id = 1; id <= 1000; id++) {
+            buffer.increment(id);
+        }
+        assertEquals(1000, bufferedBroadcasts());
+        buffer.flush();
+        assertEquals(1000, playCount.get());
+        assertEquals(0, bufferedBroadcasts());
+
+        buffer.increment(HOT_BROADCAST_ID);
+        assertEquals(1, buffer.getPending(HOT_BROADCAST_ID));
+        assertEquals(1, bufferedBroadcasts());
+    }
+
+    @Test
+    void failedFlushKeepsDelta() {
+        BroadcastMapper mapper = Mockito.mock(BroadcastMapper.class);
+        Mockito.when(mapper.updateBroadcastPlayCountBatch(any())).thenThrow(new RuntimeException("db down"));
+        ReflectionTestUtils.setField(buffer, "broadcastMapper", mapper);
+
+        buffer.increment(HOT_BROADCAST_ID);
+        buffer.increment(HOT_BROADCAST_ID);
+        buffer.flush();
+        assertEquals(2, buffer.getPending(HOT_BROADCAST_ID));
+        assertEquals(1, bufferedBroadcasts());
+    }
+}
@@ -0,0 +1,135 @@
+package com.pxx.ifmserver.cache;
+
+import com.pxx.ifmserver.entity.dto.SearchHistory;
+import com.pxx.ifmserver.mapper.SearchHistoryMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+/**
+ * 校验搜索记录的内存去重/淘汰、批量写回和id回填
+ */
+class SearchHistoryCacheTest {
+
+    private SearchHistoryMapper searchHistoryMapper;
+    private SearchHistoryCache cache;
+    private final List<SearchHistory> upserted = new ArrayList<>();
+    private final List<SearchHistory> deleted = new ArrayList<>();
+
+    private static SearchHistory row(int id, String keyword, int minutesAgo) {
+        SearchHistory history = new SearchHistory();
+        history.setSearchHistoryId(id);
+        history.setUserId(7);
+        history.setKeyword(keyword);
+        history.setGmtModified(LocalDateTime.now().minusMinutes(minutesAgo));
+        return history;
+    }
+
+    private static List<String> keywords(List<SearchHistory> historyList) {
+        List<String> keywords = new ArrayList<>();
+        for (SearchHistory history : historyList) {
+            keywords.add(history.getKeyword());
+        }
+        return keywords;
+    }
+
+    private void createCache(int maxUsers) {
+        cache = new SearchHistoryCache(maxUsers);
+        ReflectionTestUtils.setField(cache, "searchHistoryMapper", searchHistoryMapper);
+    }
+
+    @BeforeEach
+    void setUp() {
+        searchHistoryMapper = Mockito.mock(SearchHistoryMapper.class);
+        //数据库中已有两条记录(从新到旧)
+        Mockito.when(searchHistoryMapper.listSearchHistoyByUserId(7)).thenReturn(List.of(row(2, "心理学", 1), row(1, "俄罗斯", 5)));
+        Mockito.when(searchHistoryMapper.upsertSearchHistoryBatch(any())).thenAnswer(invocation -> {
+            List<SearchHistory> batch = invocation.getArgument(0);
+            upserted.addAll(batch);
+            return batch.size();
+        });
+        Mockito.when(searchHistoryMapper.deleteSearchHistoryBatch(any())).thenAnswer(invocation -> {
+            List<SearchHistory> batch = invocation.getArgument(0);
+            deleted.addAll(batch);
+            return batch.size();
+        });
+        Mockito.when(searchHistoryMapper.listSearchHistoryIdBatch(any())).thenAnswer(invocation -> {
+            List<SearchHistory> batch = invocation.getArgument(0);
+            List<SearchHistory> rows = new ArrayList<>();
+            for (SearchHistory history : batch) {
+                rows.add(row(100 + rows.size(), history.getKeyword(), 0));
+            }
+            return rows;
+        });
+        createCache(100);
+    }
+
+    @Test
+    void recordsInMemoryAndKeepsTwentyNewest() {
+        assertFalse(cache.record(7, "俄罗斯"));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(cache.record(7, "kw" + i));
+        }
+        //重复搜索移到最前,不区分大小写
+        assertFalse(cache.record(7, "KW0"));
+
+        List<SearchHistory> historyList = cache.list(7);
+        assertEquals(20, historyList.size());
+        assertEquals("KW0", historyList.get(0).getKeyword());
+        assertEquals("kw19", historyList.get(1).getKeyword());
+        assertEquals("kw1", historyList.get(19).getKeyword());
+        //只在第一次访问时载入一次,保存搜索记录不访问数据库
+        Mockito.verify(searchHistoryMapper, Mockito.times(1)).listSearchHistoyByUserId(anyInt());
+        Mockito.verify(searchHistoryMapper, Mockito.never()).upsertSearchHistoryBatch(any());
+    }
+
+    @Test
+    void flushWritesBatchesAndFillsIds() {
+        for (int i = 0; i < 20; i++) {
+            cache.record(7, "kw" + i);
+        }
+        cache.flush();
+
+        Mockito.verify(searchHistoryMapper, Mockito.times(1)).upsertSearchHistoryBatch(any());
+        Mockito.verify(searchHistoryMapper, Mockito.times(1)).deleteSearchHistoryBatch(any());
+        assertEquals(20, upserted.size());
+        //被挤出的两条旧记录
+        assertEquals(Set.of("心理学", "俄罗斯"), new HashSet<>(keywords(deleted)));
+        for (SearchHistory history : cache.list(7)) {
+            assertTrue(history.getSearchHistoryId() >= 100);
+        }
+        SearchHistory first = cache.list(7).get(0);
+        assertEquals("kw19", cache.get(7, first.getSearchHistoryId()).getKeyword());
+
+        //没有新修改时不再写库
+        cache.flush();
+        Mockito.verify(searchHistoryMapper, Mockito.times(1)).upsertSearchHistoryBatch(any());
+    }
+
+    @Test
+    void evictedUserReloadsWithPendingWrites() {
+        createCache(1);
+        cache.record(7, "黑神话");
+        //用户8挤掉用户7,用户7的修改尚未写回
+        cache.list(8);
+        assertEquals(List.of("黑神话", "心理学", "俄罗斯"), keywords(cache.list(7)));
+
+        cache.remove(7, "黑神话");
+        cache.flush();
+        assertTrue(upserted.isEmpty());
+        assertEquals(List.of("心理学", "俄罗斯"), keywords(cache.list(7)));
+    }
+}
@@ -0,0 +1,174 @@
+package com.pxx.ifmserver.cache;
+
+import com.pxx.ifmserver.entity.dto.User;
+import com.pxx.ifmserver.mapper.UserMapper;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * 校验昵称/邮箱过滤器:不漏判、误判率、写入后同步更新、扩容,以及归一化
+ */
+class UserIdentityFilterTest {
+
+    private static final int USERS = 200_000;
+
+    //模拟数据库:归一化前的原值 -> 用户
+    private final Map<String, User> byName = new HashMap<>();
+    private final Map<String, User> byEmail = new HashMap<>();
+    private final AtomicInteger queries = new AtomicInteger();
+    private UserIdentityFilter filter;
+
+    private static User user(int userId, String userName, String userEmail) {
+        User user = new User();
+        user.setUserId(userId);
+        user.setUserName(userName);
+        user.setUserEmail(userEmail);
+        return user;
+    }
+
+    private void insert(User user) {
+        byName.put(user.getUserName(), user);
+        byEmail.put(user.getUserEmail(), user);
+    }
+
+    private User queryName(String userName) {
+        queries.incrementAndGet();
+        return byName.get(userName);
+    }
+
+    private User queryEmail(String userEmail) {
+        queries.incrementAndGet();
+        return byEmail.get(userEmail);
+    }
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < USERS; i++) {
+            insert(user(i, "听众" + i, "listener" + i + "@test.com"));
+        }
+        UserMapper userMapper = Mockito.mock(UserMapper.class);
+        Mockito.when(userMapper.countUser()).thenAnswer(invocation -> byName.size());
+        Mockito.doAnswer(invocation -> {
+            ResultHandler<User> handler = invocation.getArgument(0);
+            Row row = new Row();
+            for (User user : byName.values()) {
+                row.user = user;
+                handler.handleResult(row);
+            }
+            return null;
+        }).when(userMapper).scanUserNameAndEmail(any());
+        filter = new UserIdentityFilter();
+        ReflectionTestUtils.setField(filter, "userMapper", userMapper);
+    }
+
+    @Test
+    void answersDefiniteNegativesWithoutQuery() {
+        //重建之前全部查询数据库
+        assertNull(filter.findByName("新人", this::queryName));
+        assertEquals(1, queries.get());
+
+        filter.rebuild();
+        queries.set(0);
+        for (int i = 0; i < USERS; i += 97) {
+            assertNotNull(filter.findByName("听众" + i, this::queryName));
+            assertNotNull(filter.findByEmail("listener" + i + "@test.com", this::queryEmail));
+        }
+        int hits = queries.getAndSet(0);
+
+        for (int i = 0; i < USERS; i++) {
+            assertNull(filter.findByName("新人" + i, this::queryName));
+        }
+        double falsePositiveRate = (double) queries.get() / USERS;
+        Map<String, Object> stats = filter.stats();
+        assertTrue(falsePositiveRate < 0.001, "false positive rate " + falsePositiveRate);
+        assertEquals((long) queries.get(), stats.get("falsePositives"));
+        assertEquals((long) USERS - queries.get(), stats.get("queriesAvoided"));
+        assertTrue(hits > 0);
+        //每个昵称/邮箱约2~4字节
+        assertTrue((long) stats.get("memoryBytes") < USERS * 2L * 5, "memory " + stats.get("memoryBytes"));
+    }
+
+    @Test
+    void followsWrites() {
+        filter.rebuild();
+        User registered = user(USERS, "深夜电台", "night@test.com");
+        insert(registered);
+        filter.add(registered.getUserName(), registered.getUserEmail());
+        assertNotNull(filter.findByName("深夜电台", this::queryName));
+        assertNotNull(filter.findByEmail("night@test.com", this::queryEmail));
+
+        //改名后新昵称可查到,旧昵称可以再注册
+        byName.remove("深夜电台");
+        User renamed = user(USERS, "午夜电台", "night@test.com");
+        byName.put("午夜电台", renamed);
+        filter.replaceName("深夜电台", "午夜电台");
+        assertNotNull(filter.findByName("午夜电台", this::queryName));
+        assertNull(filter.findByName("深夜电台", this::queryName));
+
+        //超过初始容量后自动扩容,已有元素仍能查到
+        for (int i = 0; i < USERS; i++) {
+            User user = user(USERS + 1 + i, "新听众" + i, "new" + i + "@test.com");
+            insert(user);
+            filter.add(user.getUserName(), user.getUserEmail());
+        }
+        for (int i = 0; i < USERS; i += 13) {
+            assertNotNull(filter.findByName("听众" + i, this::queryName));
+            assertNotNull(filter.findByName("新听众" + i, this::queryName));
+        }
+    }
+
+    @Test
+    void normalizesLikeCaseInsensitiveCollation() {
+        assertEquals(UserIdentityFilter.normalizeName("jose"), UserIdentityFilter.normalizeName("José  "));
+        assertEquals(UserIdentityFilter.normalizeName("podcast"), UserIdentityFilter.normalizeName("PodCast"));
+        assertEquals(UserIdentityFilter.normalizeEmail("a@test.com"), UserIdentityFilter.normalizeEmail("A@Test.com"));
+
+        insert(user(USERS, "José", "Jose@Test.com"));
+        filter.rebuild();
+        //数据库按不区分大小写/重音比较,过滤器不能把它们判为不存在
+        queries.set(0);
+        filter.findByName("jose", name -> byName.get("José"));
+        filter.findByEmail("jose@test.com", email -> byEmail.get("Jose@Test.com"));
+        assertEquals(0, (long) filter.stats().get("queriesAvoided"));
+    }
+
+    /**
+     * 流式读取时的一行
+     */
+    private static final class Row implements ResultContext<User> {
+        private User user;
+
+        @Override
+        public User getResultObject() {
+            return user;
+        }
+
+        @Override
+        public int getResultCount() {
+            return 0;
+        }
+
+        @Override
+        public boolean isStopped() {
+            return false;
+        }
+
+        @Override
+        public void stop() {
+        }
+    }
+}
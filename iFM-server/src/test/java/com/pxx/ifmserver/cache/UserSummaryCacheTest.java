@@ -0,0 +1,186 @@
+package com.pxx.ifmserver.cache;
+
+import com.pxx.ifmserver.entity.dto.User;
+import com.pxx.ifmserver.mapper.UserMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+/**
+ * 校验用户摘要缓存的读写、失效、批量读取,以及百万用户时的内存占用和命中耗时
+ */
+class UserSummaryCacheTest {
+
+    //模拟数据库中的用户
+    private final Map<Integer, User> database = new HashMap<>();
+    private UserMapper userMapper;
+    private UserSummaryCache userSummaryCache;
+
+    private static User user(int userId, String userName, String userPicture) {
+        User user = new User();
+        user.setUserId(userId);
+        user.setUserName(userName);
+        user.setUserPicture(userPicture);
+        return user;
+    }
+
+    @BeforeEach
+    void setUp() {
+        userMapper = Mockito.mock(UserMapper.class);
+        Mockito.when(userMapper.getUserSummaryByUserId(anyInt())).thenAnswer(invocation -> database.get(invocation.<Integer>getArgument(0)));
+        Mockito.when(userMapper.listUserSummaryByIdList(any())).thenAnswer(invocation -> {
+            List<User> users = new ArrayList<>();
+            for (Integer userId : invocation.<Collection<Integer>>getArgument(0)) {
+                if (database.containsKey(userId)) {
+                    users.add(database.get(userId));
+                }
+            }
+            return users;
+        });
+        userSummaryCache = new UserSummaryCache();
+        ReflectionTestUtils.setField(userSummaryCache, "userMapper", userMapper);
+        ReflectionTestUtils.setField(userSummaryCache, "maxEntries", 4_000_000);
+    }
+
+    private static void assertSameUser(User expected, User actual) {
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getUserName(), actual.getUserName());
+        assertEquals(expected.getUserPicture(), actual.getUserPicture());
+    }
+
+    @Test
+    void readsThroughAndInvalidates() {
+        database.put(1, user(1, "深夜电台", "/images/user/head/1-a.png"));
+        database.put(2, user(2, null, "https://cdn.example.com/2.png"));
+        database.put(0, user(0, "zero", null));
+
+        for (int userId = 0; userId <= 2; userId++) {
+            assertSameUser(database.get(userId), userSummaryCache.get(userId));
+            assertSameUser(database.get(userId), userSummaryCache.get(userId));
+        }
+        assertNull(userSummaryCache.get(3));
+        Mockito.verify(userMapper, Mockito.times(4)).getUserSummaryByUserId(anyInt());
+
+        //修改用户名后失效,下次读取到新值
+        database.put(1, user(1, "新名字", "/images/user/head/1-b.png"));
+        assertEquals("深夜电台", userSummaryCache.get(1).getUserName());
+        userSummaryCache.invalidate(1);
+        assertSameUser(database.get(1), userSummaryCache.get(1));
+        assertEquals(3, userSummaryCache.stats().get("entries"));
+    }
+
+    @Test
+    void matchesHashMapUnderRandomOperations() {
+        Random random = new Random(11);
+        for (int userId = 1; userId <= 20_000; userId++) {
+            database.put(userId, user(userId, "用户" + userId, "/images/user/head/" + userId + ".png"));
+        }
+        for (int i = 0; i < 200_000; i++) {
+            int userId = 1 + random.nextInt(20_000);
+            int op = random.nextInt(10);
+            if (op == 0) {
+                //修改后失效
+                database.put(userId, user(userId, "改名" + i, random.nextBoolean() ? null : "/images/user/head/" + i + ".jpg"));
+                userSummaryCache.invalidate(userId);
+            } else if (op == 1) {
+                List<Integer> batch = new ArrayList<>();
+                for (int j = 0; j < 20; j++) {
+                    batch.add(1 + random.nextInt(20_000));
+                }
+                Map<Integer, User> users = userSummaryCache.getAll(batch);
+                for (Integer id : batch) {
+                    assertSameUser(database.get(id), users.get(id));
+                }
+            } else {
+                assertSameUser(database.get(userId), userSummaryCache.get(userId));
+            }
+        }
+        assertTrue((int) userSummaryCache.stats().get("entries") <= 20_000);
+    }
+
+    @Test
+    void readersSurviveConcurrentResize() throws Exception {
+        for (int userId = 1; userId <= 200_000; userId++) {
+            database.put(userId, user(userId, "用户" + userId, "/images/user/head/" + userId + ".png"));
+        }
+        List<Integer> hot = new ArrayList<>();
+        for (int userId = 1; userId <= 1000; userId++) {
+            hot.add(userId);
+        }
+        userSummaryCache.getAll(hot);
+
+        //读线程只读已缓存的用户,写线程不断载入新用户触发扩容和arena增长
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            futures.add(readers.submit(() -> {
+                Random random = new Random(seed);
+                while (running.get()) {
+                    int userId = 1 + random.nextInt(1000);
+                    assertSameUser(database.get(userId), userSummaryCache.get(userId));
+                }
+            }));
+        }
+        try {
+            for (int start = 1001; start <= 200_000; start += 100) {
+                List<Integer> batch = new ArrayList<>();
+                for (int userId = start; userId < start + 100; userId++) {
+                    batch.add(userId);
+                }
+                userSummaryCache.getAll(batch);
+            }
+        } finally {
+            running.set(false);
+            readers.shutdown();
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(200_000, userSummaryCache.stats().get("entries"));
+    }
+
+    @Test
+    void millionUsersFitInTensOfMegabytes() {
+        int count = 1_000_000;
+        List<Integer> batch = new ArrayList<>();
+        for (int userId = 1; userId <= count; userId++) {
+            database.put(userId, user(userId, "user" + userId, "/images/user/head/" + userId + "_1700000000000.png"));
+            batch.add(userId);
+        }
+        userSummaryCache.getAll(batch);
+        database.clear();
+
+        Random random = new Random(3);
+        for (int i = 0; i < 1_000_000; i++) {
+            userSummaryCache.get(1 + random.nextInt(count));
+        }
+        Map<String, Object> stats = userSummaryCache.stats();
+        assertEquals(count, stats.get("entries"));
+        //每个用户: 8字节槽位(负载因子0.75以下) + 约40字节数据,arena按1.5倍扩容
+        assertTrue((long) stats.get("totalBytes") < 80L * 1024 * 1024, "totalBytes " + stats.get("totalBytes"));
+        assertTrue((long) stats.get("bytesPerEntry") < 100, "bytesPerEntry " + stats.get("bytesPerEntry"));
+        //批量载入时100万次未命中,之后100万次全部命中
+        assertEquals(0.5, (double) stats.get("hitRate"), 0.001);
+    }
+}
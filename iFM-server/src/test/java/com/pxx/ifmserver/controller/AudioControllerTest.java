@@ -0,0 +1,147 @@
+package com.pxx.ifmserver.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+
+/**
+ * 校验音频接口:完整文件、单段Range(206)、多段Range(multipart/byteranges)、无法满足的Range(416)、
+ * If-None-Match(304)和If-Range
+ */
+class AudioControllerTest {
+
+    @TempDir
+    Path dir;
+
+    private final byte[] content = new byte[1000];
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Files.write(dir.resolve("1_1717214400.mp3"), content);
+        Files.write(dir.resolve("1_1717214400.idx"), new byte[16]);
+        AudioController audioController = new AudioController();
+        ReflectionTestUtils.setField(audioController, "audioRoot", dir.toAbsolutePath().normalize());
+        mockMvc = MockMvcBuilders.standaloneSetup(audioController).build();
+    }
+
+    private MockHttpServletResponse request(String... headers) throws Exception {
+        var builder = get("/audio/1_1717214400.mp3");
+        for (int i = 0; i < headers.length; i += 2) {
+            builder.header(headers[i], headers[i + 1]);
+        }
+        return mockMvc.perform(builder).andReturn().getResponse();
+    }
+
+    @Test
+    void servesWholeFile() throws Exception {
+        MockHttpServletResponse response = request();
+        assertEquals(200, response.getStatus());
+        assertEquals("audio/mpeg", response.getContentType());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertNotNull(response.getHeader(HttpHeaders.ETAG));
+        assertArrayEquals(content, response.getContentAsByteArray());
+
+        MockHttpServletResponse headResponse = mockMvc.perform(head("/audio/1_1717214400.mp3")).andReturn().getResponse();
+        assertEquals(200, headResponse.getStatus());
+        assertEquals(content.length, headResponse.getContentLengthLong());
+        assertEquals(0, headResponse.getContentAsByteArray().length);
+    }
+
+    @Test
+    void servesSingleRange() throws Exception {
+        MockHttpServletResponse response = request(HttpHeaders.RANGE, "bytes=100-199");
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 100-199/1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(100, response.getContentLengthLong());
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 200), response.getContentAsByteArray());
+
+        //后缀Range:最后100字节
+        response = request(HttpHeaders.RANGE, "bytes=-100");
+        assertEquals("bytes 900-999/1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(content, 900, 1000), response.getContentAsByteArray());
+    }
+
+    @Test
+    void servesMultipleRangesAsMultipart() throws Exception {
+        //重叠的段合并为一段
+        MockHttpServletResponse response = request(HttpHeaders.RANGE, "bytes=0-9,500-509,505-519");
+        assertEquals(206, response.getStatus());
+        String contentType = response.getContentType();
+        assertTrue(contentType.startsWith("multipart/byteranges; boundary="), contentType);
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        byte[] body = response.getContentAsByteArray();
+        assertEquals(body.length, response.getContentLengthLong());
+
+        String text = new String(body, StandardCharsets.ISO_8859_1);
+        assertEquals(3, text.split("--" + boundary, -1).length - 1);
+        assertTrue(text.endsWith("\r\n--" + boundary + "--\r\n"));
+        assertTrue(text.contains("Content-Range: bytes 0-9/1000\r\n\r\n"
+                + new String(Arrays.copyOfRange(content, 0, 10), StandardCharsets.ISO_8859_1) + "\r\n"));
+        assertTrue(text.contains("Content-Range: bytes 500-519/1000\r\n\r\n"
+                + new String(Arrays.copyOfRange(content, 500, 520), StandardCharsets.ISO_8859_1) + "\r\n"));
+    }
+
+    @Test
+    void rejectsUnsatisfiableRange() throws Exception {
+        MockHttpServletResponse response = request(HttpHeaders.RANGE, "bytes=1000-1999");
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+
+        assertEquals(416, request(HttpHeaders.RANGE, "bytes=abc").getStatus());
+    }
+
+    @Test
+    void returnsNotModifiedForMatchingETag() throws Exception {
+        String eTag = request().getHeader(HttpHeaders.ETAG);
+        MockHttpServletResponse response = request(HttpHeaders.IF_NONE_MATCH, eTag);
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+
+        assertEquals(200, request(HttpHeaders.IF_NONE_MATCH, "\"other\"").getStatus());
+    }
+
+    @Test
+    void ifRangeFallsBackToWholeFileWhenStale() throws Exception {
+        MockHttpServletResponse first = request();
+        String eTag = first.getHeader(HttpHeaders.ETAG);
+        String lastModified = first.getHeader(HttpHeaders.LAST_MODIFIED);
+
+        assertEquals(206, request(HttpHeaders.RANGE, "bytes=0-9", HttpHeaders.IF_RANGE, eTag).getStatus());
+        assertEquals(206, request(HttpHeaders.RANGE, "bytes=0-9", HttpHeaders.IF_RANGE, lastModified).getStatus());
+
+        //文件已变化(ETag不同,或日期早于修改时间)时忽略Range
+        MockHttpServletResponse response = request(HttpHeaders.RANGE, "bytes=0-9", HttpHeaders.IF_RANGE, "\"stale\"");
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(content, response.getContentAsByteArray());
+        assertEquals(200, request(HttpHeaders.RANGE, "bytes=0-9",
+                HttpHeaders.IF_RANGE, "Thu, 01 Jan 1970 00:00:00 GMT").getStatus());
+    }
+
+    @Test
+    void onlyServesMp3FilesInAudioDirectory() throws Exception {
+        assertEquals(404, mockMvc.perform(get("/audio/1_1717214400.idx")).andReturn().getResponse().getStatus());
+        assertEquals(404, mockMvc.perform(get("/audio/missing.mp3")).andReturn().getResponse().getStatus());
+    }
+}
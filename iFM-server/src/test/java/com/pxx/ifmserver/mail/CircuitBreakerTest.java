@@ -0,0 +1,71 @@
+package com.pxx.ifmserver.mail;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 校验熔断器的状态转换:连续失败后断开,到时后半开放行一次试探,试探的结果决定恢复或再次断开
+ */
+class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong(1000);
+    private final CircuitBreaker breaker = new CircuitBreaker(3, 500, now::get);
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.waitMillis());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(500, breaker.waitMillis());
+        now.addAndGet(200);
+        assertEquals(300, breaker.waitMillis());
+    }
+
+    @Test
+    void successResetsFailureCount() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void halfOpenLetsOneProbeThrough() {
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        now.addAndGet(500);
+        //第一个调用方得到试探机会,其余调用方等待试探结果
+        assertEquals(0, breaker.waitMillis());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.waitMillis() > 0);
+
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.waitMillis());
+    }
+
+    @Test
+    void failedProbeOpensAgain() {
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        now.addAndGet(500);
+        assertEquals(0, breaker.waitMillis());
+
+        //半开时一次失败就重新断开,不需要再累计failureThreshold次
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(500, breaker.waitMillis());
+    }
+}
@@ -0,0 +1,147 @@
+package com.pxx.ifmserver.mail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的本地SMTP服务器,只实现发信需要的命令(EHLO/AUTH/MAIL/RCPT/DATA/RSET/NOOP/QUIT)
+ * 可以模拟服务不可用、MAIL命令临时失败和收件人拒收
+ */
+class FakeSmtpServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+    //为true时建立连接后返回421并断开
+    volatile boolean down;
+    //接下来多少个MAIL命令返回451
+    final AtomicInteger failMailFrom = new AtomicInteger();
+    //拒收的收件人
+    final Set<String> rejectedRecipients = ConcurrentHashMap.newKeySet();
+
+    final AtomicInteger connections = new AtomicInteger();
+    final AtomicInteger logins = new AtomicInteger();
+    //收到的邮件的收件人(每封一条)
+    final List<String> delivered = new CopyOnWriteArrayList<>();
+
+    FakeSmtpServer() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread(this::accept, "fake-smtp");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                sockets.add(socket);
+                connections.incrementAndGet();
+                Thread handler = new Thread(() -> handle(socket), "fake-smtp-session");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+            if (down) {
+                reply(out, "421 service not available");
+                return;
+            }
+            reply(out, "220 fake ESMTP");
+            String recipient = null;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase();
+                if (command.startsWith("EHLO")) {
+                    reply(out, "250-fake\r\n250-AUTH LOGIN PLAIN\r\n250 OK");
+                } else if (command.startsWith("HELO") || command.startsWith("NOOP")) {
+                    reply(out, "250 OK");
+                } else if (command.startsWith("AUTH LOGIN")) {
+                    if (line.trim().length() == "AUTH LOGIN".length()) {
+                        reply(out, "334 VXNlcm5hbWU6");
+                        in.readLine();
+                    }
+                    reply(out, "334 UGFzc3dvcmQ6");
+                    in.readLine();
+                    logins.incrementAndGet();
+                    reply(out, "235 OK");
+                } else if (command.startsWith("AUTH PLAIN")) {
+                    if (line.trim().length() == "AUTH PLAIN".length()) {
+                        reply(out, "334 ");
+                        in.readLine();
+                    }
+                    logins.incrementAndGet();
+                    reply(out, "235 OK");
+                } else if (command.startsWith("MAIL FROM")) {
+                    if (failMailFrom.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                        reply(out, "451 try again later");
+                    } else {
+                        reply(out, "250 OK");
+                    }
+                } else if (command.startsWith("RCPT TO")) {
+                    String address = line.substring(line.indexOf('<') + 1, line.lastIndexOf('>'));
+                    if (rejectedRecipients.contains(address)) {
+                        reply(out, "550 no such user");
+                    } else {
+                        recipient = address;
+                        reply(out, "250 OK");
+                    }
+                } else if (command.startsWith("DATA")) {
+                    reply(out, "354 end with .");
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        //丢弃正文
+                    }
+                    delivered.add(recipient);
+                    recipient = null;
+                    reply(out, "250 OK");
+                } else if (command.startsWith("RSET")) {
+                    recipient = null;
+                    reply(out, "250 OK");
+                } else if (command.startsWith("QUIT")) {
+                    reply(out, "221 bye");
+                    return;
+                } else {
+                    reply(out, "502 not implemented");
+                }
+            }
+        } catch (IOException e) {
+            //客户端断开
+        } finally {
+            sockets.remove(socket);
+        }
+    }
+
+    private static void reply(PrintWriter out, String response) {
+        out.print(response + "\r\n");
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+}
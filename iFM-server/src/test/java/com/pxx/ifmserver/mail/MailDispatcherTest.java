@@ -0,0 +1,175 @@
+package com.pxx.ifmserver.mail;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用本地SMTP服务器校验异步发送:连接复用、失败重试、拒收、熔断
+ */
+class MailDispatcherTest {
+
+    @TempDir
+    Path dir;
+
+    private FakeSmtpServer server;
+    private MailDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeSmtpServer();
+        dispatcher = new MailDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "host", "127.0.0.1");
+        ReflectionTestUtils.setField(dispatcher, "port", server.getPort());
+        ReflectionTestUtils.setField(dispatcher, "ssl", false);
+        ReflectionTestUtils.setField(dispatcher, "username", "ifm@test.com");
+        ReflectionTestUtils.setField(dispatcher, "password", "secret");
+        ReflectionTestUtils.setField(dispatcher, "fromName", "iFM");
+        ReflectionTestUtils.setField(dispatcher, "timeoutMillis", 2000);
+        ReflectionTestUtils.setField(dispatcher, "connections", 2);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 20);
+        ReflectionTestUtils.setField(dispatcher, "idleTimeout", 30_000L);
+        ReflectionTestUtils.setField(dispatcher, "queueCapacity", 1000);
+        ReflectionTestUtils.setField(dispatcher, "journal", dir.resolve("mail.journal").toString());
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 20);
+        ReflectionTestUtils.setField(dispatcher, "retryBaseMillis", 20L);
+        ReflectionTestUtils.setField(dispatcher, "retryMaxMillis", 100L);
+        ReflectionTestUtils.setField(dispatcher, "breakerFailures", 3);
+        ReflectionTestUtils.setField(dispatcher, "breakerOpenMillis", 300L);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        dispatcher.stop();
+        server.close();
+    }
+
+    private static MailMessage mail(String to) {
+        return new MailMessage(to, "验证码", "欢迎使用iFm!您的验证码是：123456。");
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timeout");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void connectionsAreReused() throws Exception {
+        dispatcher.start();
+        for (int i = 0; i < 200; i++) {
+            assertTrue(dispatcher.submit(mail("user" + i + "@test.com")));
+        }
+        await(() -> server.delivered.size() == 200);
+
+        assertEquals(200, new HashSet<>(server.delivered).size());
+        //每个发送线程只登录一次
+        assertTrue(server.connections.get() <= 2, "connections " + server.connections.get());
+        assertTrue(server.logins.get() <= 2, "logins " + server.logins.get());
+        await(() -> dispatcher.stats().get("queued").equals(0));
+    }
+
+    @Test
+    void transientFailuresAreRetriedAndRejectedRecipientsDropped() throws Exception {
+        server.failMailFrom.set(2);
+        server.rejectedRecipients.add("nobody@test.com");
+        dispatcher.start();
+        dispatcher.submit(mail("nobody@test.com"));
+        dispatcher.submit(mail("a@test.com"));
+        await(() -> server.delivered.contains("a@test.com"));
+        await(() -> dispatcher.stats().get("queued").equals(0));
+
+        assertEquals(1, server.delivered.size());
+        assertEquals(1L, dispatcher.stats().get("sent"));
+        assertEquals(1L, dispatcher.stats().get("dropped"));
+        assertEquals(2L, dispatcher.stats().get("failed"));
+        assertEquals("CLOSED", dispatcher.stats().get("breaker"));
+    }
+
+    @Test
+    void breakerOpensWhileServerIsDown() throws Exception {
+        server.down = true;
+        dispatcher.start();
+        for (int i = 0; i < 5; i++) {
+            dispatcher.submit(mail("user" + i + "@test.com"));
+        }
+        await(() -> "OPEN".equals(dispatcher.stats().get("breaker")));
+        //熔断期间不再连接服务器,邮件留在队列中
+        Thread.sleep(50);
+        int connections = server.connections.get();
+        Thread.sleep(150);
+        assertEquals(connections, server.connections.get());
+        assertEquals(5, dispatcher.stats().get("queued"));
+
+        server.down = false;
+        await(() -> server.delivered.size() == 5);
+        assertEquals("CLOSED", dispatcher.stats().get("breaker"));
+    }
+
+    @Test
+    void connectFailuresOpenBreaker() throws Exception {
+        //端口上没有服务器,连接直接被拒绝
+        server.close();
+        dispatcher.start();
+        dispatcher.submit(mail("a@test.com"));
+        await(() -> "OPEN".equals(dispatcher.stats().get("breaker")));
+        assertTrue((Long) dispatcher.stats().get("failed") >= 3);
+        assertEquals(1, dispatcher.stats().get("queued"));
+    }
+
+    @Test
+    void invalidAddressProbeClosesBreaker() throws Exception {
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 3);
+        server.down = true;
+        dispatcher.start();
+        //第3次失败时熔断,同时放弃这封邮件,队列清空
+        dispatcher.submit(mail("a@test.com"));
+        await(() -> "OPEN".equals(dispatcher.stats().get("breaker")));
+        await(() -> dispatcher.stats().get("queued").equals(0));
+
+        //半开时的试探是一封地址错误的邮件,没有连接服务器也要结束半开,否则熔断器一直停在半开
+        dispatcher.submit(mail("not an address@@"));
+        await(() -> "CLOSED".equals(dispatcher.stats().get("breaker")));
+
+        server.down = false;
+        dispatcher.submit(mail("b@test.com"));
+        await(() -> server.delivered.contains("b@test.com"));
+    }
+
+    @Test
+    void disabledWithoutPassword() throws Exception {
+        ReflectionTestUtils.setField(dispatcher, "password", "");
+        dispatcher.start();
+        assertFalse(dispatcher.submit(mail("a@test.com")));
+        assertEquals(false, dispatcher.stats().get("enabled"));
+        assertEquals(1L, dispatcher.stats().get("rejected"));
+        assertEquals(0, server.connections.get());
+    }
+
+    @Test
+    void queuedMessagesAreSentAfterRestart() throws Exception {
+        server.down = true;
+        dispatcher.start();
+        dispatcher.submit(mail("a@test.com"));
+        dispatcher.submit(mail("b@test.com"));
+        await(() -> "OPEN".equals(dispatcher.stats().get("breaker")));
+        dispatcher.stop();
+
+        server.down = false;
+        dispatcher.start();
+        await(() -> server.delivered.size() == 2);
+    }
+}
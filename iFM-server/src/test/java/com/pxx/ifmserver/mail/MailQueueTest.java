@@ -0,0 +1,117 @@
+package com.pxx.ifmserver.mail;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 校验邮件队列:容量、重启后恢复未完成的邮件、日志末尾损坏、重试延迟、不持久化的邮件不写日志
+ */
+class MailQueueTest {
+
+    @TempDir
+    Path dir;
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    private static MailMessage mail(int i) {
+        return new MailMessage("user" + i + "@test.com", "验证码", "正文" + i);
+    }
+
+    @Test
+    void pendingMessagesSurviveRestart() throws IOException, InterruptedException {
+        Path journal = dir.resolve("mail.journal");
+        MailQueue queue = new MailQueue(journal, 3, now::get);
+        assertTrue(queue.offer(mail(1)));
+        assertTrue(queue.offer(mail(2)));
+        assertTrue(queue.offer(mail(3)));
+        assertFalse(queue.offer(mail(4)));
+
+        List<MailMessage> batch = queue.take(2, 0);
+        assertEquals(2, batch.size());
+        queue.complete(batch.get(0));
+        //第二封正在发送时进程退出
+        queue.close();
+        //模拟写了一半的记录
+        Files.write(journal, new byte[]{1, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        MailQueue reopened = new MailQueue(journal, 3, now::get);
+        assertEquals(2, reopened.size());
+        List<MailMessage> recovered = reopened.take(10, 0);
+        assertEquals("user2@test.com", recovered.get(0).getTo());
+        assertEquals("正文3", recovered.get(1).getContent());
+        //恢复后新邮件的id不与旧邮件重复
+        assertTrue(reopened.offer(mail(5)));
+        reopened.complete(recovered.get(0));
+        reopened.close();
+        assertEquals(2, new MailQueue(journal, 3, now::get).size());
+    }
+
+    @Test
+    void retriedMessageWaitsForBackoff() throws IOException, InterruptedException {
+        MailQueue queue = new MailQueue(dir.resolve("mail.journal"), 10, now::get);
+        queue.offer(mail(1));
+        queue.offer(mail(2));
+        List<MailMessage> batch = queue.take(10, 0);
+        queue.retry(batch.get(0), 5_000);
+        queue.release(batch.subList(1, 2));
+
+        batch = queue.take(10, 10);
+        assertEquals(1, batch.size());
+        assertEquals("user2@test.com", batch.get(0).getTo());
+        queue.complete(batch.get(0));
+        assertTrue(queue.take(10, 10).isEmpty());
+
+        now.addAndGet(5_000);
+        batch = queue.take(10, 10);
+        assertEquals(1, batch.size());
+        assertEquals(1, batch.get(0).getAttempts());
+        queue.close();
+    }
+
+    @Test
+    void transientMessagesAreNotJournaled() throws IOException, InterruptedException {
+        Path journal = dir.resolve("mail.journal");
+        MailQueue queue = new MailQueue(journal, 10, now::get);
+        assertTrue(queue.offer(new MailMessage("a@test.com", "验证码", "您的验证码是：135790。", false)));
+        assertTrue(queue.offer(mail(1)));
+        assertEquals(2, queue.take(10, 0).size());
+        queue.close();
+
+        //验证码不落盘,重启后只恢复需要持久化的邮件
+        assertFalse(new String(Files.readAllBytes(journal), StandardCharsets.UTF_8).contains("135790"));
+        MailQueue reopened = new MailQueue(journal, 10, now::get);
+        List<MailMessage> recovered = reopened.take(10, 0);
+        assertEquals(1, recovered.size());
+        assertEquals("user1@test.com", recovered.get(0).getTo());
+        reopened.close();
+    }
+
+    @Test
+    void journalIsCompacted() throws IOException, InterruptedException {
+        Path journal = dir.resolve("mail.journal");
+        MailQueue queue = new MailQueue(journal, 10, now::get);
+        for (int i = 0; i < 5000; i++) {
+            queue.offer(mail(i));
+            for (MailMessage message : queue.take(10, 0)) {
+                queue.complete(message);
+            }
+        }
+        queue.offer(mail(-1));
+        queue.close();
+        //日志只保留最近一次重写之后的记录
+        assertTrue(Files.size(journal) < 1024 * 80, "journal " + Files.size(journal));
+        assertEquals(1, new MailQueue(journal, 10, now::get).size());
+    }
+}
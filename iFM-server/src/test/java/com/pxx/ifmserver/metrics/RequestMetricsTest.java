@@ -0,0 +1,150 @@
+package com.pxx.ifmserver.metrics;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 校验接口统计:按路径模板归类、正在处理的请求数、响应字节数、状态码、窗口分位数和Prometheus输出
+ */
+class RequestMetricsTest {
+
+    private RequestMetrics requestMetrics;
+    private RequestMetricsFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        requestMetrics = new RequestMetrics();
+        ReflectionTestUtils.setField(requestMetrics, "slotMillis", 10000L);
+        SqlMetrics sqlMetrics = new SqlMetrics();
+        ReflectionTestUtils.setField(sqlMetrics, "repeatThreshold", 10);
+        Map<RequestMappingInfo, HandlerMethod> handlers = new HashMap<>();
+        handlers.put(RequestMappingInfo.paths("/post/list").methods(RequestMethod.GET).build(), null);
+        handlers.put(RequestMappingInfo.paths("/audio/{fileName:.+}").methods(RequestMethod.GET).build(), null);
+        RequestMappingHandlerMapping handlerMapping = Mockito.mock(RequestMappingHandlerMapping.class);
+        Mockito.when(handlerMapping.getHandlerMethods()).thenReturn(handlers);
+        filter = new RequestMetricsFilter();
+        ReflectionTestUtils.setField(filter, "handlerMapping", handlerMapping);
+        ReflectionTestUtils.setField(filter, "requestMetrics", requestMetrics);
+        ReflectionTestUtils.setField(filter, "sqlMetrics", sqlMetrics);
+    }
+
+    private MockHttpServletResponse call(String path, String pattern, FilterChain handler) throws ServletException, IOException {
+        return call("GET", path, pattern, handler);
+    }
+
+    private MockHttpServletResponse call(String method, String path, String pattern, FilterChain handler) throws ServletException, IOException {
+        MockHttpServletRequest req = new MockHttpServletRequest(method, path);
+        MockHttpServletResponse resp = new MockHttpServletResponse();
+        filter.doFilter(req, resp, (request, response) -> {
+            if (pattern != null) {
+                request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+            }
+            handler.doFilter(request, response);
+        });
+        return resp;
+    }
+
+    private Map<String, Object> summary(String route) {
+        for (Map<String, Object> item : requestMetrics.summary()) {
+            if (route.equals(item.get("route"))) {
+                return item;
+            }
+        }
+        throw new AssertionError(route);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordsRoutesStatusesAndSizes() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            call("/post/list", "/post/list", (request, response) -> {
+                //请求处理中即可看到该接口正在处理的请求数
+                assertEquals(1L, summary("GET /post/list").get("inFlight"));
+                response.getOutputStream().write(new byte[100]);
+            });
+        }
+        //sendfile发送的响应不经过输出流,按Content-Length计
+        call("/audio/a.mp3", "/audio/{fileName:.+}", (request, response) -> {
+            response.setContentLengthLong(5000);
+            ((HttpServletResponse) response).setStatus(206);
+        });
+        call("/nothing", null, (request, response) -> ((HttpServletResponse) response).setStatus(404));
+        assertThrows(ServletException.class, () -> call("/post/list", "/post/list", (request, response) -> {
+            throw new ServletException("boom");
+        }));
+        requestMetrics.rotate();
+
+        Map<String, Object> list = summary("GET /post/list");
+        assertEquals(0L, list.get("inFlight"));
+        assertEquals(101L, list.get("requests"));
+        assertEquals(Map.of("200", 100L, "500", 1L), list.get("status"));
+        Map<String, Object> minute = (Map<String, Object>) list.get("1m");
+        assertEquals(101L, minute.get("count"));
+        assertEquals(10.1, (double) minute.get("rps"), 1e-9);
+        assertTrue((double) minute.get("p99") <= (double) minute.get("max"));
+        assertEquals(List.of("GET /post/list"), requestMetrics.summary().stream().limit(1).map(item -> item.get("route")).toList());
+        assertEquals(Map.of("206", 1L), summary("GET /audio/{fileName:.+}").get("status"));
+        assertEquals(Map.of("404", 1L), summary("UNMATCHED").get("status"));
+
+        PrometheusWriter writer = new PrometheusWriter();
+        requestMetrics.writePrometheus(writer);
+        String text = writer.toString();
+        assertTrue(text.contains("ifm_http_requests_total{route=\"GET /post/list\",status=\"200\"} 100\n"));
+        assertTrue(text.contains("ifm_http_request_duration_seconds_count{route=\"GET /post/list\"} 101\n"));
+        assertTrue(text.contains("ifm_http_request_duration_seconds{route=\"GET /post/list\",quantile=\"0.99\"}"));
+        assertTrue(text.contains("ifm_http_response_size_bytes_sum{route=\"GET /post/list\"} 10000\n"));
+        assertTrue(text.contains("ifm_http_response_size_bytes_sum{route=\"GET /audio/{fileName:.+}\"} 5000\n"));
+        assertTrue(text.contains("ifm_http_requests_in_flight 0\n"));
+    }
+
+    @Test
+    void unmatchedRequestsShareOneRoute() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            call("GET", "/nothing/" + i, null, (request, response) -> ((HttpServletResponse) response).setStatus(404));
+            call("METHOD" + i, "/nothing", null, (request, response) -> ((HttpServletResponse) response).setStatus(405));
+            //不限请求方法的接口也会匹配到不标准的请求方法
+            call("METHOD" + i, "/post/list", "/post/list", (request, response) -> { });
+        }
+        //除了启动时收集的接口,只多出一个UNMATCHED
+        assertEquals(List.of("GET /post/list", "UNMATCHED"),
+                requestMetrics.summary().stream().map(item -> item.get("route")).sorted().toList());
+        assertEquals(0L, summary("GET /post/list").get("requests"));
+        assertEquals(300L, summary("UNMATCHED").get("requests"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void windowsDropOldSlots() throws Exception {
+        call("/post/list", "/post/list", (request, response) -> { });
+        requestMetrics.rotate();
+        //1分钟 = 6段,再过6段后1分钟窗口为空,5分钟窗口仍包含
+        for (int i = 0; i < 6; i++) {
+            requestMetrics.rotate();
+        }
+        Map<String, Object> list = summary("GET /post/list");
+        assertEquals(0L, ((Map<String, Object>) list.get("1m")).get("count"));
+        assertEquals(1L, ((Map<String, Object>) list.get("5m")).get("count"));
+        assertEquals(1L, ((Map<String, Object>) list.get("15m")).get("count"));
+    }
+}
@@ -0,0 +1,87 @@
+package com.pxx.ifmserver.metrics;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.scripting.defaults.RawSqlSource;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * 校验SQL统计:按语句记录耗时/行数/出错、按请求识别N+1查询和Prometheus输出
+ * 每条语句的额外耗时见benchmark.SqlMetricsBenchmark
+ */
+class SqlMetricsTest {
+
+    private final Configuration configuration = new Configuration();
+    private SqlMetrics sqlMetrics;
+
+    @BeforeEach
+    void setUp() {
+        sqlMetrics = new SqlMetrics();
+        ReflectionTestUtils.setField(sqlMetrics, "repeatThreshold", 10);
+    }
+
+    private MappedStatement statement(String id, SqlCommandType type) {
+        return new MappedStatement.Builder(configuration, id, new RawSqlSource(configuration, "SELECT 1", Object.class), type).build();
+    }
+
+    private String prometheus() {
+        PrometheusWriter writer = new PrometheusWriter();
+        sqlMetrics.writePrometheus(writer);
+        return writer.toString();
+    }
+
+    @Test
+    void recordsPerStatementAndDetectsRepeats() throws SQLException {
+        MappedStatement getUser = statement("com.pxx.ifmserver.mapper.UserMapper.getUserByUserId", SqlCommandType.SELECT);
+        MappedStatement listPost = statement("com.pxx.ifmserver.mapper.PostMapper.listPost", SqlCommandType.SELECT);
+        MappedStatement insertPost = statement("com.pxx.ifmserver.mapper.PostMapper.insertPost", SqlCommandType.INSERT);
+        Executor target = Mockito.mock(Executor.class);
+        Mockito.when(target.query(Mockito.eq(listPost), any(), any(), any())).thenReturn(Arrays.asList("a", "b", "c"));
+        Mockito.when(target.query(Mockito.eq(getUser), any(), any(), any())).thenReturn(List.of("user"));
+        Mockito.when(target.update(any(), any())).thenThrow(new SQLException("duplicate"));
+        Executor executor = (Executor) sqlMetrics.plugin(target);
+
+        //列表接口:1次列表查询 + 每条帖子查一次作者
+        sqlMetrics.beginRequest();
+        executor.query(listPost, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        for (int i = 0; i < 20; i++) {
+            executor.query(getUser, i, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        }
+        sqlMetrics.endRequest("GET /post/list");
+        //详情接口:查询次数在阈值以内
+        sqlMetrics.beginRequest();
+        for (int i = 0; i < 10; i++) {
+            executor.query(getUser, i, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+        }
+        sqlMetrics.endRequest("GET /user/getUserInfo");
+        assertThrows(SQLException.class, () -> executor.update(insertPost, null));
+
+        String text = prometheus();
+        assertTrue(text.contains("ifm_sql_statement_duration_seconds_count{statement=\"UserMapper.getUserByUserId\"} 30\n"));
+        assertTrue(text.contains("ifm_sql_statement_rows_total{statement=\"PostMapper.listPost\"} 3\n"));
+        assertTrue(text.contains("ifm_sql_statement_rows_total{statement=\"UserMapper.getUserByUserId\"} 30\n"));
+        assertTrue(text.contains("ifm_sql_statement_errors_total{statement=\"PostMapper.insertPost\"} 1\n"));
+        assertTrue(text.contains("ifm_sql_statements_per_request_count 2\n"));
+        assertTrue(text.contains("ifm_sql_statements_per_request_sum 31\n"));
+        assertTrue(text.contains("ifm_sql_repeated_statement_requests_total{route=\"GET /post/list\",statement=\"UserMapper.getUserByUserId\"} 1\n"));
+        assertFalse(text.contains("GET /user/getUserInfo"));
+        //不在请求内执行的语句(定时任务等)只按语句统计
+        assertTrue(text.contains("ifm_sql_statement_duration_seconds_count{statement=\"PostMapper.insertPost\"} 1\n"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.pxx.ifmserver.pagination;
+
+import com.pxx.ifmserver.entity.dto.Broadcast;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 校验分页游标的编码与分页结果的截取
+ */
+class CursorPageTest {
+
+    private static Broadcast broadcast(int id, LocalDateTime gmtCreate) {
+        Broadcast broadcast = new Broadcast();
+        broadcast.setBroadcastId(id);
+        broadcast.setGmtCreate(gmtCreate);
+        return broadcast;
+    }
+
+    @Test
+    void cursorRoundTrip() {
+        PageCursor cursor = new PageCursor(LocalDateTime.of(2024, 12, 31, 17, 22, 20), 17);
+        assertEquals(cursor, PageCursor.decode(cursor.encode()));
+        assertNull(PageCursor.decode(null));
+        assertNull(PageCursor.decode(" "));
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        assertThrows(InvalidCursorException.class, () -> PageCursor.decode("not a cursor"));
+        assertThrows(InvalidCursorException.class, () -> PageCursor.decode("MTIz"));
+        assertThrows(InvalidCursorException.class, () -> PageCursor.decode("YTpi"));
+    }
+
+    @Test
+    void clampsPageSize() {
+        assertEquals(PageQuery.DEFAULT_SIZE, PageQuery.of(null, null).getSize());
+        assertEquals(PageQuery.DEFAULT_SIZE, PageQuery.of(null, 0).getSize());
+        assertEquals(PageQuery.MAX_SIZE, PageQuery.of(null, 10000).getSize());
+        assertEquals(11, PageQuery.of(null, 10).getLimit());
+    }
+
+    @Test
+    void extraRowMeansNextPage() {
+        LocalDateTime time = LocalDateTime.of(2024, 12, 17, 20, 41, 53);
+        List<Broadcast> rows = new ArrayList<>();
+        for (int id = 30; id > 19; id--) {
+            rows.add(broadcast(id, time));
+        }
+        PageQuery page = PageQuery.of(null, 10);
+
+        CursorPage<Broadcast> full = CursorPage.of(rows, page, Broadcast::getGmtCreate, Broadcast::getBroadcastId);
+        assertEquals(10, full.getList().size());
+        assertTrue(full.hasMore());
+        assertEquals(new PageCursor(time, 21), PageCursor.decode(full.getNextCursor()));
+
+        CursorPage<Broadcast> last = CursorPage.of(rows.subList(0, 10), page, Broadcast::getGmtCreate, Broadcast::getBroadcastId);
+        assertEquals(10, last.getList().size());
+        assertFalse(last.hasMore());
+        assertNull(last.getNextCursor());
+    }
+}
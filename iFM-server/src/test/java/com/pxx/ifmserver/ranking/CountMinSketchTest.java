@@ -0,0 +1,41 @@
+package com.pxx.ifmserver.ranking;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 校验Count-Min草图的哈希实现和估计值只高估不低估
+ */
+class CountMinSketchTest {
+
+    @Test
+    void murmur3MatchesReferenceVectors() {
+        assertEquals(0, CountMinSketch.murmur3(new byte[0], 0));
+        assertEquals(0x514E28B7, CountMinSketch.murmur3(new byte[0], 1));
+        assertEquals(0xBA6BD213, CountMinSketch.murmur3("test".getBytes(StandardCharsets.UTF_8), 0));
+        assertEquals(0xFAF6CDB3, CountMinSketch.murmur3("Hello, world!".getBytes(StandardCharsets.UTF_8), 1234));
+    }
+
+    @Test
+    void neverUnderestimates() {
+        CountMinSketch sketch = new CountMinSketch(4, 1024);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 50000; i++) {
+            double r = random.nextDouble();
+            String item = "关键词" + (int) (20000 * r * r);
+            sketch.add(item);
+            exact.merge(item, 1L, Long::sum);
+        }
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            assertTrue(sketch.estimate(entry.getKey()) >= entry.getValue(), entry.getKey());
+        }
+    }
+}
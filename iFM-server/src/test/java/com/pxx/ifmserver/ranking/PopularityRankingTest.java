@@ -0,0 +1,149 @@
+package com.pxx.ifmserver.ranking;
+
+import com.pxx.ifmserver.cache.CounterType;
+import com.pxx.ifmserver.cache.EngagementCounter;
+import com.pxx.ifmserver.cache.PlayCountBuffer;
+import com.pxx.ifmserver.entity.dto.Broadcast;
+import com.pxx.ifmserver.entity.dto.Channel;
+import com.pxx.ifmserver.entity.dto.Post;
+import com.pxx.ifmserver.mapper.BroadcastMapper;
+import com.pxx.ifmserver.mapper.ChannelMapper;
+import com.pxx.ifmserver.mapper.CounterMapper;
+import com.pxx.ifmserver.mapper.PostMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+/**
+ * 校验热门排行:重建时加上尚未写回数据库的计数增量,计数变化后重新排序,删除后立即移出
+ */
+class PopularityRankingTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.now().minusHours(1);
+
+    private final List<Broadcast> broadcasts = List.of(broadcast(1, 100, 10), broadcast(2, 100, 5));
+    private final List<Post> posts = List.of(post(1, 10, 3), post(2, 5, 3));
+    private final List<Channel> channels = List.of(channel(1, 10), channel(2, 5));
+    private EngagementCounter engagementCounter;
+    private PlayCountBuffer playCountBuffer;
+    private PopularityRanking ranking;
+
+    @BeforeEach
+    void setUp() {
+        BroadcastMapper broadcastMapper = Mockito.mock(BroadcastMapper.class);
+        Mockito.when(broadcastMapper.listBroadcastCtreateInHour(anyInt(), anyInt())).thenReturn(broadcasts);
+        PostMapper postMapper = Mockito.mock(PostMapper.class);
+        Mockito.when(postMapper.listPostCtreateInHour(anyInt(), anyInt())).thenReturn(posts);
+        ChannelMapper channelMapper = Mockito.mock(ChannelMapper.class);
+        Mockito.when(channelMapper.listPopularChannel(anyInt(), anyInt())).thenReturn(channels);
+        engagementCounter = new EngagementCounter();
+        ReflectionTestUtils.setField(engagementCounter, "counterMapper", Mockito.mock(CounterMapper.class));
+        playCountBuffer = new PlayCountBuffer();
+
+        ranking = new PopularityRanking();
+        ReflectionTestUtils.setField(ranking, "broadcastMapper", broadcastMapper);
+        ReflectionTestUtils.setField(ranking, "postMapper", postMapper);
+        ReflectionTestUtils.setField(ranking, "channelMapper", channelMapper);
+        ReflectionTestUtils.setField(ranking, "playCountBuffer", playCountBuffer);
+        ReflectionTestUtils.setField(ranking, "engagementCounter", engagementCounter);
+        ReflectionTestUtils.setField(ranking, "gravity", 1.5);
+        ReflectionTestUtils.setField(ranking, "windowHours", 720);
+        ReflectionTestUtils.setField(ranking, "candidateLimit", 5000);
+        ReflectionTestUtils.setField(ranking, "broadcastWeights", new double[]{0.5, 0.3, 0.2});
+        ReflectionTestUtils.setField(ranking, "postWeights", new double[]{1, 2, 3});
+        ReflectionTestUtils.setField(ranking, "channelWeights", new double[]{1, 0.5});
+        ReflectionTestUtils.setField(ranking, "broadcastTop", 20);
+        ReflectionTestUtils.setField(ranking, "postTop", 30);
+        ReflectionTestUtils.setField(ranking, "channelTop", 88);
+    }
+
+    private static Broadcast broadcast(int id, int playCount, int collectionCount) {
+        Broadcast broadcast = new Broadcast();
+        broadcast.setBroadcastId(id);
+        broadcast.setGmtCreate(CREATED);
+        broadcast.setBroadcastPlayCount(playCount);
+        broadcast.setBroadcastCollectionCount(collectionCount);
+        broadcast.setBroadcastPostCount(0);
+        return broadcast;
+    }
+
+    private static Post post(int id, int likeCount, int collectionCount) {
+        Post post = new Post();
+        post.setPostId(id);
+        post.setGmtCreate(CREATED);
+        post.setPostLikeCount(likeCount);
+        post.setPostCommentCount(0);
+        post.setPostCollectionCount(collectionCount);
+        return post;
+    }
+
+    private static Channel channel(int id, int subscribe) {
+        Channel channel = new Channel();
+        channel.setChannelId(id);
+        channel.setChannelUpdateTime(CREATED);
+        channel.setChannelSubscribe(subscribe);
+        channel.setChannelPostCount(0);
+        return channel;
+    }
+
+    @Test
+    void rejectsWrongNumberOfWeights() {
+        ranking.validateWeights();
+        ReflectionTestUtils.setField(ranking, "postWeights", new double[]{1, 2});
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> ranking.validateWeights());
+        assertTrue(e.getMessage().contains("ifm.ranking.post-weights"), e.getMessage());
+    }
+
+    @Test
+    void reloadIncludesPendingDeltas() {
+        ranking.reload();
+        assertEquals(List.of(1, 2), ranking.top(RankingType.BROADCAST));
+        assertEquals(List.of(1, 2), ranking.top(RankingType.POST));
+        assertEquals(List.of(1, 2), ranking.top(RankingType.CHANNEL));
+
+        //数据库中的计数落后于内存中尚未写回的增量
+        engagementCounter.add(CounterType.BROADCAST_COLLECTION, 2, 10);
+        engagementCounter.add(CounterType.POST_LIKE, 2, 4);
+        engagementCounter.add(CounterType.POST_COLLECTION, 2, 1);
+        engagementCounter.add(CounterType.CHANNEL_SUBSCRIBE, 2, 6);
+        ranking.reload();
+        assertEquals(List.of(2, 1), ranking.top(RankingType.BROADCAST));
+        assertEquals(List.of(2, 1), ranking.top(RankingType.POST));
+        assertEquals(List.of(2, 1), ranking.top(RankingType.CHANNEL));
+
+        //取消收藏等负增量同样计入
+        engagementCounter.add(CounterType.CHANNEL_SUBSCRIBE, 2, -6);
+        ranking.reload();
+        assertEquals(List.of(1, 2), ranking.top(RankingType.CHANNEL));
+    }
+
+    @Test
+    void reloadIncludesPendingPlays() {
+        for (int i = 0; i < 20; i++) {
+            playCountBuffer.increment(2);
+        }
+        ranking.reload();
+        assertEquals(List.of(2, 1), ranking.top(RankingType.BROADCAST));
+    }
+
+    @Test
+    void adjustAndRemoveUpdateTop() {
+        ranking.reload();
+        ranking.adjust(RankingMetric.POST_LIKE, 2, 10);
+        assertEquals(List.of(1, 2), ranking.top(RankingType.POST));
+        ranking.rerankDirty();
+        assertEquals(List.of(2, 1), ranking.top(RankingType.POST));
+
+        ranking.remove(RankingType.POST, 2);
+        assertEquals(List.of(1), ranking.top(RankingType.POST));
+    }
+}
@@ -0,0 +1,44 @@
+package com.pxx.ifmserver.ranking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 校验Space-Saving:最多跟踪capacity个字符串,出现次数超过 总次数/capacity 的字符串一定被跟踪
+ */
+class SpaceSavingTest {
+
+    @Test
+    void tracksEveryItemAboveThreshold() {
+        int capacity = 50;
+        int total = 100000;
+        SpaceSaving spaceSaving = new SpaceSaving(capacity);
+        Map<String, Integer> exact = new HashMap<>();
+        Random random = new Random(3);
+        for (int i = 0; i < total; i++) {
+            double r = random.nextDouble();
+            String item = "item" + (int) (10000 * r * r * r);
+            spaceSaving.add(item);
+            exact.merge(item, 1, Integer::sum);
+        }
+        List<String> items = spaceSaving.items();
+        assertEquals(capacity, items.size());
+        for (Map.Entry<String, Integer> entry : exact.entrySet()) {
+            if (entry.getValue() > total / capacity) {
+                assertTrue(items.contains(entry.getKey()), entry.getKey());
+            }
+        }
+
+        spaceSaving.clear();
+        assertTrue(spaceSaving.items().isEmpty());
+        spaceSaving.add("a");
+        assertEquals(List.of("a"), spaceSaving.items());
+    }
+}
@@ -0,0 +1,97 @@
+package com.pxx.ifmserver.ranking;
+
+import com.pxx.ifmserver.entity.vo.TrendingVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 校验热搜排行:大量长尾关键词中的高频项、计数误差和时间窗口过期
+ */
+class TrendingTrackerTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private final AtomicLong now = new AtomicLong(1_000 * HOUR);
+    private TrendingTracker trendingTracker;
+
+    @BeforeEach
+    void setUp() {
+        trendingTracker = new TrendingTracker();
+        ReflectionTestUtils.setField(trendingTracker, "bucketMinutes", 60);
+        ReflectionTestUtils.setField(trendingTracker, "bucketCount", 24);
+        ReflectionTestUtils.setField(trendingTracker, "sketchDepth", 4);
+        ReflectionTestUtils.setField(trendingTracker, "sketchWidth", 4096);
+        ReflectionTestUtils.setField(trendingTracker, "capacity", 200);
+        ReflectionTestUtils.setField(trendingTracker, "topK", 50);
+        ReflectionTestUtils.setField(trendingTracker, "clock", (LongSupplier) now::get);
+    }
+
+    @Test
+    void heavyHittersAmongLongTail() {
+        Random random = new Random(7);
+        //10万个只出现一次的长尾关键词中夹杂5个热词(各约2000次)
+        for (int i = 0; i < 100_000; i++) {
+            trendingTracker.record(TrendingType.KEYWORD, "长尾" + i);
+            if (i % 10 == 0) {
+                trendingTracker.record(TrendingType.KEYWORD, "热词" + random.nextInt(5));
+            }
+            if (i % 20_000 == 0) {
+                now.addAndGet(HOUR);
+            }
+        }
+        for (int i = 0; i < 4000; i++) {
+            trendingTracker.record(TrendingType.KEYWORD, "深夜电台");
+        }
+        for (int i = 0; i < 3000; i++) {
+            trendingTracker.record(TrendingType.KEYWORD, "Podcast");
+        }
+        trendingTracker.refresh();
+
+        List<TrendingVO> top = trendingTracker.list(TrendingType.KEYWORD, 7);
+        assertEquals("深夜电台", top.get(0).getName());
+        assertEquals("podcast", top.get(1).getName());
+        //草图只会高估,保守更新下误差应很小
+        assertTrue(top.get(0).getCount() >= 4000 && top.get(0).getCount() < 4000 * 1.05, "count " + top.get(0).getCount());
+        for (int i = 2; i < 7; i++) {
+            assertTrue(top.get(i).getName().startsWith("热词"), top.get(i).getName());
+        }
+        //类型之间互不影响
+        assertTrue(trendingTracker.list(TrendingType.HASHTAG, 10).isEmpty());
+    }
+
+    @Test
+    void oldBucketsExpire() {
+        for (int i = 0; i < 50; i++) {
+            trendingTracker.record(TrendingType.HASHTAG, "旧标签");
+        }
+        now.addAndGet(12 * HOUR);
+        for (int i = 0; i < 10; i++) {
+            trendingTracker.record(TrendingType.HASHTAG, "新标签");
+        }
+        trendingTracker.refresh();
+        List<TrendingVO> top = trendingTracker.list(TrendingType.HASHTAG, 10);
+        assertEquals("旧标签", top.get(0).getName());
+        assertEquals(50, top.get(0).getCount());
+
+        //超过24小时后旧标签所在的桶不再计入
+        now.addAndGet(13 * HOUR);
+        trendingTracker.refresh();
+        top = trendingTracker.list(TrendingType.HASHTAG, 10);
+        assertEquals(1, top.size());
+        assertEquals("新标签", top.get(0).getName());
+        assertEquals(10, top.get(0).getCount());
+
+        now.addAndGet(24 * HOUR);
+        trendingTracker.refresh();
+        assertTrue(trendingTracker.list(TrendingType.HASHTAG, 10).isEmpty());
+    }
+}
@@ -0,0 +1,176 @@
+package com.pxx.ifmserver.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 校验分词、多词求交集(命中的行与逐行LIKE相同)、BM25排序、按块跳过后的前limit个结果、最后一个词的前缀匹配和增量更新
+ */
+class FullTextIndexTest {
+
+    private static List<String> tokens(String text) {
+        List<String> result = new ArrayList<>();
+        Tokenizer.tokenize(text, result::add);
+        return result;
+    }
+
+    @Test
+    void tokenizesCjkAsBigramsAndLatinAsWords() {
+        assertEquals(List.of("深夜", "夜电", "电台", "fm", "2024"), tokens("深夜电台 ＦＭ-2024"));
+        assertEquals(List.of("猫", "jazz", "music"), tokens("猫,Jazz Music"));
+        //查询中单独的汉字无法用二元分词回答
+        assertNull(Tokenizer.tokenizeQuery("猫"));
+        assertEquals(List.of("电台", "fm"), Tokenizer.tokenizeQuery("电台 电台 fm"));
+    }
+
+    @Test
+    void requiresAllTermsAndRanksTitleMatchesFirst() {
+        FullTextIndex index = new FullTextIndex(2000);
+        index.put(1, "周末音乐会", "在电台里听一场深夜的音乐会");
+        index.put(2, "深夜电台", "陪你度过漫漫长夜");
+        index.put(3, "读书分享", "今晚电台推荐一本书");
+        index.put(4, "天气预报", "明天有雨");
+
+        assertEquals(List.of(2, 3, 1), index.search(Tokenizer.tokenizeQuery("电台"), 10));
+        //要求同时包含"深夜"和"电台"
+        assertEquals(List.of(2, 1), index.search(Tokenizer.tokenizeQuery("深夜 电台"), 10));
+        //连写时还要求包含跨词的"夜电"
+        assertEquals(List.of(2), index.search(Tokenizer.tokenizeQuery("深夜电台"), 10));
+        assertEquals(List.of(2), index.search(Tokenizer.tokenizeQuery("电台"), 1));
+        assertTrue(index.search(Tokenizer.tokenizeQuery("电台 雨天"), 10).isEmpty());
+    }
+
+    @Test
+    void findsSameRowsAsLikeScan() {
+        //随机的双字词,词频近似长尾分布
+        Random random = new Random(42);
+        String[] words = new String[5000];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = new String(new char[]{(char) (0x4E00 + random.nextInt(0x5000)), (char) (0x4E00 + random.nextInt(0x5000))});
+        }
+        int rows = 5000;
+        String[] texts = new String[rows];
+        FullTextIndex index = new FullTextIndex(2000);
+        for (int id = 0; id < rows; id++) {
+            StringBuilder detail = new StringBuilder();
+            for (int i = 0; i < 33; i++) {
+                double r = random.nextDouble();
+                detail.append(words[(int) (words.length * r * r * r)]).append(' ');
+            }
+            texts[id] = detail.toString();
+            index.put(id, null, texts[id]);
+        }
+        //常见词、中频词、罕见词和两词组合
+        for (String query : new String[]{words[0], words[20], words[300], words[3000], words[1] + " " + words[50]}) {
+            List<Integer> like = new ArrayList<>();
+            for (int id = 0; id < rows; id++) {
+                boolean all = true;
+                for (String part : query.split(" ")) {
+                    all &= texts[id].contains(part);
+                }
+                if (all) {
+                    like.add(id);
+                }
+            }
+            assertEquals(new HashSet<>(like), new HashSet<>(index.search(Tokenizer.tokenizeQuery(query), rows)), query);
+        }
+    }
+
+    @Test
+    void blockSkippingKeepsExactTopResults() {
+        Random random = new Random(42);
+        String[] words = new String[500];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = "w" + i;
+        }
+        FullTextIndex index = new FullTextIndex(2000);
+        int rows = 30000;
+        for (int id = 0; id < rows; id++) {
+            StringBuilder title = new StringBuilder();
+            StringBuilder detail = new StringBuilder();
+            for (int i = 0; i < 3; i++) {
+                double r = random.nextDouble();
+                title.append(words[(int) (words.length * r * r * r)]).append(' ');
+            }
+            for (int i = 0; i < random.nextInt(60); i++) {
+                double r = random.nextDouble();
+                detail.append(words[(int) (words.length * r * r * r)]).append(' ');
+            }
+            index.put(id, title.toString(), detail.toString());
+        }
+        //更新和删除后块的上界只会偏大,结果仍然准确
+        for (int id = 0; id < rows; id += 7) {
+            index.put(id, words[random.nextInt(words.length)], null);
+        }
+        for (int id = 3; id < rows; id += 11) {
+            index.remove(id);
+        }
+        for (List<String> query : List.of(List.of("w0"), List.of("w1"), List.of("w30"), List.of("w0", "w2"), List.of("w400"))) {
+            List<Integer> all = index.search(query, rows);
+            for (int limit : new int[]{1, 10, 100}) {
+                assertEquals(all.subList(0, Math.min(limit, all.size())), index.search(query, limit), query + " " + limit);
+            }
+        }
+    }
+
+    @Test
+    void matchesLastWordByPrefix() {
+        FullTextIndex index = new FullTextIndex(2000);
+        index.put(1, "Radio Days", "jazz radio");
+        index.put(2, "radical", "rock");
+        index.put(3, "jazz night", "piano");
+        index.put(4, "深夜电台", "radio");
+
+        assertEquals(List.of(1, 2, 4), sorted(index.search(Tokenizer.tokenizeQuery("radi"), true, 10)));
+        //只有最后一个词按前缀匹配
+        assertEquals(List.of(1), index.search(Tokenizer.tokenizeQuery("jazz radi"), true, 10));
+        assertTrue(index.search(Tokenizer.tokenizeQuery("radi jazz"), true, 10).isEmpty());
+        assertEquals(List.of(4), index.search(Tokenizer.tokenizeQuery("深夜 rad"), true, 10));
+        //单个字母不做前缀匹配
+        assertTrue(index.search(Tokenizer.tokenizeQuery("r"), true, 10).isEmpty());
+        assertTrue(index.search(Tokenizer.tokenizeQuery("radi"), false, 10).isEmpty());
+
+        //删除文档后不再有以"radic"开头的词
+        index.remove(2);
+        assertTrue(index.search(Tokenizer.tokenizeQuery("radic"), true, 10).isEmpty());
+        assertEquals(List.of(1, 4), sorted(index.search(Tokenizer.tokenizeQuery("radi"), true, 10)));
+    }
+
+    private static List<Integer> sorted(List<Integer> ids) {
+        List<Integer> result = new ArrayList<>(ids);
+        result.sort(null);
+        return result;
+    }
+
+    @Test
+    void updatesAndRemovesDocuments() {
+        FullTextIndex index = new FullTextIndex(2000);
+        index.put(5000, "old title", "jazz");
+        index.put(7, "jazz night", null);
+        assertEquals(List.of(7, 5000), index.search(List.of("jazz"), 10));
+
+        index.put(5000, "new title", "rock");
+        assertEquals(List.of(7), index.search(List.of("jazz"), 10));
+        assertEquals(List.of(5000), index.search(List.of("rock"), 10));
+
+        index.remove(7);
+        assertTrue(index.search(List.of("jazz"), 10).isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void truncatesLongDetail() {
+        FullTextIndex index = new FullTextIndex(10);
+        index.put(1, "title", "aaaa bbbb cccc dddd");
+        assertEquals(List.of(1), index.search(List.of("bbbb"), 10));
+        assertTrue(index.search(List.of("dddd"), 10).isEmpty());
+    }
+}
@@ -0,0 +1,120 @@
+package com.pxx.ifmserver.search;
+
+import com.pxx.ifmserver.entity.dto.SearchDocument;
+import com.pxx.ifmserver.mapper.SearchMapper;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * 校验重建索引期间的修改排队,替换后补做到新索引上,不会丢失
+ */
+class SearchIndexTest {
+
+    //模拟数据库中的节目
+    private final Map<Integer, String> database = new TreeMap<>();
+    private SearchMapper searchMapper;
+    private SearchIndex searchIndex;
+    //扫描到这一行之后执行的操作(模拟重建期间的并发修改)
+    private Runnable duringScan = () -> { };
+
+    @BeforeEach
+    void setUp() {
+        searchMapper = Mockito.mock(SearchMapper.class);
+        Mockito.when(searchMapper.getDocument(eq(DocType.BROADCAST), anyInt()))
+                .thenAnswer(invocation -> document(invocation.getArgument(1)));
+        Mockito.doAnswer(invocation -> {
+            ResultHandler<SearchDocument> handler = invocation.getArgument(1);
+            for (Integer id : List.copyOf(database.keySet())) {
+                SearchDocument document = document(id);
+                handler.handleResult(context(document));
+                duringScan.run();
+            }
+            return null;
+        }).when(searchMapper).scanDocuments(eq(DocType.BROADCAST), any());
+        searchIndex = new SearchIndex();
+        ReflectionTestUtils.setField(searchIndex, "searchMapper", searchMapper);
+        ReflectionTestUtils.setField(searchIndex, "maxResults", 100);
+        ReflectionTestUtils.setField(searchIndex, "detailMaxChars", 2000);
+    }
+
+    private SearchDocument document(int id) {
+        if (!database.containsKey(id)) {
+            return null;
+        }
+        SearchDocument document = new SearchDocument();
+        document.setId(id);
+        document.setTitle(database.get(id));
+        return document;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ResultContext<SearchDocument> context(SearchDocument document) {
+        ResultContext<SearchDocument> context = Mockito.mock(ResultContext.class);
+        Mockito.when(context.getResultObject()).thenReturn(document);
+        return context;
+    }
+
+    @Test
+    void changesDuringRebuildAreAppliedAfterSwap() {
+        database.put(1, "jazz night");
+        database.put(2, "rock night");
+        assertNull(searchIndex.search(DocType.BROADCAST, "jazz"));
+        searchIndex.rebuild();
+        assertEquals(List.of(1), searchIndex.search(DocType.BROADCAST, "jazz"));
+
+        //第1行已被扫描后修改,第2行扫描后删除,同时新建第3行
+        duringScan = () -> {
+            if (database.get(1).equals("jazz night")) {
+                database.put(1, "piano night");
+                searchIndex.refresh(DocType.BROADCAST, 1);
+            } else if (database.containsKey(2)) {
+                database.remove(2);
+                searchIndex.remove(DocType.BROADCAST, 2);
+                database.put(3, "jazz morning");
+                searchIndex.refresh(DocType.BROADCAST, 3);
+            }
+        };
+        searchIndex.rebuild();
+        duringScan = () -> { };
+
+        assertTrue(searchIndex.search(DocType.BROADCAST, "rock").isEmpty());
+        assertEquals(List.of(3), searchIndex.search(DocType.BROADCAST, "jazz"));
+        assertEquals(List.of(1), searchIndex.search(DocType.BROADCAST, "piano"));
+
+        //重建结束后恢复直接更新
+        database.put(4, "jazz evening");
+        searchIndex.refresh(DocType.BROADCAST, 4);
+        assertEquals(2, searchIndex.search(DocType.BROADCAST, "jazz").size());
+    }
+
+    @Test
+    void changesDuringFailedRebuildGoToOldIndex() {
+        database.put(1, "jazz night");
+        searchIndex.rebuild();
+
+        duringScan = () -> {
+            database.put(2, "jazz morning");
+            searchIndex.refresh(DocType.BROADCAST, 2);
+            throw new IllegalStateException("连接断开");
+        };
+        searchIndex.rebuild();
+        duringScan = () -> { };
+
+        assertEquals(2, searchIndex.search(DocType.BROADCAST, "jazz").size());
+    }
+}
@@ -0,0 +1,150 @@
+package com.pxx.ifmserver.search;
+
+import com.pxx.ifmserver.entity.dto.Hashtag;
+import com.pxx.ifmserver.entity.dto.SuggestTerm;
+import com.pxx.ifmserver.mapper.HashtagMapper;
+import com.pxx.ifmserver.mapper.SuggestMapper;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+/**
+ * 校验补全的排序、拼音首字母和增量合并,以及大量标题时与逐条比较的结果一致
+ * 查询延迟见benchmark.SuggestBenchmark
+ */
+class SuggestIndexTest {
+
+    private final List<SuggestTerm> broadcastTitles = new ArrayList<>();
+    private SuggestIndex suggestIndex;
+
+    private static SuggestTerm term(String text, long weight) {
+        SuggestTerm term = new SuggestTerm();
+        term.setText(text);
+        term.setWeight(weight);
+        return term;
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        SuggestMapper suggestMapper = Mockito.mock(SuggestMapper.class);
+        HashtagMapper hashtagMapper = Mockito.mock(HashtagMapper.class);
+        Mockito.doAnswer(invocation -> {
+            ResultHandler<SuggestTerm> handler = invocation.getArgument(0);
+            DefaultResultContext<SuggestTerm> context = new DefaultResultContext<>();
+            for (SuggestTerm term : broadcastTitles) {
+                context.nextResultObject(term);
+                handler.handleResult(context);
+            }
+            return null;
+        }).when(suggestMapper).scanBroadcastTitles(any());
+        Hashtag hashtag = new Hashtag();
+        hashtag.setHashtagName("深夜");
+        Mockito.when(hashtagMapper.listHash()).thenReturn(List.of(hashtag));
+        Mockito.when(suggestMapper.listPopularKeyword(anyInt(), anyInt())).thenReturn(List.of(term("深夜故事", 3)));
+
+        suggestIndex = new SuggestIndex();
+        ReflectionTestUtils.setField(suggestIndex, "suggestMapper", suggestMapper);
+        ReflectionTestUtils.setField(suggestIndex, "hashtagMapper", hashtagMapper);
+        ReflectionTestUtils.setField(suggestIndex, "topK", 10);
+        ReflectionTestUtils.setField(suggestIndex, "hashtagWeight", 100L);
+        ReflectionTestUtils.setField(suggestIndex, "historyWeight", 100L);
+        ReflectionTestUtils.setField(suggestIndex, "historyLimit", 100);
+        ReflectionTestUtils.setField(suggestIndex, "minUsers", 3);
+    }
+
+    @Test
+    void ranksByWeightAndMatchesPinyinInitials() {
+        broadcastTitles.addAll(List.of(term("深夜电台", 1000), term("深圳新闻", 50), term("Jazz Night", 20), term("深夜电台", 500)));
+        suggestIndex.reload();
+
+        //同名标题的热度累加;搜索词3人 x 100
+        assertEquals(List.of("深夜电台", "深夜故事", "深夜", "深圳新闻"), suggestIndex.suggest("深", 10));
+        assertEquals(List.of("深夜电台", "深夜故事"), suggestIndex.suggest("深夜", 2));
+        assertEquals(List.of("深夜电台"), suggestIndex.suggest("sydt", 10));
+        assertEquals(List.of("Jazz Night"), suggestIndex.suggest("ＪＡＺ", 10));
+        assertTrue(suggestIndex.suggest("rock", 10).isEmpty());
+    }
+
+    @Test
+    void newTermsAreVisibleBeforeAndAfterRefresh() {
+        broadcastTitles.add(term("深夜电台", 10));
+        suggestIndex.reload();
+
+        suggestIndex.add("深夜读书会", 0);
+        suggestIndex.addKeyword("深夜故事", 4);
+        //"深夜故事"3人 x 100 + 新增一个搜索人数100,"深夜电台"10
+        assertEquals(List.of("深夜故事", "深夜", "深夜电台", "深夜读书会"), suggestIndex.suggest("深夜", 10));
+        assertEquals(List.of("深夜读书会"), suggestIndex.suggest("sydsh", 10));
+
+        suggestIndex.refresh();
+        assertEquals(List.of("深夜故事", "深夜", "深夜电台", "深夜读书会"), suggestIndex.suggest("深夜", 10));
+        assertEquals(List.of("深夜读书会"), suggestIndex.suggest("sydsh", 10));
+    }
+
+    @Test
+    void keywordsNeedEnoughDistinctUsers() {
+        suggestIndex.reload();
+
+        //同一个用户重复搜索只算一人
+        suggestIndex.addKeyword("我的私人笔记", 1);
+        suggestIndex.addKeyword("我的私人笔记", 1);
+        suggestIndex.addKeyword("我的私人笔记", 2);
+        suggestIndex.refresh();
+        assertTrue(suggestIndex.suggest("我的", 10).isEmpty());
+
+        //第3个用户搜索后成为候选词,热度为搜索人数 x 100
+        suggestIndex.addKeyword("我的私人笔记", 3);
+        assertEquals(List.of("我的私人笔记"), suggestIndex.suggest("我的", 10));
+        suggestIndex.addKeyword("深夜私语", 1);
+        suggestIndex.addKeyword("深夜私语", 2);
+        suggestIndex.addKeyword("深夜私语", 3);
+        suggestIndex.addKeyword("深夜私语", 4);
+        assertEquals(List.of("深夜私语", "深夜故事", "深夜"), suggestIndex.suggest("深夜", 10));
+    }
+
+    @Test
+    void largeIndexMatchesBruteForce() {
+        Random random = new Random(7);
+        Map<String, Long> weights = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            char[] title = new char[4 + random.nextInt(8)];
+            for (int j = 0; j < title.length; j++) {
+                title[j] = (char) (0x4E00 + random.nextInt(300));
+            }
+            long weight = random.nextInt(100_000);
+            broadcastTitles.add(term(new String(title), weight));
+            weights.merge(new String(title), weight, Long::sum);
+        }
+        suggestIndex.reload();
+
+        for (int i = 0; i < 500; i++) {
+            String title = broadcastTitles.get(random.nextInt(broadcastTitles.size())).getText();
+            String prefix = title.substring(0, 1 + random.nextInt(3));
+            List<Long> expected = weights.entrySet().stream()
+                    .filter(entry -> entry.getKey().startsWith(prefix))
+                    .map(Map.Entry::getValue)
+                    .sorted(Comparator.reverseOrder())
+                    .limit(10)
+                    .toList();
+            List<String> suggestions = suggestIndex.suggest(prefix, 10);
+            assertTrue(suggestions.stream().allMatch(text -> text.startsWith(prefix)), prefix);
+            assertEquals(expected, suggestions.stream().map(weights::get).toList(), prefix);
+        }
+    }
+}
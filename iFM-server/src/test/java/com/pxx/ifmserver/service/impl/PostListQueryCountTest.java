@@ -0,0 +1,186 @@
+package com.pxx.ifmserver.service.impl;
+
+import com.pxx.ifmserver.cache.UserSummaryCache;
+import com.pxx.ifmserver.entity.dto.Post;
+import com.pxx.ifmserver.entity.dto.PostFavorite;
+import com.pxx.ifmserver.entity.dto.PostHashtag;
+import com.pxx.ifmserver.entity.dto.PostImage;
+import com.pxx.ifmserver.entity.dto.User;
+import com.pxx.ifmserver.entity.vo.PostVO;
+import com.pxx.ifmserver.mapper.PostMapper;
+import com.pxx.ifmserver.mapper.UserMapper;
+import com.pxx.ifmserver.ranking.PopularityRanking;
+import com.pxx.ifmserver.ranking.RankingType;
+import com.pxx.ifmserver.result.Result;
+import com.pxx.ifmserver.search.SearchIndex;
+import com.pxx.ifmserver.service.assembler.PostAssembler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * 帖子列表接口的查询次数回归测试:无论一页有多少帖子,图片、主题标签、作者各只查询一次
+ */
+class PostListQueryCountTest {
+
+    private static final int POST_COUNT = 20;
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 12, 20, 12, 0);
+
+    private PostMapper postMapper;
+    private UserMapper userMapper;
+    private PopularityRanking popularityRanking;
+    private PostServiceImpl postService;
+
+    @BeforeEach
+    void setUp() {
+        postMapper = Mockito.mock(PostMapper.class);
+        userMapper = Mockito.mock(UserMapper.class);
+        popularityRanking = Mockito.mock(PopularityRanking.class);
+
+        Mockito.when(postMapper.listImageByPostIdList(any())).thenAnswer(invocation -> {
+            List<PostImage> images = new ArrayList<>();
+            for (Integer postId : invocation.<Collection<Integer>>getArgument(0)) {
+                PostImage image = new PostImage();
+                image.setPostId(postId);
+                image.setImage("/images/post/" + postId + ".png");
+                images.add(image);
+            }
+            return images;
+        });
+        Mockito.when(postMapper.listHashtagByPostIdList(any())).thenAnswer(invocation -> {
+            List<PostHashtag> hashtags = new ArrayList<>();
+            for (Integer postId : invocation.<Collection<Integer>>getArgument(0)) {
+                PostHashtag hashtag = new PostHashtag();
+                hashtag.setPostId(postId);
+                hashtag.setHashtagId(postId % 3);
+                hashtag.setHashtagName("tag" + postId % 3);
+                hashtags.add(hashtag);
+            }
+            return hashtags;
+        });
+        Mockito.when(postMapper.listPostByIdList(any())).thenAnswer(invocation -> {
+            List<Post> posts = new ArrayList<>();
+            for (Integer postId : invocation.<Collection<Integer>>getArgument(0)) {
+                posts.add(post(postId));
+            }
+            return posts;
+        });
+        Mockito.when(userMapper.listUserSummaryByIdList(any())).thenAnswer(invocation -> {
+            List<User> users = new ArrayList<>();
+            for (Integer userId : invocation.<Collection<Integer>>getArgument(0)) {
+                User user = new User();
+                user.setUserId(userId);
+                user.setUserName("user" + userId);
+                users.add(user);
+            }
+            return users;
+        });
+
+        UserSummaryCache userSummaryCache = new UserSummaryCache();
+        ReflectionTestUtils.setField(userSummaryCache, "userMapper", userMapper);
+        ReflectionTestUtils.setField(userSummaryCache, "maxEntries", 1000);
+        PostAssembler postAssembler = new PostAssembler();
+        ReflectionTestUtils.setField(postAssembler, "postMapper", postMapper);
+        ReflectionTestUtils.setField(postAssembler, "userSummaryCache", userSummaryCache);
+        postService = new PostServiceImpl();
+        ReflectionTestUtils.setField(postService, "postMapper", postMapper);
+        ReflectionTestUtils.setField(postService, "userSummaryCache", userSummaryCache);
+        ReflectionTestUtils.setField(postService, "popularityRanking", popularityRanking);
+        ReflectionTestUtils.setField(postService, "postAssembler", postAssembler);
+        //搜索索引尚未建好,关键词搜索走数据库查询
+        ReflectionTestUtils.setField(postService, "searchIndex", new SearchIndex());
+    }
+
+    private static Post post(int postId) {
+        Post post = new Post();
+        post.setPostId(postId);
+        post.setUserId(postId % 4);
+        post.setGmtCreate(NOW.minusMinutes(postId));
+        return post;
+    }
+
+    private static List<Post> posts() {
+        List<Post> posts = new ArrayList<>();
+        for (int postId = 1; postId <= POST_COUNT; postId++) {
+            posts.add(post(postId));
+        }
+        return posts;
+    }
+
+    private int queryCount() {
+        return Mockito.mockingDetails(postMapper).getInvocations().size()
+                + Mockito.mockingDetails(userMapper).getInvocations().size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<PostVO> postList(Result result) {
+        return (List<PostVO>) result.getData().get("postList");
+    }
+
+    private static void assertHydrated(List<PostVO> postVOList) {
+        assertEquals(POST_COUNT, postVOList.size());
+        for (PostVO postVO : postVOList) {
+            assertEquals(List.of("/images/post/" + postVO.getPostId() + ".png"), postVO.getPostImageList());
+            assertEquals(1, postVO.getPostHashtagList().size());
+            assertEquals("user" + postVO.getPostId() % 4, postVO.getUserName());
+        }
+    }
+
+    @Test
+    void sectionListUsesFourQueries() {
+        Mockito.when(postMapper.listPostByPostSectionPage(eq(0), any())).thenReturn(posts());
+        List<PostVO> postVOList = postList(postService.listPostBySectionId(0, null, 50));
+        assertHydrated(postVOList);
+        assertEquals(1, postVOList.get(0).getPostId());
+        //帖子 + 图片 + 主题标签 + 作者
+        assertEquals(4, queryCount());
+    }
+
+    @Test
+    void keywordListUsesFourQueries() {
+        Mockito.when(postMapper.listPostByKeyWord("radio")).thenReturn(posts());
+        assertHydrated(postList(postService.listPostByKeyword("radio")));
+        assertEquals(4, queryCount());
+    }
+
+    @Test
+    void popularListKeepsRankOrder() {
+        List<Integer> topIdList = new ArrayList<>();
+        for (int postId = POST_COUNT; postId >= 1; postId--) {
+            topIdList.add(postId);
+        }
+        Mockito.when(popularityRanking.top(RankingType.POST)).thenReturn(topIdList);
+        List<PostVO> postVOList = postList(postService.listPopularPost());
+        assertHydrated(postVOList);
+        assertEquals(POST_COUNT, postVOList.get(0).getPostId());
+        assertEquals(4, queryCount());
+    }
+
+    @Test
+    void favoriteListLoadsPostsInOneQuery() {
+        List<PostFavorite> favorites = new ArrayList<>();
+        for (int postId = 1; postId <= POST_COUNT; postId++) {
+            PostFavorite favorite = new PostFavorite();
+            favorite.setPostId(postId);
+            favorite.setUserId(7);
+            favorite.setGmtCreate(NOW.minusMinutes(postId));
+            favorites.add(favorite);
+        }
+        Mockito.when(postMapper.listFavoritePostByUserIdPage(eq(7), any())).thenReturn(favorites);
+        assertHydrated(postList(postService.listFavoritePost(7, null, 50)));
+        //收藏记录 + 帖子 + 图片 + 主题标签 + 作者
+        assertEquals(5, queryCount());
+        Mockito.verify(postMapper, Mockito.never()).getPostById(anyInt());
+    }
+}
@@ -0,0 +1,103 @@
+package com.pxx.ifmserver.service.impl;
+
+import com.pxx.ifmserver.result.Result;
+import com.pxx.ifmserver.service.BroadcastService;
+import com.pxx.ifmserver.service.ChannelService;
+import com.pxx.ifmserver.service.PostService;
+import com.pxx.ifmserver.service.SearchHistoryService;
+import com.pxx.ifmserver.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 校验综合搜索并行执行、超时隔离和后台保存搜索历史
+ */
+class SearchServiceImplTest {
+
+    //每类内容的模拟搜索耗时
+    private static final long SEARCH_MILLIS = 200;
+
+    private BroadcastService broadcastService;
+    private ChannelService channelService;
+    private PostService postService;
+    private UserService userService;
+    private SearchHistoryService searchHistoryService;
+    private SearchServiceImpl searchService;
+
+    private static Result slowResult(String name, long millis) throws InterruptedException {
+        Thread.sleep(millis);
+        return Result.ok().data(Map.of(name, List.of(name)));
+    }
+
+    @BeforeEach
+    void setUp() {
+        broadcastService = Mockito.mock(BroadcastService.class);
+        channelService = Mockito.mock(ChannelService.class);
+        postService = Mockito.mock(PostService.class);
+        userService = Mockito.mock(UserService.class);
+        searchHistoryService = Mockito.mock(SearchHistoryService.class);
+        Mockito.when(broadcastService.searchBroadcast("kw")).thenAnswer(invocation -> slowResult("broadcastList", SEARCH_MILLIS));
+        Mockito.when(channelService.searchChannel("kw")).thenAnswer(invocation -> slowResult("channelList", SEARCH_MILLIS));
+        Mockito.when(postService.listPostByKeyword("kw")).thenAnswer(invocation -> slowResult("postList", SEARCH_MILLIS));
+        Mockito.when(userService.searchUser("kw")).thenAnswer(invocation -> slowResult("userList", SEARCH_MILLIS));
+
+        searchService = new SearchServiceImpl();
+        ReflectionTestUtils.setField(searchService, "broadcastService", broadcastService);
+        ReflectionTestUtils.setField(searchService, "channelService", channelService);
+        ReflectionTestUtils.setField(searchService, "postService", postService);
+        ReflectionTestUtils.setField(searchService, "userService", userService);
+        ReflectionTestUtils.setField(searchService, "searchHistoryService", searchHistoryService);
+        ReflectionTestUtils.setField(searchService, "poolSize", 8);
+        ReflectionTestUtils.setField(searchService, "queueCapacity", 16);
+        ReflectionTestUtils.setField(searchService, "timeout", 1000L);
+        searchService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        searchService.shutdown();
+    }
+
+    @Test
+    void searchesAllSectionsConcurrently() {
+        long start = System.currentTimeMillis();
+        Result result = searchService.search(7, "kw");
+        long elapsed = System.currentTimeMillis() - start;
+
+        //四类搜索并行执行,总耗时接近一次搜索
+        assertTrue(elapsed < SEARCH_MILLIS * 3, "elapsed " + elapsed + "ms");
+        Map<String, Object> data = result.getData();
+        assertEquals(List.of("broadcastList"), data.get("broadcastList"));
+        assertEquals(List.of("channelList"), data.get("channelList"));
+        assertEquals(List.of("postList"), data.get("postList"));
+        assertEquals(List.of("userList"), data.get("userList"));
+        assertEquals(List.of(), data.get("failedSections"));
+        Mockito.verify(searchHistoryService, Mockito.timeout(1000)).saveSearchHistory(7, "kw");
+    }
+
+    @Test
+    void slowSectionDoesNotBlockOthers() {
+        Mockito.when(postService.listPostByKeyword("kw")).thenAnswer(invocation -> slowResult("postList", 5000));
+        ReflectionTestUtils.setField(searchService, "timeout", 500L);
+
+        long start = System.currentTimeMillis();
+        Result result = searchService.search(null, "kw");
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(elapsed < 2000, "elapsed " + elapsed + "ms");
+        assertEquals(List.of(), result.getData().get("postList"));
+        assertEquals(List.of("postList"), result.getData().get("failedSections"));
+        assertEquals(List.of("userList"), result.getData().get("userList"));
+        //未登录不记录搜索历史
+        Mockito.verifyNoInteractions(searchHistoryService);
+    }
+}
@@ -0,0 +1,81 @@
+package com.pxx.ifmserver.service.impl;
+
+import com.pxx.ifmserver.cache.UserIdentityFilter;
+import com.pxx.ifmserver.cache.UserSummaryCache;
+import com.pxx.ifmserver.entity.dto.User;
+import com.pxx.ifmserver.mapper.UserMapper;
+import com.pxx.ifmserver.result.Result;
+import com.pxx.ifmserver.search.SearchIndex;
+import com.pxx.ifmserver.verification.VerificationCodeStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+
+/**
+ * 校验查重过滤器放行、但数据库唯一索引冲突时返回昵称/邮箱对应的错误码
+ */
+class UserServiceImplTest {
+
+    private UserMapper userMapper;
+    private UserServiceImpl userService;
+
+    private static DuplicateKeyException duplicate(String key) {
+        return new DuplicateKeyException("insert user",
+                new SQLIntegrityConstraintViolationException("Duplicate entry 'x' for key '" + key + "'"));
+    }
+
+    private static User user() {
+        User user = new User();
+        user.setUserName("深夜电台");
+        user.setUserPassword("123456");
+        user.setUserEmail("a@test.com");
+        return user;
+    }
+
+    @BeforeEach
+    void setUp() {
+        userMapper = Mockito.mock(UserMapper.class);
+        VerificationCodeStore verificationCodeStore = Mockito.mock(VerificationCodeStore.class);
+        Mockito.when(verificationCodeStore.verify(anyString(), anyString())).thenReturn(true);
+        userService = new UserServiceImpl();
+        ReflectionTestUtils.setField(userService, "userMapper", userMapper);
+        ReflectionTestUtils.setField(userService, "userIdentityFilter", Mockito.mock(UserIdentityFilter.class));
+        ReflectionTestUtils.setField(userService, "userSummaryCache", Mockito.mock(UserSummaryCache.class));
+        ReflectionTestUtils.setField(userService, "searchIndex", Mockito.mock(SearchIndex.class));
+        ReflectionTestUtils.setField(userService, "verificationCodeStore", verificationCodeStore);
+    }
+
+    @Test
+    void registerMapsDuplicateKeys() {
+        Mockito.doThrow(duplicate("user.user_name")).when(userMapper).insertUser(any());
+        Result result = userService.insertUser(user(), "123456");
+        assertEquals(50001, result.getCode());
+        assertEquals("昵称已被使用", result.getData().get("error"));
+
+        //MySQL 5.7的错误信息中只有索引名
+        Mockito.doThrow(duplicate("user_email")).when(userMapper).insertUser(any());
+        result = userService.insertUser(user(), "123456");
+        assertEquals(50002, result.getCode());
+        assertEquals("邮箱已被使用", result.getData().get("error"));
+
+        Mockito.doThrow(duplicate("PRIMARY")).when(userMapper).insertUser(any());
+        assertEquals(20001, userService.insertUser(user(), "123456").getCode());
+    }
+
+    @Test
+    void renameMapsDuplicateName() {
+        Mockito.doThrow(duplicate("user.user_name")).when(userMapper).updateUserNameByUserId(anyInt(), anyString());
+        Result result = userService.updateUserNameByUserId(1, "深夜电台");
+        assertEquals(50001, result.getCode());
+        assertEquals("昵称已被使用", result.getData().get("error"));
+    }
+}
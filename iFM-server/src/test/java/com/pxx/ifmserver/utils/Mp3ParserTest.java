@@ -0,0 +1,178 @@
+package com.pxx.ifmserver.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 用构造的MPEG1 Layer3帧校验Mp3Parser
+ */
+class Mp3ParserTest {
+
+    //MPEG1 Layer3 44100Hz 立体声,码率128kbps/192kbps
+    private static final int HEADER_128 = 0xFFFB9000;
+    private static final int HEADER_192 = 0xFFFBB000;
+
+    private static void putFrame(ByteBuffer buffer, int header) {
+        int start = buffer.position();
+        buffer.putInt(header);
+        buffer.position(start + Mp3Parser.frameLength(header));
+    }
+
+    @Test
+    void frameLengthMatchesSpec() {
+        assertEquals(417, Mp3Parser.frameLength(HEADER_128));
+        assertEquals(626, Mp3Parser.frameLength(HEADER_192));
+        assertEquals(-1, Mp3Parser.frameLength(0x12345678));
+    }
+
+    @Test
+    void walksCbrFramesAfterId3Tag() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 + 1000 * 417);
+        //ID3v2标签,长度54(syncsafe)
+        buffer.put(new byte[]{'I', 'D', '3', 4, 0, 0, 0, 0, 0, 54});
+        buffer.position(64);
+        for (int i = 0; i < 1000; i++) {
+            putFrame(buffer, HEADER_128);
+        }
+        buffer.flip();
+
+        Mp3Parser.Mp3Info info = Mp3Parser.parse(buffer);
+        assertEquals(64, info.getAudioStart());
+        assertEquals(1000, info.getFrameCount());
+        assertEquals(44100, info.getSampleRate());
+        assertEquals(Mp3Parser.BitrateMode.CBR, info.getBitrateMode());
+        assertEquals(1000L * 1152 * 1000 / 44100, info.getDurationMillis());
+    }
+
+    @Test
+    void detectsVariableBitrateWithoutHeader() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(500 * (417 + 626));
+        for (int i = 0; i < 500; i++) {
+            putFrame(buffer, HEADER_128);
+            putFrame(buffer, HEADER_192);
+        }
+        buffer.flip();
+
+        Mp3Parser.Mp3Info info = Mp3Parser.parse(buffer);
+        assertEquals(1000, info.getFrameCount());
+        assertEquals(Mp3Parser.BitrateMode.VBR, info.getBitrateMode());
+        assertEquals(160, info.getBitrate());
+    }
+
+    @Test
+    void readsFrameCountFromXingHeader() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(417 * 3);
+        buffer.putInt(HEADER_128);
+        //立体声MPEG1的边信息长度为32字节
+        buffer.position(4 + 32);
+        buffer.put(new byte[]{'X', 'i', 'n', 'g'});
+        buffer.putInt(1);
+        buffer.putInt(100000);
+        buffer.position(417);
+        putFrame(buffer, HEADER_128);
+        putFrame(buffer, HEADER_128);
+        buffer.flip();
+
+        Mp3Parser.Mp3Info info = Mp3Parser.parse(buffer);
+        assertEquals(100000, info.getFrameCount());
+        assertEquals(417, info.getAudioStart());
+        assertEquals(Mp3Parser.BitrateMode.VBR, info.getBitrateMode());
+        assertEquals(100000L * 1152 * 1000 / 44100, info.getDurationMillis());
+    }
+
+    @Test
+    void streamScannerMatchesParserAcrossChunks() throws IOException {
+        //ID3v2标签(长度20000)大于扫描窗口,需跨数据块跳过
+        int tagSize = 20000;
+        ByteBuffer buffer = ByteBuffer.allocate(10 + tagSize + 300 * (417 + 626) + 128);
+        buffer.put(new byte[]{'I', 'D', '3', 4, 0, 0, 0, (byte) (tagSize >> 14), (byte) ((tagSize >> 7) & 0x7F), (byte) (tagSize & 0x7F)});
+        buffer.position(10 + tagSize);
+        for (int i = 0; i < 300; i++) {
+            putFrame(buffer, HEADER_128);
+            putFrame(buffer, HEADER_192);
+        }
+        //末尾的ID3v1标签
+        buffer.put(new byte[]{'T', 'A', 'G'});
+        buffer.position(buffer.capacity());
+        buffer.flip();
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+
+        Mp3StreamScanner scanner = new Mp3StreamScanner();
+        for (int offset = 0; offset < data.length; offset += 777) {
+            scanner.update(data, offset, Math.min(777, data.length - offset));
+        }
+        Mp3Parser.Mp3Info streamed = scanner.finish();
+        Mp3Parser.Mp3Info parsed = Mp3Parser.parse(ByteBuffer.wrap(data));
+        assertEquals(parsed, streamed);
+        assertEquals(600, streamed.getFrameCount());
+        assertEquals(10 + tagSize, streamed.getAudioStart());
+
+        long[] seekIndex = scanner.getSeekIndex();
+        assertEquals(streamed.getDurationMillis() / 1000 + 1, seekIndex.length);
+        assertEquals(10 + tagSize, seekIndex[0]);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    @Test
+    void parsesFileInChunks(@TempDir Path dir) throws IOException {
+        //ID3v2标签(长度100000)之后是变码率帧,文件大于读取块
+        int tagSize = 100000;
+        ByteBuffer buffer = ByteBuffer.allocate(10 + tagSize + 300 * (417 + 626));
+        buffer.put(new byte[]{'I', 'D', '3', 4, 0, 0, 0, (byte) (tagSize >> 14), (byte) ((tagSize >> 7) & 0x7F), (byte) (tagSize & 0x7F)});
+        buffer.position(10 + tagSize);
+        for (int i = 0; i < 300; i++) {
+            putFrame(buffer, HEADER_128);
+            putFrame(buffer, HEADER_192);
+        }
+        buffer.flip();
+        byte[] data = bytes(buffer);
+        Path file = dir.resolve("vbr.mp3");
+        Files.write(file, data);
+        assertEquals(Mp3Parser.parse(ByteBuffer.wrap(data)), Mp3Parser.parse(file));
+
+        //ID3v2标签之后首帧带Xing头,音频起点为文件中的偏移
+        buffer = ByteBuffer.allocate(64 + 417 * 3);
+        buffer.put(new byte[]{'I', 'D', '3', 4, 0, 0, 0, 0, 0, 54});
+        buffer.position(64);
+        buffer.putInt(HEADER_128);
+        buffer.position(64 + 4 + 32);
+        buffer.put(new byte[]{'X', 'i', 'n', 'g'});
+        buffer.putInt(1);
+        buffer.putInt(100000);
+        buffer.position(64 + 417);
+        putFrame(buffer, HEADER_128);
+        putFrame(buffer, HEADER_128);
+        buffer.flip();
+        data = bytes(buffer);
+        file = dir.resolve("xing.mp3");
+        Files.write(file, data);
+        Mp3Parser.Mp3Info info = Mp3Parser.parse(file);
+        assertEquals(Mp3Parser.parse(ByteBuffer.wrap(data)), info);
+        assertEquals(64 + 417, info.getAudioStart());
+        assertEquals(100000, info.getFrameCount());
+
+        Path empty = dir.resolve("empty.mp3");
+        Files.write(empty, new byte[4096]);
+        assertThrows(IOException.class, () -> Mp3Parser.parse(empty));
+    }
+
+    @Test
+    void rejectsNonMp3Data() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[4096]);
+        assertThrows(IOException.class, () -> Mp3Parser.parse(buffer));
+    }
+}
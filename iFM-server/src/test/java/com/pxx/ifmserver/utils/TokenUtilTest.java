@@ -0,0 +1,77 @@
+package com.pxx.ifmserver.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * 校验Token的签发、校验、篡改、过期和临近过期时的续签
+ */
+class TokenUtilTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+    private String verify(String token, Integer userId) {
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        if (token != null) {
+            req.addHeader("Token", token);
+        }
+        return TokenUtil.verifyToken(req, new MockHttpServletResponse(), userId);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TokenUtil.clock = System::currentTimeMillis;
+    }
+
+    @Test
+    void verifyReturnsSameTokenUntilNearExpiry() {
+        TokenUtil.clock = now::get;
+        String token = TokenUtil.createToken(42, 1);
+        assertEquals(62, token.length());
+
+        now.addAndGet(30 * MINUTE);
+        assertSame(token, verify(token, 42));
+
+        //剩余不足10分钟时续签,新Token从当前时间起再有效60分钟
+        now.addAndGet(25 * MINUTE);
+        String renewed = verify(token, 42);
+        assertNotNull(renewed);
+        assertNotEquals(token, renewed);
+        now.addAndGet(50 * MINUTE);
+        assertNull(verify(token, 42));
+        assertSame(renewed, verify(renewed, 42));
+    }
+
+    @Test
+    void rejectsInvalidTokens() {
+        String token = TokenUtil.createToken(42, 1);
+        assertNull(verify(null, 42));
+        assertNull(verify("", 42));
+        assertNull(verify(token, 43));
+        assertNull(verify(token, null));
+        assertNull(verify(token.substring(1), 42));
+        assertNull(verify(token.replace('-', '+').replace('_', '/') + "==", 42));
+        //篡改任意一个字符都无法通过签名校验
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            String tampered = token.substring(0, i) + (c == 'A' ? 'B' : 'A') + token.substring(i + 1);
+            assertNull(verify(tampered, 42), "position " + i);
+        }
+        //更换密钥后旧Token失效
+        TokenUtil.setSecret(new byte[32]);
+        assertNull(verify(token, 42));
+        assertNotNull(verify(TokenUtil.createToken(42, 1), 42));
+    }
+}
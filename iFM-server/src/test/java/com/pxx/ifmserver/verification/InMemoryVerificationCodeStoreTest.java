@@ -0,0 +1,117 @@
+package com.pxx.ifmserver.verification;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 校验内存验证码存储:过期、输错次数、覆盖,以及持续注册时保存的验证码数不增长
+ */
+class InMemoryVerificationCodeStoreTest {
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private InMemoryVerificationCodeStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new InMemoryVerificationCodeStore();
+        ReflectionTestUtils.setField(store, "ttlSeconds", 600L);
+        ReflectionTestUtils.setField(store, "tickMillis", 1000L);
+        ReflectionTestUtils.setField(store, "maxAttempts", 3);
+        ReflectionTestUtils.setField(store, "maxEntries", 1000);
+        ReflectionTestUtils.setField(store, "clock", (LongSupplier) now::get);
+    }
+
+    @Test
+    void codeIsConsumedOnSuccess() {
+        store.save("a@test.com", "123456");
+        assertFalse(store.verify("b@test.com", "123456"));
+        assertTrue(store.verify("a@test.com", "123456"));
+        assertFalse(store.verify("a@test.com", "123456"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void codeExpiresAfterTtl() {
+        store.save("a@test.com", "123456");
+        now.addAndGet(599_000);
+        store.save("b@test.com", "654321");
+        assertEquals(2, store.size());
+        now.addAndGet(1_000);
+        assertFalse(store.verify("a@test.com", "123456"));
+        assertTrue(store.verify("b@test.com", "654321"));
+
+        //长时间没有请求后所有验证码都已过期
+        store.save("c@test.com", "111111");
+        now.addAndGet(3_600_000);
+        store.tick();
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void codeIsRevokedAfterTooManyAttempts() {
+        store.save("a@test.com", "123456");
+        assertFalse(store.verify("a@test.com", "000000"));
+        assertFalse(store.verify("a@test.com", "000001"));
+        assertFalse(store.verify("a@test.com", "000002"));
+        assertFalse(store.verify("a@test.com", "123456"));
+
+        //重新获取后输错次数清零
+        store.save("a@test.com", "654321");
+        assertFalse(store.verify("a@test.com", "000000"));
+        assertTrue(store.verify("a@test.com", "654321"));
+    }
+
+    @Test
+    void newCodeReplacesOldCode() {
+        store.save("a@test.com", "123456");
+        now.addAndGet(300_000);
+        store.save("a@test.com", "654321");
+        assertEquals(1, store.size());
+        //旧验证码的过期时刻到了,新验证码仍然有效
+        now.addAndGet(400_000);
+        assertFalse(store.verify("a@test.com", "123456"));
+        assertTrue(store.verify("a@test.com", "654321"));
+    }
+
+    @Test
+    void discardOnlyRemovesTheSameCode() {
+        store.save("a@test.com", "123456");
+        store.discard("a@test.com", "123456");
+        assertFalse(store.verify("a@test.com", "123456"));
+
+        //回滚旧验证码时不影响之后重新获取的验证码
+        store.save("a@test.com", "654321");
+        store.discard("a@test.com", "123456");
+        assertTrue(store.verify("a@test.com", "654321"));
+    }
+
+    @Test
+    void sizeStaysBoundedUnderSustainedTraffic() {
+        //每秒50个注册请求持续1小时,超出上限时淘汰最早过期的验证码
+        for (int second = 0; second < 3600; second++) {
+            for (int i = 0; i < 50; i++) {
+                store.save("user" + second + "_" + i + "@test.com", "123456");
+            }
+            assertTrue(store.size() <= 1000);
+            now.addAndGet(1_000);
+        }
+        assertTrue(store.verify("user3599_49@test.com", "123456"));
+        assertFalse(store.verify("user3570_0@test.com", "123456"));
+
+        //流量降到上限以下时按有效期过期
+        ReflectionTestUtils.setField(store, "maxEntries", 100_000);
+        for (int second = 0; second < 1200; second++) {
+            store.save("late" + second + "@test.com", "123456");
+            now.addAndGet(1_000);
+        }
+        assertEquals(600, store.size());
+    }
+}
@@ -1,5 +1,24 @@
 import request from './index'
 
+//分页接口每页最多的条数(与服务端上限一致)
+const PAGE_SIZE = 50
+
+//分页列表接口:每次只取一页,返回 {list, nextCursor, ...原响应};
+//nextCursor为空表示没有下一页,页面滚动到底部时再用nextCursor取下一页
+const requestPage = async (params:any, listKey:string, cursor?:string) => {
+	const data:any = {...params.data, size:PAGE_SIZE}
+	if (cursor) {
+		data.cursor = cursor
+	}
+	const res:any = await request({...params, data:data})
+	const page = res && res.success !== false && res.data ? res.data : null
+	return {
+		...res,
+		list: page && page[listKey] ? page[listKey] : [],
+		nextCursor: page && page.hasMore && page.nextCursor ? page.nextCursor : null,
+	}
+}
+
 
 //获取热门节目
 export const getPopularBroadcast = () =>{
@@ -26,12 +45,12 @@ export const getHashtag = () =>{
 }
 
 //根据用户id获取用户创建的频道
-export const getChannelByUserId = (userId:number) =>{
-	return request({
+export const getChannelByUserId = (userId:number, cursor?:string) =>{
+	return requestPage({
 		url:'/channel/getChannelByUserId',
 		method:'get',
 		data:{"userId":userId},
-	})
+	}, 'channelList', cursor)
 }
 
 //根据频道id删除频道
@@ -53,12 +72,12 @@ export const getChannelByHashtag = (hashtagId:number) =>{
 }
 
 //获取频道所有的节目
-export const getBroadcastByChannel = (channelId:number) =>{
-	return request({
+export const getBroadcastByChannel = (channelId:number, cursor?:string) =>{
+	return requestPage({
 		url:'/broadcast/getBroadcastByChannelId',
 		method:'get',
 		data:{"channelId":channelId},
-	})
+	}, 'broadcastList', cursor)
 }
 
 //获取频道详情
@@ -89,12 +108,12 @@ export const checkSubscribe = (userId:number,channelId:number) =>{
 }
 
 //获取用户订阅的频道
-export const getSubscribedChannel = (userId:number) =>{
-	return request({
+export const getSubscribedChannel = (userId:number, cursor?:string) =>{
+	return requestPage({
 		url:'/channel/getSubscribedChannel',
 		method:'get',
 		data:{"userId":userId},
-	})
+	}, 'channelList', cursor)
 }
 
 //创建频道
@@ -213,12 +232,12 @@ export const checkCollect = (userId:number,broadcastId:number) =>{
 	})
 }
 //获取用户收藏的节目
-export const getFavoriteBroadcast = (userId:number) =>{
-	return request({
+export const getFavoriteBroadcast = (userId:number, cursor?:string) =>{
+	return requestPage({
 		url:'/broadcast/getFavoriteBroadcast',
 		method:'get',
 		data:{"userId":userId},
-	})
+	}, 'broadcastList', cursor)
 }
 //用户收藏/取消收藏
 export const changeFavorite = (userId:number,broadcastId:number) =>{
@@ -269,12 +288,12 @@ export const getBroadcastByIdList = (broadcastIdList:number[]) =>{
 	})
 }
 //获取用户收听历史表中的节目
-export const getHistory = (userId:number) =>{
-	return request({
+export const getHistory = (userId:number, cursor?:string) =>{
+	return requestPage({
 		url:'/broadcast/getHistory',
 		method:'get',
 		data:{"userId":userId},
-	})
+	}, 'broadcastList', cursor)
 }
 
 //删除节目收听历史记录
@@ -520,12 +539,12 @@ export const changeUserPicture = (userId:number,file:any) =>{
 
 // 帖子 //
 //根据用户id获取用户创建的帖子
-export const getPostByUserId = (userId:number) =>{
-	return request({
+export const getPostByUserId = (userId:number, cursor?:string) =>{
+	return requestPage({
 		url:'/post/getPostByUserId',
 		method:'get',
 		data:{"userId":userId},
-	})
+	}, 'postList', cursor)
 }
 
 //创建帖子(非图片部分)
@@ -596,14 +615,14 @@ export const getPostByPostId = (postId:number) =>{
 }
 
 //根据板块id获取帖子
-export const getPostBySectionId = (sectionId:number) =>{
-	return request({
+export const getPostBySectionId = (sectionId:number, cursor?:string) =>{
+	return requestPage({
 		url:'/post/getPostBySectionId',
 		method:'get',
 		data:{
 			"sectionId":sectionId,
 		}
-	})
+	}, 'postList', cursor)
 }
 
 //根据关键词获取帖子
@@ -618,14 +637,14 @@ export const getPostByKeyword = (keyword:string) =>{
 }
 
 //获取用户收藏的帖子
-export const getFavoritePost = (userId:number) =>{
-	return request({
+export const getFavoritePost = (userId:number, cursor?:string) =>{
+	return requestPage({
 		url:'/post/getFavoritePost',
 		method:'get',
 		data:{
 			"userId":userId,
 		}
-	})
+	}, 'postList', cursor)
 }
 
 //检查帖子是否已经被用户收藏
@@ -640,15 +659,15 @@ export const checkPostCollection = (userId:number,postId:number) =>{
 	})
 }
 //根据频道或节目ID获取对应关联的帖子
-export const getPostByAssociationId = (postAssociation:number,associationId:number) =>{
-	return request({
+export const getPostByAssociationId = (postAssociation:number,associationId:number, cursor?:string) =>{
+	return requestPage({
 		url:'/post/getPostByAssociationId',
 		method:'get',
 		data:{
 			"postAssociation":postAssociation,
 			"associationId":associationId,
 		}
-	})
+	}, 'postList', cursor)
 }
 //用户收藏/取消收藏 帖子 (具体取决于帖子是否处于用户收藏表)
 export const changePostCollection = (userId:number,postId:number) =>{
@@ -675,14 +694,14 @@ export const changePostLike = (postId:number,value:number) =>{
 }
 
 //获取帖子下的评论
-export const getCommentByPostId = (postId:number) =>{
-	return request({
+export const getCommentByPostId = (postId:number, cursor?:string) =>{
+	return requestPage({
 		url:'/comment/getCommentByPostId',
 		method:'get',
 		data:{
 			"postId":postId,
 		}
-	})
+	}, 'commentList', cursor)
 }
 
 //添加评论(创建评论,非图片部分)
@@ -726,14 +745,14 @@ export const changeCommentLike = (commentId:number,value:number) =>{
 }
 
 //根据评论id获取评论下的所有回复
-export const getReplyByCommentId = (commentId:number) =>{
-	return request({
+export const getReplyByCommentId = (commentId:number, cursor?:string) =>{
+	return requestPage({
 		url:'/reply/getReplyByCommentId',
 		method:'get',
 		data:{
 			"commentId":commentId,
 		}
-	})
+	}, 'replyList', cursor)
 }
 
 //添加回复(创建评论,非图片部分)